@@ -42,6 +42,8 @@ public class BaseHCPResponse {
   public static final String X_REQUEST_ID_TAG = "X-RequestId";
   public static final String CONTENT_TYPE_TAG = "Content-Type";
   public static final String CONTENT_LENGTH_TAG = "Content-Length";
+  public static final String COMPUTED_HASH_TAG = "Computed hash";
+  public static final String HASH_VERIFIED_TAG = "Hash verified";
 
   protected Long m_contentLength;
   protected String m_contentType;
@@ -53,6 +55,8 @@ public class BaseHCPResponse {
   protected String m_requestID;
   protected String m_servicedBy;
   protected Status m_status;
+  protected String m_computedHash;
+  protected Boolean m_hashVerified;
 
   public BaseHCPResponse() {
   }
@@ -138,6 +142,28 @@ public class BaseHCPResponse {
     return m_servicedBy;
   }
 
+  public void setComputedHash( String computedHash ) {
+    m_computedHash = computedHash;
+  }
+
+  /**
+   * @return the hash of the transferred bytes (HCP format), or null if it wasn't computed
+   */
+  public String getComputedHash() {
+    return m_computedHash;
+  }
+
+  public void setHashVerified( Boolean hashVerified ) {
+    m_hashVerified = hashVerified;
+  }
+
+  /**
+   * @return whether the computed hash matched the one reported by HCP, or null if they couldn't be compared
+   */
+  public Boolean getHashVerified() {
+    return m_hashVerified;
+  }
+
   public void setStatus( Status status ) {
     m_status = status;
 
@@ -147,6 +173,7 @@ public class BaseHCPResponse {
       case CREATED:
       case PARTIAL_CONTENT:
       case NO_CONTENT:
+      case NOT_MODIFIED:
         m_success = true;
         break;
       default:
@@ -181,6 +208,11 @@ public class BaseHCPResponse {
     rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( CONTENT_LENGTH_TAG, ValueMetaInterface.TYPE_INTEGER ) );
   }
 
+  public static void addHashVerificationFieldMetadata( RowMetaInterface rowMeta ) throws KettlePluginException {
+    rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( COMPUTED_HASH_TAG, ValueMetaInterface.TYPE_STRING ) );
+    rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( HASH_VERIFIED_TAG, ValueMetaInterface.TYPE_BOOLEAN ) );
+  }
+
   public void populateKettleRow( RowMetaInterface outputRowMeta, Object[] outputRow ) {
     int baseIndex = outputRowMeta.indexOfValue( RESPONSE_STATUS_TAG );
     if ( baseIndex >= 0 ) {
@@ -193,9 +225,15 @@ public class BaseHCPResponse {
       outputRow[baseIndex++] = getContentType();
       outputRow[baseIndex] = getContentLength();
     }
+
+    baseIndex = outputRowMeta.indexOfValue( COMPUTED_HASH_TAG );
+    if ( baseIndex >= 0 ) {
+      outputRow[baseIndex++] = getComputedHash();
+      outputRow[baseIndex] = getHashVerified();
+    }
   }
 
   public static enum Status {
-    OK, CREATED, NO_CONTENT, PARTIAL_CONTENT, AUTH_MISSING, BAD_REQUEST, UNAUTHORIZED, FORBIDDEN, NOT_FOUND, CONFLICT, FILE_TOO_LARGE, REQUEST_TOO_LARGE, REQUEST_RANGE_INVALID, INTERNAL_ERROR, UNAVAILABLE, OTHER_FAILURE;
+    OK, CREATED, NO_CONTENT, PARTIAL_CONTENT, NOT_MODIFIED, AUTH_MISSING, BAD_REQUEST, UNAUTHORIZED, FORBIDDEN, NOT_FOUND, CONFLICT, FILE_TOO_LARGE, REQUEST_TOO_LARGE, REQUEST_RANGE_INVALID, INTERNAL_ERROR, UNAVAILABLE, HASH_MISMATCH, OTHER_FAILURE;
   }
 }
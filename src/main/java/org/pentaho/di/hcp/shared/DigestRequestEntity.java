@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Wraps another request body, feeding every byte written through a message digest on its way out. The digest is reset
+ * each time the body is (re)written, so it always reflects the last attempt. Wrap this inside any compressing entity,
+ * so that the digest covers the bytes HCP ends up storing.
+ */
+public class DigestRequestEntity implements RequestEntity {
+
+  protected final RequestEntity m_delegate;
+  protected final MessageDigest m_digest;
+
+  public DigestRequestEntity( RequestEntity delegate, MessageDigest digest ) {
+    m_delegate = delegate;
+    m_digest = digest;
+  }
+
+  @Override public boolean isRepeatable() {
+    return m_delegate.isRepeatable();
+  }
+
+  @Override public void writeRequest( OutputStream out ) throws IOException {
+    m_digest.reset();
+    DigestOutputStream digestStream = new DigestOutputStream( out, m_digest );
+    m_delegate.writeRequest( digestStream );
+    digestStream.flush();
+  }
+
+  @Override public long getContentLength() {
+    return m_delegate.getContentLength();
+  }
+
+  @Override public String getContentType() {
+    return m_delegate.getContentType();
+  }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import javax.ws.rs.core.MediaType;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Request body backed by a region of a local file. The length is fixed up front, so the request is sent with a
+ * Content-Length rather than chunked, and as the region is read afresh each time the body is written it is repeatable:
+ * HttpClient can resend it if it retries the request. The bytes are copied with transferTo() rather than through a
+ * BufferedInputStream; the connection's output stream is not a channel, so the JDK still copies them through a buffer
+ * of its own.
+ */
+public class FileRegionRequestEntity implements RequestEntity {
+
+  protected final File m_file;
+  protected final long m_offset;
+  protected final long m_length;
+
+  public FileRegionRequestEntity( File file ) {
+    this( file, 0, file.length() );
+  }
+
+  public FileRegionRequestEntity( File file, long offset, long length ) {
+    m_file = file;
+    m_offset = offset;
+    m_length = length;
+  }
+
+  @Override public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override public void writeRequest( OutputStream out ) throws IOException {
+    FileInputStream inputStream = new FileInputStream( m_file );
+    try {
+      FileChannel channel = inputStream.getChannel();
+      WritableByteChannel target = Channels.newChannel( out );
+      long position = m_offset;
+      long end = m_offset + m_length;
+      while ( position < end ) {
+        long transferred = channel.transferTo( position, end - position, target );
+        if ( transferred <= 0 ) {
+          throw new IOException( "Unexpected end of " + m_file + " at offset " + position );
+        }
+        position += transferred;
+      }
+      out.flush();
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Override public long getContentLength() {
+    return m_length;
+  }
+
+  @Override public String getContentType() {
+    return MediaType.APPLICATION_OCTET_STREAM;
+  }
+}
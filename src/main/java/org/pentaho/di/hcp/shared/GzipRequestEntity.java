@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Wraps another request body, gzip compressing it on the fly. The compressed length isn't known up front, so the
+ * request goes chunked; the caller must also send Content-Encoding: gzip so that HCP stores the decompressed data.
+ */
+public class GzipRequestEntity implements RequestEntity {
+
+  public static final String CONTENT_ENCODING = "gzip";
+
+  /** Number of leading bytes looked at when deciding whether compression is worthwhile */
+  public static final int SAMPLE_SIZE = 64 * 1024;
+
+  /** Compress only if the sample shrinks by at least this fraction */
+  public static final double MIN_SAVING = 0.1;
+
+  protected final RequestEntity m_delegate;
+  protected final int m_level;
+  protected final int m_bufferSize;
+
+  public GzipRequestEntity( RequestEntity delegate, int level, int bufferSize ) {
+    m_delegate = delegate;
+    m_level = level;
+    m_bufferSize = Math.max( 512, bufferSize );
+  }
+
+  @Override public boolean isRepeatable() {
+    return m_delegate.isRepeatable();
+  }
+
+  @Override public void writeRequest( OutputStream out ) throws IOException {
+    GZIPOutputStream gzip = new GZIPOutputStream( out, m_bufferSize ) {
+      {
+        def.setLevel( m_level );
+      }
+    };
+    m_delegate.writeRequest( gzip );
+
+    // finish rather than close: HttpClient still has to terminate the chunked stream
+    gzip.finish();
+    gzip.flush();
+  }
+
+  @Override public long getContentLength() {
+    return -1;
+  }
+
+  @Override public String getContentType() {
+    return m_delegate.getContentType();
+  }
+
+  /**
+   * Quick check of how well a sample of the data compresses, using the fastest deflate level. Already compressed data
+   * (archives, images, video...) barely shrinks and is better sent as is.
+   *
+   * @param sample the sample
+   * @param length the number of valid bytes in the sample
+   * @return true if the sample shrinks by at least MIN_SAVING
+   */
+  public static boolean isWorthCompressing( byte[] sample, int length ) {
+    if ( length <= 0 ) {
+      return false;
+    }
+    Deflater deflater = new Deflater( Deflater.BEST_SPEED, true );
+    try {
+      deflater.setInput( sample, 0, length );
+      deflater.finish();
+      byte[] buffer = new byte[4096];
+      long compressed = 0;
+      long limit = (long) ( length * ( 1.0 - MIN_SAVING ) );
+      while ( !deflater.finished() ) {
+        compressed += deflater.deflate( buffer );
+        if ( compressed >= limit ) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      deflater.end();
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.variables.VariableSpace;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * JVM-wide registry of HTTP clients, shared between all HCP step copies that talk to the same (resolved) HCP
+ * connection. Each client is backed by a multi-threaded connection manager, so step copies reuse warm keep-alive
+ * connections rather than paying a TCP/TLS handshake per step. Clients are reference counted: a step acquires one in
+ * init() and releases it in dispose(); the last release shuts the client down.
+ * <p>
+ * Pool limits can be tuned with the HCP_MAX_CONNECTIONS_PER_HOST, HCP_MAX_TOTAL_CONNECTIONS and
+ * HCP_IDLE_CONNECTION_TIMEOUT (ms) variables; they are read when a client is first created.
+ * <p>
+ * Requests against the same connection also share an {@link HCPConcurrencyLimiter}, which backs off when HCP is
+ * overloaded. The per-host connection limit is its ceiling; HCP_INITIAL_CONCURRENCY sets its starting point and
+ * HCP_ADAPTIVE_CONCURRENCY=N turns it off.
+ */
+public class HCPClientRegistry {
+
+  public static final String VAR_MAX_CONNECTIONS_PER_HOST = "HCP_MAX_CONNECTIONS_PER_HOST";
+  public static final String VAR_MAX_TOTAL_CONNECTIONS = "HCP_MAX_TOTAL_CONNECTIONS";
+  public static final String VAR_IDLE_CONNECTION_TIMEOUT = "HCP_IDLE_CONNECTION_TIMEOUT";
+  public static final String VAR_ADAPTIVE_CONCURRENCY = "HCP_ADAPTIVE_CONCURRENCY";
+  public static final String VAR_INITIAL_CONCURRENCY = "HCP_INITIAL_CONCURRENCY";
+
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+  public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+  public static final long DEFAULT_IDLE_CONNECTION_TIMEOUT = 60000L;
+
+  /** How often the idle connection thread looks for connections to close */
+  protected static final long IDLE_CHECK_INTERVAL = 5000L;
+
+  protected static final Map<String, PooledClient> s_clientsByKey = new HashMap<>();
+  protected static final Map<ApacheHttpClient, PooledClient> s_clientsByInstance = new IdentityHashMap<>();
+  protected static final Map<String, HCPConcurrencyLimiter> s_limitersByConnection = new HashMap<>();
+
+  protected static IdleConnectionTimeoutThread s_idleConnectionThread;
+
+  /**
+   * Acquire a shared client for the supplied connection.
+   *
+   * @param connection          the HCP connection
+   * @param space               variables used to resolve the connection details and pool settings
+   * @param chunkedEncodingSize chunk size for request bodies, or <= 0 to leave chunked encoding off
+   * @param minConnectionsPerHost the number of concurrent requests the caller intends to make; the per-host limit is
+   *                            raised to at least this value
+   * @return a client; must be handed back via release()
+   */
+  public static synchronized ApacheHttpClient acquire( HCPConnection connection, VariableSpace space,
+      int chunkedEncodingSize, int minConnectionsPerHost ) {
+    String key = getKey( connection, space, chunkedEncodingSize );
+
+    PooledClient pooled = s_clientsByKey.get( key );
+    if ( pooled == null ) {
+      pooled = new PooledClient( key, createClient( space, chunkedEncodingSize ) );
+      s_clientsByKey.put( key, pooled );
+      s_clientsByInstance.put( pooled.m_client, pooled );
+
+      if ( s_idleConnectionThread == null ) {
+        s_idleConnectionThread = new IdleConnectionTimeoutThread();
+        s_idleConnectionThread.setName( "HCP idle connection evictor" );
+        s_idleConnectionThread.setConnectionTimeout(
+            Const.toLong( space.environmentSubstitute( "${" + VAR_IDLE_CONNECTION_TIMEOUT + "}" ),
+                DEFAULT_IDLE_CONNECTION_TIMEOUT ) );
+        s_idleConnectionThread.setTimeoutInterval( IDLE_CHECK_INTERVAL );
+        s_idleConnectionThread.start();
+      }
+      s_idleConnectionThread.addConnectionManager( pooled.getConnectionManager() );
+
+      if ( !"N".equalsIgnoreCase( space.environmentSubstitute( "${" + VAR_ADAPTIVE_CONCURRENCY + "}" ) ) ) {
+        // clients for the same connection (but different chunking) share a limiter
+        String connectionKey = connection.getRestUrl( space );
+        pooled.m_limiter = s_limitersByConnection.get( connectionKey );
+        if ( pooled.m_limiter == null ) {
+          pooled.m_limiter = new HCPConcurrencyLimiter(
+              Const.toInt( space.environmentSubstitute( "${" + VAR_INITIAL_CONCURRENCY + "}" ),
+                  HCPConcurrencyLimiter.DEFAULT_INITIAL_LIMIT ),
+              pooled.getConnectionManager().getParams().getDefaultMaxConnectionsPerHost() );
+          s_limitersByConnection.put( connectionKey, pooled.m_limiter );
+        }
+        pooled.m_connectionKey = connectionKey;
+        pooled.m_client.addFilter( new HCPConcurrencyFilter( pooled.m_limiter ) );
+      }
+    }
+
+    HttpConnectionManagerParams params = pooled.getConnectionManager().getParams();
+    if ( params.getDefaultMaxConnectionsPerHost() < minConnectionsPerHost ) {
+      params.setDefaultMaxConnectionsPerHost( minConnectionsPerHost );
+    }
+    if ( params.getMaxTotalConnections() < minConnectionsPerHost ) {
+      params.setMaxTotalConnections( minConnectionsPerHost );
+    }
+    if ( pooled.m_limiter != null ) {
+      pooled.m_limiter.raiseMaxLimit( params.getDefaultMaxConnectionsPerHost() );
+    }
+
+    pooled.m_references++;
+    return pooled.m_client;
+  }
+
+  /**
+   * Hand back a client obtained from acquire(). Null is ignored so that steps that failed in init() can release
+   * unconditionally in dispose().
+   *
+   * @param client the client to release
+   */
+  public static synchronized void release( ApacheHttpClient client ) {
+    if ( client == null ) {
+      return;
+    }
+    PooledClient pooled = s_clientsByInstance.get( client );
+    if ( pooled == null ) {
+      // not one of ours
+      client.destroy();
+      return;
+    }
+
+    if ( --pooled.m_references > 0 ) {
+      return;
+    }
+
+    s_clientsByKey.remove( pooled.m_key );
+    s_clientsByInstance.remove( client );
+    if ( pooled.m_limiter != null ) {
+      boolean shared = false;
+      for ( PooledClient other : s_clientsByKey.values() ) {
+        shared |= other.m_limiter == pooled.m_limiter;
+      }
+      if ( !shared ) {
+        s_limitersByConnection.remove( pooled.m_connectionKey );
+      }
+    }
+    if ( s_idleConnectionThread != null ) {
+      s_idleConnectionThread.removeConnectionManager( pooled.getConnectionManager() );
+      if ( s_clientsByKey.isEmpty() ) {
+        s_idleConnectionThread.shutdown();
+        s_idleConnectionThread = null;
+      }
+    }
+    client.destroy();
+  }
+
+  /**
+   * Get the concurrency limiter for requests made through the supplied client
+   *
+   * @param client a client obtained from acquire()
+   * @return the limiter, or null if the client isn't limited
+   */
+  public static synchronized HCPConcurrencyLimiter getLimiter( ApacheHttpClient client ) {
+    PooledClient pooled = s_clientsByInstance.get( client );
+    return pooled != null ? pooled.m_limiter : null;
+  }
+
+  protected static String getKey( HCPConnection connection, VariableSpace space, int chunkedEncodingSize ) {
+    // the rest URL covers protocol, namespace, tenant, server and port once variables are resolved
+    return connection.getRestUrl( space ) + "#" + Math.max( 0, chunkedEncodingSize );
+  }
+
+  protected static ApacheHttpClient createClient( VariableSpace space, int chunkedEncodingSize ) {
+    ApacheHttpClient client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
+    if ( chunkedEncodingSize > 0 ) {
+      client.setChunkedEncodingSize( chunkedEncodingSize );
+    }
+
+    HttpConnectionManagerParams
+        params =
+        client.getClientHandler().getHttpClient().getHttpConnectionManager().getParams();
+    params.setDefaultMaxConnectionsPerHost(
+        Const.toInt( space.environmentSubstitute( "${" + VAR_MAX_CONNECTIONS_PER_HOST + "}" ),
+            DEFAULT_MAX_CONNECTIONS_PER_HOST ) );
+    params.setMaxTotalConnections(
+        Const.toInt( space.environmentSubstitute( "${" + VAR_MAX_TOTAL_CONNECTIONS + "}" ),
+            DEFAULT_MAX_TOTAL_CONNECTIONS ) );
+    params.setStaleCheckingEnabled( true );
+
+    return client;
+  }
+
+  protected static class PooledClient {
+    protected final String m_key;
+    protected final ApacheHttpClient m_client;
+    protected int m_references;
+    protected String m_connectionKey;
+    protected HCPConcurrencyLimiter m_limiter;
+
+    protected PooledClient( String key, ApacheHttpClient client ) {
+      m_key = key;
+      m_client = client;
+    }
+
+    protected HttpConnectionManager getConnectionManager() {
+      return m_client.getClientHandler().getHttpClient().getHttpConnectionManager();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Jersey filter that puts every request made through a client under an {@link HCPConcurrencyLimiter}. The slot is
+ * held until the response headers arrive or, for a GET that returns a body, until the body has been read or closed.
+ */
+public class HCPConcurrencyFilter extends ClientFilter {
+
+  protected final HCPConcurrencyLimiter m_limiter;
+
+  public HCPConcurrencyFilter( HCPConcurrencyLimiter limiter ) {
+    m_limiter = limiter;
+  }
+
+  public HCPConcurrencyLimiter getLimiter() {
+    return m_limiter;
+  }
+
+  @Override public ClientResponse handle( ClientRequest request ) throws ClientHandlerException {
+    HCPConcurrencyLimiter.Permit permit;
+    try {
+      permit = m_limiter.acquire( request.getEntity() == null );
+    } catch ( InterruptedIOException e ) {
+      throw new ClientHandlerException( e );
+    }
+
+    boolean held = false;
+    try {
+      ClientResponse response = getNext().handle( request );
+      if ( "GET".equals( request.getMethod() ) && response.hasEntity() ) {
+        // keep the slot while the body streams in
+        permit.responded( response.getStatus() );
+        response.setEntityInputStream( new HeldInputStream( response.getEntityInputStream(), permit ) );
+        held = true;
+      } else {
+        permit.completed( response.getStatus() );
+      }
+      return response;
+    } catch ( RuntimeException e ) {
+      permit.failed( e );
+      throw e;
+    } finally {
+      if ( !held ) {
+        permit.failed( null );
+      }
+    }
+  }
+
+  /**
+   * A response body that gives up its slot once it has been read to the end, has failed or is closed
+   */
+  protected static class HeldInputStream extends FilterInputStream {
+    protected final HCPConcurrencyLimiter.Permit m_permit;
+
+    protected HeldInputStream( InputStream in, HCPConcurrencyLimiter.Permit permit ) {
+      super( in );
+      m_permit = permit;
+    }
+
+    @Override public int read() throws IOException {
+      try {
+        int b = super.read();
+        if ( b < 0 ) {
+          m_permit.finished();
+        }
+        return b;
+      } catch ( IOException e ) {
+        m_permit.failed( e );
+        throw e;
+      }
+    }
+
+    @Override public int read( byte[] b, int off, int len ) throws IOException {
+      try {
+        int read = super.read( b, off, len );
+        if ( read < 0 ) {
+          m_permit.finished();
+        }
+        return read;
+      } catch ( IOException e ) {
+        m_permit.failed( e );
+        throw e;
+      }
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        m_permit.finished();
+      }
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.httpclient.ConnectTimeoutException;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Adaptive limit on the number of requests in flight against one HCP connection, shared by every step talking to it.
+ * The limit is found AIMD style, much as TCP finds its congestion window: it starts small, grows by one per response
+ * until the first sign of trouble ("slow start"), then by one per round of responses. It is cut back by a fixed
+ * ratio when HCP answers 503 (service unavailable), when a request times out, or when the smoothed response time
+ * drifts well above the best seen recently - the cluster queueing work is the earliest sign of overload. At most one
+ * cut is made per round trip, so a burst of 503s from the same overloaded moment only counts once.
+ * <p>
+ * Latency is only sampled for requests without a body; the time taken by an upload says more about its size than
+ * about how busy the cluster is. A download holds its slot until its body has been read, so that objects streaming in
+ * count against the limit, but it is timed to the arrival of its headers.
+ */
+public class HCPConcurrencyLimiter {
+
+  /** Multiplicative decrease applied on overload */
+  protected static final double BACKOFF_RATIO = 0.7;
+
+  /** Smoothed response time above this multiple of the baseline counts as overload */
+  protected static final double LATENCY_TOLERANCE = 2.0;
+
+  /** Weight of a new sample in the smoothed response time */
+  protected static final double SMOOTHING = 0.125;
+
+  /** How quickly the baseline forgets its minimum, so that it follows a permanent change in response times */
+  protected static final double BASELINE_DRIFT = 0.01;
+
+  /** Shortest gap between two cuts (ns), for when there are no latency samples to say how long a round trip is */
+  protected static final long MIN_DECREASE_INTERVAL = 50000000L;
+
+  public static final int DEFAULT_INITIAL_LIMIT = 4;
+
+  protected double m_limit;
+  protected int m_maxLimit;
+  protected int m_inFlight;
+  protected boolean m_slowStart = true;
+
+  /** Smoothed and baseline response times (ns) - zero until the first sample */
+  protected double m_smoothedLatency;
+  protected double m_baselineLatency;
+
+  protected long m_lastDecrease = Long.MIN_VALUE;
+
+  public HCPConcurrencyLimiter( int initialLimit, int maxLimit ) {
+    m_maxLimit = Math.max( 1, maxLimit );
+    m_limit = Math.max( 1, Math.min( initialLimit, m_maxLimit ) );
+  }
+
+  /**
+   * Wait until the limit allows another request
+   *
+   * @param sampleLatency true if the response time of this request should be used as a latency sample
+   * @return a permit that must be released when the response (or failure) comes back
+   * @throws InterruptedIOException if interrupted while waiting
+   */
+  public synchronized Permit acquire( boolean sampleLatency ) throws InterruptedIOException {
+    while ( m_inFlight >= getLimit() ) {
+      try {
+        wait();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException( "Interrupted while waiting for a free HCP request slot" );
+      }
+    }
+    m_inFlight++;
+
+    return new Permit( nanoTime(), sampleLatency, m_inFlight );
+  }
+
+  /**
+   * @return the current limit on requests in flight
+   */
+  public synchronized int getLimit() {
+    return (int) m_limit;
+  }
+
+  public synchronized int getInFlight() {
+    return m_inFlight;
+  }
+
+  /**
+   * Raise the ceiling on the limit, e.g. when a step that wants more concurrent requests starts using the connection
+   */
+  public synchronized void raiseMaxLimit( int maxLimit ) {
+    m_maxLimit = Math.max( m_maxLimit, maxLimit );
+  }
+
+  protected synchronized void release( Permit permit, Outcome outcome ) {
+    // how much of the limit was in use while this request was out
+    int used = Math.max( permit.m_inFlight, m_inFlight );
+    m_inFlight--;
+    long now = nanoTime();
+    // a response that was held while its body was read is timed to its headers
+    long answered = permit.m_respondedAt != 0 ? permit.m_respondedAt : now;
+
+    if ( outcome == Outcome.OVERLOADED ) {
+      decrease( now );
+    } else if ( outcome == Outcome.SUCCESS ) {
+      boolean inflated = false;
+      if ( permit.m_sampleLatency ) {
+        double latency = answered - permit.m_start;
+        if ( m_smoothedLatency == 0 ) {
+          m_smoothedLatency = latency;
+          m_baselineLatency = latency;
+        } else {
+          m_smoothedLatency += ( latency - m_smoothedLatency ) * SMOOTHING;
+          m_baselineLatency =
+              latency < m_baselineLatency ? latency
+                  : m_baselineLatency + ( latency - m_baselineLatency ) * BASELINE_DRIFT;
+        }
+        inflated = m_smoothedLatency > m_baselineLatency * LATENCY_TOLERANCE;
+      }
+
+      if ( inflated ) {
+        decrease( now );
+      } else if ( used * 2 >= m_limit ) {
+        // only grow a limit that is actually being used
+        m_limit = Math.min( m_maxLimit, m_slowStart ? m_limit + 1 : m_limit + 1 / m_limit );
+      }
+    }
+
+    notifyAll();
+  }
+
+  protected void decrease( long now ) {
+    // one cut per round trip
+    if ( m_lastDecrease != Long.MIN_VALUE
+        && now - m_lastDecrease < Math.max( m_smoothedLatency, MIN_DECREASE_INTERVAL ) ) {
+      return;
+    }
+    m_lastDecrease = now;
+    m_slowStart = false;
+    m_limit = Math.max( 1, m_limit * BACKOFF_RATIO );
+  }
+
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Classify a failed request: timeouts mean the cluster is too busy to answer, anything else says nothing about load
+   */
+  protected static Outcome classify( Throwable failure ) {
+    for ( Throwable t = failure; t != null; t = t.getCause() ) {
+      if ( t instanceof SocketTimeoutException || t instanceof ConnectTimeoutException ) {
+        return Outcome.OVERLOADED;
+      }
+    }
+    return Outcome.IGNORED;
+  }
+
+  protected static Outcome classify( int statusCode ) {
+    if ( statusCode == 503 || statusCode == 429 ) {
+      return Outcome.OVERLOADED;
+    }
+    // an error response still came back promptly, so it is a valid latency sample
+    return Outcome.SUCCESS;
+  }
+
+  protected enum Outcome {
+    SUCCESS, OVERLOADED, IGNORED
+  }
+
+  /**
+   * A slot for one request. Release it exactly once: via completed() when a response arrives, failed() when the
+   * request throws. Further calls are ignored, so a finally block may call failed( null ) unconditionally. A response
+   * whose body is still to be read can keep the slot: responded() notes the outcome when the headers arrive, and
+   * finished() releases the slot once the body has been read.
+   */
+  public class Permit {
+    protected final long m_start;
+    protected final boolean m_sampleLatency;
+    protected final int m_inFlight;
+    protected boolean m_released;
+    protected long m_respondedAt;
+    protected Outcome m_outcome;
+
+    protected Permit( long start, boolean sampleLatency, int inFlight ) {
+      m_start = start;
+      m_sampleLatency = sampleLatency;
+      m_inFlight = inFlight;
+    }
+
+    public void completed( int statusCode ) {
+      release( classify( statusCode ) );
+    }
+
+    public void failed( Throwable failure ) {
+      release( classify( failure ) );
+    }
+
+    /**
+     * The response headers arrived, but the slot is kept until finished() (or failed()) is called
+     */
+    public void responded( int statusCode ) {
+      synchronized ( HCPConcurrencyLimiter.this ) {
+        m_respondedAt = nanoTime();
+        m_outcome = classify( statusCode );
+      }
+    }
+
+    /**
+     * The body of a response that responded() was called for has been read (or abandoned)
+     */
+    public void finished() {
+      synchronized ( HCPConcurrencyLimiter.this ) {
+        release( m_outcome != null ? m_outcome : Outcome.IGNORED );
+      }
+    }
+
+    protected void release( Outcome outcome ) {
+      synchronized ( HCPConcurrencyLimiter.this ) {
+        if ( m_released ) {
+          return;
+        }
+        m_released = true;
+        HCPConcurrencyLimiter.this.release( this, outcome );
+      }
+    }
+  }
+}
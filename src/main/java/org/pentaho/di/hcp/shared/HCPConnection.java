@@ -196,6 +196,62 @@ public class HCPConnection extends Variables implements Cloneable {
     return url.toString();
   }
 
+  public String getProcUrl(VariableSpace space) {
+
+    /*
+     * Namespace listings live at the tenant level:
+     *
+     * http://tenant.server:port/proc
+     */
+    StringBuilder url = new StringBuilder();
+
+    if (useSSL) {
+      url.append("https://");
+    } else {
+      url.append("http://");
+    }
+
+    url.append(space.environmentSubstitute(tenant)).append('.');
+    url.append(space.environmentSubstitute(server));
+
+    String realPort = space.environmentSubstitute(port);
+    if (StringUtils.isNotEmpty(realPort)) {
+      url.append(':').append(realPort);
+    }
+
+    url.append("/proc");
+
+    return url.toString();
+  }
+
+  public String getQueryUrl(VariableSpace space) {
+
+    /*
+     * The metadata query API lives at the tenant level:
+     *
+     * http://tenant.server:port/query
+     */
+    StringBuilder url = new StringBuilder();
+
+    if (useSSL) {
+      url.append("https://");
+    } else {
+      url.append("http://");
+    }
+
+    url.append(space.environmentSubstitute(tenant)).append('.');
+    url.append(space.environmentSubstitute(server));
+
+    String realPort = space.environmentSubstitute(port);
+    if (StringUtils.isNotEmpty(realPort)) {
+      url.append(':').append(realPort);
+    }
+
+    url.append("/query");
+
+    return url.toString();
+  }
+
   public String getAuthorizationHeader() {
 
     try {
@@ -25,20 +25,63 @@ package org.pentaho.di.hcp.shared;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.InputStreamRequestEntity;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.logging.LogChannelInterface;
 import org.pentaho.di.core.vfs.KettleVFS;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Rest-based HCP operations class.
@@ -53,8 +96,112 @@ import java.util.List;
  */
 public class HCPConnectionOperationUtils {
 
+  public static final String UPLOAD_ID_TAG = "UploadId";
+
+  /** The most parts a multipart upload may consist of */
+  public static final int MAX_MULTIPART_PARTS = 10000;
+
+  public static final String CONTENT_RANGE_TAG = "Content-Range";
+  public static final String IF_NONE_MATCH_TAG = "If-None-Match";
+  public static final String IF_MODIFIED_SINCE_TAG = "If-Modified-Since";
+
+  /** Suffix of the marker file kept next to a download that can be resumed */
+  public static final String PARTIAL_SUFFIX = ".hcp-partial";
+
+  /** Suffix of the file a ranged download is written to, until it is complete and takes the target's place */
+  public static final String RANGES_SUFFIX = ".hcp-ranges";
+
+  protected static final String PARTIAL_URL_KEY = "url";
+
+  /** Buffer size used when copying response bodies into files */
+  protected static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+  /** Concurrency limiter slots of the methods whose responses are still being read */
+  protected static final Map<HttpMethod, HCPConcurrencyLimiter.Permit> s_permits = new ConcurrentHashMap<>();
+
+  /** Namespace settings, looked up once per namespace for the life of the JVM (failed lookups are not kept) */
+  protected static final Map<String, HCPNamespaceInfo> s_namespaceInfo = new ConcurrentHashMap<>();
+
+  /**
+   * Look up (and cache) the settings for a namespace. If the lookup fails, a namespace with unknown settings is
+   * returned but not cached, so that a transient failure doesn't stick for the life of the JVM.
+   *
+   * @param client        the client to use
+   * @param procURL       the tenant's /proc URL
+   * @param namespace     the resolved namespace name
+   * @param authorization the authorization header
+   * @param log           the log to use
+   * @return the namespace settings - never null
+   */
+  public static HCPNamespaceInfo getNamespaceInfo( ApacheHttpClient client, String procURL, String namespace,
+      String authorization, LogChannelInterface log ) {
+    String key = procURL.trim() + "/" + namespace;
+    HCPNamespaceInfo info = s_namespaceInfo.get( key );
+    if ( info != null ) {
+      return info;
+    }
+
+    info = new HCPNamespaceInfo( namespace );
+    boolean lookedUp = false;
+    try {
+      WebResource webResource = client.resource( procURL.trim() );
+      WebResource.Builder builder = webResource.getRequestBuilder().header( "Authorization", authorization );
+      ClientResponse response = builder.get( ClientResponse.class );
+
+      BaseHCPResponse procResponse = new BaseHCPResponse();
+      determineRequestStatus( procResponse, response );
+      if ( procResponse.getStatus() == BaseHCPResponse.Status.OK ) {
+        InputStream inputStream = response.getEntityInputStream();
+        try {
+          info = HCPNamespaceInfo.processProcResult( inputStream, namespace );
+          lookedUp = true;
+        } finally {
+          if ( inputStream != null ) {
+            inputStream.close();
+          }
+        }
+      } else {
+        response.close();
+        if ( log != null ) {
+          log.logBasic(
+              "Unable to look up settings for namespace " + namespace + ": " + procResponse.getExplanation() );
+        }
+      }
+    } catch ( Exception e ) {
+      if ( log != null ) {
+        log.logBasic( "Unable to look up settings for namespace " + namespace + ": " + e.getMessage() );
+      }
+    }
+
+    if ( log != null && log.isDetailed() ) {
+      log.logDetailed( "Namespace settings: " + info );
+    }
+    if ( lookedUp ) {
+      s_namespaceInfo.put( key, info );
+    }
+
+    return info;
+  }
+
   public static HCPReadResponse performGet( ApacheHttpClient client, String requestURL, String authorization,
       BufferedOutputStream outputStream, LogChannelInterface log ) throws IOException {
+    return performGet( client, requestURL, authorization, outputStream, null, log );
+  }
+
+  /**
+   * Fetch an object (or just its system metadata)
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param outputStream  where to write the object; null to fetch system metadata only (HEAD)
+   * @param digest        if not null, the object is hashed as it is written and checked against X-HCP-Hash
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException if a problem occurs
+   */
+  public static HCPReadResponse performGet( ApacheHttpClient client, String requestURL, String authorization,
+      BufferedOutputStream outputStream, MessageDigest digest, LogChannelInterface log ) throws IOException {
 
     // if outputStream is null then just get metadata (i.e. perform a HEAD opp)
     WebResource webResource = client.resource( requestURL.trim() );
@@ -83,7 +230,13 @@ public class HCPConnectionOperationUtils {
           if ( log != null ) {
             log.logBasic( "Downloading " + requestURL );
           }
-          IOUtils.copyLarge( inputStream, outputStream );
+          if ( digest != null ) {
+            digest.reset();
+            IOUtils.copyLarge( inputStream, new DigestOutputStream( outputStream, digest ) );
+            HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+          } else {
+            IOUtils.copyLarge( inputStream, outputStream );
+          }
         } finally {
           outputStream.flush();
           outputStream.close();
@@ -92,42 +245,889 @@ public class HCPConnectionOperationUtils {
           }
         }
       }
+    } else {
+      // give up the connection (and its concurrency limiter slot) without reading the body
+      response.close();
     }
 
     return readResponse;
   }
 
-  public static HCPListResponse performList( ApacheHttpClient client, String requestURL, String authorization,
-      LogChannelInterface log ) throws Exception {
+  /**
+   * Fetch an object through a local disk cache. A cached copy is revalidated with a conditional GET (If-None-Match /
+   * If-Modified-Since) and, if HCP answers 304, copied from disk. Otherwise the object is streamed to the output and
+   * into the cache at the same time, and the cached copy is kept once the download completes (and its hash checks
+   * out, if verifying).
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param outputStream  where to write the object
+   * @param digest        if not null, the object is hashed as it is written and checked against X-HCP-Hash
+   * @param cache         the cache to read through
+   * @param log           the log to use
+   * @return the response - OK whether the object came from HCP or the cache
+   * @throws IOException if a problem occurs
+   */
+  public static HCPReadResponse performGet( ApacheHttpClient client, String requestURL, String authorization,
+      BufferedOutputStream outputStream, MessageDigest digest, HCPObjectCache cache, LogChannelInterface log )
+      throws IOException {
 
-    WebResource webResource = client.resource( requestURL.trim() );
-    WebResource.Builder builder = webResource.getRequestBuilder().header( "Authorization", authorization );
+    String key = requestURL.trim();
+    HCPObjectCache.Entry cached = cache.get( key );
 
-    if ( log != null && log.isDebug() ) {
-      log.logDebug( "Listing " + requestURL );
+    HCPReadResponse readResponse = new HCPReadResponse();
+    GetMethod get = new GetMethod( key );
+    get.setRequestHeader( "Authorization", authorization );
+    if ( cached != null && cached.getETag() != null ) {
+      get.setRequestHeader( IF_NONE_MATCH_TAG, cached.getETag() );
+    }
+    if ( cached != null && cached.getLastModified() != null ) {
+      get.setRequestHeader( IF_MODIFIED_SINCE_TAG, cached.getLastModified() );
     }
+    OutputStream cacheStream = null;
+    File cacheFile = null;
+    try {
+      executeMethod( client, get, true );
+      determineRequestStatus( readResponse, get.getStatusCode(), get.getStatusText() );
+      if ( readResponse.getStatus() != BaseHCPResponse.Status.OK
+          && readResponse.getStatus() != BaseHCPResponse.Status.NOT_MODIFIED ) {
+        return readResponse;
+      }
+      InBoundHeaders headers = getHeaders( get );
+      populateMinimumSystemMetadata( readResponse, headers );
+      populateSystemMetadata( readResponse, headers );
+
+      InputStream inputStream;
+      if ( readResponse.getStatus() == BaseHCPResponse.Status.NOT_MODIFIED && cached != null ) {
+        FileInputStream cachedStream;
+        try {
+          cachedStream = new FileInputStream( cache.getFile( cached ) );
+        } catch ( FileNotFoundException e ) {
+          // evicted in the meantime
+          releaseMethod( get );
+          cache.remove( key );
+          return performGet( client, requestURL, authorization, outputStream, digest, cache, log );
+        }
+        if ( log != null && log.isDetailed() ) {
+          log.logDetailed( "Reading " + requestURL + " from cache" );
+        }
+        inputStream = cachedStream;
+        readResponse.setStatus( BaseHCPResponse.Status.OK );
+        readResponse.setExplanation( "Served from cache" );
+        if ( readResponse.getVersionId() == null ) {
+          readResponse.setVersionId( cached.getVersionId() );
+        }
+        if ( readResponse.getHCPHash() == null ) {
+          readResponse.setHCPHash( cached.getHash() );
+        }
+      } else {
+        if ( log != null ) {
+          log.logBasic( "Downloading " + requestURL );
+        }
+        inputStream = get.getResponseBodyAsStream();
+        Long size = readResponse.getContentLength();
+        if ( size == null || size <= cache.getMaxBytes() ) {
+          cacheFile = cache.createTempFile();
+          cacheStream = new BufferedOutputStream( new FileOutputStream( cacheFile ) );
+        }
+      }
 
-    ClientResponse response = builder.type( MediaType.APPLICATION_OCTET_STREAM_TYPE ).get( ClientResponse.class );
+      try {
+        OutputStream target = outputStream;
+        if ( digest != null ) {
+          digest.reset();
+          target = new DigestOutputStream( target, digest );
+        }
+        if ( inputStream != null ) {
+          byte[] buffer = new byte[COPY_BUFFER_SIZE];
+          int read;
+          while ( ( read = inputStream.read( buffer ) ) > 0 ) {
+            target.write( buffer, 0, read );
+            if ( cacheStream != null ) {
+              cacheStream.write( buffer, 0, read );
+            }
+          }
+        }
+        if ( digest != null ) {
+          HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+        }
+      } finally {
+        outputStream.flush();
+        outputStream.close();
+        if ( inputStream != null ) {
+          inputStream.close();
+        }
+      }
 
-    HCPListResponse listResponse = new HCPListResponse();
-    determineRequestStatus( listResponse, response );
+      if ( cacheStream != null ) {
+        cacheStream.close();
+        cacheStream = null;
+        if ( readResponse.getStatus() == BaseHCPResponse.Status.OK ) {
+          cache.put( key, cacheFile, readResponse.getETag(), readResponse.getLastModified(),
+              readResponse.getVersionId(), readResponse.getHCPHash() );
+          cacheFile = null;
+        }
+      }
+    } finally {
+      if ( cacheStream != null ) {
+        cacheStream.close();
+      }
+      if ( cacheFile != null ) {
+        cacheFile.delete();
+      }
+      releaseMethod( get );
+    }
 
-    if ( listResponse.getStatus() == BaseHCPResponse.Status.OK ) {
-      populateMinimumSystemMetadata( listResponse, response );
+    return readResponse;
+  }
 
-      InputStream inputStream = response.getEntityInputStream();
+  /**
+   * Download an object into a local file as byte ranges fetched in parallel. The first range is requested straight
+   * away; its Content-Range gives the object size, and the remaining ranges are then fetched on the range pool and
+   * written at their offsets. Later ranges carry If-Match with the ETag of the first, so an object that is replaced
+   * mid-download fails rather than yielding a mix of two versions. An object no bigger than one range (or a server
+   * that ignores Range) costs a single GET. The ranges are written to a file next to the target (named with
+   * {@link #RANGES_SUFFIX}), which replaces the target only once every range is in; on failure it is deleted.
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param targetFile    the local file to write (replaced if it exists and the download succeeds)
+   * @param rangeSize     the size of each range in bytes
+   * @param rangeExecutor the pool that fetches the ranges after the first
+   * @param digest        if not null, the file is hashed once complete and checked against X-HCP-Hash
+   * @param log           the log to use
+   * @return the response - OK if all went well, otherwise the first failure encountered
+   * @throws IOException if a problem occurs
+   */
+  public static HCPReadResponse performRangedGet( final ApacheHttpClient client, String requestURL,
+      final String authorization, File targetFile, long rangeSize, ExecutorService rangeExecutor,
+      MessageDigest digest, LogChannelInterface log ) throws IOException {
+
+    final String url = requestURL.trim();
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Fetching " + requestURL + " in ranges of " + rangeSize + " bytes" );
+    }
 
+    HCPReadResponse readResponse = new HCPReadResponse();
+    File parent = targetFile.getAbsoluteFile().getParentFile();
+    if ( parent != null ) {
+      parent.mkdirs();
+    }
+    File rangesFile = new File( targetFile.getPath() + RANGES_SUFFIX );
+    RandomAccessFile file = new RandomAccessFile( rangesFile, "rw" );
+    boolean complete = false;
+    try {
+      final FileChannel channel = file.getChannel();
+      long total;
+      final String etag;
+
+      GetMethod first = new GetMethod( url );
+      first.setRequestHeader( "Authorization", authorization );
+      first.setRequestHeader( "Range", "bytes=0-" + ( rangeSize - 1 ) );
       try {
-        listResponse.processListResult( inputStream );
+        executeMethod( client, first, true );
+        determineRequestStatus( readResponse, first.getStatusCode(), first.getStatusText() );
+        if ( readResponse.getStatus() == BaseHCPResponse.Status.REQUEST_RANGE_INVALID ) {
+          // empty object - nothing to split
+          releaseMethod( first );
+          file.close();
+          return performGet( client, requestURL, authorization,
+              new BufferedOutputStream( new FileOutputStream( targetFile ) ), digest, log );
+        }
+        if ( readResponse.getStatus() != BaseHCPResponse.Status.OK
+            && readResponse.getStatus() != BaseHCPResponse.Status.PARTIAL_CONTENT ) {
+          return readResponse;
+        }
+
+        InBoundHeaders headers = getHeaders( first );
+        populateMinimumSystemMetadata( readResponse, headers );
+        populateSystemMetadata( readResponse, headers );
+
+        total = -1;
+        if ( readResponse.getStatus() == BaseHCPResponse.Status.PARTIAL_CONTENT ) {
+          long[] range = parseContentRange( headers.getFirst( CONTENT_RANGE_TAG ) );
+          // the size is needed to plan the other ranges
+          if ( range == null || range[0] != 0 || range[2] < 0 ) {
+            readResponse.setStatus( BaseHCPResponse.Status.OTHER_FAILURE );
+            readResponse.setExplanation( "Unexpected " + CONTENT_RANGE_TAG + " " + headers.getFirst( CONTENT_RANGE_TAG )
+                + " for " + url );
+            return readResponse;
+          }
+          total = range[2];
+        }
+        etag = headers.getFirst( HCPCreateResponse.ETAG_TAG );
+
+        if ( log != null ) {
+          log.logBasic( "Downloading " + requestURL );
+        }
+        file.setLength( 0 );
+        if ( total > 0 ) {
+          // reserve the space up front
+          file.setLength( total );
+        }
+        long written = writeAt( channel, first.getResponseBodyAsStream(), 0 );
+        long expected = total >= 0 ? Math.min( rangeSize, total ) : first.getResponseContentLength();
+        if ( expected >= 0 && written != expected ) {
+          throw new IOException( "Range 0-" + ( expected - 1 ) + " of " + url + " ended after " + written + " bytes" );
+        }
+        if ( total < 0 ) {
+          // the whole object came back
+          total = written;
+        }
       } finally {
+        releaseMethod( first );
+      }
+
+      // the rest
+      List<Future<HCPReadResponse>> ranges = new ArrayList<>();
+      for ( long offset = rangeSize; offset < total; offset += rangeSize ) {
+        final long from = offset;
+        final long to = Math.min( total, offset + rangeSize ) - 1;
+        ranges.add( rangeExecutor.submit( new Callable<HCPReadResponse>() {
+          @Override public HCPReadResponse call() throws IOException {
+            return performRangeGet( client, url, authorization, etag, channel, from, to );
+          }
+        } ) );
+      }
+
+      HCPReadResponse failedRange = null;
+      IOException failure = null;
+      for ( Future<HCPReadResponse> range : ranges ) {
+        try {
+          HCPReadResponse rangeResponse = range.get();
+          if ( !rangeResponse.getSuccess() ) {
+            failedRange = rangeResponse;
+          }
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          failure = new IOException( e );
+        } catch ( ExecutionException e ) {
+          failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException( e.getCause() );
+        }
+        if ( failedRange != null || failure != null ) {
+          // no point fetching the rest
+          for ( Future<HCPReadResponse> other : ranges ) {
+            other.cancel( true );
+          }
+          break;
+        }
+      }
+      if ( failure != null ) {
+        throw failure;
+      }
+      if ( failedRange != null ) {
+        readResponse.setStatus( failedRange.getStatus() );
+        readResponse.setExplanation( failedRange.getExplanation() );
+        return readResponse;
+      }
+
+      readResponse.setStatus( BaseHCPResponse.Status.OK );
+      readResponse.setContentLength( total );
+
+      if ( digest != null ) {
+        // can't hash on the fly when the ranges arrive out of order
+        digest.reset();
+        ByteBuffer buffer = ByteBuffer.allocate( COPY_BUFFER_SIZE );
+        long position = 0;
+        int read;
+        while ( ( read = channel.read( buffer, position ) ) > 0 ) {
+          digest.update( buffer.array(), 0, read );
+          position += read;
+          buffer.clear();
+        }
+        HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+      }
+      complete = readResponse.getSuccess();
+    } finally {
+      file.close();
+      if ( !complete ) {
+        // leave the target as it was
+        rangesFile.delete();
+      }
+    }
+
+    if ( complete ) {
+      if ( targetFile.exists() ) {
+        targetFile.delete();
+      }
+      if ( !rangesFile.renameTo( targetFile ) ) {
+        rangesFile.delete();
+        throw new IOException( "Unable to move " + rangesFile + " to " + targetFile );
+      }
+    }
+    return readResponse;
+  }
+
+  /**
+   * Read an object into memory (see {@link HCPReadResponse#getContent()}). Objects bigger than maxSize are not read:
+   * the response then has status FILE_TOO_LARGE (along with the object's system metadata), and the connection is
+   * dropped rather than drained.
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param maxSize       the largest object to read, in bytes
+   * @param digest        if not null, the content is hashed and checked against X-HCP-Hash
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException if a problem occurs
+   */
+  public static HCPReadResponse performGetContent( ApacheHttpClient client, String requestURL, String authorization,
+      long maxSize, MessageDigest digest, LogChannelInterface log ) throws IOException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Reading " + requestURL );
+    }
+
+    HCPReadResponse readResponse = new HCPReadResponse();
+    GetMethod get = new GetMethod( requestURL.trim() );
+    get.setRequestHeader( "Authorization", authorization );
+    try {
+      executeMethod( client, get, true );
+      determineRequestStatus( readResponse, get.getStatusCode(), get.getStatusText() );
+      if ( readResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        return readResponse;
+      }
+      InBoundHeaders headers = getHeaders( get );
+      populateMinimumSystemMetadata( readResponse, headers );
+      populateSystemMetadata( readResponse, headers );
+
+      long size = readResponse.getContentLength() != null ? readResponse.getContentLength() : -1;
+      ByteArrayOutputStream content = new ByteArrayOutputStream( size >= 0 && size <= maxSize ? (int) size : 8192 );
+      InputStream inputStream = size <= maxSize ? get.getResponseBodyAsStream() : null;
+      if ( inputStream != null ) {
+        byte[] buffer = new byte[(int) Math.min( COPY_BUFFER_SIZE, maxSize + 1 )];
+        int read;
+        while ( content.size() <= maxSize && ( read = inputStream.read( buffer ) ) > 0 ) {
+          content.write( buffer, 0, read );
+        }
+      }
+      if ( size > maxSize || content.size() > maxSize ) {
+        // don't wait for the rest of it
+        get.abort();
+        readResponse.setStatus( BaseHCPResponse.Status.FILE_TOO_LARGE );
+        readResponse.setExplanation( "Object is larger than " + maxSize + " bytes" );
+        return readResponse;
+      }
+
+      readResponse.setContent( content.toByteArray() );
+      if ( digest != null ) {
+        digest.reset();
+        digest.update( readResponse.getContent() );
+        HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+      }
+    } finally {
+      releaseMethod( get );
+    }
+
+    return readResponse;
+  }
+
+  /**
+   * Fetch an object only if it has changed since it was last downloaded. The request carries If-None-Match and/or
+   * If-Modified-Since with the validators recorded then; if HCP answers 304 the status is NOT_MODIFIED and the target
+   * is left alone (it isn't even opened).
+   *
+   * @param client         the client to use
+   * @param requestURL     the URL of the object
+   * @param authorization  the authorization header
+   * @param etag           the ETag recorded at the last download (may be null)
+   * @param lastModified   the Last-Modified recorded at the last download (may be null)
+   * @param targetFilePath where to write the object if it has changed; null to just ask (HEAD), so the caller can
+   *                       download it some other way
+   * @param digest         if not null, a downloaded object is hashed and checked against X-HCP-Hash
+   * @param log            the log to use
+   * @return the response
+   * @throws IOException         if a problem occurs
+   * @throws KettleFileException if the target can't be opened
+   */
+  public static HCPReadResponse performConditionalGet( ApacheHttpClient client, String requestURL,
+      String authorization, String etag, String lastModified, String targetFilePath, MessageDigest digest,
+      LogChannelInterface log ) throws IOException, KettleFileException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Fetching " + requestURL + " if changed since " + Const.NVL( etag, lastModified ) );
+    }
+
+    HCPReadResponse readResponse = new HCPReadResponse();
+    HttpMethodBase method =
+        targetFilePath != null ? new GetMethod( requestURL.trim() ) : new HeadMethod( requestURL.trim() );
+    method.setRequestHeader( "Authorization", authorization );
+    if ( etag != null ) {
+      method.setRequestHeader( IF_NONE_MATCH_TAG, etag );
+    }
+    if ( lastModified != null ) {
+      method.setRequestHeader( IF_MODIFIED_SINCE_TAG, lastModified );
+    }
+    try {
+      executeMethod( client, method, true );
+      determineRequestStatus( readResponse, method.getStatusCode(), method.getStatusText() );
+      if ( readResponse.getStatus() != BaseHCPResponse.Status.OK
+          && readResponse.getStatus() != BaseHCPResponse.Status.NOT_MODIFIED ) {
+        return readResponse;
+      }
+      InBoundHeaders headers = getHeaders( method );
+      populateMinimumSystemMetadata( readResponse, headers );
+      populateSystemMetadata( readResponse, headers );
+      if ( readResponse.getStatus() == BaseHCPResponse.Status.NOT_MODIFIED || targetFilePath == null ) {
+        return readResponse;
+      }
+
+      if ( log != null ) {
+        log.logBasic( "Downloading " + requestURL );
+      }
+      InputStream inputStream = method.getResponseBodyAsStream();
+      OutputStream outputStream = new BufferedOutputStream( KettleVFS.getOutputStream( targetFilePath, false ) );
+      try {
+        if ( digest != null ) {
+          digest.reset();
+          outputStream = new DigestOutputStream( outputStream, digest );
+        }
         if ( inputStream != null ) {
-          inputStream.close();
+          IOUtils.copyLarge( inputStream, outputStream );
         }
+      } finally {
+        outputStream.close();
       }
+      if ( digest != null ) {
+        HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+      }
+    } finally {
+      releaseMethod( method );
+    }
+
+    return readResponse;
+  }
+
+  /**
+   * Fetch an object and hand its body to a handler as it arrives, so the caller can process content of any size
+   * without holding it in memory or writing it to disk first. The concurrency limiter slot is given up once the
+   * headers are in, as the handler is usually feeding rows to downstream steps at the pace they take them.
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param handler       consumes the body; only called if the request succeeds
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException     if a problem occurs
+   * @throws KettleException if the handler fails
+   */
+  public static HCPReadResponse performStreamingGet( ApacheHttpClient client, String requestURL,
+      String authorization, HCPContentHandler handler, LogChannelInterface log ) throws IOException, KettleException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Streaming " + requestURL );
+    }
+
+    HCPReadResponse readResponse = new HCPReadResponse();
+    GetMethod get = new GetMethod( requestURL.trim() );
+    get.setRequestHeader( "Authorization", authorization );
+    try {
+      executeMethod( client, get, true );
+      determineRequestStatus( readResponse, get.getStatusCode(), get.getStatusText() );
+      if ( readResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        return readResponse;
+      }
+      InBoundHeaders headers = getHeaders( get );
+      populateMinimumSystemMetadata( readResponse, headers );
+      populateSystemMetadata( readResponse, headers );
+
+      // the handler may block on downstream steps, which may need a slot themselves
+      releaseSlot( get );
+      InputStream inputStream = get.getResponseBodyAsStream();
+      if ( inputStream != null && !handler.content( readResponse, inputStream ) ) {
+        // don't wait for the rest of it
+        get.abort();
+      }
+    } finally {
+      releaseMethod( get );
+    }
+
+    return readResponse;
+  }
+
+  /**
+   * Download an object into a local file so that an interrupted download can be picked up where it stopped. Before
+   * the body is written, a marker file (the target name plus {@link #PARTIAL_SUFFIX}) records the object's URL, ETag,
+   * version and size; it is removed once the file is complete. If a marker for the same URL is found next to a
+   * partial target, only the missing bytes are requested (Range, with If-Match on the recorded ETag) and the response
+   * must match the recorded version and size - otherwise the download starts again from the first byte.
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object
+   * @param authorization the authorization header
+   * @param targetFile    the local file to write
+   * @param digest        if not null, the whole file (including any bytes from an earlier attempt) is hashed and
+   *                      checked against X-HCP-Hash
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException if a problem occurs - the partial file and marker are left for the next attempt
+   */
+  public static HCPReadResponse performResumableGet( ApacheHttpClient client, String requestURL, String authorization,
+      File targetFile, MessageDigest digest, LogChannelInterface log ) throws IOException {
+
+    String url = requestURL.trim();
+    File marker = new File( targetFile.getPath() + PARTIAL_SUFFIX );
+    Properties partial = readPartialMarker( marker );
+    long partialSize =
+        partial != null ? Long.parseLong( partial.getProperty( HCPReadResponse.X_HCP_SIZE_TAG, "-1" ) ) : -1;
+    long offset = 0;
+    if ( partial != null && url.equals( partial.getProperty( PARTIAL_URL_KEY ) ) && targetFile.isFile()
+        && partialSize > 0 && targetFile.length() <= partialSize ) {
+      // re-fetch at least one byte so that even a complete file is validated against the object
+      offset = Math.min( targetFile.length(), partialSize - 1 );
+    }
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Fetching " + requestURL + ( offset > 0 ? " from byte " + offset : "" ) );
+    }
+
+    HCPReadResponse readResponse = new HCPReadResponse();
+    GetMethod get = new GetMethod( url );
+    get.setRequestHeader( "Authorization", authorization );
+    String etag = offset > 0 ? partial.getProperty( HCPCreateResponse.ETAG_TAG ) : null;
+    if ( offset > 0 ) {
+      get.setRequestHeader( "Range", "bytes=" + offset + "-" );
+      if ( etag != null ) {
+        get.setRequestHeader( "If-Match", etag );
+      }
+    }
+    try {
+      int code = executeMethod( client, get, true );
+      determineRequestStatus( readResponse, code, get.getStatusText() );
+      if ( offset > 0 && ( code == 412 || code == 416 ) ) {
+        // the object has changed since the partial download
+        releaseMethod( get );
+        marker.delete();
+        return performResumableGet( client, requestURL, authorization, targetFile, digest, log );
+      }
+      if ( readResponse.getStatus() != BaseHCPResponse.Status.OK
+          && readResponse.getStatus() != BaseHCPResponse.Status.PARTIAL_CONTENT ) {
+        return readResponse;
+      }
+
+      InBoundHeaders headers = getHeaders( get );
+      populateMinimumSystemMetadata( readResponse, headers );
+      populateSystemMetadata( readResponse, headers );
+
+      long size;
+      if ( readResponse.getStatus() == BaseHCPResponse.Status.PARTIAL_CONTENT ) {
+        long[] range = parseContentRange( headers.getFirst( CONTENT_RANGE_TAG ) );
+        String version = partial != null ? partial.getProperty( HCPReadResponse.X_HCP_VERSION_ID_TAG ) : null;
+        boolean sameVersion =
+            version == null || readResponse.getVersionId() == null || version.equals( readResponse.getVersionId() );
+        if ( offset == 0 || range == null || range[0] != offset || range[2] != partialSize || !sameVersion ) {
+          // not the object we started on
+          releaseMethod( get );
+          marker.delete();
+          return performResumableGet( client, requestURL, authorization, targetFile, digest, log );
+        }
+        size = partialSize;
+        if ( log != null ) {
+          log.logBasic( "Resuming download of " + requestURL + " at byte " + offset );
+        }
+      } else {
+        // the whole object, whether or not we asked for a range
+        offset = 0;
+        size = readResponse.getSize() != null ? readResponse.getSize()
+            : readResponse.getContentLength() != null ? readResponse.getContentLength() : -1;
+        Properties record = new Properties();
+        record.setProperty( PARTIAL_URL_KEY, url );
+        record.setProperty( HCPReadResponse.X_HCP_SIZE_TAG, "" + size );
+        if ( headers.getFirst( HCPCreateResponse.ETAG_TAG ) != null ) {
+          record.setProperty( HCPCreateResponse.ETAG_TAG, headers.getFirst( HCPCreateResponse.ETAG_TAG ) );
+        }
+        if ( readResponse.getVersionId() != null ) {
+          record.setProperty( HCPReadResponse.X_HCP_VERSION_ID_TAG, readResponse.getVersionId() );
+        }
+        writePartialMarker( marker, record );
+        if ( log != null ) {
+          log.logBasic( "Downloading " + requestURL );
+        }
+      }
+
+      RandomAccessFile file = new RandomAccessFile( targetFile, "rw" );
+      try {
+        FileChannel channel = file.getChannel();
+        file.setLength( offset );
+        if ( digest != null ) {
+          digest.reset();
+          ByteBuffer buffer = ByteBuffer.allocate( COPY_BUFFER_SIZE );
+          long position = 0;
+          int read;
+          while ( ( read = channel.read( buffer, position ) ) > 0 ) {
+            digest.update( buffer.array(), 0, read );
+            position += read;
+            buffer.clear();
+          }
+        }
+
+        InputStream inputStream = get.getResponseBodyAsStream();
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long position = offset;
+        int read;
+        while ( inputStream != null && ( read = inputStream.read( buffer ) ) > 0 ) {
+          ByteBuffer chunk = ByteBuffer.wrap( buffer, 0, read );
+          while ( chunk.hasRemaining() ) {
+            position += channel.write( chunk, position );
+          }
+          if ( digest != null ) {
+            digest.update( buffer, 0, read );
+          }
+        }
+        if ( size >= 0 && position != size ) {
+          throw new IOException( "Download of " + url + " ended after " + position + " of " + size + " bytes" );
+        }
+      } finally {
+        file.close();
+      }
+    } finally {
+      releaseMethod( get );
+    }
+
+    marker.delete();
+    readResponse.setStatus( BaseHCPResponse.Status.OK );
+    readResponse.setContentLength( targetFile.length() );
+    if ( digest != null ) {
+      HCPContentHash.verify( readResponse, digest, readResponse.getHCPHash() );
+    }
+
+    return readResponse;
+  }
+
+  protected static Properties readPartialMarker( File marker ) {
+    if ( !marker.isFile() ) {
+      return null;
+    }
+    Properties record = new Properties();
+    try {
+      InputStream inputStream = new FileInputStream( marker );
+      try {
+        record.load( inputStream );
+      } finally {
+        inputStream.close();
+      }
+      Long.parseLong( record.getProperty( HCPReadResponse.X_HCP_SIZE_TAG, "-1" ) );
+      return record;
+    } catch ( IOException | NumberFormatException e ) {
+      // unreadable - start again
+      return null;
+    }
+  }
+
+  protected static void writePartialMarker( File marker, Properties record ) throws IOException {
+    OutputStream outputStream = new FileOutputStream( marker );
+    try {
+      record.store( outputStream, "Partial HCP download" );
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  /**
+   * Fetch one byte range of an object into the supplied channel at the range's offset
+   */
+  protected static HCPReadResponse performRangeGet( ApacheHttpClient client, String url, String authorization,
+      String etag, FileChannel channel, long from, long to ) throws IOException {
+    GetMethod get = new GetMethod( url );
+    try {
+      get.setRequestHeader( "Authorization", authorization );
+      get.setRequestHeader( "Range", "bytes=" + from + "-" + to );
+      if ( etag != null ) {
+        get.setRequestHeader( "If-Match", etag );
+      }
+      executeMethod( client, get, true );
+
+      HCPReadResponse rangeResponse = new HCPReadResponse();
+      determineRequestStatus( rangeResponse, get.getStatusCode(), get.getStatusText() );
+      if ( !rangeResponse.getSuccess() ) {
+        return rangeResponse;
+      }
+      Header contentRange = get.getResponseHeader( CONTENT_RANGE_TAG );
+      long[] range = contentRange != null ? parseContentRange( contentRange.getValue() ) : null;
+      if ( rangeResponse.getStatus() != BaseHCPResponse.Status.PARTIAL_CONTENT || range == null || range[0] != from
+          || range[1] != to ) {
+        rangeResponse.setStatus( BaseHCPResponse.Status.OTHER_FAILURE );
+        rangeResponse.setExplanation( "Unexpected response to range request for bytes " + from + "-" + to + " of "
+            + url );
+        return rangeResponse;
+      }
+
+      long written = writeAt( channel, get.getResponseBodyAsStream(), from );
+      if ( written != to - from + 1 ) {
+        throw new IOException( "Range " + from + "-" + to + " of " + url + " ended after " + written + " bytes" );
+      }
+      return rangeResponse;
+    } finally {
+      releaseMethod( get );
+    }
+  }
+
+  /**
+   * Parse a Content-Range header of the form "bytes first-last/total"
+   *
+   * @return { first, last, total }, where total is -1 if the server wrote "*" (size unknown); null if the header is
+   * missing or isn't of that form
+   */
+  protected static long[] parseContentRange( String contentRange ) {
+    if ( contentRange == null ) {
+      return null;
+    }
+    contentRange = contentRange.trim();
+    if ( !contentRange.startsWith( "bytes " ) ) {
+      return null;
+    }
+    int dash = contentRange.indexOf( '-' );
+    int slash = contentRange.indexOf( '/' );
+    if ( dash < 0 || slash < dash ) {
+      return null;
+    }
+    try {
+      String total = contentRange.substring( slash + 1 ).trim();
+      return new long[] { Long.parseLong( contentRange.substring( 6, dash ).trim() ),
+          Long.parseLong( contentRange.substring( dash + 1, slash ).trim() ),
+          "*".equals( total ) ? -1 : Long.parseLong( total ) };
+    } catch ( NumberFormatException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * Copy a stream into a channel at the given position, using positional writes so that several ranges can be
+   * written into the same file at once
+   *
+   * @return the number of bytes written
+   */
+  protected static long writeAt( FileChannel channel, InputStream inputStream, long position ) throws IOException {
+    if ( inputStream == null ) {
+      return 0;
+    }
+    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    long written = 0;
+    int read;
+    while ( ( read = inputStream.read( buffer ) ) > 0 ) {
+      ByteBuffer chunk = ByteBuffer.wrap( buffer, 0, read );
+      while ( chunk.hasRemaining() ) {
+        written += channel.write( chunk, position + written );
+      }
+    }
+    return written;
+  }
+
+  public static HCPListResponse performList( ApacheHttpClient client, String requestURL, String authorization,
+      LogChannelInterface log ) throws Exception {
+    return performList( client, requestURL, authorization, null, log );
+  }
+
+  /**
+   * List a directory, reading the listing as it arrives
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the directory
+   * @param authorization the authorization header
+   * @param handler       takes each entry as soon as it has been read; if null, the entries are kept in the response
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException        if a problem occurs
+   * @throws XMLStreamException if the listing can't be parsed
+   * @throws KettleException    if the handler fails
+   */
+  public static HCPListResponse performList( ApacheHttpClient client, String requestURL, String authorization,
+      HCPEntryHandler handler, LogChannelInterface log ) throws IOException, XMLStreamException, KettleException {
+    return performList( client, requestURL, authorization, null, handler, log );
+  }
+
+  /**
+   * List a directory, reading the listing as it arrives and skipping the entries the filter rejects
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the directory
+   * @param authorization the authorization header
+   * @param filter        checked against each entry as it is parsed; null to keep them all
+   * @param handler       takes each entry as soon as it has been read; if null, the entries are kept in the response
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException        if a problem occurs
+   * @throws XMLStreamException if the listing can't be parsed
+   * @throws KettleException    if the handler fails
+   */
+  public static HCPListResponse performList( ApacheHttpClient client, String requestURL, String authorization,
+      HCPEntryFilter filter, HCPEntryHandler handler, LogChannelInterface log )
+      throws IOException, XMLStreamException, KettleException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Listing " + requestURL );
+    }
+
+    HCPListResponse listResponse = new HCPListResponse();
+    listResponse.setEntryHandler( handler );
+    listResponse.setEntryFilter( filter );
+    GetMethod get = new GetMethod( requestURL.trim() );
+    get.setRequestHeader( "Authorization", authorization );
+    try {
+      executeMethod( client, get, true );
+      determineRequestStatus( listResponse, get.getStatusCode(), get.getStatusText() );
+      if ( listResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        return listResponse;
+      }
+      populateMinimumSystemMetadata( listResponse, getHeaders( get ) );
+
+      // the handler may block on downstream steps, which may need a slot themselves
+      releaseSlot( get );
+      InputStream inputStream = get.getResponseBodyAsStream();
+      if ( inputStream != null && !listResponse.processListResult( inputStream ) ) {
+        // don't wait for the rest of it
+        get.abort();
+      }
+    } finally {
+      releaseMethod( get );
     }
     return listResponse;
   }
 
+  /**
+   * Fetch a page of results from the metadata query API
+   *
+   * @param client        the client to use
+   * @param queryURL      the URL of the query API
+   * @param authorization the authorization header
+   * @param requestBody   the XML query request
+   * @param log           the log to use
+   * @return the response
+   * @throws IOException        if a problem occurs
+   * @throws XMLStreamException if the results can't be parsed
+   */
+  public static HCPQueryResponse performQuery( ApacheHttpClient client, String queryURL, String authorization,
+      String requestBody, LogChannelInterface log ) throws IOException, XMLStreamException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Querying " + queryURL + " : " + requestBody );
+    }
+
+    HCPQueryResponse queryResponse = new HCPQueryResponse();
+    PostMethod post = new PostMethod( queryURL.trim() );
+    post.setRequestHeader( "Authorization", authorization );
+    post.setRequestHeader( "Accept", MediaType.APPLICATION_XML );
+    post.setRequestEntity( new StringRequestEntity( requestBody, MediaType.APPLICATION_XML, "UTF-8" ) );
+    try {
+      executeMethod( client, post, true );
+      determineRequestStatus( queryResponse, post.getStatusCode(), post.getStatusText() );
+      if ( queryResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        return queryResponse;
+      }
+      InputStream inputStream = post.getResponseBodyAsStream();
+      if ( inputStream != null ) {
+        queryResponse.processQueryResult( inputStream );
+      }
+    } finally {
+      releaseMethod( post );
+    }
+    return queryResponse;
+  }
+
   public static HCPDeleteResponse performDelete( ApacheHttpClient client, String requestURL, String authorization,
       LogChannelInterface log ) {
     WebResource webResource = client.resource( requestURL.trim() );
@@ -138,6 +1138,7 @@ public class HCPConnectionOperationUtils {
     }
 
     ClientResponse response = builder.type( MediaType.APPLICATION_OCTET_STREAM_TYPE ).delete( ClientResponse.class );
+    HCPMetadataCache.getInstance().invalidate( requestURL );
     HCPDeleteResponse deleteResponse = new HCPDeleteResponse();
     determineRequestStatus( deleteResponse, response );
     if ( deleteResponse.getStatus() == BaseHCPResponse.Status.OK ) {
@@ -159,6 +1160,7 @@ public class HCPConnectionOperationUtils {
     ClientResponse
         response =
         builder.type( MediaType.APPLICATION_OCTET_STREAM_TYPE ).put( ClientResponse.class, inputStream );
+    HCPMetadataCache.getInstance().invalidate( requestURL );
     HCPCreateResponse createResponse = new HCPCreateResponse();
     determineRequestStatus( createResponse, response );
     if ( createResponse.getStatus() == BaseHCPResponse.Status.CREATED ) {
@@ -169,6 +1171,378 @@ public class HCPConnectionOperationUtils {
     return createResponse;
   }
 
+  /**
+   * Create an object by talking to the underlying HttpClient directly. This gives control over the request entity (and
+   * so the framing of the body) and over expect-continue handshaking, neither of which Jersey exposes per request.
+   *
+   * @param client         the client to use
+   * @param requestURL     the URL of the object to create
+   * @param authorization  the authorization header
+   * @param entity         the request body
+   * @param expectContinue true to have HCP vet the request headers before the body is sent. A PUT that is going to
+   *                       fail (e.g. with a conflict) then costs one round trip rather than a full body upload
+   * @param log            the log to use
+   * @return the response
+   * @throws IOException if a problem occurs
+   */
+  public static HCPCreateResponse performCreate( ApacheHttpClient client, String requestURL, String authorization,
+      RequestEntity entity, boolean expectContinue, LogChannelInterface log ) throws IOException {
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( "Creating " + requestURL + ( expectContinue ? " (expect-continue)" : "" ) );
+    }
+
+    PutMethod put = new PutMethod( requestURL.trim() );
+    put.setRequestHeader( "Authorization", authorization );
+    put.setRequestEntity( entity );
+    if ( entity instanceof GzipRequestEntity ) {
+      put.setRequestHeader( "Content-Encoding", GzipRequestEntity.CONTENT_ENCODING );
+    }
+    put.getParams().setBooleanParameter( HttpMethodParams.USE_EXPECT_CONTINUE, expectContinue );
+
+    try {
+      executeMethod( client, put, false );
+
+      HCPCreateResponse createResponse = new HCPCreateResponse();
+      InBoundHeaders headers = getHeaders( put );
+      determineRequestStatus( createResponse, put.getStatusCode(), put.getStatusText() );
+      if ( createResponse.getStatus() == BaseHCPResponse.Status.CREATED ) {
+        populateMinimumSystemMetadata( createResponse, headers );
+        populateCreateMetadata( createResponse, headers );
+      }
+
+      return createResponse;
+    } finally {
+      releaseMethod( put );
+      HCPMetadataCache.getInstance().invalidate( requestURL );
+    }
+  }
+
+  /**
+   * Upload a large local file as a multipart upload: initiate, PUT the parts in parallel, then complete. If any part
+   * fails the upload is aborted so HCP can discard the parts already stored.
+   *
+   * @param client        the client to use
+   * @param requestURL    the URL of the object to create
+   * @param authorization the authorization header
+   * @param sourceFile    the local file to upload
+   * @param partSize      the size of each part in bytes (raised if needed to stay within the part count limit)
+   * @param partExecutor  the pool that uploads the parts
+   * @param log           the log to use
+   * @return the response - CREATED if all went well, otherwise the first failure encountered
+   * @throws IOException if a problem occurs
+   */
+  public static HCPCreateResponse performMultipartCreate( ApacheHttpClient client, final String requestURL,
+      final String authorization, final File sourceFile, long partSize, ExecutorService partExecutor,
+      final LogChannelInterface log ) throws IOException {
+    return performMultipartCreate( client, requestURL, authorization, sourceFile, partSize, partExecutor, null, log );
+  }
+
+  /**
+   * As above, but journaling the upload id and each part as it is stored. If the journal holds an unfinished upload
+   * of the same object, started for a source of the same size and modification time, it is resumed: only the missing
+   * parts are sent.
+   *
+   * @param journal the journal to use (may be null)
+   */
+  public static HCPCreateResponse performMultipartCreate( final ApacheHttpClient client, final String requestURL,
+      final String authorization, final File sourceFile, long partSize, ExecutorService partExecutor,
+      final HCPTransferJournal journal, final LogChannelInterface log ) throws IOException {
+
+    final String url = requestURL.trim();
+    long fileSize = sourceFile.length();
+    long lastModified = sourceFile.lastModified();
+    partSize = Math.max( partSize, ( fileSize + MAX_MULTIPART_PARTS - 1 ) / MAX_MULTIPART_PARTS );
+    int numParts = (int) Math.max( 1, ( fileSize + partSize - 1 ) / partSize );
+
+    HCPCreateResponse createResponse = new HCPCreateResponse();
+    String resumeId = null;
+    Map<Integer, String> storedParts = new HashMap<>();
+    if ( journal != null ) {
+      HCPTransferJournal.MultipartState state = journal.getMultipart( url );
+      if ( state != null && state.matches( partSize, fileSize, lastModified ) ) {
+        resumeId = state.getUploadId();
+        storedParts.putAll( state.getParts() );
+      }
+    }
+
+    if ( log != null && log.isDebug() ) {
+      log.logDebug( ( resumeId != null ? "Resuming " : "Creating " ) + requestURL + " in " + numParts + " parts"
+          + ( resumeId != null ? " (" + storedParts.size() + " already stored)" : "" ) );
+    }
+
+    if ( resumeId == null ) {
+      // initiate
+      PostMethod initiate = new PostMethod( url + "?uploads" );
+      initiate.setRequestHeader( "Authorization", authorization );
+      try {
+        executeMethod( client, initiate, true );
+        determineRequestStatus( createResponse, initiate.getStatusCode(), initiate.getStatusText() );
+        if ( !createResponse.getSuccess() ) {
+          return createResponse;
+        }
+        resumeId = getMultipartUploadId( initiate.getResponseBodyAsStream() );
+      } finally {
+        releaseMethod( initiate );
+      }
+      if ( resumeId == null ) {
+        return new HCPCreateResponse( BaseHCPResponse.Status.OTHER_FAILURE, "No upload id returned for " + url );
+      }
+      if ( journal != null ) {
+        journal.multipartStarted( url, resumeId, partSize, fileSize, lastModified );
+      }
+    }
+    final boolean resumed = !storedParts.isEmpty();
+    final String uploadId = resumeId;
+    final String uploadQuery = "?uploadId=" + URLEncoder.encode( uploadId, "UTF-8" );
+
+    // parts
+    List<Future<HCPCreateResponse>> parts = new ArrayList<>( numParts );
+    for ( int i = 0; i < numParts; i++ ) {
+      final int partNumber = i + 1;
+      if ( storedParts.containsKey( partNumber ) ) {
+        parts.add( null );
+        continue;
+      }
+      final long offset = i * partSize;
+      final long length = Math.min( partSize, fileSize - offset );
+      parts.add( partExecutor.submit( new Callable<HCPCreateResponse>() {
+        @Override public HCPCreateResponse call() throws IOException {
+          HCPCreateResponse partResponse =
+              performPartCreate( client, url + uploadQuery + "&partNumber=" + partNumber, authorization,
+                  sourceFile, offset, length );
+          if ( journal != null && partResponse.getSuccess() && StringUtils.isNotEmpty( partResponse.getETag() ) ) {
+            journal.partCompleted( url, uploadId, partNumber, partResponse.getETag() );
+          }
+          return partResponse;
+        }
+      } ) );
+    }
+
+    StringBuilder complete = new StringBuilder( "<CompleteMultipartUpload>" );
+    HCPCreateResponse failedPart = null;
+    IOException failure = null;
+    for ( int i = 0; i < numParts; i++ ) {
+      try {
+        String etag = storedParts.get( i + 1 );
+        if ( etag == null ) {
+          HCPCreateResponse partResponse = parts.get( i ).get();
+          if ( !partResponse.getSuccess() ) {
+            if ( failedPart == null ) {
+              failedPart = partResponse;
+            }
+            continue;
+          }
+          etag = partResponse.getETag();
+          if ( StringUtils.isEmpty( etag ) ) {
+            // the complete request can't name this part
+            if ( failedPart == null ) {
+              failedPart = new HCPCreateResponse( BaseHCPResponse.Status.OTHER_FAILURE,
+                  "No ETag returned for part " + ( i + 1 ) + " of " + url );
+            }
+            continue;
+          }
+        }
+        complete.append( "<Part><PartNumber>" ).append( i + 1 ).append( "</PartNumber><ETag>" ).append( etag )
+            .append( "</ETag></Part>" );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        failure = new IOException( e );
+      } catch ( ExecutionException e ) {
+        if ( failure == null ) {
+          failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException( e.getCause() );
+        }
+      }
+    }
+    complete.append( "</CompleteMultipartUpload>" );
+
+    if ( failedPart != null || failure != null ) {
+      if ( journal != null ) {
+        journal.multipartEnded( url, uploadId );
+        if ( resumed && failedPart != null && failedPart.getStatus() == BaseHCPResponse.Status.NOT_FOUND ) {
+          // the upload we were resuming has expired on the HCP side - start over
+          return performMultipartCreate( client, requestURL, authorization, sourceFile, partSize, partExecutor,
+              journal, log );
+        }
+      }
+      abortMultipartUpload( client, url + uploadQuery, authorization );
+      if ( failure != null ) {
+        throw failure;
+      }
+      return failedPart;
+    }
+
+    // complete
+    PostMethod finish = new PostMethod( url + uploadQuery );
+    finish.setRequestHeader( "Authorization", authorization );
+    finish.setRequestEntity( new StringRequestEntity( complete.toString(), MediaType.APPLICATION_XML, "UTF-8" ) );
+    boolean completed = false;
+    try {
+      executeMethod( client, finish, false );
+      determineRequestStatus( createResponse, finish.getStatusCode(), finish.getStatusText() );
+      if ( createResponse.getSuccess() ) {
+        // report the same as a single PUT would
+        createResponse.setStatus( BaseHCPResponse.Status.CREATED );
+        InBoundHeaders headers = getHeaders( finish );
+        populateMinimumSystemMetadata( createResponse, headers );
+        populateCreateMetadata( createResponse, headers );
+        completed = true;
+      }
+    } finally {
+      releaseMethod( finish );
+      HCPMetadataCache.getInstance().invalidate( url );
+      if ( !completed ) {
+        // don't leave the stored parts behind
+        abortMultipartUpload( client, url + uploadQuery, authorization );
+      }
+      if ( journal != null ) {
+        journal.multipartEnded( url, uploadId );
+      }
+    }
+    if ( resumed && createResponse.getStatus() == BaseHCPResponse.Status.NOT_FOUND ) {
+      // expired on the HCP side
+      return performMultipartCreate( client, requestURL, authorization, sourceFile, partSize, partExecutor, journal,
+          log );
+    }
+
+    return createResponse;
+  }
+
+  /**
+   * Abort a multipart upload so that HCP discards the parts already stored. Failures are ignored: HCP cleans up
+   * abandoned uploads eventually, and the caller has a more useful problem to report
+   *
+   * @param uploadURL the URL of the object with the uploadId query
+   */
+  protected static void abortMultipartUpload( ApacheHttpClient client, String uploadURL, String authorization ) {
+    DeleteMethod abort = new DeleteMethod( uploadURL );
+    abort.setRequestHeader( "Authorization", authorization );
+    try {
+      executeMethod( client, abort, true );
+    } catch ( IOException e ) {
+      // report the original problem
+    } finally {
+      releaseMethod( abort );
+    }
+  }
+
+  protected static HCPCreateResponse performPartCreate( ApacheHttpClient client, String partURL,
+      String authorization, File sourceFile, long offset, long length ) throws IOException {
+    PutMethod put = new PutMethod( partURL );
+    try {
+      put.setRequestHeader( "Authorization", authorization );
+      put.setRequestEntity( new FileRegionRequestEntity( sourceFile, offset, length ) );
+      executeMethod( client, put, false );
+
+      HCPCreateResponse partResponse = new HCPCreateResponse();
+      determineRequestStatus( partResponse, put.getStatusCode(), put.getStatusText() );
+      Header etag = put.getResponseHeader( HCPCreateResponse.ETAG_TAG );
+      if ( etag != null ) {
+        partResponse.setETag( etag.getValue() );
+      }
+      return partResponse;
+    } finally {
+      releaseMethod( put );
+    }
+  }
+
+  /**
+   * Execute a method directly against the client's HttpClient, under the connection's concurrency limiter (requests
+   * made through Jersey are limited by a filter instead). The slot is held while the response body is read, until the
+   * method is released with {@link #releaseMethod(HttpMethod)} (or, for a body that goes to a handler, until
+   * {@link #releaseSlot(HttpMethod)}).
+   *
+   * @param sampleLatency true if the response time says something about how busy HCP is - i.e. the request has no
+   *                      sizeable body
+   * @return the status code
+   */
+  protected static int executeMethod( ApacheHttpClient client, HttpMethod method, boolean sampleLatency )
+      throws IOException {
+    HttpClient httpClient = client.getClientHandler().getHttpClient();
+    HCPConcurrencyLimiter limiter = HCPClientRegistry.getLimiter( client );
+    if ( limiter == null ) {
+      return httpClient.executeMethod( method );
+    }
+
+    HCPConcurrencyLimiter.Permit permit = limiter.acquire( sampleLatency );
+    try {
+      int code = httpClient.executeMethod( method );
+      permit.responded( code );
+      s_permits.put( method, permit );
+      return code;
+    } catch ( IOException | RuntimeException e ) {
+      permit.failed( e );
+      throw e;
+    }
+  }
+
+  /**
+   * Give up a method's concurrency limiter slot as soon as its response headers have arrived, keeping the connection.
+   * Used before a body is handed to code that may block on other steps (e.g. putRow), which could otherwise wait on
+   * a step that needs a slot on the same connection.
+   */
+  protected static void releaseSlot( HttpMethod method ) {
+    HCPConcurrencyLimiter.Permit permit = s_permits.remove( method );
+    if ( permit != null ) {
+      permit.finished();
+    }
+  }
+
+  /**
+   * Release the connection of a method run by {@link #executeMethod(ApacheHttpClient, HttpMethod, boolean)}, and with
+   * it the method's concurrency limiter slot. Releasing a method more than once does no harm.
+   */
+  protected static void releaseMethod( HttpMethod method ) {
+    try {
+      method.releaseConnection();
+    } finally {
+      releaseSlot( method );
+    }
+  }
+
+  protected static String getMultipartUploadId( InputStream inputStream ) throws IOException {
+    if ( inputStream == null ) {
+      return null;
+    }
+    try {
+      Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( inputStream );
+      NodeList nodeList = doc.getElementsByTagName( UPLOAD_ID_TAG );
+      return nodeList.getLength() > 0 ? nodeList.item( 0 ).getTextContent().trim() : null;
+    } catch ( Exception e ) {
+      throw new IOException( "Unable to read multipart upload id", e );
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Resolve a (VFS) path to a local file
+   *
+   * @param path the path to resolve
+   * @return the local file, or null if the path does not refer to an existing file on the local file system
+   * @throws KettleFileException if the path can't be resolved
+   */
+  public static File getLocalFile( String path ) throws KettleFileException {
+    return getLocalFile( path, true );
+  }
+
+  /**
+   * Resolve a (VFS) path to a local file
+   *
+   * @param path      the path to resolve
+   * @param mustExist false to also accept a file that is yet to be created (e.g. a download target)
+   * @return the local file, or null if the path does not refer to a (possible) file on the local file system
+   * @throws KettleFileException if the path can't be resolved
+   */
+  public static File getLocalFile( String path, boolean mustExist ) throws KettleFileException {
+    FileObject fileObject = KettleVFS.getFileObject( path );
+    if ( !"file".equalsIgnoreCase( fileObject.getName().getScheme() ) ) {
+      return null;
+    }
+    File file = new File( KettleVFS.getFilename( fileObject ) );
+    return file.isFile() || ( !mustExist && !file.exists() ) ? file : null;
+  }
+
   public static HCPCreateResponse performAddCustomMetadata( ApacheHttpClient client, String requestURL,
       String authorization, InputStream inputStream, LogChannelInterface log ) {
 
@@ -176,6 +1550,7 @@ public class HCPConnectionOperationUtils {
     WebResource.Builder builder = webResource.getRequestBuilder().header( "Authorization", authorization );
 
     ClientResponse response = builder.type( MediaType.TEXT_XML ).put( ClientResponse.class, inputStream );
+    HCPMetadataCache.getInstance().invalidate( requestURL );
     HCPCreateResponse createResponse = new HCPCreateResponse();
     determineRequestStatus( createResponse, response );
     if ( createResponse.getStatus() == BaseHCPResponse.Status.CREATED
@@ -193,6 +1568,7 @@ public class HCPConnectionOperationUtils {
     WebResource.Builder builder = webResource.getRequestBuilder().header( "Authorization", authorization );
 
     ClientResponse response = builder.type( MediaType.TEXT_XML ).post( ClientResponse.class );
+    HCPMetadataCache.getInstance().invalidate( requestURL );
     HCPCreateResponse createResponse = new HCPCreateResponse();
     determineRequestStatus( createResponse, response );
     if ( createResponse.getStatus() == BaseHCPResponse.Status.CREATED
@@ -206,110 +1582,242 @@ public class HCPConnectionOperationUtils {
   public static HCPCreateResponse performTargetFileUpdate( ApacheHttpClient client, String requestURL,
       String authorization, String sourceFilePath, byte[] sourceBytes, int bufferSize, LogChannelInterface log )
       throws KettleFileException, IOException {
+    return performTargetFileUpdate( client, requestURL, authorization, sourceFilePath, sourceBytes, bufferSize, null,
+        log );
+  }
 
-    // HCPCreateResponse createResponse = performTargetFileUpdate( client, requestURL, authorization, inputStream );
-    HCPCreateResponse createResponse = null;
-    BaseHCPResponse existsResponse = checkTargetExistence( client, requestURL, authorization );
+  public static HCPCreateResponse performTargetFileUpdate( ApacheHttpClient client, String requestURL,
+      String authorization, String sourceFilePath, byte[] sourceBytes, int bufferSize, HCPNamespaceInfo namespaceInfo,
+      LogChannelInterface log ) throws KettleFileException, IOException {
+    return performTargetFileUpdate( client, requestURL, authorization, sourceFilePath, sourceBytes, bufferSize,
+        namespaceInfo, 0, null, log );
+  }
+
+  /**
+   * Create or overwrite an object.
+   * <p>
+   * In a namespace with versioning enabled a plain PUT simply stores a new version, so that is all we do. Otherwise
+   * (or if we don't know) the PUT is sent with expect-continue: for a new object it succeeds in one round trip, and
+   * for an existing one HCP answers 409 before the body goes over the wire. Only then do we fall back to deleting the
+   * existing object and putting it again.
+   *
+   * @param client         the client to use
+   * @param requestURL     the URL of the object
+   * @param authorization  the authorization header
+   * @param sourceFilePath the file to upload, or null if uploading sourceBytes
+   * @param sourceBytes    the bytes to upload if sourceFilePath is null
+   * @param bufferSize     the buffer size to use when reading the source
+   * @param namespaceInfo  settings of the target namespace (may be null if not known)
+   * @param compressionLevel gzip level (1-9) to compress the body with, or 0 to send it as is
+   * @param digest         if not null, the body is hashed as it is sent and checked against the hash HCP reports
+   * @param log            the log to use
+   * @return the response
+   * @throws KettleFileException if the source file can't be opened
+   * @throws IOException         if a problem occurs
+   */
+  public static HCPCreateResponse performTargetFileUpdate( ApacheHttpClient client, String requestURL,
+      String authorization, String sourceFilePath, byte[] sourceBytes, int bufferSize, HCPNamespaceInfo namespaceInfo,
+      int compressionLevel, MessageDigest digest, LogChannelInterface log ) throws KettleFileException, IOException {
+
+    boolean versioned = namespaceInfo != null && Boolean.TRUE.equals( namespaceInfo.getVersioningEnabled() );
+
+    HCPCreateResponse
+        createResponse =
+        createFromSource( client, requestURL, authorization, sourceFilePath, sourceBytes, bufferSize, !versioned,
+            compressionLevel, digest, log );
+    if ( versioned || createResponse.getStatus() != BaseHCPResponse.Status.CONFLICT ) {
+      return createResponse;
+    }
+
+    // resource exists already and this namespace doesn't keep versions, so we have to delete and then put
     if ( log != null && log.isDebug() ) {
-      System.err.println( "Existence check for " + requestURL + " returned: " + existsResponse.getStatus().toString() );
-    }
-
-    if ( existsResponse.getStatus() != BaseHCPResponse.Status.OK ) {
-      // probably resource does not exist - try put instead
-      // inputStream.close();
-      BufferedInputStream
-          inputStream =
-          sourceFilePath != null ? new BufferedInputStream( KettleVFS.getInputStream( sourceFilePath ), bufferSize ) :
-              new BufferedInputStream( new ByteArrayInputStream( sourceBytes ), bufferSize );
-      createResponse = performCreate( client, requestURL, authorization, inputStream, log );
-    } else if ( existsResponse.getStatus() == BaseHCPResponse.Status.OK ) {
-      // resource exists already, but post doesn't seem to actually update with the new version.
-      // this is probably kludgy because I don't know what the correct way of doing this is. We will delete and
-      // then put in this case...
-
-      if ( log != null && log.isDebug() ) {
-        log.logDebug( requestURL + " exists" );
-      }
-      // inputStream.close();
-      HCPDeleteResponse deleteResponse = performDelete( client, requestURL, authorization, log );
-      if ( deleteResponse.getStatus() == BaseHCPResponse.Status.OK ) {
-        // if delete successful, then put the new resource
-        BufferedInputStream
-            inputStream =
-            sourceFilePath != null ? new BufferedInputStream( KettleVFS.getInputStream( sourceFilePath ), bufferSize ) :
-                new BufferedInputStream( new ByteArrayInputStream( sourceBytes ), bufferSize );
-        createResponse = performCreate( client, requestURL, authorization, inputStream, log );
-      } else {
-        // TODO
-        // need to log here and indicate that an error row needs to be output (a non OK status)
+      log.logDebug( requestURL + " exists" );
+    }
+    HCPDeleteResponse deleteResponse = performDelete( client, requestURL, authorization, log );
+    if ( deleteResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+      // report why we couldn't replace the object
+      return new HCPCreateResponse( deleteResponse.getStatus(), deleteResponse.getExplanation() );
+    }
+
+    return createFromSource( client, requestURL, authorization, sourceFilePath, sourceBytes, bufferSize, false,
+        compressionLevel, digest, log );
+  }
+
+  /**
+   * Create an object from a file or a byte array. Local files and byte arrays go with a Content-Length; other (VFS)
+   * sources are streamed chunked. When a compression level is given, the body is gzipped on the fly - unless a sample
+   * from the start of the source shows that it doesn't compress.
+   *
+   * @param client           the client to use
+   * @param requestURL       the URL of the object to create
+   * @param authorization    the authorization header
+   * @param sourceFilePath   the file to upload, or null if uploading sourceBytes
+   * @param sourceBytes      the bytes to upload if sourceFilePath is null
+   * @param bufferSize       the buffer size to use when reading the source
+   * @param expectContinue   true to send the request with expect-continue
+   * @param compressionLevel gzip level (1-9) to compress the body with, or 0 to send it as is
+   * @param digest           if not null, the body is hashed as it is sent and checked against the hash HCP reports
+   * @param log              the log to use
+   * @return the response
+   * @throws KettleFileException if the source file can't be opened
+   * @throws IOException         if a problem occurs
+   */
+  public static HCPCreateResponse createFromSource( ApacheHttpClient client, String requestURL,
+      String authorization, String sourceFilePath, byte[] sourceBytes, int bufferSize, boolean expectContinue,
+      int compressionLevel, MessageDigest digest, LogChannelInterface log ) throws KettleFileException, IOException {
+    if ( sourceFilePath == null ) {
+      boolean compress = compressionLevel > 0 && GzipRequestEntity
+          .isWorthCompressing( sourceBytes, Math.min( sourceBytes.length, GzipRequestEntity.SAMPLE_SIZE ) );
+      return createVerified( client, requestURL, authorization,
+          wrapEntity( new ByteArrayRequestEntity( sourceBytes, MediaType.APPLICATION_OCTET_STREAM ), digest,
+              compress ? compressionLevel : 0, bufferSize ), expectContinue, digest, log );
+    }
+
+    File localFile = getLocalFile( sourceFilePath );
+    if ( localFile != null ) {
+      boolean compress = false;
+      if ( compressionLevel > 0 ) {
+        InputStream sampleStream = new FileInputStream( localFile );
+        try {
+          compress = isSampleCompressible( sampleStream );
+        } finally {
+          sampleStream.close();
+        }
       }
+      return createVerified( client, requestURL, authorization,
+          wrapEntity( new FileRegionRequestEntity( localFile ), digest, compress ? compressionLevel : 0, bufferSize ),
+          expectContinue, digest, log );
     }
 
-    return createResponse;
+    InputStream inputStream = new BufferedInputStream( KettleVFS.getInputStream( sourceFilePath ), bufferSize );
+    try {
+      boolean compress = false;
+      if ( compressionLevel > 0 ) {
+        inputStream.mark( GzipRequestEntity.SAMPLE_SIZE );
+        compress = isSampleCompressible( inputStream );
+        inputStream.reset();
+      }
+      // unknown length, so this goes chunked
+      return createVerified( client, requestURL, authorization,
+          wrapEntity( new InputStreamRequestEntity( inputStream, -1, MediaType.APPLICATION_OCTET_STREAM ), digest,
+              compress ? compressionLevel : 0, bufferSize ), expectContinue, digest, log );
+    } finally {
+      inputStream.close();
+    }
   }
 
-  private static BaseHCPResponse checkTargetExistence( ApacheHttpClient client, String requestURL,
-      String authorization ) {
-    WebResource webResource = client.resource( requestURL.trim() );
-    WebResource.Builder builder = webResource.getRequestBuilder().header( "Authorization", authorization );
-    ClientResponse response = builder.type( MediaType.APPLICATION_OCTET_STREAM_TYPE ).head();
+  /**
+   * Layer digesting and compression over a request body. The digest sits underneath the compression so that it sees
+   * the bytes HCP will store.
+   */
+  protected static RequestEntity wrapEntity( RequestEntity entity, MessageDigest digest, int compressionLevel,
+      int bufferSize ) {
+    if ( digest != null ) {
+      entity = new DigestRequestEntity( entity, digest );
+    }
+    if ( compressionLevel > 0 ) {
+      entity = new GzipRequestEntity( entity, compressionLevel, bufferSize );
+    }
+    return entity;
+  }
 
-    BaseHCPResponse baseHCPResponse = new BaseHCPResponse();
-    determineRequestStatus( baseHCPResponse, response );
+  protected static HCPCreateResponse createVerified( ApacheHttpClient client, String requestURL, String authorization,
+      RequestEntity entity, boolean expectContinue, MessageDigest digest, LogChannelInterface log ) throws IOException {
+    HCPCreateResponse createResponse = performCreate( client, requestURL, authorization, entity, expectContinue, log );
+    if ( digest != null && createResponse.getStatus() == BaseHCPResponse.Status.CREATED ) {
+      HCPContentHash.verify( createResponse, digest, createResponse.getHCPHash(), createResponse.getArcHashHeader() );
+    }
+    return createResponse;
+  }
 
-    return baseHCPResponse;
+  /**
+   * Read up to GzipRequestEntity.SAMPLE_SIZE bytes from the stream and check whether they compress
+   */
+  protected static boolean isSampleCompressible( InputStream inputStream ) throws IOException {
+    byte[] sample = new byte[GzipRequestEntity.SAMPLE_SIZE];
+    int length = 0;
+    int read;
+    while ( length < sample.length && ( read = inputStream.read( sample, length, sample.length - length ) ) > 0 ) {
+      length += read;
+    }
+    return GzipRequestEntity.isWorthCompressing( sample, length );
   }
 
   protected static void determineRequestStatus( BaseHCPResponse hcpResponse, ClientResponse response ) {
-    int code = response.getStatus();
     Response.StatusType type = response.getStatusInfo();
+    determineRequestStatus( hcpResponse, response.getStatus(), type.getReasonPhrase() );
+  }
+
+  protected static void determineRequestStatus( BaseHCPResponse hcpResponse, int code, String reasonPhrase ) {
     if ( code == 200 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.OK );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 201 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.CREATED );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 204 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.NO_CONTENT );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 206 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.PARTIAL_CONTENT );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
+    } else if ( code == 304 ) {
+      hcpResponse.setStatus( BaseHCPResponse.Status.NOT_MODIFIED );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 400 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.BAD_REQUEST );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 401 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.UNAUTHORIZED );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 403 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.FORBIDDEN );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 404 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.NOT_FOUND );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 409 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.CONFLICT );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 413 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.FILE_TOO_LARGE );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 414 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.REQUEST_TOO_LARGE );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 416 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.REQUEST_RANGE_INVALID );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
     } else if ( code == 500 ) {
       hcpResponse.setStatus( BaseHCPResponse.Status.INTERNAL_ERROR );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
+    } else if ( code == 503 ) {
+      hcpResponse.setStatus( BaseHCPResponse.Status.UNAVAILABLE );
+      hcpResponse.setExplanation( reasonPhrase );
     } else {
       hcpResponse.setStatus( BaseHCPResponse.Status.OTHER_FAILURE );
-      hcpResponse.setExplanation( type.getReasonPhrase() );
+      hcpResponse.setExplanation( reasonPhrase );
+    }
+  }
+
+  /**
+   * Collect the response headers of a method executed directly against HttpClient into the (case insensitive) map
+   * that Jersey would have given us
+   */
+  protected static InBoundHeaders getHeaders( HttpMethod method ) {
+    InBoundHeaders headers = new InBoundHeaders();
+    for ( Header header : method.getResponseHeaders() ) {
+      headers.add( header.getName(), header.getValue() );
     }
+    return headers;
   }
 
   protected static void populateMinimumSystemMetadata( BaseHCPResponse baseResponse, ClientResponse response ) {
-    MultivaluedMap<String, String> headers = response.getHeaders();
+    populateMinimumSystemMetadata( baseResponse, response.getHeaders() );
+  }
+
+  protected static void populateMinimumSystemMetadata( BaseHCPResponse baseResponse,
+      MultivaluedMap<String, String> headers ) {
 
     List<String> l = headers.get( BaseHCPResponse.X_HCP_TIME_TAG );
     if ( l != null && l.size() > 0 ) {
@@ -356,7 +1864,10 @@ public class HCPConnectionOperationUtils {
   }
 
   protected static void populateSystemMetadata( HCPReadResponse hcpResponse, ClientResponse response ) {
-    MultivaluedMap<String, String> headers = response.getHeaders();
+    populateSystemMetadata( hcpResponse, response.getHeaders() );
+  }
+
+  protected static void populateSystemMetadata( HCPReadResponse hcpResponse, MultivaluedMap<String, String> headers ) {
 
     String val = headers.getFirst( HCPReadResponse.X_HCP_TYPE_TAG );
     if ( val != null ) {
@@ -458,10 +1969,23 @@ public class HCPConnectionOperationUtils {
     if ( val != null ) {
       hcpResponse.setChangeTimeString( val );
     }
+
+    val = headers.getFirst( HCPReadResponse.ETAG_TAG );
+    if ( val != null ) {
+      hcpResponse.setETag( val );
+    }
+
+    val = headers.getFirst( HCPReadResponse.LAST_MODIFIED_TAG );
+    if ( val != null ) {
+      hcpResponse.setLastModified( val );
+    }
   }
 
   protected static void populateCreateMetadata( HCPCreateResponse hcpResponse, ClientResponse response ) {
-    MultivaluedMap<String, String> headers = response.getHeaders();
+    populateCreateMetadata( hcpResponse, response.getHeaders() );
+  }
+
+  protected static void populateCreateMetadata( HCPCreateResponse hcpResponse, MultivaluedMap<String, String> headers ) {
     List<String> l = headers.get( HCPCreateResponse.LOCATION_TAG );
     if ( l != null && l.size() > 0 ) {
       hcpResponse.setLocation( l.get( 0 ) );
@@ -472,11 +1996,7 @@ public class HCPConnectionOperationUtils {
     if ( l != null && l.size() > 0 ) {
       hashHeader = l.get( 0 );
     }
-
-    String[] hashParts = hashHeader.split( " " );
-    String hashValue = "";
-    hashValue = hashParts.length > 1 ? hashParts[1] : null;
-    hcpResponse.setArcHash( hashValue );
+    hcpResponse.setArcHashHeader( hashHeader );
 
     l = headers.get( HCPCreateResponse.X_ARC_CLUSTER_TIME_TAG );
     if ( l != null && l.size() > 0 ) {
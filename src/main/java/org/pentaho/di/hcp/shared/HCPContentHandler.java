@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.pentaho.di.core.exception.KettleException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the body of an object while it is being downloaded - see
+ * {@link HCPConnectionOperationUtils#performStreamingGet}
+ */
+public interface HCPContentHandler {
+
+  /**
+   * Read the object's content
+   *
+   * @param response    the response, with the object's system metadata filled in
+   * @param inputStream the body as it arrives from HCP
+   * @return true if the body was read to the end; false if the handler stopped early, in which case the rest of the
+   * download is abandoned
+   * @throws IOException     if a problem occurs reading
+   * @throws KettleException if a problem occurs handling the content
+   */
+  boolean content( HCPReadResponse response, InputStream inputStream ) throws IOException, KettleException;
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers for checking transferred content against the hash HCP computes on ingest. HCP reports hashes (X-HCP-Hash,
+ * X-ArcHash) as the hash scheme followed by the upper case hex value, e.g. "SHA-256 2BC9...". The scheme names HCP
+ * uses (MD5, SHA-1, SHA-256, SHA-384, SHA-512) are also the JCA algorithm names.
+ */
+public class HCPContentHash {
+
+  /** HCP's default hash scheme, used when the namespace's scheme is not known */
+  public static final String DEFAULT_SCHEME = "SHA-256";
+
+  /**
+   * Create a digest for the supplied hash scheme
+   *
+   * @param scheme the namespace hash scheme (may be null, in which case the default is used)
+   * @return a digest, or null if the scheme is not supported by this JVM (e.g. RIPEMD-160)
+   */
+  public static MessageDigest createDigest( String scheme ) {
+    if ( scheme == null || scheme.trim().length() == 0 ) {
+      scheme = DEFAULT_SCHEME;
+    }
+    try {
+      return MessageDigest.getInstance( scheme.trim().toUpperCase() );
+    } catch ( NoSuchAlgorithmException e ) {
+      return null;
+    }
+  }
+
+  /**
+   * @param hash a hash in HCP format
+   * @return the scheme part of the hash, or null if there isn't one
+   */
+  public static String getScheme( String hash ) {
+    if ( hash == null ) {
+      return null;
+    }
+    int split = hash.trim().indexOf( ' ' );
+    return split > 0 ? hash.trim().substring( 0, split ) : null;
+  }
+
+  /**
+   * Hash a stream in full. The stream is not closed.
+   *
+   * @param inputStream the data to hash
+   * @param scheme      the hash scheme
+   * @return the hash in HCP format, or null if the scheme is not supported
+   * @throws IOException if the stream can't be read
+   */
+  public static String hash( InputStream inputStream, String scheme ) throws IOException {
+    MessageDigest digest = createDigest( scheme );
+    if ( digest == null ) {
+      return null;
+    }
+    byte[] buffer = new byte[8192];
+    int read;
+    while ( ( read = inputStream.read( buffer ) ) > 0 ) {
+      digest.update( buffer, 0, read );
+    }
+    return format( digest.getAlgorithm(), digest.digest() );
+  }
+
+  /**
+   * Format a hash the way HCP reports it
+   *
+   * @param algorithm the hash scheme
+   * @param hash      the hash value
+   * @return the hash in HCP format
+   */
+  public static String format( String algorithm, byte[] hash ) {
+    return algorithm + " " + new String( Hex.encodeHex( hash ) ).toUpperCase();
+  }
+
+  /**
+   * Compare a hash in HCP format against a computed one
+   *
+   * @param reported the hash as reported by HCP (may be null)
+   * @param computed the computed hash, in HCP format
+   * @return true/false if the hashes could be compared, or null if not (missing header or a different scheme)
+   */
+  public static Boolean matches( String reported, String computed ) {
+    if ( reported == null || computed == null ) {
+      return null;
+    }
+    reported = reported.trim();
+    int reportedSplit = reported.indexOf( ' ' );
+    int computedSplit = computed.indexOf( ' ' );
+    if ( reportedSplit < 0 || computedSplit < 0 ) {
+      return null;
+    }
+    if ( !reported.substring( 0, reportedSplit ).equalsIgnoreCase( computed.substring( 0, computedSplit ) ) ) {
+      return null;
+    }
+    return reported.substring( reportedSplit + 1 ).trim().equalsIgnoreCase( computed.substring( computedSplit + 1 ) );
+  }
+
+  /**
+   * Record the hash computed during a transfer on the response, and check it against those reported by HCP. A mismatch
+   * turns the response into a HASH_MISMATCH failure.
+   *
+   * @param response the response of the transfer
+   * @param digest   the digest that saw the transferred bytes
+   * @param reported hashes reported by HCP, in order of preference (any may be null)
+   */
+  public static void verify( BaseHCPResponse response, MessageDigest digest, String... reported ) {
+    String computed = format( digest.getAlgorithm(), digest.digest() );
+    response.setComputedHash( computed );
+
+    for ( String hash : reported ) {
+      Boolean match = matches( hash, computed );
+      if ( match != null ) {
+        response.setHashVerified( match );
+        if ( !match ) {
+          response.setStatus( BaseHCPResponse.Status.HASH_MISMATCH );
+          response.setExplanation( "Hash mismatch: HCP reported " + hash + ", transferred " + computed );
+        }
+        return;
+      }
+    }
+  }
+}
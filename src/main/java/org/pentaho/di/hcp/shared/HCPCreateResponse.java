@@ -38,11 +38,14 @@ public class HCPCreateResponse extends BaseHCPResponse {
   public static final String LOCATION_TAG = "Location";
   public static final String X_ARC_CLUSTER_TIME_TAG = "X-ArcClusterTime";
   public static final String X_HCP_VERSION_ID_TAG = "X-HCP-VersionId";
+  public static final String ETAG_TAG = "ETag";
 
   protected String m_location;
   protected String m_arcHash;
+  protected String m_arcHashScheme;
   protected Long m_clusterTime = -1L;
   protected String m_versionID;
+  protected String m_etag;
 
   public HCPCreateResponse() {
 
@@ -68,6 +71,24 @@ public class HCPCreateResponse extends BaseHCPResponse {
     return m_arcHash;
   }
 
+  /**
+   * Set the hash from an X-ArcHash header - the hash scheme, a space, then the hex value
+   *
+   * @param header the header value (may be null)
+   */
+  public void setArcHashHeader( String header ) {
+    String[] hashParts = header == null ? new String[0] : header.trim().split( " " );
+    m_arcHashScheme = hashParts.length > 1 ? hashParts[0] : null;
+    m_arcHash = hashParts.length > 1 ? hashParts[1] : null;
+  }
+
+  /**
+   * @return the hash as HCP reported it in X-ArcHash (scheme and value), or null if there wasn't one
+   */
+  public String getArcHashHeader() {
+    return m_arcHash != null && m_arcHashScheme != null ? m_arcHashScheme + " " + m_arcHash : null;
+  }
+
   public void setClusterTime( Long clusterTime ) {
     m_clusterTime = clusterTime;
   }
@@ -84,6 +105,14 @@ public class HCPCreateResponse extends BaseHCPResponse {
     return m_versionID;
   }
 
+  public void setETag( String etag ) {
+    m_etag = etag;
+  }
+
+  public String getETag() {
+    return m_etag;
+  }
+
   public static void addCreateFieldMetadata( RowMetaInterface rowMeta ) throws KettlePluginException {
     rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( HCPCreateResponse.LOCATION_TAG, ValueMetaInterface.TYPE_STRING ) );
     rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( HCPCreateResponse.X_ARC_CLUSTER_TIME_TAG, ValueMetaInterface.TYPE_INTEGER ) );
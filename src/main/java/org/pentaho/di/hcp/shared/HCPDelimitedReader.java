@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits character data into delimited records one at a time, so that an object can be turned into rows while it is
+ * still being read. Only the current record is held in memory. Fields may be wrapped in an enclosure (e.g. double
+ * quotes), in which case they can contain the delimiter and line breaks, and a doubled enclosure stands for a literal
+ * one. With no delimiter each line is a record of one field.
+ * <p>
+ * An enclosure that is never closed would pull the rest of the input into one field, so a record that spans lines is
+ * limited to a maximum length - see {@link #setMaxRecordLength(int)}.
+ */
+public class HCPDelimitedReader {
+
+  /** Default limit on the characters in a record that spans lines */
+  public static final int DEFAULT_MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+  protected final BufferedReader m_reader;
+  protected final String m_delimiter;
+  protected final String m_enclosure;
+
+  /** Physical lines read so far */
+  protected long m_lineNumber;
+
+  protected int m_maxRecordLength = DEFAULT_MAX_RECORD_LENGTH;
+
+  public HCPDelimitedReader( Reader reader, String delimiter, String enclosure ) {
+    m_reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader( reader );
+    m_delimiter = delimiter == null ? "" : delimiter;
+    m_enclosure = enclosure == null ? "" : enclosure;
+  }
+
+  /**
+   * @param maxRecordLength the most characters a record spanning lines may hold before it is taken to be an enclosure
+   *                        that was never closed
+   */
+  public void setMaxRecordLength( int maxRecordLength ) {
+    m_maxRecordLength = maxRecordLength;
+  }
+
+  public int getMaxRecordLength() {
+    return m_maxRecordLength;
+  }
+
+  /**
+   * Read the next record
+   *
+   * @return the fields of the record, or null at the end of the input
+   * @throws IOException if a problem occurs reading, or if an enclosed field runs past the maximum record length
+   */
+  public String[] readRecord() throws IOException {
+    String line = m_reader.readLine();
+    if ( line == null ) {
+      return null;
+    }
+    m_lineNumber++;
+    if ( m_delimiter.length() == 0 ) {
+      return new String[] { line };
+    }
+
+    List<String> fields = new ArrayList<String>();
+    StringBuilder field = new StringBuilder();
+    boolean fieldStart = true;
+    boolean enclosed = false;
+    long firstLine = m_lineNumber;
+    long recordLength = line.length();
+    int i = 0;
+    while ( true ) {
+      while ( i < line.length() ) {
+        if ( enclosed ) {
+          if ( line.startsWith( m_enclosure, i ) ) {
+            i += m_enclosure.length();
+            if ( line.startsWith( m_enclosure, i ) ) {
+              // doubled enclosure
+              field.append( m_enclosure );
+              i += m_enclosure.length();
+            } else {
+              enclosed = false;
+            }
+          } else {
+            field.append( line.charAt( i++ ) );
+          }
+        } else if ( line.startsWith( m_delimiter, i ) ) {
+          fields.add( field.toString() );
+          field.setLength( 0 );
+          fieldStart = true;
+          i += m_delimiter.length();
+        } else if ( fieldStart && m_enclosure.length() > 0 && line.startsWith( m_enclosure, i ) ) {
+          enclosed = true;
+          fieldStart = false;
+          i += m_enclosure.length();
+        } else {
+          field.append( line.charAt( i++ ) );
+          fieldStart = false;
+        }
+      }
+      if ( !enclosed ) {
+        break;
+      }
+
+      // the enclosed field carries on over the line break
+      line = m_reader.readLine();
+      if ( line == null ) {
+        // unterminated - keep what there is
+        break;
+      }
+      m_lineNumber++;
+      recordLength += line.length() + 1;
+      if ( recordLength > m_maxRecordLength ) {
+        throw new IOException( "The record starting on line " + firstLine + " is longer than " + m_maxRecordLength
+            + " characters; is an enclosure missing its end?" );
+      }
+      field.append( '\n' );
+      i = 0;
+    }
+    fields.add( field.toString() );
+
+    return fields.toArray( new String[fields.size()] );
+  }
+
+  /**
+   * @return the number of physical lines read so far
+   */
+  public long getLineNumber() {
+    return m_lineNumber;
+  }
+
+  public void close() throws IOException {
+    m_reader.close();
+  }
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks a directory tree, listing the subdirectories on an executor so that several listings are in flight at once.
+ * Each subdirectory is handed to the executor as soon as its entry has been read, and the objects found are passed
+ * back through a bounded queue as they turn up - see {@link #next()}. When the consumer falls behind, the listings
+ * wait for it rather than piling up entries in memory. A listing gives up its concurrency limiter slot once its
+ * headers are in, so the listings waiting on the queue don't starve other steps using the same connection.
+ */
+public class HCPDirectoryWalker {
+
+  public static final String OBJECT_TYPE = "object";
+  public static final String DIRECTORY_TYPE = "directory";
+
+  /** How long to wait at a time for room in, or something from, the queue before checking for a stop */
+  protected static final long POLL_MILLIS = 100;
+
+  /** What turned up in the walk: an object, or a directory that couldn't be listed */
+  public static class Found {
+    protected final String m_url;
+    protected final HCPListResponse m_listing;
+    protected final HCPListResponse.ListEntry m_entry;
+    protected final long m_elapsed;
+    protected final Exception m_error;
+
+    protected Found( String url, HCPListResponse listing, HCPListResponse.ListEntry entry, long elapsed,
+        Exception error ) {
+      m_url = url;
+      m_listing = listing;
+      m_entry = entry;
+      m_elapsed = elapsed;
+      m_error = error;
+    }
+
+    /**
+     * @return the URL of the directory listed
+     */
+    public String getUrl() {
+      return m_url;
+    }
+
+    /**
+     * @return the listing of the directory; unsuccessful if the directory couldn't be listed. Null if the listing
+     * failed with an exception
+     */
+    public HCPListResponse getListing() {
+      return m_listing;
+    }
+
+    /**
+     * @return the object's entry, or null if this is a failure
+     */
+    public HCPListResponse.ListEntry getEntry() {
+      return m_entry;
+    }
+
+    /**
+     * @return ms from the request for the directory until the entry was read
+     */
+    public long getElapsed() {
+      return m_elapsed;
+    }
+
+    public Exception getError() {
+      return m_error;
+    }
+  }
+
+  protected static final Found END = new Found( null, null, null, 0, null );
+
+  protected final ApacheHttpClient m_client;
+  protected final String m_authorization;
+  protected final ExecutorService m_executor;
+  protected final LogChannelInterface m_log;
+  protected final int m_maxDepth;
+
+  protected final BlockingQueue<Found> m_found;
+  protected final AtomicInteger m_pending = new AtomicInteger();
+  protected final AtomicLong m_directories = new AtomicLong();
+  protected final AtomicLong m_objects = new AtomicLong();
+  protected volatile boolean m_stopped;
+
+  /** Applied to the objects found; directories are always walked into */
+  protected HCPEntryFilter m_filter;
+
+  /**
+   * @param client        the client to list with
+   * @param authorization the authorization header
+   * @param executor      runs the listings; its number of threads sets how many are in flight at once
+   * @param maxDepth      how many levels below the starting directory to descend; negative for no limit
+   * @param queueSize     how many found objects may wait for the consumer
+   * @param log           the log to use
+   */
+  public HCPDirectoryWalker( ApacheHttpClient client, String authorization, ExecutorService executor, int maxDepth,
+      int queueSize, LogChannelInterface log ) {
+    m_client = client;
+    m_authorization = authorization;
+    m_executor = executor;
+    m_maxDepth = maxDepth;
+    m_found = new ArrayBlockingQueue<>( Math.max( 1, queueSize ) );
+    m_log = log;
+  }
+
+  /**
+   * Only pass on the objects the filter accepts. Set before starting the walk
+   *
+   * @param filter the filter; it is set to pass every directory, since they all have to be listed
+   */
+  public void setEntryFilter( HCPEntryFilter filter ) {
+    if ( filter != null ) {
+      filter.setPassDirectories( true );
+    }
+    m_filter = filter;
+  }
+
+  /**
+   * Start walking the tree under the directory
+   *
+   * @param url the URL of the directory, ending with a slash
+   */
+  public void start( String url ) {
+    submit( url, 0 );
+  }
+
+  /**
+   * Wait for the next thing found
+   *
+   * @return an object or failure, or null once the walk is over (or has been stopped)
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Found next() throws InterruptedException {
+    while ( true ) {
+      Found found = m_found.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+      if ( found == END ) {
+        return null;
+      }
+      if ( found != null ) {
+        return found;
+      }
+      if ( m_stopped ) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Abandon the walk. Listings in progress stop at their next entry
+   */
+  public void stop() {
+    m_stopped = true;
+  }
+
+  public long getDirectoryCount() {
+    return m_directories.get();
+  }
+
+  public long getObjectCount() {
+    return m_objects.get();
+  }
+
+  protected void submit( final String url, final int depth ) {
+    m_pending.incrementAndGet();
+    try {
+      m_executor.execute( new Runnable() {
+        @Override public void run() {
+          try {
+            walk( url, depth );
+          } finally {
+            finished();
+          }
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      // shutting down
+      m_stopped = true;
+      finished();
+    }
+  }
+
+  protected void finished() {
+    if ( m_pending.decrementAndGet() == 0 ) {
+      offer( END );
+    }
+  }
+
+  protected void walk( final String url, final int depth ) {
+    if ( m_stopped ) {
+      return;
+    }
+    final long startTime = System.currentTimeMillis();
+    try {
+      HCPListResponse listing = list( url, new HCPEntryHandler() {
+        @Override public boolean entry( HCPListResponse listing, HCPListResponse.ListEntry entry ) {
+          if ( DIRECTORY_TYPE.equals( entry.getType() ) ) {
+            if ( m_maxDepth < 0 || depth < m_maxDepth ) {
+              submit( url + entry.getUrlName() + "/", depth + 1 );
+            }
+          } else if ( OBJECT_TYPE.equals( entry.getType() ) ) {
+            m_objects.incrementAndGet();
+            offer( new Found( url, listing, entry, System.currentTimeMillis() - startTime, null ) );
+          }
+          return !m_stopped;
+        }
+      } );
+      m_directories.incrementAndGet();
+      if ( !listing.getSuccess() ) {
+        offer( new Found( url, listing, null, System.currentTimeMillis() - startTime, null ) );
+      }
+    } catch ( Exception e ) {
+      offer( new Found( url, null, null, System.currentTimeMillis() - startTime, e ) );
+    }
+  }
+
+  /**
+   * List one directory
+   */
+  protected HCPListResponse list( String url, HCPEntryHandler handler ) throws Exception {
+    return HCPConnectionOperationUtils.performList( m_client, url, m_authorization, m_filter, handler, m_log );
+  }
+
+  /**
+   * Queue something for the consumer, waiting for room unless the walk has been stopped
+   */
+  protected void offer( Found found ) {
+    try {
+      while ( !m_found.offer( found, POLL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+        if ( m_stopped ) {
+          return;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      m_stopped = true;
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent record of what has been downloaded: for each local target, the object it was fetched from, the
+ * validators HCP sent with it (ETag, Last-Modified), the version and the size and modification time the target had
+ * once written. A later download of the same object to the same target can then be made conditional, and HCP only
+ * sends the object again if it has changed. A target that has been altered or removed locally is always fetched again.
+ * <p>
+ * Like {@link HCPUploadIndex}, the index is a tab separated text file, read in full when loaded and rewritten in full
+ * when saved. Entries may be added from several threads. Step copies should not share an index file.
+ */
+public class HCPDownloadIndex {
+
+  protected static final String HEADER =
+      "# HCP download index: target\turl\tetag\tlast modified\tversion\tlocal size\tlocal last modified";
+  protected static final String SEPARATOR = "\t";
+
+  protected final String m_filename;
+  protected final Map<String, Entry> m_entries = new ConcurrentHashMap<>();
+  protected volatile boolean m_changed;
+
+  public HCPDownloadIndex( String filename ) {
+    m_filename = filename;
+  }
+
+  public String getFilename() {
+    return m_filename;
+  }
+
+  /**
+   * Read the index file. A missing file just means an empty index.
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be read
+   */
+  public void load() throws KettleFileException, IOException {
+    m_entries.clear();
+    if ( !KettleVFS.fileExists( m_filename ) ) {
+      return;
+    }
+
+    BufferedReader reader =
+        new BufferedReader( new InputStreamReader( KettleVFS.getInputStream( m_filename ), Const.XML_ENCODING ) );
+    try {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        if ( line.length() == 0 || line.startsWith( "#" ) ) {
+          continue;
+        }
+        String[] parts = line.split( SEPARATOR, -1 );
+        if ( parts.length < 7 ) {
+          continue;
+        }
+        try {
+          m_entries.put( parts[0],
+              new Entry( parts[1], emptyToNull( parts[2] ), emptyToNull( parts[3] ), emptyToNull( parts[4] ),
+                  Long.parseLong( parts[5] ), Long.parseLong( parts[6] ) ) );
+        } catch ( NumberFormatException e ) {
+          // skip damaged lines
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    m_changed = false;
+  }
+
+  /**
+   * Write the index file if anything changed since it was loaded. The file is written alongside and then moved into
+   * place, so a failure part way through doesn't lose the previous index.
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be written
+   */
+  public void save() throws KettleFileException, IOException {
+    if ( !m_changed ) {
+      return;
+    }
+
+    String tempFilename = m_filename + ".tmp";
+    BufferedWriter writer =
+        new BufferedWriter(
+            new OutputStreamWriter( KettleVFS.getOutputStream( tempFilename, false ), Const.XML_ENCODING ) );
+    try {
+      writer.write( HEADER );
+      writer.newLine();
+      for ( Map.Entry<String, Entry> e : m_entries.entrySet() ) {
+        Entry entry = e.getValue();
+        writer.write( e.getKey() + SEPARATOR + entry.getUrl() + SEPARATOR + Const.NVL( entry.getETag(), "" )
+            + SEPARATOR + Const.NVL( entry.getLastModified(), "" ) + SEPARATOR + Const.NVL( entry.getVersionId(), "" )
+            + SEPARATOR + entry.getLocalSize() + SEPARATOR + entry.getLocalLastModified() );
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+
+    FileObject target = KettleVFS.getFileObject( m_filename );
+    if ( target.exists() ) {
+      target.delete();
+    }
+    KettleVFS.getFileObject( tempFilename ).moveTo( target );
+    m_changed = false;
+  }
+
+  /**
+   * Look up the last download of an object to a target
+   *
+   * @param url        the URL of the object
+   * @param targetPath the local target
+   * @return the entry, or null if the target wasn't downloaded from this URL or no longer holds what was downloaded
+   * @throws KettleFileException if the target can't be resolved
+   * @throws IOException         if the target can't be examined
+   */
+  public Entry getCurrent( String url, String targetPath ) throws KettleFileException, IOException {
+    Entry entry = m_entries.get( targetPath );
+    if ( entry == null || !entry.getUrl().equals( url ) ) {
+      return null;
+    }
+
+    FileObject target = KettleVFS.getFileObject( targetPath );
+    if ( !target.exists() || target.getContent().getSize() != entry.getLocalSize()
+        || target.getContent().getLastModifiedTime() != entry.getLocalLastModified() ) {
+      return null;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Record a completed download. Nothing is recorded if HCP sent no validators.
+   *
+   * @param url        the URL of the object
+   * @param targetPath the local target, as written
+   * @param response   the response to the download
+   * @throws KettleFileException if the target can't be resolved
+   * @throws IOException         if the target can't be examined
+   */
+  public void downloaded( String url, String targetPath, HCPReadResponse response )
+      throws KettleFileException, IOException {
+    if ( response.getETag() == null && response.getLastModified() == null ) {
+      m_entries.remove( targetPath );
+      m_changed = true;
+      return;
+    }
+
+    FileObject target = KettleVFS.getFileObject( targetPath );
+    m_entries.put( targetPath,
+        new Entry( url, response.getETag(), response.getLastModified(), response.getVersionId(),
+            target.getContent().getSize(), target.getContent().getLastModifiedTime() ) );
+    m_changed = true;
+  }
+
+  public int size() {
+    return m_entries.size();
+  }
+
+  protected static String emptyToNull( String value ) {
+    return value.length() == 0 ? null : value;
+  }
+
+  /**
+   * The object a target was downloaded from, and the state of the target afterwards
+   */
+  public static class Entry {
+    protected final String m_url;
+    protected final String m_etag;
+    protected final String m_lastModified;
+    protected final String m_versionId;
+    protected final long m_localSize;
+    protected final long m_localLastModified;
+
+    /**
+     * @param url               the URL of the object
+     * @param etag              the ETag HCP sent (may be null)
+     * @param lastModified      the Last-Modified HCP sent (may be null)
+     * @param versionId         the version downloaded (may be null)
+     * @param localSize         the size of the target once written
+     * @param localLastModified the modification time of the target once written
+     */
+    public Entry( String url, String etag, String lastModified, String versionId, long localSize,
+        long localLastModified ) {
+      m_url = url;
+      m_etag = etag;
+      m_lastModified = lastModified;
+      m_versionId = versionId;
+      m_localSize = localSize;
+      m_localLastModified = localLastModified;
+    }
+
+    public String getUrl() {
+      return m_url;
+    }
+
+    public String getETag() {
+      return m_etag;
+    }
+
+    public String getLastModified() {
+      return m_lastModified;
+    }
+
+    public String getVersionId() {
+      return m_versionId;
+    }
+
+    public long getLocalSize() {
+      return m_localSize;
+    }
+
+    public long getLocalLastModified() {
+      return m_localLastModified;
+    }
+  }
+}
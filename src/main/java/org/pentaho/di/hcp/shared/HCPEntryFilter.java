@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import javax.xml.stream.XMLStreamReader;
+import java.util.regex.Pattern;
+
+/**
+ * Predicates on directory listing entries, checked against the attributes of each entry element while the listing is
+ * parsed. Entries that don't match are skipped there and then, without building a ListEntry or an output row. The
+ * attributes are looked at from the cheapest check to the dearest (type, size, change time, then name), and only as
+ * far as the first one that fails.
+ */
+public class HCPEntryFilter {
+
+  protected Pattern m_namePattern;
+  protected String m_type;
+  protected Long m_minSize;
+  protected Long m_maxSize;
+  protected Long m_changedFrom;
+  protected Long m_changedTo;
+
+  /** Let every directory through, whatever the other predicates say (e.g. to walk down into it) */
+  protected boolean m_passDirectories;
+
+  /**
+   * Turn a file name glob into a regular expression. * matches any run of characters and ? any single one; everything
+   * else matches itself
+   *
+   * @param glob the glob
+   * @return the equivalent regular expression
+   */
+  public static String globToRegex( String glob ) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for ( int i = 0; i < glob.length(); i++ ) {
+      char c = glob.charAt( i );
+      if ( c == '*' || c == '?' ) {
+        if ( literal.length() > 0 ) {
+          regex.append( Pattern.quote( literal.toString() ) );
+          literal.setLength( 0 );
+        }
+        regex.append( c == '*' ? ".*" : "." );
+      } else {
+        literal.append( c );
+      }
+    }
+    if ( literal.length() > 0 ) {
+      regex.append( Pattern.quote( literal.toString() ) );
+    }
+    return regex.toString();
+  }
+
+  /**
+   * Only entries whose (UTF-8) name matches
+   *
+   * @param pattern a glob, or a regular expression if regex is true; null or empty for any name
+   * @param regex   true if the pattern is a regular expression
+   */
+  public void setNamePattern( String pattern, boolean regex ) {
+    if ( pattern == null || pattern.length() == 0 ) {
+      m_namePattern = null;
+    } else {
+      m_namePattern = Pattern.compile( regex ? pattern : globToRegex( pattern ) );
+    }
+  }
+
+  public Pattern getNamePattern() {
+    return m_namePattern;
+  }
+
+  /**
+   * Only entries of this type (object or directory); null or empty for both
+   */
+  public void setType( String type ) {
+    m_type = type == null || type.length() == 0 ? null : type;
+  }
+
+  public String getType() {
+    return m_type;
+  }
+
+  /**
+   * Only objects of at least this many bytes; null for no lower bound
+   */
+  public void setMinSize( Long minSize ) {
+    m_minSize = minSize;
+  }
+
+  /**
+   * Only objects of at most this many bytes; null for no upper bound
+   */
+  public void setMaxSize( Long maxSize ) {
+    m_maxSize = maxSize;
+  }
+
+  /**
+   * Only entries changed at or after this time (ms since the epoch); null for no lower bound
+   */
+  public void setChangedFrom( Long changedFrom ) {
+    m_changedFrom = changedFrom;
+  }
+
+  /**
+   * Only entries changed before this time (ms since the epoch); null for no upper bound
+   */
+  public void setChangedTo( Long changedTo ) {
+    m_changedTo = changedTo;
+  }
+
+  public void setPassDirectories( boolean passDirectories ) {
+    m_passDirectories = passDirectories;
+  }
+
+  public boolean isPassDirectories() {
+    return m_passDirectories;
+  }
+
+  /**
+   * @return true if there is nothing to check - every entry would be let through
+   */
+  public boolean isEmpty() {
+    return m_namePattern == null && m_type == null && m_minSize == null && m_maxSize == null
+        && m_changedFrom == null && m_changedTo == null;
+  }
+
+  /**
+   * Check the entry element the reader is positioned on
+   *
+   * @param reader the reader, at the start of an entry element
+   * @return true if the entry should be kept
+   */
+  public boolean accept( XMLStreamReader reader ) {
+    String type = reader.getAttributeValue( null, HCPListResponse.ListEntry.TYPE_TAG );
+    if ( m_passDirectories && HCPDirectoryWalker.DIRECTORY_TYPE.equals( type ) ) {
+      return true;
+    }
+    if ( m_type != null && !m_type.equals( type ) ) {
+      return false;
+    }
+    if ( ( m_minSize != null || m_maxSize != null )
+        && !inRange( reader.getAttributeValue( null, HCPListResponse.ListEntry.SIZE_TAG ), m_minSize, m_maxSize ) ) {
+      return false;
+    }
+    if ( ( m_changedFrom != null || m_changedTo != null ) && !inRange(
+        reader.getAttributeValue( null, HCPListResponse.ListEntry.CHANGE_TIME_TAG ), m_changedFrom,
+        m_changedTo == null ? null : m_changedTo - 1 ) ) {
+      return false;
+    }
+    if ( m_namePattern != null ) {
+      String name = reader.getAttributeValue( null, HCPListResponse.ListEntry.UTF8_NAME_TAG );
+      return name != null && m_namePattern.matcher( name ).matches();
+    }
+    return true;
+  }
+
+  /**
+   * @return true if value is a number between from and to (inclusive); false if it is missing or not a number
+   */
+  protected static boolean inRange( String value, Long from, Long to ) {
+    if ( value == null || value.length() == 0 ) {
+      return false;
+    }
+    long number;
+    try {
+      number = Long.parseLong( value );
+    } catch ( NumberFormatException e ) {
+      return false;
+    }
+    return ( from == null || number >= from ) && ( to == null || number <= to );
+  }
+}
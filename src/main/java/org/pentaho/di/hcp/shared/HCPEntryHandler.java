@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Consumes the entries of a directory listing one at a time, while the listing is still being read - see
+ * {@link HCPConnectionOperationUtils#performList(com.sun.jersey.client.apache.ApacheHttpClient, String, String,
+ * HCPEntryHandler, org.pentaho.di.core.logging.LogChannelInterface)}
+ */
+public interface HCPEntryHandler {
+
+  /**
+   * Handle an entry of the listing
+   *
+   * @param listing the listing, with its status and the directory's attributes filled in
+   * @param entry   the entry just read
+   * @return true to carry on; false to stop reading the listing, in which case the rest of it is abandoned
+   * @throws KettleException if a problem occurs handling the entry
+   */
+  boolean entry( HCPListResponse listing, HCPListResponse.ListEntry entry ) throws KettleException;
+}
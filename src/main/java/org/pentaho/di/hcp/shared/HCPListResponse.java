@@ -23,21 +23,17 @@
 
 package org.pentaho.di.hcp.shared;
 
+import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettlePluginException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -70,6 +66,21 @@ public class HCPListResponse extends BaseHCPResponse {
 
   protected List<ListEntry> m_entries = new ArrayList<>();
 
+  /** Takes the entries as they are read, instead of them being kept in m_entries */
+  protected HCPEntryHandler m_entryHandler;
+
+  /** Entries it rejects are skipped as they are parsed; null to keep them all */
+  protected HCPEntryFilter m_entryFilter;
+
+  protected static final XMLInputFactory s_inputFactory;
+
+  static {
+    s_inputFactory = XMLInputFactory.newInstance();
+    // listings have no DTD, and nothing outside them should be read
+    s_inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    s_inputFactory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+  }
+
   public HCPListResponse() {
 
   }
@@ -78,37 +89,87 @@ public class HCPListResponse extends BaseHCPResponse {
     super( status, explanation );
   }
 
-  public void processListResult( InputStream is ) throws IOException, SAXException, ParserConfigurationException {
-    // parse all the stuff out of the XML response
-    DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-    DocumentBuilder builder = dbFactory.newDocumentBuilder();
-    Document doc = builder.parse( is );
-
-    doc.getDocumentElement().normalize();
-    Element dir = doc.getDocumentElement();
-
-    m_path = dir.getAttribute( PATH_TAG );
-    m_utf8Path = dir.getAttribute( UTF8_PATH_TAG );
-    m_parentDir = dir.getAttribute( PARENT_DIR_TAG );
-    m_utf8ParentDir = dir.getAttribute( UTF8_PARENT_DIR_TAG );
-    String deleted = dir.getAttribute( DIR_DELETED_TAG );
-    if ( deleted != null ) {
-      m_dirDeleted = deleted.equalsIgnoreCase( "true" );
-    }
-    deleted = dir.getAttribute( SHOW_DELETED_TAG );
-    if ( deleted != null ) {
-      m_showDeleted = deleted.equalsIgnoreCase( "true" );
-    }
-    m_namespaceName = dir.getAttribute( NAMESPACE_NAME_TAG );
-    m_utf8NamespaceName = dir.getAttribute( UTF8_NAMESPACE_NAME_TAG );
-
-    NodeList nodeList = doc.getElementsByTagName( ENTRY_TAG );
-    for ( int i = 0; i < nodeList.getLength(); i++ ) {
-      Node node = nodeList.item( i );
-      if ( node.getNodeType() == 1 ) {
-        m_entries.add( ListEntry.createEntry( (Element) node ) );
+  public void setEntryHandler( HCPEntryHandler entryHandler ) {
+    m_entryHandler = entryHandler;
+  }
+
+  public HCPEntryHandler getEntryHandler() {
+    return m_entryHandler;
+  }
+
+  public void setEntryFilter( HCPEntryFilter entryFilter ) {
+    m_entryFilter = entryFilter;
+  }
+
+  public HCPEntryFilter getEntryFilter() {
+    return m_entryFilter;
+  }
+
+  /**
+   * Read a directory listing. The XML is parsed as it streams in, each entry element being handed to
+   * {@link #addEntry(ListEntry)} as soon as it has been read, so no document tree is built however big the directory
+   * is.
+   *
+   * @return true if the whole listing was read; false if the entry handler stopped early
+   */
+  public boolean processListResult( InputStream is ) throws XMLStreamException, KettleException {
+    XMLStreamReader reader = s_inputFactory.createXMLStreamReader( is );
+    try {
+      boolean root = true;
+      while ( reader.hasNext() ) {
+        if ( reader.next() != XMLStreamConstants.START_ELEMENT ) {
+          continue;
+        }
+        if ( root ) {
+          root = false;
+          m_path = attribute( reader, PATH_TAG );
+          m_utf8Path = attribute( reader, UTF8_PATH_TAG );
+          m_parentDir = attribute( reader, PARENT_DIR_TAG );
+          m_utf8ParentDir = attribute( reader, UTF8_PARENT_DIR_TAG );
+          m_dirDeleted = attribute( reader, DIR_DELETED_TAG ).equalsIgnoreCase( "true" );
+          m_showDeleted = attribute( reader, SHOW_DELETED_TAG ).equalsIgnoreCase( "true" );
+          m_namespaceName = attribute( reader, NAMESPACE_NAME_TAG );
+          m_utf8NamespaceName = attribute( reader, UTF8_NAMESPACE_NAME_TAG );
+        } else if ( ENTRY_TAG.equals( reader.getLocalName() ) ) {
+          if ( m_entryFilter != null && !m_entryFilter.accept( reader ) ) {
+            // before anything is built for it
+            continue;
+          }
+          if ( !addEntry( ListEntry.createEntry( reader ) ) ) {
+            return false;
+          }
+        }
       }
+    } finally {
+      reader.close();
+    }
+    return true;
+  }
+
+  /**
+   * Called for each entry of the listing as it is parsed. Passes it to the entry handler if there is one, otherwise
+   * keeps it in the list of entries
+   *
+   * @return false to stop reading the listing
+   */
+  protected boolean addEntry( ListEntry entry ) throws KettleException {
+    if ( m_entryHandler != null ) {
+      return m_entryHandler.entry( this, entry );
     }
+    m_entries.add( entry );
+    return true;
+  }
+
+  /**
+   * @return the value of the named attribute of the current element, or an empty string if it isn't there
+   */
+  protected static String attribute( XMLStreamReader reader, String name ) {
+    String value = reader.getAttributeValue( null, name );
+    return value == null ? "" : value;
+  }
+
+  public List<ListEntry> getEntries() {
+    return m_entries;
   }
 
   public static void addListFieldMetadata( RowMetaInterface rowMeta ) throws KettlePluginException {
@@ -126,28 +187,40 @@ public class HCPListResponse extends BaseHCPResponse {
   public List<Object[]> populateKettleRows( RowMetaInterface outputRowMeta, Object[] outputRow ) {
     List<Object[]> outputRows = new ArrayList<>();
     super.populateKettleRow( outputRowMeta, outputRow );
-    int baseIndex = outputRowMeta.indexOfValue( PATH_TAG );
-    if ( baseIndex >= 0 ) {
+    if ( outputRowMeta.indexOfValue( PATH_TAG ) >= 0 ) {
       for ( ListEntry le : m_entries ) {
-        int bIndex = baseIndex;
-        Object[] rowCopy = RowDataUtil.createResizedCopy( outputRow, outputRowMeta.size() );
-        rowCopy[bIndex++] = m_path;
-        rowCopy[bIndex++] = m_utf8Path;
-        rowCopy[bIndex++] = m_parentDir;
-        rowCopy[bIndex++] = m_utf8ParentDir;
-        rowCopy[bIndex++] = m_dirDeleted;
-        rowCopy[bIndex++] = m_showDeleted;
-        rowCopy[bIndex++] = m_namespaceName;
-        rowCopy[bIndex] = m_utf8NamespaceName;
-
-        le.populateKettleRow( outputRowMeta, rowCopy );
-        outputRows.add( rowCopy );
+        outputRows.add( createEntryRow( outputRowMeta, outputRow, le ) );
       }
     }
 
     return outputRows;
   }
 
+  /**
+   * Create the output row for one entry of the listing
+   *
+   * @param outputRowMeta the output row structure
+   * @param outputRow     the row to copy, already holding the response fields
+   * @param le            the entry
+   * @return a copy of outputRow with the directory and entry fields filled in
+   */
+  public Object[] createEntryRow( RowMetaInterface outputRowMeta, Object[] outputRow, ListEntry le ) {
+    Object[] rowCopy = RowDataUtil.createResizedCopy( outputRow, outputRowMeta.size() );
+    int bIndex = outputRowMeta.indexOfValue( PATH_TAG );
+    if ( bIndex >= 0 ) {
+      rowCopy[bIndex++] = m_path;
+      rowCopy[bIndex++] = m_utf8Path;
+      rowCopy[bIndex++] = m_parentDir;
+      rowCopy[bIndex++] = m_utf8ParentDir;
+      rowCopy[bIndex++] = m_dirDeleted;
+      rowCopy[bIndex++] = m_showDeleted;
+      rowCopy[bIndex++] = m_namespaceName;
+      rowCopy[bIndex] = m_utf8NamespaceName;
+    }
+    le.populateKettleRow( outputRowMeta, rowCopy );
+    return rowCopy;
+  }
+
   public static class ListEntry {
 
     public static final String URL_NAME_TAG = "urlName";
@@ -238,81 +311,115 @@ public class HCPListResponse extends BaseHCPResponse {
       rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( HAS_ACL_TAG, ValueMetaInterface.TYPE_BOOLEAN ) );
     }
 
-    public static ListEntry createEntry( Element element ) {
+    public static ListEntry createEntry( XMLStreamReader reader ) {
       ListEntry entry = new ListEntry();
 
-      entry.m_urlName = element.getAttribute( URL_NAME_TAG );
-      entry.m_utf8Name = element.getAttribute( UTF8_NAME_TAG );
-      entry.m_type = element.getAttribute( TYPE_TAG );
+      entry.m_urlName = attribute( reader, URL_NAME_TAG );
+      entry.m_utf8Name = attribute( reader, UTF8_NAME_TAG );
+      entry.m_type = attribute( reader, TYPE_TAG );
       try {
-        entry.m_size = Long.parseLong( element.getAttribute( SIZE_TAG ) );
+        entry.m_size = Long.parseLong( attribute( reader, SIZE_TAG ) );
       } catch ( NumberFormatException e ) {
         // ignore
       }
-      entry.m_hashScheme = element.getAttribute( HASH_SCHEME_TAG );
-      entry.m_hash = element.getAttribute( HASH_TAG );
+      entry.m_hashScheme = attribute( reader, HASH_SCHEME_TAG );
+      entry.m_hash = attribute( reader, HASH_TAG );
       try {
-        entry.m_retention = Long.parseLong( element.getAttribute( RETENTION_TAG ) );
+        entry.m_retention = Long.parseLong( attribute( reader, RETENTION_TAG ) );
       } catch ( NumberFormatException e ) {
         // ignore
       }
-      entry.m_retentionString = element.getAttribute( RETENTION_STRING_TAG );
-      entry.m_retentionClass = element.getAttribute( RETENTION_CLASS_TAG );
+      entry.m_retentionString = attribute( reader, RETENTION_STRING_TAG );
+      entry.m_retentionClass = attribute( reader, RETENTION_CLASS_TAG );
       try {
-        entry.m_ingestTime = Long.parseLong( element.getAttribute( INGEST_TIME_TAG ) );
+        entry.m_ingestTime = Long.parseLong( attribute( reader, INGEST_TIME_TAG ) );
       } catch ( NumberFormatException e ) {
         // ignore
       }
-      entry.m_ingestTimeString = element.getAttribute( INGEST_TIME_STRING );
-      String val = element.getAttribute( HOLD_TAG );
-      if ( val != null ) {
-        entry.m_hold = val.equalsIgnoreCase( "true" );
-      }
-      val = element.getAttribute( SHRED_TAG );
-      if ( val != null ) {
-        entry.m_shred = val.equalsIgnoreCase( "true" );
-      }
-      entry.m_dpl = element.getAttribute( DPL_TAG );
-      val = element.getAttribute( INDEX_TAG );
-      if ( val != null ) {
-        entry.m_indexed = val.equalsIgnoreCase( "true" );
-      }
-      val = element.getAttribute( CUSTOM_METADATA_TAG );
-      if ( val != null ) {
-        entry.m_customMetadata = val.equalsIgnoreCase( "true" );
-      }
-      entry.m_version = element.getAttribute( VERSION_TAG );
-      entry.m_state = element.getAttribute( STATE_TAG );
-      entry.m_etag = element.getAttribute( ETAG_TAG );
+      entry.m_ingestTimeString = attribute( reader, INGEST_TIME_STRING );
+      entry.m_hold = "true".equalsIgnoreCase( attribute( reader, HOLD_TAG ) );
+      entry.m_shred = "true".equalsIgnoreCase( attribute( reader, SHRED_TAG ) );
+      entry.m_dpl = attribute( reader, DPL_TAG );
+      entry.m_indexed = "true".equalsIgnoreCase( attribute( reader, INDEX_TAG ) );
+      entry.m_customMetadata = "true".equalsIgnoreCase( attribute( reader, CUSTOM_METADATA_TAG ) );
+      entry.m_version = attribute( reader, VERSION_TAG );
+      entry.m_state = attribute( reader, STATE_TAG );
+      entry.m_etag = attribute( reader, ETAG_TAG );
       try {
-        entry.m_versionCreateTime = Long.parseLong( element.getAttribute( VERSION_CREATE_TIME_TAG ) );
+        entry.m_versionCreateTime = Long.parseLong( attribute( reader, VERSION_CREATE_TIME_TAG ) );
       } catch ( NumberFormatException e ) {
         // ignore
       }
-      val = element.getAttribute( CUSTOM_METADATA_ANNOTATIONS_TAG );
-      if ( val != null ) {
-        entry.m_customMetadataAnnotations = val.equalsIgnoreCase( "true" );
-      }
-      val = element.getAttribute( REPLICATED_TAG );
-      if ( val != null ) {
-        entry.m_replicated = val.equalsIgnoreCase( "true" );
-      }
+      entry.m_customMetadataAnnotations =
+          "true".equalsIgnoreCase( attribute( reader, CUSTOM_METADATA_ANNOTATIONS_TAG ) );
+      entry.m_replicated = "true".equalsIgnoreCase( attribute( reader, REPLICATED_TAG ) );
       try {
-        entry.m_changeTime = Long.parseLong( element.getAttribute( CHANGE_TIME_TAG ) );
+        String changeTime = attribute( reader, CHANGE_TIME_TAG );
+        // query results add a fraction (1334326011081.00) to tell apart changes made in the same millisecond
+        int dot = changeTime.indexOf( '.' );
+        entry.m_changeTime = Long.parseLong( dot < 0 ? changeTime : changeTime.substring( 0, dot ) );
       } catch ( NumberFormatException e ) {
         // ignore
       }
-      entry.m_changeTimeString = element.getAttribute( CHANGE_TIME_STRING );
-      entry.m_owner = element.getAttribute( OWNER_TAG );
-      entry.m_domain = element.getAttribute( DOMAIN_TAG );
-      val = element.getAttribute( HAS_ACL_TAG );
-      if ( val != null ) {
-        entry.m_hasAcl = val.equalsIgnoreCase( "true" );
-      }
+      entry.m_changeTimeString = attribute( reader, CHANGE_TIME_STRING );
+      entry.m_owner = attribute( reader, OWNER_TAG );
+      entry.m_domain = attribute( reader, DOMAIN_TAG );
+      entry.m_hasAcl = "true".equalsIgnoreCase( attribute( reader, HAS_ACL_TAG ) );
 
       return entry;
     }
 
+    public String getUrlName() {
+      return m_urlName;
+    }
+
+    public String getUtf8Name() {
+      return m_utf8Name;
+    }
+
+    public String getType() {
+      return m_type;
+    }
+
+    /**
+     * Convert to the system metadata a HEAD request for the object would return. Listings don't carry the custom
+     * metadata annotation names or replication collision flag, so those are left empty
+     */
+    public HCPReadResponse toReadResponse() {
+      HCPReadResponse response = new HCPReadResponse();
+      response.setStatus( Status.OK );
+      response.setExplanation( "From directory listing" );
+      response.setType( m_type );
+      response.setSize( m_size );
+      response.setContentLength( m_size );
+      response.setVersionId( m_version );
+      response.setIngestTime( m_ingestTime );
+      response.setRetentionClass( m_retentionClass );
+      response.setRetentionString( m_retentionString );
+      response.setRetention( m_retention );
+      response.setRetentionHold( m_hold );
+      response.setShred( m_shred );
+      try {
+        response.setDpl( Long.parseLong( m_dpl ) );
+      } catch ( NumberFormatException e ) {
+        // ignore
+      }
+      response.setIndexed( m_indexed );
+      response.setCustomMetadata( m_customMetadata );
+      response.setOwner( m_owner );
+      response.setDomain( m_domain );
+      response.setReplicated( m_replicated );
+      response.setChangeTimeString( m_changeTimeString );
+      if ( m_hash != null && m_hash.length() > 0 ) {
+        // same form as the X-HCP-Hash header
+        response.setHCPHash( m_hashScheme + " " + m_hash );
+      }
+      if ( m_etag != null && m_etag.length() > 0 ) {
+        response.setETag( m_etag );
+      }
+      return response;
+    }
+
     public void populateKettleRow( RowMetaInterface outputRowMeta, Object[] outputRow ) {
       int baseIndex = outputRowMeta.indexOfValue( URL_NAME_TAG );
       if ( baseIndex >= 0 ) {
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides when the system metadata of a batch of objects is cheaper to get from listings of their directories than
+ * from a HEAD per object. Listing a directory costs one request plus the transfer of an entry for everything in it,
+ * whether it was asked for or not; an entry is much cheaper than a round trip, so a listing pays off once enough of
+ * the batch is in the same directory. The size of a directory isn't known until it has been listed, so the first
+ * listing of a directory goes ahead on the object count alone and later batches also weigh up how big it turned out
+ * to be.
+ */
+public class HCPListingPlanner {
+
+  /** Roughly how many listing entries cost as much as one HEAD request */
+  public static final int ENTRIES_PER_REQUEST = 100;
+
+  protected final int m_minObjects;
+
+  /** Number of entries in the directories listed so far */
+  protected final Map<String, Integer> m_directorySizes = new HashMap<>();
+
+  /**
+   * @param minObjects the fewest objects in one directory worth listing it for
+   */
+  public HCPListingPlanner( int minObjects ) {
+    m_minObjects = Math.max( 1, minObjects );
+  }
+
+  /**
+   * @return the URL of the directory holding the object at the given URL, or null if it has no parent
+   */
+  public static String getParent( String url ) {
+    int slash = url.lastIndexOf( '/' );
+    int scheme = url.indexOf( "://" );
+    if ( slash < 0 || ( scheme >= 0 && slash < scheme + 3 ) ) {
+      return null;
+    }
+    return url.substring( 0, slash );
+  }
+
+  /**
+   * @return the name of the object at the given URL within its directory
+   */
+  public static String getName( String url ) {
+    return url.substring( url.lastIndexOf( '/' ) + 1 );
+  }
+
+  /**
+   * Work out which directories to list for a batch of object URLs
+   *
+   * @param urls the objects to look up
+   * @return the directories to list, each with the positions in urls of the objects it should answer for, in order of
+   * first appearance. Objects not covered need a HEAD of their own
+   */
+  public Map<String, List<Integer>> plan( List<String> urls ) {
+    Map<String, List<Integer>> byDirectory = new LinkedHashMap<>();
+    for ( int i = 0; i < urls.size(); i++ ) {
+      String parent = getParent( urls.get( i ) );
+      if ( parent == null ) {
+        continue;
+      }
+      List<Integer> positions = byDirectory.get( parent );
+      if ( positions == null ) {
+        positions = new ArrayList<>();
+        byDirectory.put( parent, positions );
+      }
+      positions.add( i );
+    }
+
+    Iterator<Map.Entry<String, List<Integer>>> i = byDirectory.entrySet().iterator();
+    while ( i.hasNext() ) {
+      Map.Entry<String, List<Integer>> directory = i.next();
+      if ( !isWorthListing( directory.getKey(), directory.getValue().size() ) ) {
+        i.remove();
+      }
+    }
+    return byDirectory;
+  }
+
+  /**
+   * @return true if listing the directory is expected to be cheaper than a HEAD for each of the given number of
+   * objects in it
+   */
+  public synchronized boolean isWorthListing( String directory, int objects ) {
+    if ( objects < m_minObjects ) {
+      return false;
+    }
+    Integer size = m_directorySizes.get( directory );
+    // one request plus the entries, against a request per object
+    return size == null || 1 + (long) size / ENTRIES_PER_REQUEST <= objects;
+  }
+
+  /**
+   * Note the number of entries a listing of the directory returned
+   */
+  public synchronized void listed( String directory, int entries ) {
+    m_directorySizes.put( directory, entries );
+  }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.variables.VariableSpace;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory cache of system metadata (the responses to HEAD requests), keyed by object URL and bounded by number of
+ * entries, least recently used going first. Callers say how old an entry may be when they look it up. The write
+ * operations in {@link HCPConnectionOperationUtils} invalidate the entry for the object they change, so steps in the
+ * same JVM that put, delete or annotate an object never see its old metadata here (changes made elsewhere are only
+ * seen once entries expire). A HEAD that was already in flight when its object was invalidated may carry the old
+ * metadata, so callers take the {@link #getGeneration() generation} before sending it and hand it to
+ * {@link #put(String, HCPReadResponse, long)}, which drops the response if the object was invalidated since.
+ * <p>
+ * Responses are copied going in and coming out, so callers are free to change them. The number of entries can be set
+ * with the HCP_METADATA_CACHE_SIZE variable.
+ */
+public class HCPMetadataCache {
+
+  public static final String VAR_MAX_ENTRIES = "HCP_METADATA_CACHE_SIZE";
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  protected static final HCPMetadataCache s_instance = new HCPMetadataCache( DEFAULT_MAX_ENTRIES );
+
+  protected final LinkedHashMap<String, Cached> m_entries = new LinkedHashMap<>( 16, 0.75f, true );
+  protected int m_maxEntries;
+
+  /** Counts invalidations */
+  protected long m_generation;
+  /** The generation at which each recently invalidated object was last invalidated, oldest first */
+  protected final LinkedHashMap<String, Long> m_invalidated = new LinkedHashMap<>();
+  /** The latest generation forgotten from m_invalidated; older puts can't be checked, so they are dropped */
+  protected long m_forgottenGeneration = -1;
+
+  public static HCPMetadataCache getInstance() {
+    return s_instance;
+  }
+
+  public HCPMetadataCache( int maxEntries ) {
+    m_maxEntries = maxEntries;
+  }
+
+  /**
+   * Set the size of the cache from the HCP_METADATA_CACHE_SIZE variable, if it is set
+   */
+  public void configure( VariableSpace space ) {
+    setMaxEntries( Const.toInt( space.environmentSubstitute( "${" + VAR_MAX_ENTRIES + "}" ), m_maxEntries ) );
+  }
+
+  public synchronized void setMaxEntries( int maxEntries ) {
+    m_maxEntries = Math.max( 0, maxEntries );
+    trim();
+  }
+
+  public synchronized int getMaxEntries() {
+    return m_maxEntries;
+  }
+
+  public synchronized int size() {
+    return m_entries.size();
+  }
+
+  /**
+   * Look up the metadata of an object
+   *
+   * @param url        the URL of the object
+   * @param maxAgeMillis how old the metadata may be
+   * @return the metadata, or null if it isn't cached or is too old
+   */
+  public synchronized HCPReadResponse get( String url, long maxAgeMillis ) {
+    String key = url.trim();
+    Cached cached = m_entries.get( key );
+    if ( cached == null ) {
+      return null;
+    }
+    if ( currentTimeMillis() - cached.m_time > maxAgeMillis ) {
+      m_entries.remove( key );
+      return null;
+    }
+    return cached.m_response.copy();
+  }
+
+  /**
+   * @return the current generation, to be taken before asking HCP for metadata that is to be put in the cache
+   */
+  public synchronized long getGeneration() {
+    return m_generation;
+  }
+
+  /**
+   * Add the metadata of an object. Only successful responses are kept, and only if the object hasn't been invalidated
+   * since the generation was taken.
+   *
+   * @param url        the URL of the object
+   * @param response   the response to a HEAD request for it
+   * @param generation the {@link #getGeneration() generation} from before the request was sent
+   */
+  public synchronized void put( String url, HCPReadResponse response, long generation ) {
+    if ( response.getStatus() != BaseHCPResponse.Status.OK || m_maxEntries == 0 ) {
+      return;
+    }
+    String key = url.trim();
+    Long invalidated = m_invalidated.get( key );
+    if ( generation <= m_forgottenGeneration || ( invalidated != null && invalidated > generation ) ) {
+      // the response may predate a change
+      return;
+    }
+    m_entries.put( key, new Cached( response.copy(), currentTimeMillis() ) );
+    trim();
+  }
+
+  /**
+   * Forget an object that has changed. Any query (e.g. ?type=custom-metadata) is dropped from the URL first, as
+   * metadata is cached for the object itself.
+   *
+   * @param url the URL that was written to
+   */
+  public synchronized void invalidate( String url ) {
+    String key = url.trim();
+    int query = key.indexOf( '?' );
+    if ( query >= 0 ) {
+      key = key.substring( 0, query );
+    }
+    m_entries.remove( key );
+
+    // keep the record in insertion order, so the oldest is forgotten first
+    m_generation++;
+    m_invalidated.remove( key );
+    m_invalidated.put( key, m_generation );
+    Iterator<Map.Entry<String, Long>> iterator = m_invalidated.entrySet().iterator();
+    while ( m_invalidated.size() > Math.max( 1, m_maxEntries ) ) {
+      m_forgottenGeneration = iterator.next().getValue();
+      iterator.remove();
+    }
+  }
+
+  public synchronized void clear() {
+    m_entries.clear();
+  }
+
+  protected void trim() {
+    Iterator<Map.Entry<String, Cached>> iterator = m_entries.entrySet().iterator();
+    while ( m_entries.size() > m_maxEntries && iterator.hasNext() ) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  protected static class Cached {
+    protected final HCPReadResponse m_response;
+    protected final long m_time;
+
+    protected Cached( HCPReadResponse response, long time ) {
+      m_response = response;
+      m_time = time;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Namespace-level settings, as reported by the tenant's /proc resource. Only the settings that change how the steps
+ * talk to HCP are kept. Any of them may be null when the namespace could not be looked up (e.g. the user lacks
+ * browse permission on /proc).
+ */
+public class HCPNamespaceInfo {
+
+  public static final String NAMESPACE_TAG = "namespace";
+  public static final String NAME_TAG = "name";
+  public static final String VERSIONING_ENABLED_TAG = "versioningEnabled";
+  public static final String HASH_SCHEME_TAG = "hashScheme";
+
+  protected String m_name;
+  protected Boolean m_versioningEnabled;
+  protected String m_hashScheme;
+
+  public HCPNamespaceInfo( String name ) {
+    m_name = name;
+  }
+
+  public String getName() {
+    return m_name;
+  }
+
+  public Boolean getVersioningEnabled() {
+    return m_versioningEnabled;
+  }
+
+  public void setVersioningEnabled( Boolean versioningEnabled ) {
+    m_versioningEnabled = versioningEnabled;
+  }
+
+  public String getHashScheme() {
+    return m_hashScheme;
+  }
+
+  public void setHashScheme( String hashScheme ) {
+    m_hashScheme = hashScheme;
+  }
+
+  /**
+   * Pick the named namespace out of a /proc listing
+   *
+   * @param is            the /proc response body
+   * @param namespaceName the (resolved) name of the namespace to look for
+   * @return the namespace settings; settings are left null if the namespace is not in the listing
+   */
+  public static HCPNamespaceInfo processProcResult( InputStream is, String namespaceName )
+      throws IOException, SAXException, ParserConfigurationException {
+    HCPNamespaceInfo info = new HCPNamespaceInfo( namespaceName );
+
+    DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+    DocumentBuilder builder = dbFactory.newDocumentBuilder();
+    Document doc = builder.parse( is );
+
+    NodeList nodeList = doc.getElementsByTagName( NAMESPACE_TAG );
+    for ( int i = 0; i < nodeList.getLength(); i++ ) {
+      Node node = nodeList.item( i );
+      if ( node.getNodeType() == Node.ELEMENT_NODE ) {
+        Element element = (Element) node;
+        if ( element.getAttribute( NAME_TAG ).equalsIgnoreCase( namespaceName ) ) {
+          String val = element.getAttribute( VERSIONING_ENABLED_TAG );
+          if ( val != null && val.length() > 0 ) {
+            info.m_versioningEnabled = val.equalsIgnoreCase( "true" );
+          }
+          val = element.getAttribute( HASH_SCHEME_TAG );
+          if ( val != null && val.length() > 0 ) {
+            info.m_hashScheme = val;
+          }
+          break;
+        }
+      }
+    }
+
+    return info;
+  }
+
+  @Override public String toString() {
+    return m_name + " (versioning: " + m_versioningEnabled + ", hash scheme: " + m_hashScheme + ")";
+  }
+}
@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A local disk cache of objects read from HCP, bounded by total size. Entries are keyed by object URL and hold the
+ * version that was cached along with its ETag and Last-Modified, so a cached copy can be revalidated with a
+ * conditional request and served from disk if HCP says it hasn't changed. When the cache grows beyond its limit the
+ * least recently used entries are evicted.
+ * <p>
+ * Cached objects are kept as files in the cache directory, alongside an index that is rewritten whenever entries are
+ * added or removed, so the cache survives restarts (recency is only saved with those changes). Caches are shared by
+ * directory within a JVM - see {@link #getCache} - but a directory should not be used by more than one JVM at once.
+ */
+public class HCPObjectCache {
+
+  public static final long DEFAULT_MAX_BYTES = 1024L * 1024L * 1024L;
+
+  protected static final String INDEX_FILE = "hcp-cache.index";
+  protected static final String OBJECT_SUFFIX = ".obj";
+  protected static final String TEMP_SUFFIX = ".part";
+  protected static final String SEPARATOR = "\t";
+
+  protected static final Map<String, HCPObjectCache> s_caches = new HashMap<>();
+
+  protected final File m_directory;
+  protected volatile long m_maxBytes;
+
+  /** Entries by key, least recently used first */
+  protected final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<>( 16, 0.75f, true );
+  protected long m_totalBytes;
+
+  /**
+   * Get the cache for a directory, creating (or loading) it if this is the first use
+   *
+   * @param directory the cache directory
+   * @param maxBytes  the size limit; replaces the limit given by earlier users of the directory
+   * @return the cache
+   * @throws IOException if the directory can't be created or its index read
+   */
+  public static synchronized HCPObjectCache getCache( String directory, long maxBytes ) throws IOException {
+    File dir = new File( directory ).getCanonicalFile();
+    HCPObjectCache cache = s_caches.get( dir.getPath() );
+    if ( cache == null ) {
+      cache = new HCPObjectCache( dir, maxBytes );
+      s_caches.put( dir.getPath(), cache );
+    } else {
+      cache.setMaxBytes( maxBytes );
+    }
+    return cache;
+  }
+
+  public HCPObjectCache( File directory, long maxBytes ) throws IOException {
+    m_directory = directory;
+    m_maxBytes = maxBytes;
+    if ( !m_directory.isDirectory() && !m_directory.mkdirs() ) {
+      throw new IOException( "Unable to create cache directory " + m_directory );
+    }
+    load();
+  }
+
+  public File getDirectory() {
+    return m_directory;
+  }
+
+  public synchronized void setMaxBytes( long maxBytes ) throws IOException {
+    m_maxBytes = maxBytes;
+    if ( evict() ) {
+      save();
+    }
+  }
+
+  public long getMaxBytes() {
+    return m_maxBytes;
+  }
+
+  public synchronized long getTotalBytes() {
+    return m_totalBytes;
+  }
+
+  public synchronized int size() {
+    return m_entries.size();
+  }
+
+  /**
+   * Look up an object, marking it as recently used
+   *
+   * @param key the object's URL
+   * @return the entry, or null if the object isn't cached
+   */
+  public synchronized Entry get( String key ) {
+    Entry entry = m_entries.get( key );
+    if ( entry != null && !getFile( entry ).isFile() ) {
+      // removed behind our back
+      m_entries.remove( key );
+      m_totalBytes -= entry.getSize();
+      entry = null;
+    }
+    return entry;
+  }
+
+  /**
+   * @return the file holding a cached object. It may disappear if the entry is evicted, so open it straight away
+   */
+  public File getFile( Entry entry ) {
+    return new File( m_directory, entry.getFileName() );
+  }
+
+  /**
+   * @return a new file in the cache directory to download an object into, before handing it to {@link #put}
+   * @throws IOException if the file can't be created
+   */
+  public File createTempFile() throws IOException {
+    return File.createTempFile( "hcp", TEMP_SUFFIX, m_directory );
+  }
+
+  /**
+   * Add (or replace) an object, evicting others if the cache is now over its limit. Objects larger than the limit are
+   * not cached.
+   *
+   * @param key          the object's URL
+   * @param tempFile     the downloaded object, from {@link #createTempFile}; it is moved into the cache or deleted
+   * @param etag         the ETag of the object (may be null)
+   * @param lastModified the Last-Modified of the object (may be null)
+   * @param versionId    the version of the object (may be null)
+   * @param hash         the hash HCP reported for the object (may be null)
+   * @return true if the object was cached
+   * @throws IOException if the index can't be saved
+   */
+  public synchronized boolean put( String key, File tempFile, String etag, String lastModified, String versionId,
+      String hash ) throws IOException {
+    long size = tempFile.length();
+    if ( size > m_maxBytes || ( etag == null && lastModified == null ) ) {
+      // too big, or no way to revalidate it
+      tempFile.delete();
+      return false;
+    }
+
+    Entry entry = new Entry( fileName( key, versionId ), etag, lastModified, versionId, hash, size );
+    File file = getFile( entry );
+    removeEntry( key );
+    if ( file.exists() ) {
+      file.delete();
+    }
+    if ( !tempFile.renameTo( file ) ) {
+      tempFile.delete();
+      save();
+      return false;
+    }
+    m_entries.put( key, entry );
+    m_totalBytes += size;
+    evict();
+    save();
+
+    return true;
+  }
+
+  /**
+   * Drop an object from the cache
+   *
+   * @param key the object's URL
+   * @throws IOException if the index can't be saved
+   */
+  public synchronized void remove( String key ) throws IOException {
+    if ( removeEntry( key ) ) {
+      save();
+    }
+  }
+
+  protected boolean removeEntry( String key ) {
+    Entry entry = m_entries.remove( key );
+    if ( entry == null ) {
+      return false;
+    }
+    m_totalBytes -= entry.getSize();
+    getFile( entry ).delete();
+    return true;
+  }
+
+  /**
+   * Remove least recently used entries until the cache is within its limit
+   *
+   * @return true if anything was evicted
+   */
+  protected boolean evict() {
+    boolean evicted = false;
+    Iterator<Map.Entry<String, Entry>> iterator = m_entries.entrySet().iterator();
+    while ( m_totalBytes > m_maxBytes && iterator.hasNext() ) {
+      Entry entry = iterator.next().getValue();
+      iterator.remove();
+      m_totalBytes -= entry.getSize();
+      getFile( entry ).delete();
+      evicted = true;
+    }
+    return evicted;
+  }
+
+  /**
+   * Read the index, dropping entries whose files have gone and deleting files that aren't in the index (e.g. left by
+   * an interrupted download)
+   */
+  protected synchronized void load() throws IOException {
+    m_entries.clear();
+    m_totalBytes = 0;
+
+    File index = new File( m_directory, INDEX_FILE );
+    if ( index.isFile() ) {
+      BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( index ), "UTF-8" ) );
+      try {
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+          String[] parts = line.split( SEPARATOR, -1 );
+          if ( parts.length < 7 ) {
+            continue;
+          }
+          try {
+            Entry entry =
+                new Entry( parts[1], emptyToNull( parts[2] ), emptyToNull( parts[3] ), emptyToNull( parts[4] ),
+                    emptyToNull( parts[5] ), Long.parseLong( parts[6] ) );
+            if ( getFile( entry ).length() == entry.getSize() ) {
+              m_entries.put( parts[0], entry );
+              m_totalBytes += entry.getSize();
+            }
+          } catch ( NumberFormatException e ) {
+            // skip damaged lines
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    Set<String> known = new HashSet<>();
+    for ( Entry entry : m_entries.values() ) {
+      known.add( entry.getFileName() );
+    }
+    File[] files = m_directory.listFiles();
+    if ( files != null ) {
+      for ( File file : files ) {
+        String name = file.getName();
+        if ( ( name.endsWith( OBJECT_SUFFIX ) || name.endsWith( TEMP_SUFFIX ) ) && !known.contains( name ) ) {
+          file.delete();
+        }
+      }
+    }
+    evict();
+  }
+
+  /**
+   * Write the index, least recently used first. It is written alongside and then moved into place
+   */
+  protected void save() throws IOException {
+    File temp = new File( m_directory, INDEX_FILE + ".tmp" );
+    BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( temp ), "UTF-8" ) );
+    try {
+      for ( Map.Entry<String, Entry> e : m_entries.entrySet() ) {
+        Entry entry = e.getValue();
+        writer.write( e.getKey() + SEPARATOR + entry.getFileName() + SEPARATOR + nullToEmpty( entry.getETag() )
+            + SEPARATOR + nullToEmpty( entry.getLastModified() ) + SEPARATOR + nullToEmpty( entry.getVersionId() )
+            + SEPARATOR + nullToEmpty( entry.getHash() ) + SEPARATOR + entry.getSize() );
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+
+    File index = new File( m_directory, INDEX_FILE );
+    if ( !temp.renameTo( index ) ) {
+      index.delete();
+      if ( !temp.renameTo( index ) ) {
+        throw new IOException( "Unable to save cache index " + index );
+      }
+    }
+  }
+
+  /**
+   * @return a file name for a version of an object
+   */
+  protected static String fileName( String key, String versionId ) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+      byte[] hash = digest.digest( ( key + "\n" + nullToEmpty( versionId ) ).getBytes( "UTF-8" ) );
+      StringBuilder name = new StringBuilder();
+      for ( byte b : hash ) {
+        name.append( String.format( "%02x", b & 0xff ) );
+      }
+      return name.append( OBJECT_SUFFIX ).toString();
+    } catch ( NoSuchAlgorithmException | IOException e ) {
+      // SHA-1 and UTF-8 are always there
+      throw new IllegalStateException( e );
+    }
+  }
+
+  protected static String emptyToNull( String value ) {
+    return value.length() == 0 ? null : value;
+  }
+
+  protected static String nullToEmpty( String value ) {
+    return value == null ? "" : value;
+  }
+
+  /**
+   * A cached version of an object
+   */
+  public static class Entry {
+    protected final String m_fileName;
+    protected final String m_etag;
+    protected final String m_lastModified;
+    protected final String m_versionId;
+    protected final String m_hash;
+    protected final long m_size;
+
+    public Entry( String fileName, String etag, String lastModified, String versionId, String hash, long size ) {
+      m_fileName = fileName;
+      m_etag = etag;
+      m_lastModified = lastModified;
+      m_versionId = versionId;
+      m_hash = hash;
+      m_size = size;
+    }
+
+    public String getFileName() {
+      return m_fileName;
+    }
+
+    public String getETag() {
+      return m_etag;
+    }
+
+    public String getLastModified() {
+      return m_lastModified;
+    }
+
+    public String getVersionId() {
+      return m_versionId;
+    }
+
+    public String getHash() {
+      return m_hash;
+    }
+
+    public long getSize() {
+      return m_size;
+    }
+  }
+}
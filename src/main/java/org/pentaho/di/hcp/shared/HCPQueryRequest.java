@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An object-based request to the HCP metadata query API. The criteria are combined into one query expression (all of
+ * them must match). Results are paged with the API's lastResult cursor rather than an offset, which HCP caps and
+ * which skips or repeats objects when the index changes under it. As each page needs the one before it, the change
+ * time range can be split into slices, each paged through on its own, so that several pages can be in flight at once.
+ */
+public class HCPQueryRequest {
+
+  /** The properties to return for each object: the ones the query API shares with directory listing entries */
+  public static final String OBJECT_PROPERTIES =
+      "urlName,utf8Name,type,size,hashScheme,hash,retention,retentionString,retentionClass,ingestTime,"
+          + "ingestTimeString,hold,shred,dpl,index,customMetadata,version,changeTimeMilliseconds,changeTimeString,"
+          + "owner,replicated";
+
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  protected String m_namespace;
+  protected Long m_changedFrom;
+  protected Long m_changedTo;
+  protected Long m_minSize;
+  protected Long m_maxSize;
+  protected String m_expression;
+  protected int m_pageSize = DEFAULT_PAGE_SIZE;
+
+  /**
+   * @param namespace the namespace to query (namespace.tenant); null or empty for all the namespaces the user can
+   *                  search
+   */
+  public void setNamespace( String namespace ) {
+    m_namespace = namespace;
+  }
+
+  public String getNamespace() {
+    return m_namespace;
+  }
+
+  /**
+   * Only objects changed at or after this time (ms since the epoch); null for no lower bound
+   */
+  public void setChangedFrom( Long changedFrom ) {
+    m_changedFrom = changedFrom;
+  }
+
+  public Long getChangedFrom() {
+    return m_changedFrom;
+  }
+
+  /**
+   * Only objects changed at or before this time (ms since the epoch); null for no upper bound
+   */
+  public void setChangedTo( Long changedTo ) {
+    m_changedTo = changedTo;
+  }
+
+  public Long getChangedTo() {
+    return m_changedTo;
+  }
+
+  public void setMinSize( Long minSize ) {
+    m_minSize = minSize;
+  }
+
+  public Long getMinSize() {
+    return m_minSize;
+  }
+
+  public void setMaxSize( Long maxSize ) {
+    m_maxSize = maxSize;
+  }
+
+  public Long getMaxSize() {
+    return m_maxSize;
+  }
+
+  /**
+   * Any further criteria, in the query language (e.g. customMetadataContent:"department.Sales")
+   */
+  public void setExpression( String expression ) {
+    m_expression = expression;
+  }
+
+  public String getExpression() {
+    return m_expression;
+  }
+
+  public void setPageSize( int pageSize ) {
+    m_pageSize = Math.max( 1, pageSize );
+  }
+
+  public int getPageSize() {
+    return m_pageSize;
+  }
+
+  /**
+   * @return the query expression for the criteria
+   */
+  public String getQuery() {
+    return getQuery( m_changedFrom, m_changedTo );
+  }
+
+  /**
+   * @return the query expression for the criteria, with the change time range replaced by the one given
+   */
+  public String getQuery( Long changedFrom, Long changedTo ) {
+    StringBuilder query = new StringBuilder();
+    if ( StringUtils.isNotEmpty( m_namespace ) ) {
+      query.append( "+namespace:\"" ).append( m_namespace ).append( "\" " );
+    }
+    if ( changedFrom != null || changedTo != null ) {
+      query.append( "+changeTimeMilliseconds:" ).append( range( changedFrom, changedTo ) ).append( ' ' );
+    }
+    if ( m_minSize != null || m_maxSize != null ) {
+      query.append( "+size:" ).append( range( m_minSize, m_maxSize ) ).append( ' ' );
+    }
+    if ( StringUtils.isNotBlank( m_expression ) ) {
+      query.append( "+(" ).append( m_expression.trim() ).append( ") " );
+    }
+    if ( query.length() == 0 ) {
+      // everything
+      return "*";
+    }
+    return query.toString().trim();
+  }
+
+  protected static String range( Long from, Long to ) {
+    return "[" + ( from != null ? from.toString() : "*" ) + " TO " + ( to != null ? to.toString() : "*" ) + "]";
+  }
+
+  /**
+   * Split the change time range into (at most) the number of slices given. An open lower bound starts at 0 and an
+   * open upper bound ends at now, except that the first and last slices keep the bounds as they were set, so objects
+   * changed while the query runs are still found.
+   *
+   * @param slices the number of slices wanted
+   * @param now    the current time (ms since the epoch)
+   * @return the slices, in change time order
+   */
+  public List<Slice> split( int slices, long now ) {
+    List<Slice> result = new ArrayList<>();
+    long from = m_changedFrom != null ? m_changedFrom : 0;
+    long to = m_changedTo != null ? m_changedTo : Math.max( from, now );
+    if ( slices <= 1 || to <= from ) {
+      result.add( new Slice( m_changedFrom, m_changedTo ) );
+      return result;
+    }
+    long width = ( to - from ) / slices + 1;
+    for ( long start = from; ; start += width ) {
+      boolean last = to - start < width;
+      result.add( new Slice( start == from ? m_changedFrom : Long.valueOf( start ),
+          last ? m_changedTo : Long.valueOf( start + width - 1 ) ) );
+      if ( last ) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param slice the slice to page through
+   * @return the XML body requesting the slice's next page: the first one, or the one after its last page
+   */
+  public String getRequestBody( Slice slice ) {
+    StringBuilder body = new StringBuilder();
+    body.append( "<queryRequest><object>" );
+    body.append( "<query>" ).append( StringEscapeUtils.escapeXml( getQuery( slice.getChangedFrom(),
+        slice.getChangedTo() ) ) ).append( "</query>" );
+    body.append( "<objectProperties>" ).append( OBJECT_PROPERTIES ).append( "</objectProperties>" );
+    body.append( "<count>" ).append( m_pageSize ).append( "</count>" );
+    HCPQueryResponse lastPage = slice.getLastPage();
+    if ( lastPage != null && StringUtils.isNotEmpty( lastPage.getLastUrlName() ) ) {
+      // HCP carries on from the last object it returned; there is no sort or offset to go with it
+      body.append( "<lastResult>" );
+      body.append( "<urlName>" ).append( StringEscapeUtils.escapeXml( lastPage.getLastUrlName() ) )
+          .append( "</urlName>" );
+      body.append( "<changeTimeMilliseconds>" ).append( StringEscapeUtils.escapeXml( lastPage.getLastChangeTime() ) )
+          .append( "</changeTimeMilliseconds>" );
+      if ( StringUtils.isNotEmpty( lastPage.getLastVersion() ) ) {
+        body.append( "<version>" ).append( StringEscapeUtils.escapeXml( lastPage.getLastVersion() ) )
+            .append( "</version>" );
+      }
+      body.append( "</lastResult>" );
+    }
+    body.append( "</object></queryRequest>" );
+    return body.toString();
+  }
+
+  /**
+   * Part of the change time range, with the last page fetched for it
+   */
+  public static class Slice {
+
+    protected final Long m_changedFrom;
+    protected final Long m_changedTo;
+    protected HCPQueryResponse m_lastPage;
+
+    public Slice( Long changedFrom, Long changedTo ) {
+      m_changedFrom = changedFrom;
+      m_changedTo = changedTo;
+    }
+
+    /**
+     * @return the first change time in the slice; null for no lower bound
+     */
+    public Long getChangedFrom() {
+      return m_changedFrom;
+    }
+
+    /**
+     * @return the last change time in the slice; null for no upper bound
+     */
+    public Long getChangedTo() {
+      return m_changedTo;
+    }
+
+    /**
+     * @return the page most recently fetched for the slice; null before the first
+     */
+    public HCPQueryResponse getLastPage() {
+      return m_lastPage;
+    }
+
+    public void setLastPage( HCPQueryResponse lastPage ) {
+      m_lastPage = lastPage;
+    }
+  }
+}
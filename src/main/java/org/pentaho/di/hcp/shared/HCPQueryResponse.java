@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.shared;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of results from the metadata query API. The objects found are read into the same entries a directory
+ * listing produces, so they can go out in the listing row layout.
+ */
+public class HCPQueryResponse extends BaseHCPResponse {
+
+  public static final String OBJECT_TAG = "object";
+  public static final String STATUS_TAG = "status";
+  public static final String RESULTS_TAG = "results";
+  public static final String MESSAGE_TAG = "message";
+  public static final String CODE_TAG = "code";
+
+  /** Status code of a query that has returned all its results */
+  public static final String COMPLETE = "COMPLETE";
+  /** Status code of a query whose results may be missing objects, e.g. because part of the system was unavailable */
+  public static final String INCOMPLETE = "INCOMPLETE";
+  /** Status code of a query that failed */
+  public static final String ERROR = "ERROR";
+
+  protected List<HCPListResponse.ListEntry> m_entries = new ArrayList<>();
+  protected String m_resultCode;
+  protected String m_message;
+
+  // the last object on the page, as HCP wrote it, for the next page's lastResult
+  protected String m_lastUrlName;
+  protected String m_lastChangeTime;
+  protected String m_lastVersion;
+
+  public HCPQueryResponse() {
+  }
+
+  public HCPQueryResponse( Status status, String explanation ) {
+    super( status, explanation );
+  }
+
+  /**
+   * Read a page of query results as it streams in
+   */
+  public void processQueryResult( InputStream is ) throws XMLStreamException {
+    XMLStreamReader reader = HCPListResponse.s_inputFactory.createXMLStreamReader( is );
+    try {
+      boolean inResultSet = false;
+      while ( reader.hasNext() ) {
+        int event = reader.next();
+        if ( event == XMLStreamConstants.END_ELEMENT && "resultSet".equals( reader.getLocalName() ) ) {
+          inResultSet = false;
+        }
+        if ( event != XMLStreamConstants.START_ELEMENT ) {
+          continue;
+        }
+        if ( "resultSet".equals( reader.getLocalName() ) ) {
+          inResultSet = true;
+        } else if ( inResultSet && OBJECT_TAG.equals( reader.getLocalName() ) ) {
+          m_entries.add( HCPListResponse.ListEntry.createEntry( reader ) );
+          m_lastUrlName = HCPListResponse.attribute( reader, HCPListResponse.ListEntry.URL_NAME_TAG );
+          m_lastChangeTime = HCPListResponse.attribute( reader, HCPListResponse.ListEntry.CHANGE_TIME_TAG );
+          m_lastVersion = HCPListResponse.attribute( reader, HCPListResponse.ListEntry.VERSION_TAG );
+        } else if ( STATUS_TAG.equals( reader.getLocalName() ) ) {
+          m_resultCode = HCPListResponse.attribute( reader, CODE_TAG );
+          m_message = HCPListResponse.attribute( reader, MESSAGE_TAG );
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  public List<HCPListResponse.ListEntry> getEntries() {
+    return m_entries;
+  }
+
+  /**
+   * @return the query status code (COMPLETE, INCOMPLETE or ERROR), or null if there wasn't one
+   */
+  public String getResultCode() {
+    return m_resultCode;
+  }
+
+  public String getMessage() {
+    return m_message;
+  }
+
+  /**
+   * @return the URL of the last object on the page; null if the page is empty
+   */
+  public String getLastUrlName() {
+    return m_lastUrlName;
+  }
+
+  /**
+   * @return the change time of the last object on the page, as HCP wrote it (e.g. 1334326011081.00)
+   */
+  public String getLastChangeTime() {
+    return m_lastChangeTime;
+  }
+
+  public String getLastVersion() {
+    return m_lastVersion;
+  }
+}
@@ -31,7 +31,7 @@ import org.pentaho.di.core.row.value.ValueMetaFactory;
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
  * @version $Revision: $
  */
-public class HCPReadResponse extends BaseHCPResponse {
+public class HCPReadResponse extends BaseHCPResponse implements Cloneable {
 
   public static final String X_HCP_TYPE_TAG = "X-HCP-Type";
   public static final String X_HCP_SIZE_TAG = "X-HCP-Size";
@@ -51,6 +51,8 @@ public class HCPReadResponse extends BaseHCPResponse {
   public static final String X_HCP_REPLICATED_TAG = "X-HCP-Replicated";
   public static final String X_HCP_REPLICATION_COLLISION_TAG = "X-HCP-ReplicationCollision";
   public static final String X_HCP_CHANGE_TIME_STRING_TAG = "X-HCP-ChangeTimeString";
+  public static final String ETAG_TAG = "ETag";
+  public static final String LAST_MODIFIED_TAG = "Last-Modified";
 
   protected String m_type;
   protected Long m_size;
@@ -71,6 +73,13 @@ public class HCPReadResponse extends BaseHCPResponse {
   protected Boolean m_replicationCollision;
   protected String m_changeTimeString;
 
+  /** The object itself, when it was read into memory rather than to a file (not output as a field) */
+  protected byte[] m_content;
+
+  /** Validators for conditional requests (not output as fields) */
+  protected String m_etag;
+  protected String m_lastModified;
+
   public HCPReadResponse() {
   }
 
@@ -78,6 +87,22 @@ public class HCPReadResponse extends BaseHCPResponse {
     super( status, explanation );
   }
 
+  /**
+   * @return a copy of this response that can be changed without affecting it
+   */
+  public HCPReadResponse copy() {
+    try {
+      // the fields are immutable values, apart from the content
+      HCPReadResponse copy = (HCPReadResponse) clone();
+      if ( m_content != null ) {
+        copy.m_content = m_content.clone();
+      }
+      return copy;
+    } catch ( CloneNotSupportedException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
   public Boolean getCustomMetadata() {
     return m_customMetadata;
   }
@@ -226,6 +251,30 @@ public class HCPReadResponse extends BaseHCPResponse {
     return m_changeTimeString;
   }
 
+  public void setContent( byte[] content ) {
+    m_content = content;
+  }
+
+  public byte[] getContent() {
+    return m_content;
+  }
+
+  public void setETag( String etag ) {
+    m_etag = etag;
+  }
+
+  public String getETag() {
+    return m_etag;
+  }
+
+  public void setLastModified( String lastModified ) {
+    m_lastModified = lastModified;
+  }
+
+  public String getLastModified() {
+    return m_lastModified;
+  }
+
   public static void addReadFieldMetadata( RowMetaInterface rowMeta ) throws KettlePluginException {
     rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( X_HCP_TYPE_TAG, ValueMetaInterface.TYPE_STRING ) );
     rowMeta.addValueMeta( ValueMetaFactory.createValueMeta( X_HCP_SIZE_TAG, ValueMetaInterface.TYPE_INTEGER ) );
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded window of in-flight HCP requests. Requests are executed on a private worker pool and their results are
+ * handed back to the (single) step thread that submitted them, either in submission order or in completion order.
+ * <p>
+ * The window is not thread-safe: submit/take/poll are expected to be called from the step thread only. Rows should
+ * be passed on via putRow() from that thread too, so workers only ever talk to HCP.
+ *
+ * @param <T> the type of result produced by each request
+ */
+public class HCPRequestWindow<T> {
+
+  protected final int m_size;
+  protected final boolean m_preserveOrder;
+  protected final ExecutorService m_executor;
+
+  // used when preserving input order
+  protected final Deque<Future<T>> m_ordered = new ArrayDeque<>();
+
+  // used when emitting in completion order
+  protected final CompletionService<T> m_completion;
+  protected int m_outstanding;
+
+  public HCPRequestWindow( int size, boolean preserveOrder, final String threadNamePrefix ) {
+    m_size = Math.max( 1, size );
+    m_preserveOrder = preserveOrder;
+
+    final AtomicInteger threadCount = new AtomicInteger();
+    m_executor = Executors.newFixedThreadPool( m_size, new ThreadFactory() {
+      @Override public Thread newThread( Runnable r ) {
+        Thread t = new Thread( r, threadNamePrefix + "-" + threadCount.incrementAndGet() );
+        t.setDaemon( true );
+        return t;
+      }
+    } );
+    m_completion = preserveOrder ? null : new ExecutorCompletionService<T>( m_executor );
+  }
+
+  public int getSize() {
+    return m_size;
+  }
+
+  public boolean isPreservingOrder() {
+    return m_preserveOrder;
+  }
+
+  public int getInFlight() {
+    return m_preserveOrder ? m_ordered.size() : m_outstanding;
+  }
+
+  public boolean isFull() {
+    return getInFlight() >= m_size;
+  }
+
+  public boolean isEmpty() {
+    return getInFlight() == 0;
+  }
+
+  /**
+   * Submit a request. Callers should take() results first if the window is full, otherwise the request simply queues
+   * behind the ones already running.
+   *
+   * @param request the request to run
+   */
+  public void submit( Callable<T> request ) {
+    if ( m_preserveOrder ) {
+      m_ordered.addLast( m_executor.submit( request ) );
+    } else {
+      m_completion.submit( request );
+      m_outstanding++;
+    }
+  }
+
+  /**
+   * Block until the next result is available. In ordered mode this is the oldest outstanding request, otherwise it is
+   * whichever request finishes first.
+   *
+   * @return the next result, or null if nothing is in flight
+   * @throws KettleException if the request failed or the wait was interrupted
+   */
+  public T take() throws KettleException {
+    if ( isEmpty() ) {
+      return null;
+    }
+    try {
+      if ( m_preserveOrder ) {
+        return m_ordered.removeFirst().get();
+      }
+      Future<T> done = m_completion.take();
+      m_outstanding--;
+      return done.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( e.getCause() );
+    }
+  }
+
+  /**
+   * Return the next result if it is already available, without blocking.
+   *
+   * @return the next completed result, or null if none is ready (or, in ordered mode, the oldest is still running)
+   * @throws KettleException if the request failed
+   */
+  public T poll() throws KettleException {
+    if ( isEmpty() ) {
+      return null;
+    }
+    try {
+      if ( m_preserveOrder ) {
+        if ( !m_ordered.peekFirst().isDone() ) {
+          return null;
+        }
+        return m_ordered.removeFirst().get();
+      }
+      Future<T> done = m_completion.poll();
+      if ( done == null ) {
+        return null;
+      }
+      m_outstanding--;
+      return done.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } catch ( ExecutionException e ) {
+      throw new KettleException( e.getCause() );
+    }
+  }
+
+  /**
+   * Stop the worker pool. Requests still in flight are interrupted.
+   */
+  public void shutdown() {
+    m_executor.shutdownNow();
+  }
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only journal of the transfers a step has completed, so that a restarted transformation can skip the rows
+ * that were done before it died. Multipart uploads also journal their upload id and each part as it is stored, which
+ * lets a restart carry on with the parts that are missing rather than sending the whole object again.
+ * <p>
+ * The journal is a tab separated text file with one record per line; records are flushed as they are written. When a
+ * journal is opened the existing records are replayed. A last line cut short by a crash (one without its line end) is
+ * ignored, and the journal is written out again from the records replayed, so nothing is appended to the damaged
+ * line. Once a run has dealt with all of its rows the journal is discarded, so that the next run starts afresh. All
+ * methods are thread-safe.
+ */
+public class HCPTransferJournal {
+
+  protected static final String SEPARATOR = "\t";
+
+  protected static final String DONE = "DONE";
+  protected static final String MULTIPART_START = "MPU";
+  protected static final String MULTIPART_PART = "PART";
+  protected static final String MULTIPART_END = "MPU_END";
+
+  protected final String m_filename;
+  protected final Map<String, Completed> m_completed = new HashMap<>();
+  protected final Map<String, MultipartState> m_multipart = new HashMap<>();
+
+  protected BufferedWriter m_writer;
+
+  public HCPTransferJournal( String filename ) {
+    m_filename = filename;
+  }
+
+  public String getFilename() {
+    return m_filename;
+  }
+
+  /**
+   * Replay the journal (if it exists) and open it for appending
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be read or opened
+   */
+  public synchronized void open() throws KettleFileException, IOException {
+    m_completed.clear();
+    m_multipart.clear();
+
+    StringBuilder line = new StringBuilder();
+    if ( KettleVFS.fileExists( m_filename ) ) {
+      BufferedReader reader =
+          new BufferedReader( new InputStreamReader( KettleVFS.getInputStream( m_filename ), Const.XML_ENCODING ) );
+      try {
+        int c;
+        while ( ( c = reader.read() ) >= 0 ) {
+          if ( c == '\n' ) {
+            replay( line.toString().split( SEPARATOR, -1 ) );
+            line.setLength( 0 );
+          } else if ( c != '\r' ) {
+            line.append( (char) c );
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+
+    // what is left was cut short
+    boolean damaged = line.length() > 0;
+    m_writer =
+        new BufferedWriter(
+            new OutputStreamWriter( KettleVFS.getOutputStream( m_filename, !damaged ), Const.XML_ENCODING ) );
+    if ( damaged ) {
+      for ( Map.Entry<String, Completed> completed : m_completed.entrySet() ) {
+        Completed done = completed.getValue();
+        append( DONE, completed.getKey(), done.m_status, Const.NVL( done.m_versionId, "" ),
+            Const.NVL( done.m_hash, "" ) );
+      }
+      for ( Map.Entry<String, MultipartState> multipart : m_multipart.entrySet() ) {
+        MultipartState state = multipart.getValue();
+        append( MULTIPART_START, multipart.getKey(), state.m_uploadId, "" + state.m_partSize, "" + state.m_fileSize,
+            "" + state.m_lastModified );
+        for ( Map.Entry<Integer, String> part : state.m_parts.entrySet() ) {
+          append( MULTIPART_PART, multipart.getKey(), state.m_uploadId, "" + part.getKey(), part.getValue() );
+        }
+      }
+    }
+  }
+
+  protected void replay( String[] record ) {
+    try {
+      if ( DONE.equals( record[0] ) && record.length >= 5 ) {
+        m_completed.put( record[1], new Completed( record[2], emptyToNull( record[3] ), emptyToNull( record[4] ) ) );
+      } else if ( MULTIPART_START.equals( record[0] ) && record.length >= 6 ) {
+        m_multipart.put( record[1],
+            new MultipartState( record[2], Long.parseLong( record[3] ), Long.parseLong( record[4] ),
+                Long.parseLong( record[5] ) ) );
+      } else if ( MULTIPART_PART.equals( record[0] ) && record.length >= 5 ) {
+        MultipartState state = m_multipart.get( record[1] );
+        if ( state != null && state.m_uploadId.equals( record[2] ) ) {
+          state.m_parts.put( Integer.parseInt( record[3] ), record[4] );
+        }
+      } else if ( MULTIPART_END.equals( record[0] ) && record.length >= 3 ) {
+        MultipartState state = m_multipart.get( record[1] );
+        if ( state != null && state.m_uploadId.equals( record[2] ) ) {
+          m_multipart.remove( record[1] );
+        }
+      }
+    } catch ( NumberFormatException e ) {
+      // damaged record - ignore
+    }
+  }
+
+  public synchronized void close() throws IOException {
+    if ( m_writer != null ) {
+      m_writer.close();
+      m_writer = null;
+    }
+  }
+
+  /**
+   * Close the journal and delete its file, e.g. when the run completed and there is nothing left to resume
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be closed or deleted
+   */
+  public synchronized void discard() throws KettleFileException, IOException {
+    close();
+    m_completed.clear();
+    m_multipart.clear();
+    KettleVFS.getFileObject( m_filename ).delete();
+  }
+
+  /**
+   * @param key the transfer's key (e.g. the object URL)
+   * @return the record of the transfer if it completed in an earlier run, otherwise null
+   */
+  public synchronized Completed getCompleted( String key ) {
+    return m_completed.get( key );
+  }
+
+  public synchronized int getCompletedCount() {
+    return m_completed.size();
+  }
+
+  /**
+   * Record a completed transfer
+   *
+   * @param key       the transfer's key
+   * @param status    the final status of the transfer
+   * @param versionId the HCP version transferred (may be null)
+   * @param hash      the object's hash in HCP format (may be null)
+   */
+  public synchronized void completed( String key, BaseHCPResponse.Status status, String versionId, String hash )
+      throws IOException {
+    m_completed.put( key, new Completed( status.toString(), versionId, hash ) );
+    append( DONE, key, status.toString(), Const.NVL( versionId, "" ), Const.NVL( hash, "" ) );
+  }
+
+  /**
+   * @param url the object URL
+   * @return the state of an unfinished multipart upload of the object, or null if there isn't one
+   */
+  public synchronized MultipartState getMultipart( String url ) {
+    return m_multipart.get( url );
+  }
+
+  public synchronized void multipartStarted( String url, String uploadId, long partSize, long fileSize,
+      long lastModified ) throws IOException {
+    m_multipart.put( url, new MultipartState( uploadId, partSize, fileSize, lastModified ) );
+    append( MULTIPART_START, url, uploadId, "" + partSize, "" + fileSize, "" + lastModified );
+  }
+
+  public synchronized void partCompleted( String url, String uploadId, int partNumber, String etag )
+      throws IOException {
+    MultipartState state = m_multipart.get( url );
+    if ( state != null && state.m_uploadId.equals( uploadId ) ) {
+      synchronized ( state.m_parts ) {
+        state.m_parts.put( partNumber, etag );
+      }
+    }
+    append( MULTIPART_PART, url, uploadId, "" + partNumber, etag );
+  }
+
+  public synchronized void multipartEnded( String url, String uploadId ) throws IOException {
+    MultipartState state = m_multipart.get( url );
+    if ( state != null && state.m_uploadId.equals( uploadId ) ) {
+      m_multipart.remove( url );
+    }
+    append( MULTIPART_END, url, uploadId );
+  }
+
+  protected void append( String... fields ) throws IOException {
+    if ( m_writer == null ) {
+      throw new IOException( "Journal " + m_filename + " is not open" );
+    }
+    StringBuilder line = new StringBuilder();
+    for ( int i = 0; i < fields.length; i++ ) {
+      if ( i > 0 ) {
+        line.append( SEPARATOR );
+      }
+      line.append( fields[i] );
+    }
+    m_writer.write( line.toString() );
+    m_writer.newLine();
+    m_writer.flush();
+  }
+
+  protected static String emptyToNull( String value ) {
+    return value.length() == 0 ? null : value;
+  }
+
+  /**
+   * A transfer completed in an earlier run
+   */
+  public static class Completed {
+    protected final String m_status;
+    protected final String m_versionId;
+    protected final String m_hash;
+
+    protected Completed( String status, String versionId, String hash ) {
+      m_status = status;
+      m_versionId = versionId;
+      m_hash = hash;
+    }
+
+    public BaseHCPResponse.Status getStatus() {
+      try {
+        return BaseHCPResponse.Status.valueOf( m_status );
+      } catch ( IllegalArgumentException e ) {
+        return BaseHCPResponse.Status.OK;
+      }
+    }
+
+    public String getVersionId() {
+      return m_versionId;
+    }
+
+    public String getHash() {
+      return m_hash;
+    }
+
+    /**
+     * Fill in a response standing in for the one received in the earlier run
+     */
+    public <T extends BaseHCPResponse> T populate( T response ) {
+      response.setStatus( getStatus() );
+      response.setExplanation( "Completed in an earlier run" );
+      response.setHCPHash( m_hash );
+      return response;
+    }
+  }
+
+  /**
+   * An unfinished multipart upload: the upload id, the source it was started for and the parts stored so far
+   */
+  public static class MultipartState {
+    protected final String m_uploadId;
+    protected final long m_partSize;
+    protected final long m_fileSize;
+    protected final long m_lastModified;
+    protected final Map<Integer, String> m_parts = new TreeMap<>();
+
+    protected MultipartState( String uploadId, long partSize, long fileSize, long lastModified ) {
+      m_uploadId = uploadId;
+      m_partSize = partSize;
+      m_fileSize = fileSize;
+      m_lastModified = lastModified;
+    }
+
+    public String getUploadId() {
+      return m_uploadId;
+    }
+
+    /**
+     * @return a copy of the ETags of the parts stored so far, by part number
+     */
+    public Map<Integer, String> getParts() {
+      synchronized ( m_parts ) {
+        return new TreeMap<>( m_parts );
+      }
+    }
+
+    /**
+     * @return true if the upload can be resumed for a source of the given size and modification time
+     */
+    public boolean matches( long partSize, long fileSize, long lastModified ) {
+      return m_partSize == partSize && m_fileSize == fileSize && m_lastModified == lastModified;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+package org.pentaho.di.hcp.shared;
+
+import org.apache.commons.vfs2.FileObject;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.vfs.KettleVFS;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent record of what has been uploaded: for each target object, the size and modification time of the
+ * source it was uploaded from, its hash (in HCP format) and the HCP version created. It lets re-runs skip sources that
+ * haven't changed without talking to HCP at all.
+ * <p>
+ * The index is a tab separated text file, read in full when loaded and rewritten in full when saved. Entries may be
+ * added from several threads. Step copies should not share an index file.
+ */
+public class HCPUploadIndex {
+
+  protected static final String HEADER = "# HCP upload index: target\tsize\tlast modified\thash\tversion";
+  protected static final String SEPARATOR = "\t";
+
+  protected final String m_filename;
+  protected final Map<String, Entry> m_entries = new ConcurrentHashMap<>();
+  protected volatile boolean m_changed;
+
+  public HCPUploadIndex( String filename ) {
+    m_filename = filename;
+  }
+
+  public String getFilename() {
+    return m_filename;
+  }
+
+  /**
+   * Read the index file. A missing file just means an empty index.
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be read
+   */
+  public void load() throws KettleFileException, IOException {
+    m_entries.clear();
+    if ( !KettleVFS.fileExists( m_filename ) ) {
+      return;
+    }
+
+    BufferedReader reader =
+        new BufferedReader( new InputStreamReader( KettleVFS.getInputStream( m_filename ), Const.XML_ENCODING ) );
+    try {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        if ( line.length() == 0 || line.startsWith( "#" ) ) {
+          continue;
+        }
+        String[] parts = line.split( SEPARATOR, -1 );
+        if ( parts.length < 5 ) {
+          continue;
+        }
+        try {
+          m_entries.put( parts[0],
+              new Entry( Long.parseLong( parts[1] ), Long.parseLong( parts[2] ), emptyToNull( parts[3] ),
+                  emptyToNull( parts[4] ) ) );
+        } catch ( NumberFormatException e ) {
+          // skip damaged lines
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    m_changed = false;
+  }
+
+  /**
+   * Write the index file if anything was added since it was loaded. The file is written alongside and then moved into
+   * place, so a failure part way through doesn't lose the previous index.
+   *
+   * @throws KettleFileException if the file can't be resolved
+   * @throws IOException         if the file can't be written
+   */
+  public void save() throws KettleFileException, IOException {
+    if ( !m_changed ) {
+      return;
+    }
+
+    String tempFilename = m_filename + ".tmp";
+    BufferedWriter writer =
+        new BufferedWriter(
+            new OutputStreamWriter( KettleVFS.getOutputStream( tempFilename, false ), Const.XML_ENCODING ) );
+    try {
+      writer.write( HEADER );
+      writer.newLine();
+      for ( Map.Entry<String, Entry> e : m_entries.entrySet() ) {
+        Entry entry = e.getValue();
+        writer.write( e.getKey() + SEPARATOR + entry.getSize() + SEPARATOR + entry.getLastModified() + SEPARATOR
+            + Const.NVL( entry.getHash(), "" ) + SEPARATOR + Const.NVL( entry.getVersionId(), "" ) );
+        writer.newLine();
+      }
+    } finally {
+      writer.close();
+    }
+
+    FileObject target = KettleVFS.getFileObject( m_filename );
+    if ( target.exists() ) {
+      target.delete();
+    }
+    KettleVFS.getFileObject( tempFilename ).moveTo( target );
+    m_changed = false;
+  }
+
+  public Entry get( String target ) {
+    return m_entries.get( target );
+  }
+
+  public void put( String target, Entry entry ) {
+    m_entries.put( target, entry );
+    m_changed = true;
+  }
+
+  public int size() {
+    return m_entries.size();
+  }
+
+  protected static String emptyToNull( String value ) {
+    return value.length() == 0 ? null : value;
+  }
+
+  /**
+   * The state of a source at the time it was uploaded
+   */
+  public static class Entry {
+    protected final long m_size;
+    protected final long m_lastModified;
+    protected final String m_hash;
+    protected final String m_versionId;
+
+    /**
+     * @param size         the size of the source
+     * @param lastModified the modification time of the source, or -1 if it doesn't have one (row content)
+     * @param hash         the hash of the source in HCP format (may be null)
+     * @param versionId    the HCP version created (may be null)
+     */
+    public Entry( long size, long lastModified, String hash, String versionId ) {
+      m_size = size;
+      m_lastModified = lastModified;
+      m_hash = hash;
+      m_versionId = versionId;
+    }
+
+    public long getSize() {
+      return m_size;
+    }
+
+    public long getLastModified() {
+      return m_lastModified;
+    }
+
+    public String getHash() {
+      return m_hash;
+    }
+
+    public String getVersionId() {
+      return m_versionId;
+    }
+
+    /**
+     * @return true if the source still has the size and modification time it had when uploaded
+     */
+    public boolean matches( long size, long lastModified ) {
+      return lastModified >= 0 && m_size == size && m_lastModified == lastModified;
+    }
+  }
+}
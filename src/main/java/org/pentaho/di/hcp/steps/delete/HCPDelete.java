@@ -25,12 +25,11 @@ package org.pentaho.di.hcp.steps.delete;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.WebResource.Builder;
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.hcp.shared.BaseHCPResponse;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
 import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -71,8 +70,7 @@ public class HCPDelete extends BaseStep implements StepInterface {
     data.bufferSize = 1024;
     data.authorization = meta.getConnection().getAuthorizationHeader();
 
-    data.client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
-    data.client.setChunkedEncodingSize( data.bufferSize );
+    data.client = HCPClientRegistry.acquire( meta.getConnection(), this, data.bufferSize, 1 );
 
     return super.init( smi, sdi );
   }
@@ -184,7 +182,8 @@ public class HCPDelete extends BaseStep implements StepInterface {
     // HCPDeleteMeta meta = (HCPDeleteMeta) smi;
     HCPDeleteData data = (HCPDeleteData) sdi;
 
-    data.client.destroy();
+    HCPClientRegistry.release( data.client );
+    data.client = null;
 
     super.dispose( smi, sdi );
   }
@@ -22,14 +22,23 @@
 
 package org.pentaho.di.hcp.steps.get;
 
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.hcp.shared.BaseHCPResponse;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
 import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
+import org.pentaho.di.hcp.shared.HCPContentHash;
+import org.pentaho.di.hcp.shared.HCPDownloadIndex;
+import org.pentaho.di.hcp.shared.HCPListResponse;
+import org.pentaho.di.hcp.shared.HCPListingPlanner;
+import org.pentaho.di.hcp.shared.HCPMetadataCache;
+import org.pentaho.di.hcp.shared.HCPObjectCache;
 import org.pentaho.di.hcp.shared.HCPReadResponse;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.hcp.shared.HCPTransferJournal;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -40,12 +49,27 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 
 import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 public class HCPGet extends BaseStep implements StepInterface {
   private static Class<?> PKG = HCPGet.class; // for i18n purposes, needed by
   // Translator2!!
 
+  /** How many times a resumable download is attempted before giving up */
+  protected static final int MAX_DOWNLOAD_ATTEMPTS = 3;
+
+  /** Type of directory listing entries that are objects (rather than directories) */
+  protected static final String OBJECT_TYPE = "object";
+
   public HCPGet( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
       Trans trans ) {
     super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
@@ -65,7 +89,8 @@ public class HCPGet extends BaseStep implements StepInterface {
       log.logError( BaseMessages.getString( PKG, "HCPGet.Error.SourceFileFieldNotSpecified" ) );
       error = true;
     }
-    if ( StringUtils.isEmpty( meta.getTargetFileField() ) && !meta.getFetchSystemMetadataOnly() ) {
+    if ( StringUtils.isEmpty( meta.getTargetFileField() ) && StringUtils.isEmpty( meta.getContentField() )
+        && !meta.getFetchSystemMetadataOnly() ) {
       log.logError( BaseMessages.getString( PKG, "HCPGet.Error.TargetFileFieldNotSpecified" ) );
       error = true;
     }
@@ -77,19 +102,132 @@ public class HCPGet extends BaseStep implements StepInterface {
     data.bufferSize = 1024;
     data.authorization = meta.getConnection().getAuthorizationHeader();
 
-    data.client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
-    data.client.setChunkedEncodingSize( data.bufferSize );
+    data.metadataCacheTTL = 0;
+    if ( meta.getFetchSystemMetadataOnly() ) {
+      data.metadataCacheTTL =
+          Math.max( 0, parseOption( meta.getMetadataCacheTTL(), 0, "HCPGet.Warning.UnparsableMetadataCacheTTL" ) );
+      if ( data.metadataCacheTTL > 0 ) {
+        HCPMetadataCache.getInstance().configure( this );
+      }
+
+      int listingThreshold =
+          (int) parseOption( meta.getListingThreshold(), 0, "HCPGet.Warning.UnparsableListingThreshold" );
+      if ( listingThreshold > 0 ) {
+        data.listingPlanner = new HCPListingPlanner( listingThreshold );
+        data.lookupBatchSize =
+            (int) Math.max( 1, parseOption( meta.getLookupBatchSize(), HCPGetMeta.DEFAULT_LOOKUP_BATCH_SIZE,
+                "HCPGet.Warning.UnparsableLookupBatchSize" ) );
+        data.pendingLookups = new ArrayList<>();
+      }
+    }
+
+    String indexFile = environmentSubstitute( meta.getIndexFile() );
+    if ( StringUtils.isNotEmpty( indexFile ) && !meta.getFetchSystemMetadataOnly() ) {
+      if ( getStepMeta().getCopies() > 1 ) {
+        // each copy saves its index in dispose(), so they must not share one
+        indexFile += "." + getCopy();
+      }
+      data.downloadIndex = new HCPDownloadIndex( indexFile );
+      try {
+        data.downloadIndex.load();
+        if ( log.isDetailed() ) {
+          log.logDetailed( BaseMessages.getString( PKG, "HCPGet.Message.IndexLoaded", data.downloadIndex.size(),
+              data.downloadIndex.getFilename() ) );
+        }
+      } catch ( Exception e ) {
+        log.logError(
+            BaseMessages.getString( PKG, "HCPGet.Error.UnableToLoadIndex", data.downloadIndex.getFilename() ), e );
+        return false;
+      }
+    }
+
+    String cacheDirectory = environmentSubstitute( meta.getCacheDirectory() );
+    if ( StringUtils.isNotEmpty( cacheDirectory ) && !meta.getFetchSystemMetadataOnly() ) {
+      try {
+        data.objectCache =
+            HCPObjectCache.getCache( cacheDirectory, parseOption( meta.getCacheSize(), HCPObjectCache.DEFAULT_MAX_BYTES,
+                "HCPGet.Warning.UnparsableCacheSize" ) );
+        if ( log.isDetailed() ) {
+          log.logDetailed( BaseMessages.getString( PKG, "HCPGet.Message.CacheOpened", data.objectCache.size(),
+              data.objectCache.getTotalBytes(), data.objectCache.getDirectory() ) );
+        }
+      } catch ( Exception e ) {
+        log.logError( BaseMessages.getString( PKG, "HCPGet.Error.UnableToOpenCache", cacheDirectory ), e );
+        return false;
+      }
+    }
+
+    String journalFile = environmentSubstitute( meta.getJournalFile() );
+    if ( StringUtils.isNotEmpty( journalFile ) ) {
+      if ( getStepMeta().getCopies() > 1 ) {
+        // copies must not share a journal
+        journalFile += "." + getCopy();
+      }
+      data.journal = new HCPTransferJournal( journalFile );
+      try {
+        data.journal.open();
+        if ( log.isBasic() ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPGet.Message.JournalLoaded", data.journal.getCompletedCount(),
+              data.journal.getFilename() ) );
+        }
+      } catch ( Exception e ) {
+        log.logError( BaseMessages.getString( PKG, "HCPGet.Error.UnableToOpenJournal", data.journal.getFilename() ),
+            e );
+        return false;
+      }
+    }
+
+    data.inFlightRequests =
+        (int) Math.max( 1, parseOption( meta.getInFlightRequests(), HCPGetMeta.DEFAULT_IN_FLIGHT_REQUESTS,
+            "HCPGet.Warning.UnparsableInFlightRequests" ) );
+
+    data.maxContentSize =
+        parseOption( meta.getMaxContentSize(), HCPGetMeta.DEFAULT_MAX_CONTENT_SIZE,
+            "HCPGet.Warning.UnparsableMaxContentSize" );
+    data.contentEncoding = null;
+    if ( HCPGetMeta.CONTENT_TYPE_STRING.equalsIgnoreCase( meta.getContentType() ) ) {
+      data.contentEncoding = Const.NVL( environmentSubstitute( meta.getContentEncoding() ), Const.XML_ENCODING );
+    }
+
+    data.rangeSize = parseOption( meta.getRangeSize(), -1, "HCPGet.Warning.UnparsableRangeSize" );
+    int rangeConcurrency = 0;
+    if ( data.rangeSize > 0 && !meta.getFetchSystemMetadataOnly() ) {
+      rangeConcurrency =
+          (int) Math.max( 1, parseOption( meta.getRangeConcurrency(), HCPGetMeta.DEFAULT_RANGE_CONCURRENCY,
+              "HCPGet.Warning.UnparsableRangeConcurrency" ) );
+      data.rangeExecutor = Executors.newFixedThreadPool( rangeConcurrency );
+    }
+
+    data.client =
+        HCPClientRegistry.acquire( meta.getConnection(), this, data.bufferSize,
+            data.inFlightRequests + rangeConcurrency );
+
+    if ( data.inFlightRequests > 1 ) {
+      data.window =
+          new HCPRequestWindow<>( data.inFlightRequests, meta.isPreserveOrder(),
+              getStepname() + "." + getCopy() + " download" );
+    }
 
     return super.init( smi, sdi );
   }
 
   @Override public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
 
-    HCPGetMeta meta = (HCPGetMeta) smi;
-    HCPGetData data = (HCPGetData) sdi;
+    final HCPGetMeta meta = (HCPGetMeta) smi;
+    final HCPGetData data = (HCPGetData) sdi;
 
     Object[] row = getRow();
     if ( row == null ) {
+      if ( data.pendingLookups != null ) {
+        lookUpPending( meta, data );
+      }
+      if ( data.window != null ) {
+        // wait for the stragglers
+        while ( !data.window.isEmpty() ) {
+          emitResult( data, data.window.take() );
+        }
+      }
+      data.allRowsDone = true;
       setOutputDone();
       return false;
     }
@@ -102,14 +240,33 @@ public class HCPGet extends BaseStep implements StepInterface {
         throw new KettleException( BaseMessages.getString( PKG, "HCPGet.Error.SourceFileFieldNotFound",
             environmentSubstitute( meta.getSourceFileField() ) ) );
       }
-      data.targetPathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getTargetFileField() ) );
-      if ( data.targetPathIndex < 0 ) {
-        throw new KettleException( BaseMessages.getString( PKG, "HCPGet.Error.TargetFileFieldNotFound",
-            environmentSubstitute( meta.getTargetFileField() ) ) );
+      data.targetPathIndex = -1;
+      if ( StringUtils.isNotEmpty( meta.getTargetFileField() ) ) {
+        data.targetPathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getTargetFileField() ) );
+        if ( data.targetPathIndex < 0 ) {
+          throw new KettleException( BaseMessages.getString( PKG, "HCPGet.Error.TargetFileFieldNotFound",
+              environmentSubstitute( meta.getTargetFileField() ) ) );
+        }
       }
 
       data.outputRowMeta = getInputRowMeta().clone();
       meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.contentIndex = -1;
+      if ( StringUtils.isNotEmpty( meta.getContentField() ) && !meta.getFetchSystemMetadataOnly() ) {
+        data.contentIndex = data.outputRowMeta.indexOfValue( environmentSubstitute( meta.getContentField() ) );
+      }
+
+      if ( meta.isVerifyHash() ) {
+        // HCP hashes with the namespace's scheme
+        data.hashScheme =
+            HCPConnectionOperationUtils.getNamespaceInfo( data.client, meta.getConnection().getProcUrl( this ),
+                environmentSubstitute( meta.getConnection().getNamespace() ), data.authorization, log )
+                .getHashScheme();
+        if ( HCPContentHash.createDigest( data.hashScheme ) == null ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPGet.Warning.UnsupportedHashScheme", data.hashScheme ) );
+        }
+      }
     }
 
     String sourceFilePath = getInputRowMeta().getString( row, data.sourcePathIndex );
@@ -117,7 +274,8 @@ public class HCPGet extends BaseStep implements StepInterface {
       return true;
     }
 
-    String targetFilePath = getInputRowMeta().getString( row, data.targetPathIndex );
+    String targetFilePath =
+        data.targetPathIndex >= 0 ? getInputRowMeta().getString( row, data.targetPathIndex ) : null;
 
     String restUrl = meta.getConnection().getRestUrl( this );
 
@@ -133,8 +291,6 @@ public class HCPGet extends BaseStep implements StepInterface {
       sourceFilePath = '/' + sourceFilePath;
     }
 
-    long startTime = System.currentTimeMillis();
-
     // Calculate the URL for the target file...
     //
     String requestUrl = restUrl + sourceFilePath;
@@ -142,26 +298,306 @@ public class HCPGet extends BaseStep implements StepInterface {
       log.logDebug( "Request URL : " + requestUrl );
     }
 
-    OutputStream outputStream = null;
+    if ( data.pendingLookups != null ) {
+      // wait for more from the same directories
+      data.pendingLookups.add( new PendingLookup( row, requestUrl, targetFilePath ) );
+      if ( data.pendingLookups.size() >= data.lookupBatchSize ) {
+        lookUpPending( meta, data );
+      }
+      return true;
+    }
+
+    dispatch( meta, data, row, requestUrl, targetFilePath, null );
 
-    HCPReadResponse hcpResponse = null;
+    return true;
+  }
+
+  /**
+   * Hand a row on for download, or emit it straight away if its system metadata is already known
+   */
+  protected void dispatch( final HCPGetMeta meta, final HCPGetData data, final Object[] row, final String requestUrl,
+      final String targetFilePath, final HCPReadResponse known ) throws KettleException {
+    if ( data.window == null ) {
+      emitResult( data, known != null ? new GetResult( row, known, null, 0 )
+          : download( meta, data, row, requestUrl, targetFilePath ) );
+      return;
+    }
+
+    // make room in the window, then hand the download to a worker (going through the window keeps the row order)
+    while ( data.window.isFull() ) {
+      emitResult( data, data.window.take() );
+    }
+    data.window.submit( new Callable<GetResult>() {
+      @Override public GetResult call() {
+        return known != null ? new GetResult( row, known, null, 0 )
+            : download( meta, data, row, requestUrl, targetFilePath );
+      }
+    } );
+
+    // pass on whatever has completed in the meantime
+    GetResult result;
+    while ( ( result = data.window.poll() ) != null ) {
+      emitResult( data, result );
+    }
+  }
+
+  /**
+   * Look up the system metadata of the batch of pending rows, listing the directories that hold enough of them and
+   * sending a HEAD for the rest
+   */
+  protected void lookUpPending( HCPGetMeta meta, HCPGetData data ) throws KettleException {
+    List<PendingLookup> pending = data.pendingLookups;
+    data.pendingLookups = new ArrayList<>();
+
+    HCPReadResponse[] known = new HCPReadResponse[pending.size()];
+    List<String> urls = new ArrayList<>();
+    List<Integer> positions = new ArrayList<>();
+    for ( int i = 0; i < pending.size(); i++ ) {
+      String requestUrl = pending.get( i ).requestUrl;
+      if ( data.metadataCacheTTL > 0 ) {
+        known[i] = HCPMetadataCache.getInstance().get( requestUrl, data.metadataCacheTTL );
+      }
+      if ( known[i] == null ) {
+        urls.add( requestUrl );
+        positions.add( i );
+      }
+    }
+
+    for ( Map.Entry<String, List<Integer>> directory : data.listingPlanner.plan( urls ).entrySet() ) {
+      if ( isStopped() ) {
+        break;
+      }
+      long startTime = System.currentTimeMillis();
+      long generation = HCPMetadataCache.getInstance().getGeneration();
+      Map<String, HCPListResponse.ListEntry> entries = listDirectory( data, directory.getKey() );
+      if ( entries == null ) {
+        // the objects get a HEAD each
+        continue;
+      }
+      for ( int p : directory.getValue() ) {
+        HCPListResponse.ListEntry entry = entries.get( HCPListingPlanner.getName( urls.get( p ) ) );
+        if ( entry != null && OBJECT_TYPE.equals( entry.getType() ) ) {
+          HCPReadResponse response = entry.toReadResponse();
+          if ( data.metadataCacheTTL > 0 ) {
+            HCPMetadataCache.getInstance().put( urls.get( p ), response, generation );
+          }
+          known[positions.get( p )] = response;
+        }
+      }
+      if ( log.isDetailed() ) {
+        log.logDetailed( BaseMessages.getString( PKG, "HCPGet.Message.ListedDirectory", directory.getKey(),
+            directory.getValue().size(), System.currentTimeMillis() - startTime ) );
+      }
+    }
+
+    for ( int i = 0; i < pending.size(); i++ ) {
+      PendingLookup lookup = pending.get( i );
+      dispatch( meta, data, lookup.row, lookup.requestUrl, lookup.targetFilePath, known[i] );
+    }
+  }
+
+  /**
+   * @return the entries of the directory by name (both the UTF-8 and URL forms), or null if it couldn't be listed
+   */
+  protected Map<String, HCPListResponse.ListEntry> listDirectory( HCPGetData data, String directoryUrl ) {
     try {
-      outputStream = !meta.getFetchSystemMetadataOnly() ? KettleVFS.getOutputStream( targetFilePath, false ) : null;
-      hcpResponse =
-          HCPConnectionOperationUtils.performGet( data.client, requestUrl, data.authorization,
-              !meta.getFetchSystemMetadataOnly() ? new BufferedOutputStream( outputStream ) : null, log );
+      HCPListResponse listResponse =
+          HCPConnectionOperationUtils.performList( data.client, directoryUrl, data.authorization, log );
+      if ( listResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        if ( log.isDebug() ) {
+          log.logDebug( "Unable to list " + directoryUrl + ": " + listResponse.getExplanation() );
+        }
+        return null;
+      }
+      data.listingPlanner.listed( directoryUrl, listResponse.getEntries().size() );
 
+      Map<String, HCPListResponse.ListEntry> entries = new HashMap<>();
+      for ( HCPListResponse.ListEntry entry : listResponse.getEntries() ) {
+        if ( entry.getUrlName() != null ) {
+          entries.put( entry.getUrlName(), entry );
+        }
+        if ( entry.getUtf8Name() != null ) {
+          entries.put( entry.getUtf8Name(), entry );
+        }
+      }
+      return entries;
+    } catch ( Exception e ) {
+      log.logBasic( BaseMessages.getString( PKG, "HCPGet.Warning.UnableToListDirectory", directoryUrl,
+          e.getMessage() ) );
+      return null;
+    }
+  }
+
+  /**
+   * Perform a single download. This may run on a worker thread when more than one request is allowed in flight, so it
+   * must not touch the row streams.
+   */
+  protected GetResult download( HCPGetMeta meta, HCPGetData data, Object[] row, String requestUrl,
+      String targetFilePath ) {
+    long startTime = System.currentTimeMillis();
+
+    HCPReadResponse hcpResponse = null;
+    Object content = null;
+    try {
+      MessageDigest digest =
+          meta.isVerifyHash() && !meta.getFetchSystemMetadataOnly() ? HCPContentHash.createDigest( data.hashScheme )
+              : null;
+      if ( data.contentIndex >= 0 ) {
+        hcpResponse =
+            HCPConnectionOperationUtils.performGetContent( data.client, requestUrl, data.authorization,
+                data.maxContentSize, digest, log );
+        if ( hcpResponse.getContent() != null ) {
+          content =
+              data.contentEncoding != null ? new String( hcpResponse.getContent(), data.contentEncoding )
+                  : hcpResponse.getContent();
+        } else if ( hcpResponse.getStatus() == BaseHCPResponse.Status.FILE_TOO_LARGE
+            && StringUtils.isNotEmpty( targetFilePath ) ) {
+          // too big for a field
+          hcpResponse = downloadToFile( meta, data, requestUrl, targetFilePath, digest );
+        }
+      } else {
+        hcpResponse = downloadToFile( meta, data, requestUrl, targetFilePath, digest );
+      }
     } catch ( Exception e ) {
       log.logError( BaseMessages.getString( PKG, "HCPGet.Error.ErrorUsingHCPService" ), e );
     }
 
     long endTime = System.currentTimeMillis();
 
-    Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+    return new GetResult( row, hcpResponse, content, endTime - startTime );
+  }
+
+  /**
+   * Download to the target file (or just fetch system metadata)
+   */
+  protected HCPReadResponse downloadToFile( HCPGetMeta meta, HCPGetData data, String requestUrl,
+      String targetFilePath, MessageDigest digest ) throws Exception {
+    boolean fetchContent = !meta.getFetchSystemMetadataOnly();
+
+    long generation = HCPMetadataCache.getInstance().getGeneration();
+    if ( data.metadataCacheTTL > 0 ) {
+      // seen recently?
+      HCPReadResponse cached = HCPMetadataCache.getInstance().get( requestUrl, data.metadataCacheTTL );
+      if ( cached != null ) {
+        return cached;
+      }
+    }
+
+    // the same object may be fetched to more than one place
+    String journalKey = requestUrl + " > " + targetFilePath;
+    HCPTransferJournal.Completed done =
+        data.journal != null && fetchContent ? data.journal.getCompleted( journalKey ) : null;
+    if ( done != null ) {
+      // downloaded by an earlier run
+      HCPReadResponse hcpResponse = done.populate( new HCPReadResponse() );
+      hcpResponse.setVersionId( done.getVersionId() );
+      return hcpResponse;
+    }
+
+    HCPReadResponse hcpResponse = null;
+    // ranged and resumable downloads write in place, which needs a local target
+    File localFile =
+        fetchContent && ( data.rangeExecutor != null || meta.isResumeDownloads() ) ? HCPConnectionOperationUtils
+            .getLocalFile( targetFilePath, false ) : null;
+
+    HCPDownloadIndex.Entry indexed =
+        data.downloadIndex != null && fetchContent ? data.downloadIndex.getCurrent( requestUrl, targetFilePath ) : null;
+    // a plain download can happen in the same request as the check, unless it is to go through the cache
+    boolean downloadIfChanged = localFile == null && data.objectCache == null;
+    if ( indexed != null ) {
+      // only fetch it if it has changed
+      hcpResponse =
+          HCPConnectionOperationUtils.performConditionalGet( data.client, requestUrl, data.authorization,
+              indexed.getETag(), indexed.getLastModified(), downloadIfChanged ? targetFilePath : null, digest, log );
+      if ( hcpResponse.getStatus() == BaseHCPResponse.Status.NOT_MODIFIED ) {
+        if ( hcpResponse.getVersionId() == null ) {
+          hcpResponse.setVersionId( indexed.getVersionId() );
+        }
+        return hcpResponse;
+      }
+      if ( !downloadIfChanged && hcpResponse.getStatus() == BaseHCPResponse.Status.OK ) {
+        // changed - fetch it the usual way below
+        hcpResponse = null;
+      }
+    }
+
+    if ( hcpResponse != null ) {
+      // already downloaded (or failed) by the conditional request
+    } else if ( localFile != null && data.rangeExecutor != null ) {
+      hcpResponse =
+          HCPConnectionOperationUtils.performRangedGet( data.client, requestUrl, data.authorization, localFile,
+              data.rangeSize, data.rangeExecutor, digest, log );
+    } else if ( localFile != null ) {
+      hcpResponse = resumableDownload( data, requestUrl, localFile, digest );
+    } else if ( fetchContent && data.objectCache != null ) {
+      hcpResponse =
+          HCPConnectionOperationUtils.performGet( data.client, requestUrl, data.authorization,
+              new BufferedOutputStream( KettleVFS.getOutputStream( targetFilePath, false ) ), digest,
+              data.objectCache, log );
+    } else {
+      OutputStream outputStream = fetchContent ? KettleVFS.getOutputStream( targetFilePath, false ) : null;
+      hcpResponse =
+          HCPConnectionOperationUtils.performGet( data.client, requestUrl, data.authorization,
+              fetchContent ? new BufferedOutputStream( outputStream ) : null, digest, log );
+    }
+
+    if ( data.metadataCacheTTL > 0 ) {
+      HCPMetadataCache.getInstance().put( requestUrl, hcpResponse, generation );
+    }
+    if ( data.downloadIndex != null && fetchContent && hcpResponse.getStatus() == BaseHCPResponse.Status.OK ) {
+      data.downloadIndex.downloaded( requestUrl, targetFilePath, hcpResponse );
+    }
+    if ( data.journal != null && fetchContent && hcpResponse.getSuccess() ) {
+      data.journal.completed( journalKey, hcpResponse.getStatus(), hcpResponse.getVersionId(),
+          hcpResponse.getHCPHash() != null ? hcpResponse.getHCPHash() : hcpResponse.getComputedHash() );
+    }
+
+    return hcpResponse;
+  }
+
+  protected HCPReadResponse resumableDownload( HCPGetData data, String requestUrl, File localFile,
+      MessageDigest digest ) throws IOException {
+    for ( int attempt = 1; ; attempt++ ) {
+      try {
+        return HCPConnectionOperationUtils
+            .performResumableGet( data.client, requestUrl, data.authorization, localFile, digest, log );
+      } catch ( IOException e ) {
+        if ( attempt >= MAX_DOWNLOAD_ATTEMPTS || isStopped() ) {
+          throw e;
+        }
+        log.logBasic( BaseMessages.getString( PKG, "HCPGet.Message.RetryingDownload", requestUrl, e.getMessage() ) );
+      }
+    }
+  }
+
+  protected long parseOption( String value, long defaultValue, String warningKey ) {
+    value = environmentSubstitute( value );
+    if ( StringUtils.isEmpty( value ) ) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.logBasic( BaseMessages.getString( PKG, warningKey, value ) );
+      return defaultValue;
+    }
+  }
+
+  protected void emitResult( HCPGetData data, GetResult result ) throws KettleException {
+    Object[] outputRow = RowDataUtil.createResizedCopy( result.row, data.outputRowMeta.size() );
     int outputIndex = data.outputRowMeta.indexOfValue( HCPGetMeta.RESPONSE_TIME_FIELD_NAME );
 
+    if ( result.content != null ) {
+      outputRow[data.contentIndex] = result.content;
+    }
+
+    HCPReadResponse hcpResponse = result.response;
+    if ( hcpResponse == null || !hcpResponse.getSuccess() ) {
+      // no response means the request threw, which was only logged
+      data.failedRows++;
+    }
     if ( hcpResponse != null ) {
-      outputRow[outputIndex] = endTime - startTime;
+      outputRow[outputIndex] = result.elapsed;
       hcpResponse.populateKettleRow( data.outputRowMeta, outputRow );
 
       if ( !hcpResponse.getSuccess() ) {
@@ -172,22 +608,93 @@ public class HCPGet extends BaseStep implements StepInterface {
           putError( data.outputRowMeta, outputRow, 1L, hcpResponse.getExplanation(), "",
               hcpResponse.getStatus().toString() );
 
-          return true;
+          return;
         }
       }
     }
 
     putRow( data.outputRowMeta, outputRow );
-
-    return true;
   }
 
   @Override public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     // HCPGetMeta meta = (HCPGetMeta) smi;
     HCPGetData data = (HCPGetData) sdi;
 
-    data.client.destroy();
+    if ( data.window != null ) {
+      data.window.shutdown();
+    }
+    if ( data.rangeExecutor != null ) {
+      data.rangeExecutor.shutdownNow();
+    }
+    if ( data.downloadIndex != null ) {
+      try {
+        data.downloadIndex.save();
+      } catch ( Exception e ) {
+        log.logError(
+            BaseMessages.getString( PKG, "HCPGet.Error.UnableToSaveIndex", data.downloadIndex.getFilename() ), e );
+      }
+      data.downloadIndex = null;
+    }
+    if ( data.journal != null ) {
+      if ( data.allRowsDone && data.failedRows == 0 && getErrors() == 0 && !isStopped() ) {
+        // nothing left to resume
+        try {
+          data.journal.discard();
+          log.logDetailed(
+              BaseMessages.getString( PKG, "HCPGet.Message.JournalDiscarded", data.journal.getFilename() ) );
+        } catch ( Exception e ) {
+          log.logError(
+              BaseMessages.getString( PKG, "HCPGet.Error.UnableToDiscardJournal", data.journal.getFilename() ), e );
+        }
+      } else {
+        if ( data.failedRows > 0 ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPGet.Message.JournalKept", data.journal.getFilename(),
+              data.failedRows ) );
+        }
+        try {
+          data.journal.close();
+        } catch ( Exception e ) {
+          log.logError(
+              BaseMessages.getString( PKG, "HCPGet.Error.UnableToCloseJournal", data.journal.getFilename() ), e );
+        }
+      }
+      data.journal = null;
+    }
+    HCPClientRegistry.release( data.client );
+    data.client = null;
 
     super.dispose( smi, sdi );
   }
+
+  /**
+   * A row waiting for its system metadata to be looked up with others from the same directories
+   */
+  protected static class PendingLookup {
+    protected final Object[] row;
+    protected final String requestUrl;
+    protected final String targetFilePath;
+
+    protected PendingLookup( Object[] row, String requestUrl, String targetFilePath ) {
+      this.row = row;
+      this.requestUrl = requestUrl;
+      this.targetFilePath = targetFilePath;
+    }
+  }
+
+  /**
+   * Outcome of a single download, carried from the worker back to the step thread
+   */
+  protected static class GetResult {
+    protected final Object[] row;
+    protected final HCPReadResponse response;
+    protected final Object content;
+    protected final long elapsed;
+
+    protected GetResult( Object[] row, HCPReadResponse response, Object content, long elapsed ) {
+      this.row = row;
+      this.response = response;
+      this.content = content;
+      this.elapsed = elapsed;
+    }
+  }
 }
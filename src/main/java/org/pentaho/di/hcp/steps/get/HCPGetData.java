@@ -25,9 +25,17 @@ package org.pentaho.di.hcp.steps.get;
 
 import com.sun.jersey.client.apache.ApacheHttpClient;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.hcp.shared.HCPDownloadIndex;
+import org.pentaho.di.hcp.shared.HCPListingPlanner;
+import org.pentaho.di.hcp.shared.HCPObjectCache;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.hcp.shared.HCPTransferJournal;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 public class HCPGetData extends BaseStepData implements StepDataInterface {
   
   public ApacheHttpClient client;
@@ -35,9 +43,33 @@ public class HCPGetData extends BaseStepData implements StepDataInterface {
   public int targetPathIndex;
   public String authorization;
   public int bufferSize;
+  public String hashScheme;
+  public HCPTransferJournal journal;
+  public boolean allRowsDone;
+  /** Rows whose download failed, whether or not they went to the error stream; the journal is kept if there are any */
+  public long failedRows;
+  public HCPDownloadIndex downloadIndex;
+  public HCPObjectCache objectCache;
+  /** How old cached system metadata may be, in ms; 0 to not use the metadata cache */
+  public long metadataCacheTTL;
+  /** Decides which directories to list instead of sending a HEAD per object; null to always send HEADs */
+  public HCPListingPlanner listingPlanner;
+  public int lookupBatchSize;
+  public List<HCPGet.PendingLookup> pendingLookups;
 
   public RowMetaInterface outputRowMeta;
 
+  public int inFlightRequests;
+  public HCPRequestWindow<HCPGet.GetResult> window;
+
+  public int contentIndex;
+  public long maxContentSize;
+  /** Charset for String content; null for Binary */
+  public String contentEncoding;
+
+  public long rangeSize;
+  public ExecutorService rangeExecutor;
+
   public HCPGetData() {
   }
 }
@@ -53,6 +53,7 @@ import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepDialogInterface;
 import org.pentaho.di.ui.core.dialog.ErrorDialog;
 import org.pentaho.di.ui.core.widget.ComboVar;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreFactory;
@@ -68,6 +69,23 @@ public class HCPGetDialog extends BaseStepDialog implements StepDialogInterface
   private ComboVar wSourceFileField;
   private ComboVar wTargetFileField;
   private Button wFetchSysMetaOnlyBut;
+  private TextVar wMetadataCacheTTLField;
+  private TextVar wListingThresholdField;
+  private TextVar wLookupBatchSizeField;
+  private TextVar wContentFieldField;
+  private CCombo wContentType;
+  private TextVar wContentEncodingField;
+  private TextVar wMaxContentSizeField;
+  private Button wVerifyHash;
+  private TextVar wIndexFileField;
+  private TextVar wCacheDirectoryField;
+  private TextVar wCacheSizeField;
+  private TextVar wJournalFileField;
+  private TextVar wInFlightRequestsField;
+  private Button wPreserveOrder;
+  private TextVar wRangeSizeField;
+  private TextVar wRangeConcurrencyField;
+  private Button wResumeDownloads;
 
   private HCPGetMeta input;
 
@@ -269,6 +287,83 @@ public class HCPGetDialog extends BaseStepDialog implements StepDialogInterface
     } );
     lastControl = wTargetFileField;
 
+    Label contentFieldLab = new Label( shell, SWT.RIGHT );
+    contentFieldLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.ContentField.Label" ) );
+    contentFieldLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.ContentField.Tooltip" ) );
+    props.setLook( contentFieldLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    contentFieldLab.setLayoutData( fd );
+    wContentFieldField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wContentFieldField );
+    wContentFieldField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wContentFieldField.setLayoutData( fd );
+    lastControl = wContentFieldField;
+
+    Label contentTypeLab = new Label( shell, SWT.RIGHT );
+    contentTypeLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.ContentType.Label" ) );
+    contentTypeLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.ContentType.Tooltip" ) );
+    props.setLook( contentTypeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    contentTypeLab.setLayoutData( fd );
+    wContentType = new CCombo( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER | SWT.READ_ONLY );
+    wContentType.setItems( new String[] { HCPGetMeta.CONTENT_TYPE_BINARY, HCPGetMeta.CONTENT_TYPE_STRING } );
+    props.setLook( wContentType );
+    wContentType.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wContentType.setLayoutData( fd );
+    lastControl = wContentType;
+
+    Label contentEncodingLab = new Label( shell, SWT.RIGHT );
+    contentEncodingLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.ContentEncoding.Label" ) );
+    contentEncodingLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.ContentEncoding.Tooltip" ) );
+    props.setLook( contentEncodingLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    contentEncodingLab.setLayoutData( fd );
+    wContentEncodingField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wContentEncodingField );
+    wContentEncodingField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wContentEncodingField.setLayoutData( fd );
+    lastControl = wContentEncodingField;
+
+    Label maxContentSizeLab = new Label( shell, SWT.RIGHT );
+    maxContentSizeLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.MaxContentSize.Label" ) );
+    maxContentSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.MaxContentSize.Tooltip" ) );
+    props.setLook( maxContentSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    maxContentSizeLab.setLayoutData( fd );
+    wMaxContentSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wMaxContentSizeField );
+    wMaxContentSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wMaxContentSizeField.setLayoutData( fd );
+    lastControl = wMaxContentSizeField;
+
     Label fetchSysMetaLabel = new Label( shell, SWT.RIGHT );
     fetchSysMetaLabel.setText( BaseMessages.getString( PKG, "HCPGetDialog.FetchSysMetaOnly.Label" ) );
     fetchSysMetaLabel.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.FetchSysMetaOnly.Tooltip" ) );
@@ -292,6 +387,265 @@ public class HCPGetDialog extends BaseStepDialog implements StepDialogInterface
       }
     } ); lastControl = wFetchSysMetaOnlyBut;
 
+    Label metadataCacheTTLLab = new Label( shell, SWT.RIGHT );
+    metadataCacheTTLLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.MetadataCacheTTL.Label" ) );
+    metadataCacheTTLLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.MetadataCacheTTL.Tooltip" ) );
+    props.setLook( metadataCacheTTLLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    metadataCacheTTLLab.setLayoutData( fd );
+    wMetadataCacheTTLField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wMetadataCacheTTLField );
+    wMetadataCacheTTLField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wMetadataCacheTTLField.setLayoutData( fd );
+    lastControl = wMetadataCacheTTLField;
+
+    Label listingThresholdLab = new Label( shell, SWT.RIGHT );
+    listingThresholdLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.ListingThreshold.Label" ) );
+    listingThresholdLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.ListingThreshold.Tooltip" ) );
+    props.setLook( listingThresholdLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    listingThresholdLab.setLayoutData( fd );
+    wListingThresholdField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wListingThresholdField );
+    wListingThresholdField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wListingThresholdField.setLayoutData( fd );
+    lastControl = wListingThresholdField;
+
+    Label lookupBatchSizeLab = new Label( shell, SWT.RIGHT );
+    lookupBatchSizeLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.LookupBatchSize.Label" ) );
+    lookupBatchSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.LookupBatchSize.Tooltip" ) );
+    props.setLook( lookupBatchSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    lookupBatchSizeLab.setLayoutData( fd );
+    wLookupBatchSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wLookupBatchSizeField );
+    wLookupBatchSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wLookupBatchSizeField.setLayoutData( fd );
+    lastControl = wLookupBatchSizeField;
+
+    Label verifyHashLabel = new Label( shell, SWT.RIGHT );
+    verifyHashLabel.setText( BaseMessages.getString( PKG, "HCPGetDialog.VerifyHash.Label" ) );
+    verifyHashLabel.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.VerifyHash.Tooltip" ) );
+    props.setLook( verifyHashLabel );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    verifyHashLabel.setLayoutData( fd );
+    wVerifyHash = new Button( shell, SWT.CHECK );
+    props.setLook( wVerifyHash );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wVerifyHash.setLayoutData( fd );
+    wVerifyHash.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent selectionEvent ) {
+        input.setChanged();
+      }
+    } );
+    lastControl = wVerifyHash;
+
+    Label indexFileLab = new Label( shell, SWT.RIGHT );
+    indexFileLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.IndexFile.Label" ) );
+    indexFileLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.IndexFile.Tooltip" ) );
+    props.setLook( indexFileLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    indexFileLab.setLayoutData( fd );
+    wIndexFileField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wIndexFileField );
+    wIndexFileField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wIndexFileField.setLayoutData( fd );
+    lastControl = wIndexFileField;
+
+    Label cacheDirectoryLab = new Label( shell, SWT.RIGHT );
+    cacheDirectoryLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.CacheDirectory.Label" ) );
+    cacheDirectoryLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.CacheDirectory.Tooltip" ) );
+    props.setLook( cacheDirectoryLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    cacheDirectoryLab.setLayoutData( fd );
+    wCacheDirectoryField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheDirectoryField );
+    wCacheDirectoryField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wCacheDirectoryField.setLayoutData( fd );
+    lastControl = wCacheDirectoryField;
+
+    Label cacheSizeLab = new Label( shell, SWT.RIGHT );
+    cacheSizeLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.CacheSize.Label" ) );
+    cacheSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.CacheSize.Tooltip" ) );
+    props.setLook( cacheSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    cacheSizeLab.setLayoutData( fd );
+    wCacheSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wCacheSizeField );
+    wCacheSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wCacheSizeField.setLayoutData( fd );
+    lastControl = wCacheSizeField;
+
+    Label journalFileLab = new Label( shell, SWT.RIGHT );
+    journalFileLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.JournalFile.Label" ) );
+    journalFileLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.JournalFile.Tooltip" ) );
+    props.setLook( journalFileLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    journalFileLab.setLayoutData( fd );
+    wJournalFileField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wJournalFileField );
+    wJournalFileField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wJournalFileField.setLayoutData( fd );
+    lastControl = wJournalFileField;
+
+    Label inFlightLab = new Label( shell, SWT.RIGHT );
+    inFlightLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.InFlightRequests.Label" ) );
+    inFlightLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.InFlightRequests.Tooltip" ) );
+    props.setLook( inFlightLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    inFlightLab.setLayoutData( fd );
+    wInFlightRequestsField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wInFlightRequestsField );
+    wInFlightRequestsField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wInFlightRequestsField.setLayoutData( fd );
+    lastControl = wInFlightRequestsField;
+
+    Label preserveOrderLab = new Label( shell, SWT.RIGHT );
+    preserveOrderLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.PreserveOrder.Label" ) );
+    preserveOrderLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.PreserveOrder.Tooltip" ) );
+    props.setLook( preserveOrderLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    preserveOrderLab.setLayoutData( fd );
+    wPreserveOrder = new Button( shell, SWT.CHECK );
+    props.setLook( wPreserveOrder );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPreserveOrder.setLayoutData( fd );
+    wPreserveOrder.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent selectionEvent ) {
+        input.setChanged();
+      }
+    } );
+    lastControl = wPreserveOrder;
+
+    Label rangeSizeLab = new Label( shell, SWT.RIGHT );
+    rangeSizeLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.RangeSize.Label" ) );
+    rangeSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.RangeSize.Tooltip" ) );
+    props.setLook( rangeSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    rangeSizeLab.setLayoutData( fd );
+    wRangeSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wRangeSizeField );
+    wRangeSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wRangeSizeField.setLayoutData( fd );
+    lastControl = wRangeSizeField;
+
+    Label rangeConcurrencyLab = new Label( shell, SWT.RIGHT );
+    rangeConcurrencyLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.RangeConcurrency.Label" ) );
+    rangeConcurrencyLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.RangeConcurrency.Tooltip" ) );
+    props.setLook( rangeConcurrencyLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    rangeConcurrencyLab.setLayoutData( fd );
+    wRangeConcurrencyField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wRangeConcurrencyField );
+    wRangeConcurrencyField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wRangeConcurrencyField.setLayoutData( fd );
+    lastControl = wRangeConcurrencyField;
+
+    Label resumeDownloadsLab = new Label( shell, SWT.RIGHT );
+    resumeDownloadsLab.setText( BaseMessages.getString( PKG, "HCPGetDialog.ResumeDownloads.Label" ) );
+    resumeDownloadsLab.setToolTipText( BaseMessages.getString( PKG, "HCPGetDialog.ResumeDownloads.Tooltip" ) );
+    props.setLook( resumeDownloadsLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    resumeDownloadsLab.setLayoutData( fd );
+    wResumeDownloads = new Button( shell, SWT.CHECK );
+    props.setLook( wResumeDownloads );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wResumeDownloads.setLayoutData( fd );
+    wResumeDownloads.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent selectionEvent ) {
+        input.setChanged();
+      }
+    } );
+    lastControl = wResumeDownloads;
+
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
     wCancel = new Button( shell, SWT.PUSH );
@@ -362,7 +716,24 @@ public class HCPGetDialog extends BaseStepDialog implements StepDialogInterface
     wConnection.setText( input.getConnection() == null ? "" : Const.NVL( input.getConnection().getName(), "" ) );
     wSourceFileField.setText( Const.NVL( input.getSourceFileField(), "" ) );
     wTargetFileField.setText( Const.NVL( input.getTargetFileField(), "" ) );
+    wContentFieldField.setText( Const.NVL( input.getContentField(), "" ) );
+    wContentType.setText( Const.NVL( input.getContentType(), HCPGetMeta.CONTENT_TYPE_BINARY ) );
+    wContentEncodingField.setText( Const.NVL( input.getContentEncoding(), "" ) );
+    wMaxContentSizeField.setText( Const.NVL( input.getMaxContentSize(), "" ) );
     wFetchSysMetaOnlyBut.setSelection( input.getFetchSystemMetadataOnly() );
+    wMetadataCacheTTLField.setText( Const.NVL( input.getMetadataCacheTTL(), "" ) );
+    wListingThresholdField.setText( Const.NVL( input.getListingThreshold(), "" ) );
+    wLookupBatchSizeField.setText( Const.NVL( input.getLookupBatchSize(), "" ) );
+    wVerifyHash.setSelection( input.isVerifyHash() );
+    wIndexFileField.setText( Const.NVL( input.getIndexFile(), "" ) );
+    wCacheDirectoryField.setText( Const.NVL( input.getCacheDirectory(), "" ) );
+    wCacheSizeField.setText( Const.NVL( input.getCacheSize(), "" ) );
+    wJournalFileField.setText( Const.NVL( input.getJournalFile(), "" ) );
+    wInFlightRequestsField.setText( Const.NVL( input.getInFlightRequests(), "" ) );
+    wPreserveOrder.setSelection( input.isPreserveOrder() );
+    wRangeSizeField.setText( Const.NVL( input.getRangeSize(), "" ) );
+    wRangeConcurrencyField.setText( Const.NVL( input.getRangeConcurrency(), "" ) );
+    wResumeDownloads.setSelection( input.isResumeDownloads() );
 
     wStepname.selectAll();
     wStepname.setFocus();
@@ -395,7 +766,24 @@ public class HCPGetDialog extends BaseStepDialog implements StepDialogInterface
     }
     input.setSourceFileField( wSourceFileField.getText() );
     input.setTargetFileField( wTargetFileField.getText() );
+    input.setContentField( wContentFieldField.getText() );
+    input.setContentType( wContentType.getText() );
+    input.setContentEncoding( wContentEncodingField.getText() );
+    input.setMaxContentSize( wMaxContentSizeField.getText() );
     input.setFetchSystemMetadataOnly( wFetchSysMetaOnlyBut.getSelection() );
+    input.setMetadataCacheTTL( wMetadataCacheTTLField.getText() );
+    input.setListingThreshold( wListingThresholdField.getText() );
+    input.setLookupBatchSize( wLookupBatchSizeField.getText() );
+    input.setVerifyHash( wVerifyHash.getSelection() );
+    input.setIndexFile( wIndexFileField.getText() );
+    input.setCacheDirectory( wCacheDirectoryField.getText() );
+    input.setCacheSize( wCacheSizeField.getText() );
+    input.setJournalFile( wJournalFileField.getText() );
+    input.setInFlightRequests( wInFlightRequestsField.getText() );
+    input.setPreserveOrder( wPreserveOrder.getSelection() );
+    input.setRangeSize( wRangeSizeField.getText() );
+    input.setRangeConcurrency( wRangeConcurrencyField.getText() );
+    input.setResumeDownloads( wResumeDownloads.getSelection() );
 
     dispose();
   }
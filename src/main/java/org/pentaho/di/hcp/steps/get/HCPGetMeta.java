@@ -23,6 +23,7 @@
 package org.pentaho.di.hcp.steps.get;
 
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
@@ -31,12 +32,15 @@ import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleXMLException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.hcp.shared.BaseHCPResponse;
 import org.pentaho.di.hcp.shared.HCPConnection;
 import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.hcp.shared.HCPObjectCache;
 import org.pentaho.di.hcp.shared.HCPReadResponse;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.repository.ObjectId;
@@ -63,6 +67,32 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
   private static final String TAG_SOURCE_FILE = "source_field";
   private static final String TAG_TARGET_FILE = "target_field";
   private static final String TAG_FETCH_SYS_META_ONLY = "fetch_sys_meta";
+  private static final String TAG_METADATA_CACHE_TTL = "metadata_cache_ttl";
+  private static final String TAG_LISTING_THRESHOLD = "listing_threshold";
+  private static final String TAG_LOOKUP_BATCH_SIZE = "lookup_batch_size";
+  private static final String TAG_VERIFY_HASH = "verify_hash";
+  private static final String TAG_JOURNAL_FILE = "journal_file";
+  private static final String TAG_INDEX_FILE = "index_file";
+  private static final String TAG_CACHE_DIRECTORY = "cache_directory";
+  private static final String TAG_CACHE_SIZE = "cache_size";
+  private static final String TAG_IN_FLIGHT_REQUESTS = "in_flight_requests";
+  private static final String TAG_PRESERVE_ORDER = "preserve_order";
+  private static final String TAG_RANGE_SIZE = "range_size";
+  private static final String TAG_RANGE_CONCURRENCY = "range_concurrency";
+  private static final String TAG_RESUME_DOWNLOADS = "resume_downloads";
+  private static final String TAG_CONTENT_FIELD = "content_field";
+  private static final String TAG_CONTENT_TYPE = "content_type";
+  private static final String TAG_CONTENT_ENCODING = "content_encoding";
+  private static final String TAG_MAX_CONTENT_SIZE = "max_content_size";
+
+  public static final String CONTENT_TYPE_BINARY = "Binary";
+  public static final String CONTENT_TYPE_STRING = "String";
+  public static final long DEFAULT_MAX_CONTENT_SIZE = 10L * 1024L * 1024L;
+
+  public static final int DEFAULT_IN_FLIGHT_REQUESTS = 1;
+  public static final int DEFAULT_LOOKUP_BATCH_SIZE = 1000;
+  public static final long DEFAULT_RANGE_SIZE = 16L * 1024L * 1024L;
+  public static final int DEFAULT_RANGE_CONCURRENCY = 4;
 
   public static final String RESPONSE_TIME_FIELD_NAME = "Elapsed time ms";
 
@@ -73,6 +103,60 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
 
   private boolean m_fetchSystemMetadataOnly;
 
+  /** How long (ms) system metadata fetched for one row may be reused for later rows. Empty means always fetch */
+  private String m_metadataCacheTTL = "";
+
+  /**
+   * List a directory instead of sending a HEAD per object when at least this many objects of a batch are in it. Empty
+   * means always send HEADs
+   */
+  private String m_listingThreshold = "";
+
+  /** Number of rows to gather before deciding which directories to list */
+  private String m_lookupBatchSize = "" + DEFAULT_LOOKUP_BATCH_SIZE;
+
+  /** Hash downloads as they are written and compare with the hash HCP reports */
+  private boolean m_verifyHash;
+
+  /** Record of what each target was downloaded from, so unchanged objects are not fetched again. Empty means none */
+  private String m_indexFile = "";
+
+  /** Local disk cache to read objects through. Empty means no cache */
+  private String m_cacheDirectory = "";
+
+  /** Maximum total size of the cache in bytes */
+  private String m_cacheSize = "" + HCPObjectCache.DEFAULT_MAX_BYTES;
+
+  /** Journal of completed downloads, so a restarted run can pick up where it stopped. Empty means no journal */
+  private String m_journalFile = "";
+
+  /** Maximum number of downloads in flight at once for each step copy */
+  private String m_inFlightRequests = "" + DEFAULT_IN_FLIGHT_REQUESTS;
+
+  /** When downloading concurrently, emit rows in input order rather than completion order */
+  private boolean m_preserveOrder = true;
+
+  /** Download local targets as parallel byte ranges of this size. Empty means one GET per object */
+  private String m_rangeSize = "";
+
+  /** Number of ranges of one object to fetch at once */
+  private String m_rangeConcurrency = "" + DEFAULT_RANGE_CONCURRENCY;
+
+  /** Continue partial local downloads (from an earlier attempt or run) rather than starting again */
+  private boolean m_resumeDownloads;
+
+  /** Output field to read objects into, rather than writing them to the target file. Empty means files only */
+  private String m_contentField = "";
+
+  /** Binary or String */
+  private String m_contentType = CONTENT_TYPE_BINARY;
+
+  /** Encoding used to decode String content. Empty means UTF-8 */
+  private String m_contentEncoding = "";
+
+  /** Objects bigger than this go to the target file (if there is one) instead of the content field */
+  private String m_maxContentSize = "" + DEFAULT_MAX_CONTENT_SIZE;
+
   public HCPGetMeta() {
     super();
   }
@@ -106,6 +190,17 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
     try {
       BaseHCPResponse.addMinSysFieldMetadata( inputRowMeta );
       HCPReadResponse.addReadFieldMetadata( inputRowMeta );
+      if ( m_verifyHash ) {
+        BaseHCPResponse.addHashVerificationFieldMetadata( inputRowMeta );
+      }
+      if ( StringUtils.isNotEmpty( m_contentField ) && !m_fetchSystemMetadataOnly ) {
+        String fieldName = space.environmentSubstitute( m_contentField );
+        ValueMetaInterface contentValue =
+            CONTENT_TYPE_STRING.equalsIgnoreCase( m_contentType ) ? new ValueMetaString( fieldName )
+                : new ValueMetaBinary( fieldName );
+        contentValue.setOrigin( name );
+        inputRowMeta.addValueMeta( contentValue );
+      }
     } catch ( KettlePluginException e ) {
       throw new KettleStepException( e );
     }
@@ -118,6 +213,23 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
     xml.append( XMLHandler.addTagValue( TAG_SOURCE_FILE, sourceFileField ) );
     xml.append( XMLHandler.addTagValue( TAG_TARGET_FILE, targetFileField ) );
     xml.append( XMLHandler.addTagValue( TAG_FETCH_SYS_META_ONLY, m_fetchSystemMetadataOnly ) );
+    xml.append( XMLHandler.addTagValue( TAG_METADATA_CACHE_TTL, m_metadataCacheTTL ) );
+    xml.append( XMLHandler.addTagValue( TAG_LISTING_THRESHOLD, m_listingThreshold ) );
+    xml.append( XMLHandler.addTagValue( TAG_LOOKUP_BATCH_SIZE, m_lookupBatchSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_VERIFY_HASH, m_verifyHash ) );
+    xml.append( XMLHandler.addTagValue( TAG_INDEX_FILE, m_indexFile ) );
+    xml.append( XMLHandler.addTagValue( TAG_CACHE_DIRECTORY, m_cacheDirectory ) );
+    xml.append( XMLHandler.addTagValue( TAG_CACHE_SIZE, m_cacheSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_JOURNAL_FILE, m_journalFile ) );
+    xml.append( XMLHandler.addTagValue( TAG_IN_FLIGHT_REQUESTS, m_inFlightRequests ) );
+    xml.append( XMLHandler.addTagValue( TAG_PRESERVE_ORDER, m_preserveOrder ) );
+    xml.append( XMLHandler.addTagValue( TAG_RANGE_SIZE, m_rangeSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_RANGE_CONCURRENCY, m_rangeConcurrency ) );
+    xml.append( XMLHandler.addTagValue( TAG_RESUME_DOWNLOADS, m_resumeDownloads ) );
+    xml.append( XMLHandler.addTagValue( TAG_CONTENT_FIELD, m_contentField ) );
+    xml.append( XMLHandler.addTagValue( TAG_CONTENT_TYPE, m_contentType ) );
+    xml.append( XMLHandler.addTagValue( TAG_CONTENT_ENCODING, m_contentEncoding ) );
+    xml.append( XMLHandler.addTagValue( TAG_MAX_CONTENT_SIZE, m_maxContentSize ) );
 
     return xml.toString();
   }
@@ -144,6 +256,41 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
       if ( fetchSysM != null ) {
         setFetchSystemMetadataOnly( fetchSysM.equalsIgnoreCase( "Y" ) );
       }
+      m_metadataCacheTTL = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_METADATA_CACHE_TTL ), "" );
+      m_listingThreshold = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_LISTING_THRESHOLD ), "" );
+      String lookupBatchSize = XMLHandler.getTagValue( stepnode, TAG_LOOKUP_BATCH_SIZE );
+      if ( StringUtils.isNotEmpty( lookupBatchSize ) ) {
+        m_lookupBatchSize = lookupBatchSize;
+      }
+      m_verifyHash = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_VERIFY_HASH ) );
+      m_indexFile = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_INDEX_FILE ), "" );
+      m_cacheDirectory = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CACHE_DIRECTORY ), "" );
+      String cacheSize = XMLHandler.getTagValue( stepnode, TAG_CACHE_SIZE );
+      if ( StringUtils.isNotEmpty( cacheSize ) ) {
+        m_cacheSize = cacheSize;
+      }
+      m_journalFile = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_JOURNAL_FILE ), "" );
+      String inFlight = XMLHandler.getTagValue( stepnode, TAG_IN_FLIGHT_REQUESTS );
+      if ( StringUtils.isNotEmpty( inFlight ) ) {
+        m_inFlightRequests = inFlight;
+      }
+      String preserveOrder = XMLHandler.getTagValue( stepnode, TAG_PRESERVE_ORDER );
+      if ( preserveOrder != null ) {
+        m_preserveOrder = preserveOrder.equalsIgnoreCase( "Y" );
+      }
+      m_rangeSize = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_RANGE_SIZE ), "" );
+      String rangeConcurrency = XMLHandler.getTagValue( stepnode, TAG_RANGE_CONCURRENCY );
+      if ( StringUtils.isNotEmpty( rangeConcurrency ) ) {
+        m_rangeConcurrency = rangeConcurrency;
+      }
+      m_resumeDownloads = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_RESUME_DOWNLOADS ) );
+      m_contentField = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CONTENT_FIELD ), "" );
+      m_contentType = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CONTENT_TYPE ), CONTENT_TYPE_BINARY );
+      m_contentEncoding = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CONTENT_ENCODING ), "" );
+      String maxContentSize = XMLHandler.getTagValue( stepnode, TAG_MAX_CONTENT_SIZE );
+      if ( StringUtils.isNotEmpty( maxContentSize ) ) {
+        m_maxContentSize = maxContentSize;
+      }
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString( PKG, "HCPGetMeta.Error.CouldNotLoadXML" ), e );
     }
@@ -157,6 +304,23 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
     rep.saveStepAttribute( id_transformation, id_step, TAG_SOURCE_FILE, sourceFileField );
     rep.saveStepAttribute( id_transformation, id_step, TAG_TARGET_FILE, targetFileField );
     rep.saveStepAttribute( id_transformation, id_step, TAG_FETCH_SYS_META_ONLY, m_fetchSystemMetadataOnly );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_METADATA_CACHE_TTL, m_metadataCacheTTL );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_LISTING_THRESHOLD, m_listingThreshold );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_LOOKUP_BATCH_SIZE, m_lookupBatchSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_VERIFY_HASH, m_verifyHash );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_INDEX_FILE, m_indexFile );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CACHE_DIRECTORY, m_cacheDirectory );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CACHE_SIZE, m_cacheSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_JOURNAL_FILE, m_journalFile );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_IN_FLIGHT_REQUESTS, m_inFlightRequests );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PRESERVE_ORDER, m_preserveOrder );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_RANGE_SIZE, m_rangeSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_RANGE_CONCURRENCY, m_rangeConcurrency );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_RESUME_DOWNLOADS, m_resumeDownloads );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CONTENT_FIELD, m_contentField );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CONTENT_TYPE, m_contentType );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CONTENT_ENCODING, m_contentEncoding );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MAX_CONTENT_SIZE, m_maxContentSize );
   }
 
   @Override public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
@@ -177,6 +341,38 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
     sourceFileField = rep.getStepAttributeString( id_step, TAG_SOURCE_FILE );
     targetFileField = rep.getStepAttributeString( id_step, TAG_TARGET_FILE );
     m_fetchSystemMetadataOnly = rep.getStepAttributeBoolean( id_step, TAG_FETCH_SYS_META_ONLY );
+    m_metadataCacheTTL = Const.NVL( rep.getStepAttributeString( id_step, TAG_METADATA_CACHE_TTL ), "" );
+    m_listingThreshold = Const.NVL( rep.getStepAttributeString( id_step, TAG_LISTING_THRESHOLD ), "" );
+    String lookupBatchSize = rep.getStepAttributeString( id_step, TAG_LOOKUP_BATCH_SIZE );
+    if ( StringUtils.isNotEmpty( lookupBatchSize ) ) {
+      m_lookupBatchSize = lookupBatchSize;
+    }
+    m_verifyHash = rep.getStepAttributeBoolean( id_step, TAG_VERIFY_HASH );
+    m_indexFile = Const.NVL( rep.getStepAttributeString( id_step, TAG_INDEX_FILE ), "" );
+    m_cacheDirectory = Const.NVL( rep.getStepAttributeString( id_step, TAG_CACHE_DIRECTORY ), "" );
+    String cacheSize = rep.getStepAttributeString( id_step, TAG_CACHE_SIZE );
+    if ( StringUtils.isNotEmpty( cacheSize ) ) {
+      m_cacheSize = cacheSize;
+    }
+    m_journalFile = Const.NVL( rep.getStepAttributeString( id_step, TAG_JOURNAL_FILE ), "" );
+    String inFlight = rep.getStepAttributeString( id_step, TAG_IN_FLIGHT_REQUESTS );
+    if ( StringUtils.isNotEmpty( inFlight ) ) {
+      m_inFlightRequests = inFlight;
+    }
+    m_preserveOrder = rep.getStepAttributeBoolean( id_step, 0, TAG_PRESERVE_ORDER, true );
+    m_rangeSize = Const.NVL( rep.getStepAttributeString( id_step, TAG_RANGE_SIZE ), "" );
+    String rangeConcurrency = rep.getStepAttributeString( id_step, TAG_RANGE_CONCURRENCY );
+    if ( StringUtils.isNotEmpty( rangeConcurrency ) ) {
+      m_rangeConcurrency = rangeConcurrency;
+    }
+    m_resumeDownloads = rep.getStepAttributeBoolean( id_step, TAG_RESUME_DOWNLOADS );
+    m_contentField = Const.NVL( rep.getStepAttributeString( id_step, TAG_CONTENT_FIELD ), "" );
+    m_contentType = Const.NVL( rep.getStepAttributeString( id_step, TAG_CONTENT_TYPE ), CONTENT_TYPE_BINARY );
+    m_contentEncoding = Const.NVL( rep.getStepAttributeString( id_step, TAG_CONTENT_ENCODING ), "" );
+    String maxContentSize = rep.getStepAttributeString( id_step, TAG_MAX_CONTENT_SIZE );
+    if ( StringUtils.isNotEmpty( maxContentSize ) ) {
+      m_maxContentSize = maxContentSize;
+    }
   }
 
   public HCPConnection getConnection() {
@@ -211,6 +407,142 @@ public class HCPGetMeta extends BaseStepMeta implements StepMetaInterface {
     return m_fetchSystemMetadataOnly;
   }
 
+  public void setMetadataCacheTTL( String metadataCacheTTL ) {
+    m_metadataCacheTTL = metadataCacheTTL;
+  }
+
+  public String getMetadataCacheTTL() {
+    return m_metadataCacheTTL;
+  }
+
+  public void setListingThreshold( String listingThreshold ) {
+    m_listingThreshold = listingThreshold;
+  }
+
+  public String getListingThreshold() {
+    return m_listingThreshold;
+  }
+
+  public void setLookupBatchSize( String lookupBatchSize ) {
+    m_lookupBatchSize = lookupBatchSize;
+  }
+
+  public String getLookupBatchSize() {
+    return m_lookupBatchSize;
+  }
+
+  public void setVerifyHash( boolean verifyHash ) {
+    m_verifyHash = verifyHash;
+  }
+
+  public boolean isVerifyHash() {
+    return m_verifyHash;
+  }
+
+  public void setIndexFile( String indexFile ) {
+    m_indexFile = indexFile;
+  }
+
+  public String getIndexFile() {
+    return m_indexFile;
+  }
+
+  public void setCacheDirectory( String cacheDirectory ) {
+    m_cacheDirectory = cacheDirectory;
+  }
+
+  public String getCacheDirectory() {
+    return m_cacheDirectory;
+  }
+
+  public void setCacheSize( String cacheSize ) {
+    m_cacheSize = cacheSize;
+  }
+
+  public String getCacheSize() {
+    return m_cacheSize;
+  }
+
+  public void setJournalFile( String journalFile ) {
+    m_journalFile = journalFile;
+  }
+
+  public String getJournalFile() {
+    return m_journalFile;
+  }
+
+  public void setInFlightRequests( String inFlightRequests ) {
+    m_inFlightRequests = inFlightRequests;
+  }
+
+  public String getInFlightRequests() {
+    return m_inFlightRequests;
+  }
+
+  public void setPreserveOrder( boolean preserveOrder ) {
+    m_preserveOrder = preserveOrder;
+  }
+
+  public boolean isPreserveOrder() {
+    return m_preserveOrder;
+  }
+
+  public void setRangeSize( String rangeSize ) {
+    m_rangeSize = rangeSize;
+  }
+
+  public String getRangeSize() {
+    return m_rangeSize;
+  }
+
+  public void setRangeConcurrency( String rangeConcurrency ) {
+    m_rangeConcurrency = rangeConcurrency;
+  }
+
+  public String getRangeConcurrency() {
+    return m_rangeConcurrency;
+  }
+
+  public void setResumeDownloads( boolean resumeDownloads ) {
+    m_resumeDownloads = resumeDownloads;
+  }
+
+  public boolean isResumeDownloads() {
+    return m_resumeDownloads;
+  }
+
+  public void setContentField( String contentField ) {
+    m_contentField = contentField;
+  }
+
+  public String getContentField() {
+    return m_contentField;
+  }
+
+  public void setContentType( String contentType ) {
+    m_contentType = contentType;
+  }
+
+  public String getContentType() {
+    return m_contentType;
+  }
+
+  public void setContentEncoding( String contentEncoding ) {
+    m_contentEncoding = contentEncoding;
+  }
+
+  public String getContentEncoding() {
+    return m_contentEncoding;
+  }
+
+  public void setMaxContentSize( String maxContentSize ) {
+    m_maxContentSize = maxContentSize;
+  }
+
+  public String getMaxContentSize() {
+    return m_maxContentSize;
+  }
+
   @Override public boolean supportsErrorHandling() {
     return true;
   }
@@ -22,12 +22,14 @@
 
 package org.pentaho.di.hcp.steps.list;
 
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
 import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
+import org.pentaho.di.hcp.shared.HCPDirectoryWalker;
+import org.pentaho.di.hcp.shared.HCPEntryFilter;
+import org.pentaho.di.hcp.shared.HCPEntryHandler;
 import org.pentaho.di.hcp.shared.HCPListResponse;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -38,7 +40,8 @@ import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 
-import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -66,13 +69,44 @@ public class HCPList extends BaseStep implements StepInterface {
       error = true;
     }
 
+    if ( meta.isRecursive()
+        && HCPDirectoryWalker.DIRECTORY_TYPE.equals( environmentSubstitute( meta.getEntryType() ) ) ) {
+      // the walk only outputs objects, so this would never output anything
+      log.logError( BaseMessages.getString( HCPListMeta.PKG, "HCPList.Error.RecursiveDirectories" ) );
+      error = true;
+    }
+
     if ( error ) {
       // Stop right here.
       return false;
     }
 
     data.authorization = meta.getConnection().getAuthorizationHeader();
-    data.client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
+
+    HCPEntryFilter filter = new HCPEntryFilter();
+    String nameFilter = environmentSubstitute( meta.getNameFilter() );
+    try {
+      filter.setNamePattern( nameFilter, meta.isNameFilterRegex() );
+    } catch ( PatternSyntaxException e ) {
+      log.logError( BaseMessages.getString( HCPListMeta.PKG, "HCPList.Error.InvalidNameFilter", nameFilter ), e );
+      return false;
+    }
+    filter.setType( environmentSubstitute( meta.getEntryType() ) );
+    filter.setMinSize( parseBound( meta.getMinSize(), "HCPList.Warning.UnparsableMinSize" ) );
+    filter.setMaxSize( parseBound( meta.getMaxSize(), "HCPList.Warning.UnparsableMaxSize" ) );
+    filter.setChangedFrom( parseBound( meta.getChangedSince(), "HCPList.Warning.UnparsableChangedSince" ) );
+    filter.setChangedTo( parseBound( meta.getChangedBefore(), "HCPList.Warning.UnparsableChangedBefore" ) );
+    data.entryFilter = filter.isEmpty() ? null : filter;
+
+    int listingThreads = 1;
+    if ( meta.isRecursive() ) {
+      data.maxDepth = (int) parseOption( meta.getMaxDepth(), -1, "HCPList.Warning.UnparsableMaxDepth" );
+      listingThreads =
+          (int) Math.max( 1, parseOption( meta.getListingThreads(), HCPListMeta.DEFAULT_LISTING_THREADS,
+              "HCPList.Warning.UnparsableListingThreads" ) );
+      data.listingExecutor = Executors.newFixedThreadPool( listingThreads );
+    }
+    data.client = HCPClientRegistry.acquire( meta.getConnection(), this, 0, listingThreads );
 
     return super.init( smi, sdi );
   }
@@ -117,51 +151,159 @@ public class HCPList extends BaseStep implements StepInterface {
       sourceFilePath = sourceFilePath + "/";
     }
 
-    long startTime = System.currentTimeMillis();
+    final long startTime = System.currentTimeMillis();
 
     String requestUrl = restUrl + sourceFilePath;
     if ( log.isDebug() ) {
       log.logDebug( "Request URL : " + requestUrl );
     }
 
+    if ( data.listingExecutor != null ) {
+      walk( data, row, requestUrl );
+      return true;
+    }
+
+    final Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+    final int outputIndex = data.outputRowMeta.indexOfValue( HCPListMeta.RESPONSE_TIME_FIELD_NAME );
+    final HCPListData listData = data;
+
     HCPListResponse hcpResponse = null;
     try {
-      hcpResponse = HCPConnectionOperationUtils.performList( data.client, requestUrl, data.authorization, log );
+      // rows go out as the listing is read
+      hcpResponse =
+          HCPConnectionOperationUtils.performList( data.client, requestUrl, data.authorization, data.entryFilter,
+              new HCPEntryHandler() {
+                @Override public boolean entry( HCPListResponse listing, HCPListResponse.ListEntry entry )
+                    throws KettleException {
+                  if ( outputRow[outputIndex] == null ) {
+                    // time to the first entry
+                    outputRow[outputIndex] = System.currentTimeMillis() - startTime;
+                    listing.populateKettleRow( listData.outputRowMeta, outputRow );
+                  }
+                  putRow( listData.outputRowMeta, listing.createEntryRow( listData.outputRowMeta, outputRow, entry ) );
+                  return !isStopped();
+                }
+              }, log );
     } catch ( Exception e ) {
       log.logError( BaseMessages.getString( HCPListMeta.PKG, "HCPList.Error.ErrorUsingHCPService" ), e );
     }
 
-    long endTime = System.currentTimeMillis();
-    Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+    if ( hcpResponse != null && !hcpResponse.getSuccess() ) {
+      outputRow[outputIndex] = System.currentTimeMillis() - startTime;
+      hcpResponse.populateKettleRow( data.outputRowMeta, outputRow );
+      if ( log.isDebug() ) {
+        log.logDebug( hcpResponse.getExplanation() );
+      }
+      if ( getStepMeta().isDoingErrorHandling() ) {
+        putError( data.outputRowMeta, outputRow, 1L, hcpResponse.getExplanation(), "",
+            hcpResponse.getStatus().toString() );
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Output the objects in the directory and its subdirectories, as they are found
+   */
+  protected void walk( HCPListData data, Object[] row, String requestUrl ) throws KettleException {
+    long startTime = System.currentTimeMillis();
     int outputIndex = data.outputRowMeta.indexOfValue( HCPListMeta.RESPONSE_TIME_FIELD_NAME );
-    if ( hcpResponse != null ) {
-      outputRow[outputIndex] = endTime - startTime;
 
-      List<Object[]> targetListEntries = hcpResponse.populateKettleRows( data.outputRowMeta, outputRow );
-      if ( !hcpResponse.getSuccess() ) {
-        if ( log.isDebug() ) {
-          log.logDebug( hcpResponse.getExplanation() );
+    HCPDirectoryWalker walker =
+        new HCPDirectoryWalker( data.client, data.authorization, data.listingExecutor, data.maxDepth,
+            getTransMeta().getSizeRowset(), log );
+    walker.setEntryFilter( data.entryFilter );
+    walker.start( requestUrl );
+    try {
+      HCPDirectoryWalker.Found found;
+      while ( !isStopped() && ( found = walker.next() ) != null ) {
+        HCPListResponse listing = found.getListing();
+        if ( found.getError() != null ) {
+          String message =
+              BaseMessages.getString( HCPListMeta.PKG, "HCPList.Error.UnableToListDirectory", found.getUrl() );
+          log.logError( message, found.getError() );
+          if ( getStepMeta().isDoingErrorHandling() ) {
+            Object[] errorRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+            errorRow[outputIndex] = found.getElapsed();
+            putError( data.outputRowMeta, errorRow, 1L, message + ": " + found.getError().getMessage(), "", "" );
+          }
+          continue;
+        }
+
+        Object[] outputRow;
+        if ( found.getEntry() != null ) {
+          outputRow = listing.createEntryRow( data.outputRowMeta, row, found.getEntry() );
+        } else {
+          outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
         }
-        if ( getStepMeta().isDoingErrorHandling() ) {
-          putError( data.outputRowMeta, outputRow, 1L, hcpResponse.getExplanation(), "",
-              hcpResponse.getStatus().toString() );
+        outputRow[outputIndex] = found.getElapsed();
+        listing.populateKettleRow( data.outputRowMeta, outputRow );
+
+        if ( found.getEntry() != null ) {
+          putRow( data.outputRowMeta, outputRow );
+        } else {
+          if ( log.isDebug() ) {
+            log.logDebug( found.getUrl() + ": " + listing.getExplanation() );
+          }
+          if ( getStepMeta().isDoingErrorHandling() ) {
+            putError( data.outputRowMeta, outputRow, 1L, listing.getExplanation(), "",
+                listing.getStatus().toString() );
+          }
         }
-        return true;
       }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    } finally {
+      walker.stop();
+    }
 
-      for ( Object[] r : targetListEntries ) {
-        putRow( data.outputRowMeta, r );
-      }
+    if ( log.isDetailed() ) {
+      log.logDetailed( BaseMessages.getString( HCPListMeta.PKG, "HCPList.Message.Traversed",
+          walker.getDirectoryCount(), walker.getObjectCount(), requestUrl, System.currentTimeMillis() - startTime ) );
     }
+  }
 
-    return true;
+  protected long parseOption( String value, long defaultValue, String warningKey ) {
+    value = environmentSubstitute( value );
+    if ( StringUtils.isEmpty( value ) ) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.logBasic( BaseMessages.getString( HCPListMeta.PKG, warningKey, value ) );
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return the number in value, or null if it is empty (or can't be parsed)
+   */
+  protected Long parseBound( String value, String warningKey ) {
+    value = environmentSubstitute( value );
+    if ( StringUtils.isEmpty( value ) ) {
+      return null;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.logBasic( BaseMessages.getString( HCPListMeta.PKG, warningKey, value ) );
+      return null;
+    }
   }
 
   @Override public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     // HCPGetMeta meta = (HCPGetMeta) smi;
     HCPListData data = (HCPListData) sdi;
 
-    data.client.destroy();
+    if ( data.listingExecutor != null ) {
+      data.listingExecutor.shutdownNow();
+      data.listingExecutor = null;
+    }
+    HCPClientRegistry.release( data.client );
+    data.client = null;
 
     super.dispose( smi, sdi );
   }
@@ -24,9 +24,12 @@ package org.pentaho.di.hcp.steps.list;
 
 import com.sun.jersey.client.apache.ApacheHttpClient;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.hcp.shared.HCPEntryFilter;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
  * @version $Revision: $
@@ -38,4 +41,12 @@ public class HCPListData extends BaseStepData implements StepDataInterface {
   public String authorization;
 
   public RowMetaInterface outputRowMeta;
+
+  /** Runs the listings of subdirectories when recursive; null otherwise */
+  public ExecutorService listingExecutor;
+  /** Levels of subdirectories to descend; negative for no limit */
+  public int maxDepth;
+
+  /** Checked against each entry as the listings are parsed; null to keep them all */
+  public HCPEntryFilter entryFilter;
 }
@@ -42,17 +42,20 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.hcp.shared.HCPConnection;
 import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.hcp.shared.HCPDirectoryWalker;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
 import org.pentaho.di.trans.step.StepDialogInterface;
 import org.pentaho.di.ui.core.dialog.ErrorDialog;
 import org.pentaho.di.ui.core.widget.ComboVar;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 import org.pentaho.metastore.api.IMetaStore;
 import org.pentaho.metastore.persist.MetaStoreFactory;
@@ -71,6 +74,16 @@ public class HCPListDialog extends BaseStepDialog implements StepDialogInterface
 
   private CCombo wConnection;
   private ComboVar wSourceFileField;
+  private Button wRecursive;
+  private TextVar wMaxDepth;
+  private TextVar wListingThreads;
+  private TextVar wNameFilter;
+  private Button wNameFilterRegex;
+  private CCombo wEntryType;
+  private TextVar wMinSize;
+  private TextVar wMaxSize;
+  private TextVar wChangedSince;
+  private TextVar wChangedBefore;
 
   private Button wNewConnection, wEditConnection, wDeleteConnection;
 
@@ -244,6 +257,226 @@ public class HCPListDialog extends BaseStepDialog implements StepDialogInterface
     } );
     lastControl = wSourceFileField;
 
+    // Recursive
+    //
+    Label wlRecursive = new Label( shell, SWT.RIGHT );
+    wlRecursive.setText( BaseMessages.getString( PKG, "HCPListDialog.Recursive.Label" ) );
+    props.setLook( wlRecursive );
+    FormData fdlRecursive = new FormData();
+    fdlRecursive.left = new FormAttachment( 0, 0 );
+    fdlRecursive.right = new FormAttachment( middle, -margin );
+    fdlRecursive.top = new FormAttachment( lastControl, margin );
+    wlRecursive.setLayoutData( fdlRecursive );
+    wRecursive = new Button( shell, SWT.CHECK );
+    wRecursive.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.Recursive.Tooltip" ) );
+    props.setLook( wRecursive );
+    FormData fdRecursive = new FormData();
+    fdRecursive.left = new FormAttachment( middle, 0 );
+    fdRecursive.top = new FormAttachment( lastControl, margin );
+    fdRecursive.right = new FormAttachment( 100, 0 );
+    wRecursive.setLayoutData( fdRecursive );
+    wRecursive.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        m_input.setChanged();
+        enableFields();
+      }
+    } );
+    lastControl = wRecursive;
+
+    // Maximum depth
+    //
+    Label wlMaxDepth = new Label( shell, SWT.RIGHT );
+    wlMaxDepth.setText( BaseMessages.getString( PKG, "HCPListDialog.MaxDepth.Label" ) );
+    props.setLook( wlMaxDepth );
+    FormData fdlMaxDepth = new FormData();
+    fdlMaxDepth.left = new FormAttachment( 0, 0 );
+    fdlMaxDepth.right = new FormAttachment( middle, -margin );
+    fdlMaxDepth.top = new FormAttachment( lastControl, margin );
+    wlMaxDepth.setLayoutData( fdlMaxDepth );
+    wMaxDepth = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wMaxDepth.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.MaxDepth.Tooltip" ) );
+    props.setLook( wMaxDepth );
+    wMaxDepth.addModifyListener( lsMod );
+    FormData fdMaxDepth = new FormData();
+    fdMaxDepth.left = new FormAttachment( middle, 0 );
+    fdMaxDepth.top = new FormAttachment( lastControl, margin );
+    fdMaxDepth.right = new FormAttachment( 100, 0 );
+    wMaxDepth.setLayoutData( fdMaxDepth );
+    lastControl = wMaxDepth;
+
+    // Listing threads
+    //
+    Label wlListingThreads = new Label( shell, SWT.RIGHT );
+    wlListingThreads.setText( BaseMessages.getString( PKG, "HCPListDialog.ListingThreads.Label" ) );
+    props.setLook( wlListingThreads );
+    FormData fdlListingThreads = new FormData();
+    fdlListingThreads.left = new FormAttachment( 0, 0 );
+    fdlListingThreads.right = new FormAttachment( middle, -margin );
+    fdlListingThreads.top = new FormAttachment( lastControl, margin );
+    wlListingThreads.setLayoutData( fdlListingThreads );
+    wListingThreads = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wListingThreads.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.ListingThreads.Tooltip" ) );
+    props.setLook( wListingThreads );
+    wListingThreads.addModifyListener( lsMod );
+    FormData fdListingThreads = new FormData();
+    fdListingThreads.left = new FormAttachment( middle, 0 );
+    fdListingThreads.top = new FormAttachment( lastControl, margin );
+    fdListingThreads.right = new FormAttachment( 100, 0 );
+    wListingThreads.setLayoutData( fdListingThreads );
+    lastControl = wListingThreads;
+
+    // Name filter
+    //
+    Label wlNameFilter = new Label( shell, SWT.RIGHT );
+    wlNameFilter.setText( BaseMessages.getString( PKG, "HCPListDialog.NameFilter.Label" ) );
+    props.setLook( wlNameFilter );
+    FormData fdlNameFilter = new FormData();
+    fdlNameFilter.left = new FormAttachment( 0, 0 );
+    fdlNameFilter.right = new FormAttachment( middle, -margin );
+    fdlNameFilter.top = new FormAttachment( lastControl, margin );
+    wlNameFilter.setLayoutData( fdlNameFilter );
+    wNameFilter = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wNameFilter.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.NameFilter.Tooltip" ) );
+    props.setLook( wNameFilter );
+    wNameFilter.addModifyListener( lsMod );
+    FormData fdNameFilter = new FormData();
+    fdNameFilter.left = new FormAttachment( middle, 0 );
+    fdNameFilter.top = new FormAttachment( lastControl, margin );
+    fdNameFilter.right = new FormAttachment( 100, 0 );
+    wNameFilter.setLayoutData( fdNameFilter );
+    lastControl = wNameFilter;
+
+    // Name filter is a regular expression
+    //
+    Label wlNameFilterRegex = new Label( shell, SWT.RIGHT );
+    wlNameFilterRegex.setText( BaseMessages.getString( PKG, "HCPListDialog.NameFilterRegex.Label" ) );
+    props.setLook( wlNameFilterRegex );
+    FormData fdlNameFilterRegex = new FormData();
+    fdlNameFilterRegex.left = new FormAttachment( 0, 0 );
+    fdlNameFilterRegex.right = new FormAttachment( middle, -margin );
+    fdlNameFilterRegex.top = new FormAttachment( lastControl, margin );
+    wlNameFilterRegex.setLayoutData( fdlNameFilterRegex );
+    wNameFilterRegex = new Button( shell, SWT.CHECK );
+    wNameFilterRegex.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.NameFilterRegex.Tooltip" ) );
+    props.setLook( wNameFilterRegex );
+    FormData fdNameFilterRegex = new FormData();
+    fdNameFilterRegex.left = new FormAttachment( middle, 0 );
+    fdNameFilterRegex.top = new FormAttachment( lastControl, margin );
+    fdNameFilterRegex.right = new FormAttachment( 100, 0 );
+    wNameFilterRegex.setLayoutData( fdNameFilterRegex );
+    wNameFilterRegex.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        m_input.setChanged();
+      }
+    } );
+    lastControl = wNameFilterRegex;
+
+    // Entry type
+    //
+    Label wlEntryType = new Label( shell, SWT.RIGHT );
+    wlEntryType.setText( BaseMessages.getString( PKG, "HCPListDialog.EntryType.Label" ) );
+    props.setLook( wlEntryType );
+    FormData fdlEntryType = new FormData();
+    fdlEntryType.left = new FormAttachment( 0, 0 );
+    fdlEntryType.right = new FormAttachment( middle, -margin );
+    fdlEntryType.top = new FormAttachment( lastControl, margin );
+    wlEntryType.setLayoutData( fdlEntryType );
+    wEntryType = new CCombo( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wEntryType.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.EntryType.Tooltip" ) );
+    wEntryType.setItems( new String[] { "", HCPDirectoryWalker.OBJECT_TYPE, HCPDirectoryWalker.DIRECTORY_TYPE } );
+    props.setLook( wEntryType );
+    wEntryType.addModifyListener( lsMod );
+    FormData fdEntryType = new FormData();
+    fdEntryType.left = new FormAttachment( middle, 0 );
+    fdEntryType.top = new FormAttachment( lastControl, margin );
+    fdEntryType.right = new FormAttachment( 100, 0 );
+    wEntryType.setLayoutData( fdEntryType );
+    lastControl = wEntryType;
+
+    // Minimum size
+    //
+    Label wlMinSize = new Label( shell, SWT.RIGHT );
+    wlMinSize.setText( BaseMessages.getString( PKG, "HCPListDialog.MinSize.Label" ) );
+    props.setLook( wlMinSize );
+    FormData fdlMinSize = new FormData();
+    fdlMinSize.left = new FormAttachment( 0, 0 );
+    fdlMinSize.right = new FormAttachment( middle, -margin );
+    fdlMinSize.top = new FormAttachment( lastControl, margin );
+    wlMinSize.setLayoutData( fdlMinSize );
+    wMinSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wMinSize.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.MinSize.Tooltip" ) );
+    props.setLook( wMinSize );
+    wMinSize.addModifyListener( lsMod );
+    FormData fdMinSize = new FormData();
+    fdMinSize.left = new FormAttachment( middle, 0 );
+    fdMinSize.top = new FormAttachment( lastControl, margin );
+    fdMinSize.right = new FormAttachment( 100, 0 );
+    wMinSize.setLayoutData( fdMinSize );
+    lastControl = wMinSize;
+
+    // Maximum size
+    //
+    Label wlMaxSize = new Label( shell, SWT.RIGHT );
+    wlMaxSize.setText( BaseMessages.getString( PKG, "HCPListDialog.MaxSize.Label" ) );
+    props.setLook( wlMaxSize );
+    FormData fdlMaxSize = new FormData();
+    fdlMaxSize.left = new FormAttachment( 0, 0 );
+    fdlMaxSize.right = new FormAttachment( middle, -margin );
+    fdlMaxSize.top = new FormAttachment( lastControl, margin );
+    wlMaxSize.setLayoutData( fdlMaxSize );
+    wMaxSize = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wMaxSize.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.MaxSize.Tooltip" ) );
+    props.setLook( wMaxSize );
+    wMaxSize.addModifyListener( lsMod );
+    FormData fdMaxSize = new FormData();
+    fdMaxSize.left = new FormAttachment( middle, 0 );
+    fdMaxSize.top = new FormAttachment( lastControl, margin );
+    fdMaxSize.right = new FormAttachment( 100, 0 );
+    wMaxSize.setLayoutData( fdMaxSize );
+    lastControl = wMaxSize;
+
+    // Changed since
+    //
+    Label wlChangedSince = new Label( shell, SWT.RIGHT );
+    wlChangedSince.setText( BaseMessages.getString( PKG, "HCPListDialog.ChangedSince.Label" ) );
+    props.setLook( wlChangedSince );
+    FormData fdlChangedSince = new FormData();
+    fdlChangedSince.left = new FormAttachment( 0, 0 );
+    fdlChangedSince.right = new FormAttachment( middle, -margin );
+    fdlChangedSince.top = new FormAttachment( lastControl, margin );
+    wlChangedSince.setLayoutData( fdlChangedSince );
+    wChangedSince = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wChangedSince.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.ChangedSince.Tooltip" ) );
+    props.setLook( wChangedSince );
+    wChangedSince.addModifyListener( lsMod );
+    FormData fdChangedSince = new FormData();
+    fdChangedSince.left = new FormAttachment( middle, 0 );
+    fdChangedSince.top = new FormAttachment( lastControl, margin );
+    fdChangedSince.right = new FormAttachment( 100, 0 );
+    wChangedSince.setLayoutData( fdChangedSince );
+    lastControl = wChangedSince;
+
+    // Changed before
+    //
+    Label wlChangedBefore = new Label( shell, SWT.RIGHT );
+    wlChangedBefore.setText( BaseMessages.getString( PKG, "HCPListDialog.ChangedBefore.Label" ) );
+    props.setLook( wlChangedBefore );
+    FormData fdlChangedBefore = new FormData();
+    fdlChangedBefore.left = new FormAttachment( 0, 0 );
+    fdlChangedBefore.right = new FormAttachment( middle, -margin );
+    fdlChangedBefore.top = new FormAttachment( lastControl, margin );
+    wlChangedBefore.setLayoutData( fdlChangedBefore );
+    wChangedBefore = new TextVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wChangedBefore.setToolTipText( BaseMessages.getString( PKG, "HCPListDialog.ChangedBefore.Tooltip" ) );
+    props.setLook( wChangedBefore );
+    wChangedBefore.addModifyListener( lsMod );
+    FormData fdChangedBefore = new FormData();
+    fdChangedBefore.left = new FormAttachment( middle, 0 );
+    fdChangedBefore.top = new FormAttachment( lastControl, margin );
+    fdChangedBefore.right = new FormAttachment( 100, 0 );
+    wChangedBefore.setLayoutData( fdChangedBefore );
+    lastControl = wChangedBefore;
+
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
     wCancel = new Button( shell, SWT.PUSH );
@@ -313,10 +546,26 @@ public class HCPListDialog extends BaseStepDialog implements StepDialogInterface
   public void getData() {
     wConnection.setText( m_input.getConnection() == null ? "" : Const.NVL( m_input.getConnection().getName(), "" ) );
     wSourceFileField.setText( Const.NVL( m_input.getSourceFileField(), "" ) );
+    wRecursive.setSelection( m_input.isRecursive() );
+    wMaxDepth.setText( Const.NVL( m_input.getMaxDepth(), "" ) );
+    wListingThreads.setText( Const.NVL( m_input.getListingThreads(), "" ) );
+    wNameFilter.setText( Const.NVL( m_input.getNameFilter(), "" ) );
+    wNameFilterRegex.setSelection( m_input.isNameFilterRegex() );
+    wEntryType.setText( Const.NVL( m_input.getEntryType(), "" ) );
+    wMinSize.setText( Const.NVL( m_input.getMinSize(), "" ) );
+    wMaxSize.setText( Const.NVL( m_input.getMaxSize(), "" ) );
+    wChangedSince.setText( Const.NVL( m_input.getChangedSince(), "" ) );
+    wChangedBefore.setText( Const.NVL( m_input.getChangedBefore(), "" ) );
+    enableFields();
     wStepname.selectAll();
     wStepname.setFocus();
   }
 
+  protected void enableFields() {
+    wMaxDepth.setEnabled( wRecursive.getSelection() );
+    wListingThreads.setEnabled( wRecursive.getSelection() );
+  }
+
   private void cancel() {
     stepname = null;
     m_input.setChanged( changed );
@@ -328,6 +577,15 @@ public class HCPListDialog extends BaseStepDialog implements StepDialogInterface
       return;
     }
 
+    if ( wRecursive.getSelection() && HCPDirectoryWalker.DIRECTORY_TYPE.equals( wEntryType.getText() ) ) {
+      // the walk only outputs objects
+      MessageBox box = new MessageBox( shell, SWT.OK | SWT.ICON_ERROR );
+      box.setText( BaseMessages.getString( PKG, "HCPListDialog.Error.RecursiveDirectories.Title" ) );
+      box.setMessage( BaseMessages.getString( PKG, "HCPListDialog.Error.RecursiveDirectories.Message" ) );
+      box.open();
+      return;
+    }
+
     stepname = wStepname.getText(); // return value
 
     m_input.setConnection( null );
@@ -343,6 +601,16 @@ public class HCPListDialog extends BaseStepDialog implements StepDialogInterface
       }
     }
     m_input.setSourceFileField( wSourceFileField.getText() );
+    m_input.setRecursive( wRecursive.getSelection() );
+    m_input.setMaxDepth( wMaxDepth.getText() );
+    m_input.setListingThreads( wListingThreads.getText() );
+    m_input.setNameFilter( wNameFilter.getText() );
+    m_input.setNameFilterRegex( wNameFilterRegex.getSelection() );
+    m_input.setEntryType( wEntryType.getText() );
+    m_input.setMinSize( wMinSize.getText() );
+    m_input.setMaxSize( wMaxSize.getText() );
+    m_input.setChangedSince( wChangedSince.getText() );
+    m_input.setChangedBefore( wChangedBefore.getText() );
     dispose();
   }
 }
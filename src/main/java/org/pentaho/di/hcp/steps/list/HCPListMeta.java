@@ -23,6 +23,7 @@
 package org.pentaho.di.hcp.steps.list;
 
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
@@ -66,13 +67,55 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
   protected static final String TAG_CONNECTION = "connection";
   protected static final String TAG_SOURCE_FILE = "source_field";
   protected static final String TAG_TARGET_FILE = "target_field";
+  protected static final String TAG_RECURSIVE = "recursive";
+  protected static final String TAG_MAX_DEPTH = "max_depth";
+  protected static final String TAG_LISTING_THREADS = "listing_threads";
+  protected static final String TAG_NAME_FILTER = "name_filter";
+  protected static final String TAG_NAME_FILTER_REGEX = "name_filter_regex";
+  protected static final String TAG_ENTRY_TYPE = "entry_type";
+  protected static final String TAG_MIN_SIZE = "min_size";
+  protected static final String TAG_MAX_SIZE = "max_size";
+  protected static final String TAG_CHANGED_SINCE = "changed_since";
+  protected static final String TAG_CHANGED_BEFORE = "changed_before";
 
   public static final String RESPONSE_TIME_FIELD_NAME = "Elapsed time ms";
 
+  public static final int DEFAULT_LISTING_THREADS = 4;
+
   protected HCPConnection m_connection;
 
   protected String m_sourceFileField;
 
+  /** Walk down into subdirectories, outputting the objects found there */
+  protected boolean m_recursive;
+
+  /** How many levels below the source directory to descend when recursive. Empty means no limit */
+  protected String m_maxDepth = "";
+
+  /** Number of directories listed at once when recursive */
+  protected String m_listingThreads = "" + DEFAULT_LISTING_THREADS;
+
+  /** Only entries whose name matches this glob (or regular expression). Empty means any name */
+  protected String m_nameFilter = "";
+
+  /** The name filter is a regular expression rather than a glob */
+  protected boolean m_nameFilterRegex;
+
+  /** Only entries of this type (object or directory). Empty means both */
+  protected String m_entryType = "";
+
+  /** Only objects of at least this many bytes. Empty means no lower bound */
+  protected String m_minSize = "";
+
+  /** Only objects of at most this many bytes. Empty means no upper bound */
+  protected String m_maxSize = "";
+
+  /** Only entries changed at or after this time (ms since the epoch). Empty means no lower bound */
+  protected String m_changedSince = "";
+
+  /** Only entries changed before this time (ms since the epoch). Empty means no upper bound */
+  protected String m_changedBefore = "";
+
   public HCPListMeta() {
     super();
   }
@@ -116,6 +159,16 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
 
     xml.append( XMLHandler.addTagValue( TAG_CONNECTION, m_connection == null ? null : m_connection.getName() ) );
     xml.append( XMLHandler.addTagValue( TAG_SOURCE_FILE, m_sourceFileField ) );
+    xml.append( XMLHandler.addTagValue( TAG_RECURSIVE, m_recursive ) );
+    xml.append( XMLHandler.addTagValue( TAG_MAX_DEPTH, m_maxDepth ) );
+    xml.append( XMLHandler.addTagValue( TAG_LISTING_THREADS, m_listingThreads ) );
+    xml.append( XMLHandler.addTagValue( TAG_NAME_FILTER, m_nameFilter ) );
+    xml.append( XMLHandler.addTagValue( TAG_NAME_FILTER_REGEX, m_nameFilterRegex ) );
+    xml.append( XMLHandler.addTagValue( TAG_ENTRY_TYPE, m_entryType ) );
+    xml.append( XMLHandler.addTagValue( TAG_MIN_SIZE, m_minSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_MAX_SIZE, m_maxSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_CHANGED_SINCE, m_changedSince ) );
+    xml.append( XMLHandler.addTagValue( TAG_CHANGED_BEFORE, m_changedBefore ) );
 
     return xml.toString();
   }
@@ -137,6 +190,19 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
         }
       }
       m_sourceFileField = XMLHandler.getTagValue( stepnode, TAG_SOURCE_FILE );
+      m_recursive = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_RECURSIVE ) );
+      m_maxDepth = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MAX_DEPTH ), "" );
+      String listingThreads = XMLHandler.getTagValue( stepnode, TAG_LISTING_THREADS );
+      if ( StringUtils.isNotEmpty( listingThreads ) ) {
+        m_listingThreads = listingThreads;
+      }
+      m_nameFilter = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_NAME_FILTER ), "" );
+      m_nameFilterRegex = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_NAME_FILTER_REGEX ) );
+      m_entryType = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_ENTRY_TYPE ), "" );
+      m_minSize = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MIN_SIZE ), "" );
+      m_maxSize = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MAX_SIZE ), "" );
+      m_changedSince = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CHANGED_SINCE ), "" );
+      m_changedBefore = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CHANGED_BEFORE ), "" );
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString( PKG, "HCPListMeta.Error.CouldNotLoadXML" ), e );
     }
@@ -148,6 +214,16 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
     rep.saveStepAttribute( id_transformation, id_step, TAG_CONNECTION,
         m_connection == null ? null : m_connection.getName() );
     rep.saveStepAttribute( id_transformation, id_step, TAG_SOURCE_FILE, m_sourceFileField );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_RECURSIVE, m_recursive );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MAX_DEPTH, m_maxDepth );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_LISTING_THREADS, m_listingThreads );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_NAME_FILTER, m_nameFilter );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_NAME_FILTER_REGEX, m_nameFilterRegex );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_ENTRY_TYPE, m_entryType );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MIN_SIZE, m_minSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MAX_SIZE, m_maxSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CHANGED_SINCE, m_changedSince );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CHANGED_BEFORE, m_changedBefore );
   }
 
   @Override public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
@@ -166,6 +242,19 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
       }
     }
     m_sourceFileField = rep.getStepAttributeString( id_step, TAG_SOURCE_FILE );
+    m_recursive = rep.getStepAttributeBoolean( id_step, TAG_RECURSIVE );
+    m_maxDepth = Const.NVL( rep.getStepAttributeString( id_step, TAG_MAX_DEPTH ), "" );
+    String listingThreads = rep.getStepAttributeString( id_step, TAG_LISTING_THREADS );
+    if ( StringUtils.isNotEmpty( listingThreads ) ) {
+      m_listingThreads = listingThreads;
+    }
+    m_nameFilter = Const.NVL( rep.getStepAttributeString( id_step, TAG_NAME_FILTER ), "" );
+    m_nameFilterRegex = rep.getStepAttributeBoolean( id_step, TAG_NAME_FILTER_REGEX );
+    m_entryType = Const.NVL( rep.getStepAttributeString( id_step, TAG_ENTRY_TYPE ), "" );
+    m_minSize = Const.NVL( rep.getStepAttributeString( id_step, TAG_MIN_SIZE ), "" );
+    m_maxSize = Const.NVL( rep.getStepAttributeString( id_step, TAG_MAX_SIZE ), "" );
+    m_changedSince = Const.NVL( rep.getStepAttributeString( id_step, TAG_CHANGED_SINCE ), "" );
+    m_changedBefore = Const.NVL( rep.getStepAttributeString( id_step, TAG_CHANGED_BEFORE ), "" );
   }
 
   public HCPConnection getConnection() {
@@ -184,6 +273,86 @@ public class HCPListMeta extends BaseStepMeta implements StepMetaInterface {
     m_sourceFileField = sourceFileField;
   }
 
+  public boolean isRecursive() {
+    return m_recursive;
+  }
+
+  public void setRecursive( boolean recursive ) {
+    m_recursive = recursive;
+  }
+
+  public String getMaxDepth() {
+    return m_maxDepth;
+  }
+
+  public void setMaxDepth( String maxDepth ) {
+    m_maxDepth = maxDepth;
+  }
+
+  public String getListingThreads() {
+    return m_listingThreads;
+  }
+
+  public void setListingThreads( String listingThreads ) {
+    m_listingThreads = listingThreads;
+  }
+
+  public String getNameFilter() {
+    return m_nameFilter;
+  }
+
+  public void setNameFilter( String nameFilter ) {
+    m_nameFilter = nameFilter;
+  }
+
+  public boolean isNameFilterRegex() {
+    return m_nameFilterRegex;
+  }
+
+  public void setNameFilterRegex( boolean nameFilterRegex ) {
+    m_nameFilterRegex = nameFilterRegex;
+  }
+
+  public String getEntryType() {
+    return m_entryType;
+  }
+
+  public void setEntryType( String entryType ) {
+    m_entryType = entryType;
+  }
+
+  public String getMinSize() {
+    return m_minSize;
+  }
+
+  public void setMinSize( String minSize ) {
+    m_minSize = minSize;
+  }
+
+  public String getMaxSize() {
+    return m_maxSize;
+  }
+
+  public void setMaxSize( String maxSize ) {
+    m_maxSize = maxSize;
+  }
+
+  public String getChangedSince() {
+    return m_changedSince;
+  }
+
+  public void setChangedSince( String changedSince ) {
+    m_changedSince = changedSince;
+  }
+
+  public String getChangedBefore() {
+    return m_changedBefore;
+  }
+
+  public void setChangedBefore( String changedBefore ) {
+    m_changedBefore = changedBefore;
+  }
+
   @Override public boolean supportsErrorHandling() {
     return true;
   }
@@ -22,8 +22,6 @@
 
 package org.pentaho.di.hcp.steps.metadata;
 
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.di.core.exception.KettleException;
@@ -31,6 +29,7 @@ import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
 import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
 import org.pentaho.di.hcp.shared.HCPCreateResponse;
 import org.pentaho.di.i18n.BaseMessages;
@@ -96,7 +95,7 @@ public class HCPAddCustomMetadata extends BaseStep implements StepInterface {
     }
 
     data.m_authorization = meta.getConnection().getAuthorizationHeader();
-    data.m_client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
+    data.m_client = HCPClientRegistry.acquire( meta.getConnection(), this, 0, 1 );
 
     return super.init( smi, sdi );
   }
@@ -351,7 +350,8 @@ public class HCPAddCustomMetadata extends BaseStep implements StepInterface {
     // HCPPutMeta meta = (HCPPutMeta) smi;
     HCPAddCustomMetadataData data = (HCPAddCustomMetadataData) sdi;
 
-    data.m_client.destroy();
+    HCPClientRegistry.release( data.m_client );
+    data.m_client = null;
 
     super.dispose( smi, sdi );
   }
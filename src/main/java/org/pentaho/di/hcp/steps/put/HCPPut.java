@@ -22,14 +22,24 @@
 
 package org.pentaho.di.hcp.steps.put;
 
-import com.sun.jersey.client.apache.ApacheHttpClient;
-import com.sun.jersey.client.apache.config.DefaultApacheHttpClientConfig;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.vfs2.FileContent;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleFileException;
 import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.vfs.KettleVFS;
+import org.pentaho.di.hcp.shared.BaseHCPResponse;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
 import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
+import org.pentaho.di.hcp.shared.HCPContentHash;
 import org.pentaho.di.hcp.shared.HCPCreateResponse;
+import org.pentaho.di.hcp.shared.HCPDeleteResponse;
+import org.pentaho.di.hcp.shared.HCPReadResponse;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.hcp.shared.HCPTransferJournal;
+import org.pentaho.di.hcp.shared.HCPUploadIndex;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -40,7 +50,15 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
 
 public class HCPPut extends BaseStep implements StepInterface {
   private static Class<?> PKG = HCPPut.class; // for i18n purposes, needed by
@@ -61,7 +79,7 @@ public class HCPPut extends BaseStep implements StepInterface {
       log.logError( BaseMessages.getString( PKG, "HCPPut.Error.HCPConnectionNotSpecified" ) );
       error = true;
     }
-    if ( StringUtils.isEmpty( meta.getSourceFileField() ) ) {
+    if ( StringUtils.isEmpty( meta.getSourceFileField() ) && StringUtils.isEmpty( meta.getSourceContentField() ) ) {
       log.logError( BaseMessages.getString( PKG, "HCPPut.Error.SourceFileFieldNotSpecified" ) );
       error = true;
     }
@@ -89,21 +107,100 @@ public class HCPPut extends BaseStep implements StepInterface {
     } else {
       data.bufferSize = HCPPutMeta.DEFAULT_BUFFER_SIZE;
     }
+    data.inFlightRequests =
+        (int) Math.max( 1, parseOption( meta.getInFlightRequests(), HCPPutMeta.DEFAULT_IN_FLIGHT_REQUESTS,
+            "HCPPut.Warning.UnparsableInFlightRequests" ) );
+
+    data.multipartThreshold =
+        parseOption( meta.getMultipartThreshold(), -1, "HCPPut.Warning.UnparsableMultipartThreshold" );
+    int partConcurrency = 0;
+    if ( data.multipartThreshold > 0 ) {
+      data.partSize =
+          Math.max( 1, parseOption( meta.getPartSize(), HCPPutMeta.DEFAULT_PART_SIZE,
+              "HCPPut.Warning.UnparsablePartSize" ) );
+      partConcurrency =
+          (int) Math.max( 1, parseOption( meta.getPartConcurrency(), HCPPutMeta.DEFAULT_PART_CONCURRENCY,
+              "HCPPut.Warning.UnparsablePartConcurrency" ) );
+      data.partExecutor = Executors.newFixedThreadPool( partConcurrency );
+    }
+
+    data.compressionLevel = 0;
+    if ( meta.isCompress() ) {
+      data.compressionLevel =
+          (int) Math.min( Deflater.BEST_COMPRESSION, Math.max( Deflater.BEST_SPEED,
+              parseOption( meta.getCompressionLevel(), HCPPutMeta.DEFAULT_COMPRESSION_LEVEL,
+                  "HCPPut.Warning.UnparsableCompressionLevel" ) ) );
+    }
+
+    String indexFile = environmentSubstitute( meta.getIndexFile() );
+    if ( meta.isSkipUnchanged() && StringUtils.isNotEmpty( indexFile ) ) {
+      if ( getStepMeta().getCopies() > 1 ) {
+        // each copy saves its index in dispose(), so they must not share one
+        indexFile += "." + getCopy();
+      }
+      data.uploadIndex = new HCPUploadIndex( indexFile );
+      try {
+        data.uploadIndex.load();
+        if ( log.isDetailed() ) {
+          log.logDetailed( BaseMessages.getString( PKG, "HCPPut.Message.IndexLoaded", data.uploadIndex.size(),
+              data.uploadIndex.getFilename() ) );
+        }
+      } catch ( Exception e ) {
+        log.logError( BaseMessages.getString( PKG, "HCPPut.Error.UnableToLoadIndex", data.uploadIndex.getFilename() ),
+            e );
+        return false;
+      }
+    }
+
+    String journalFile = environmentSubstitute( meta.getJournalFile() );
+    if ( StringUtils.isNotEmpty( journalFile ) ) {
+      if ( getStepMeta().getCopies() > 1 ) {
+        // copies must not share a journal
+        journalFile += "." + getCopy();
+      }
+      data.journal = new HCPTransferJournal( journalFile );
+      try {
+        data.journal.open();
+        if ( log.isBasic() ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPPut.Message.JournalLoaded", data.journal.getCompletedCount(),
+              data.journal.getFilename() ) );
+        }
+      } catch ( Exception e ) {
+        log.logError( BaseMessages.getString( PKG, "HCPPut.Error.UnableToOpenJournal", data.journal.getFilename() ),
+            e );
+        return false;
+      }
+    }
+
     data.authorization = meta.getConnection().getAuthorizationHeader();
 
-    data.client = ApacheHttpClient.create( new DefaultApacheHttpClientConfig() );
-    data.client.setChunkedEncodingSize( data.bufferSize );
+    data.client =
+        HCPClientRegistry.acquire( meta.getConnection(), this, data.bufferSize,
+            data.inFlightRequests + partConcurrency );
+
+    if ( data.inFlightRequests > 1 ) {
+      data.window =
+          new HCPRequestWindow<>( data.inFlightRequests, meta.isPreserveOrder(),
+              getStepname() + "." + getCopy() + " upload" );
+    }
 
     return super.init( smi, sdi );
   }
 
   @Override public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
 
-    HCPPutMeta meta = (HCPPutMeta) smi;
-    HCPPutData data = (HCPPutData) sdi;
+    final HCPPutMeta meta = (HCPPutMeta) smi;
+    final HCPPutData data = (HCPPutData) sdi;
 
     Object[] row = getRow();
     if ( row == null ) {
+      if ( data.window != null ) {
+        // wait for the stragglers
+        while ( !data.window.isEmpty() ) {
+          emitResult( data, data.window.take() );
+        }
+      }
+      data.allRowsDone = true;
       setOutputDone();
       return false;
     }
@@ -111,10 +208,22 @@ public class HCPPut extends BaseStep implements StepInterface {
     if ( first ) {
       first = false;
 
-      data.sourcePathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceFileField() ) );
-      if ( data.sourcePathIndex < 0 ) {
-        throw new KettleException( BaseMessages.getString( PKG, "HCPPut.Error.SourceFileFieldNotFound",
-            environmentSubstitute( meta.getSourceFileField() ) ) );
+      data.sourcePathIndex = -1;
+      if ( StringUtils.isNotEmpty( meta.getSourceFileField() ) ) {
+        data.sourcePathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceFileField() ) );
+        if ( data.sourcePathIndex < 0 ) {
+          throw new KettleException( BaseMessages.getString( PKG, "HCPPut.Error.SourceFileFieldNotFound",
+              environmentSubstitute( meta.getSourceFileField() ) ) );
+        }
+      }
+      data.sourceContentIndex = -1;
+      if ( StringUtils.isNotEmpty( meta.getSourceContentField() ) ) {
+        data.sourceContentIndex =
+            getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceContentField() ) );
+        if ( data.sourceContentIndex < 0 ) {
+          throw new KettleException( BaseMessages.getString( PKG, "HCPPut.Error.SourceContentFieldNotFound",
+              environmentSubstitute( meta.getSourceContentField() ) ) );
+        }
       }
       data.targetPathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getTargetFileField() ) );
       if ( data.targetPathIndex < 0 ) {
@@ -124,12 +233,25 @@ public class HCPPut extends BaseStep implements StepInterface {
 
       data.outputRowMeta = getInputRowMeta().clone();
       meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      if ( meta.isUpdating() || meta.isVerifyHash() ) {
+        // how we overwrite depends on whether the namespace keeps versions, and HCP hashes with the namespace's scheme
+        data.namespaceInfo =
+            HCPConnectionOperationUtils.getNamespaceInfo( data.client, meta.getConnection().getProcUrl( this ),
+                environmentSubstitute( meta.getConnection().getNamespace() ), data.authorization, log );
+        data.hashScheme = data.namespaceInfo.getHashScheme();
+        if ( meta.isVerifyHash() && HCPContentHash.createDigest( data.hashScheme ) == null ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPPut.Warning.UnsupportedHashScheme", data.hashScheme ) );
+        }
+      }
     }
 
-    String sourceFilePath = getInputRowMeta().getString( row, data.sourcePathIndex );
+    String sourceFilePath =
+        data.sourcePathIndex >= 0 ? getInputRowMeta().getString( row, data.sourcePathIndex ) : null;
+    byte[] sourceBytes = data.sourceContentIndex >= 0 ? getSourceContent( row, data.sourceContentIndex ) : null;
     String targetFilePath = getInputRowMeta().getString( row, data.targetPathIndex );
 
-    if ( StringUtils.isEmpty( sourceFilePath ) ) {
+    if ( sourceBytes == null && StringUtils.isEmpty( sourceFilePath ) ) {
       log.logError( "An empty source file path is not supported at this time." );
       stopAll();
       return false;
@@ -145,8 +267,6 @@ public class HCPPut extends BaseStep implements StepInterface {
     }
     targetFilePath = data.targetPrependPath + targetFilePath;
 
-    long startTime = System.currentTimeMillis();
-
     String restUrl = meta.getConnection().getRestUrl( this );
 
     // Remove last slash character of URL
@@ -168,45 +288,307 @@ public class HCPPut extends BaseStep implements StepInterface {
       log.logDebug( "Request URL : " + requestUrl );
     }
 
-    BufferedInputStream fileInputStream = null;
+    // already done by an earlier run, from the same source?
+    final String journalKey = data.journal != null ? getJournalKey( requestUrl, sourceFilePath, sourceBytes ) : null;
+    final HCPTransferJournal.Completed done = journalKey != null ? data.journal.getCompleted( journalKey ) : null;
+
+    if ( data.window == null ) {
+      emitResult( data,
+          done != null ? journaled( row, done )
+              : upload( meta, data, row, sourceFilePath, sourceBytes, requestUrl, journalKey ) );
+      return true;
+    }
+
+    // make room in the window, then hand the upload to a worker
+    while ( data.window.isFull() ) {
+      emitResult( data, data.window.take() );
+    }
+    final Object[] inputRow = row;
+    final String source = sourceFilePath;
+    final byte[] content = sourceBytes;
+    final String target = requestUrl;
+    data.window.submit( new Callable<PutResult>() {
+      @Override public PutResult call() {
+        // journaled rows still go through the window so that they keep their place in the output
+        return done != null ? journaled( inputRow, done )
+            : upload( meta, data, inputRow, source, content, target, journalKey );
+      }
+    } );
+
+    // pass on whatever has completed in the meantime
+    PutResult result;
+    while ( ( result = data.window.poll() ) != null ) {
+      emitResult( data, result );
+    }
+
+    return true;
+  }
+
+  /**
+   * Perform a single upload. This may run on a worker thread when more than one request is allowed in flight, so it
+   * must not touch the row streams. In-memory content (sourceBytes) wins over the source file path. A successful
+   * upload is journaled under journalKey, if there is one.
+   */
+  protected PutResult upload( HCPPutMeta meta, HCPPutData data, Object[] row, String sourceFilePath,
+      byte[] sourceBytes, String requestUrl, String journalKey ) {
+    long startTime = System.currentTimeMillis();
+
     HCPCreateResponse hcpResponse = null;
     try {
+      hcpResponse = transfer( meta, data, sourceBytes != null ? null : sourceFilePath, sourceBytes, requestUrl );
 
-      fileInputStream = new BufferedInputStream( KettleVFS.getInputStream( sourceFilePath ), data.bufferSize );
-
-      if ( meta.isUpdating() ) {
-        hcpResponse =
-            HCPConnectionOperationUtils
-                .performTargetFileUpdate( data.client, requestUrl, data.authorization, sourceFilePath, null,
-                    data.bufferSize, log );
-      } else {
-        hcpResponse =
-            HCPConnectionOperationUtils
-                .performCreate( data.client, requestUrl, data.authorization, fileInputStream, log );
+      if ( journalKey != null && hcpResponse.getSuccess() ) {
+        data.journal.completed( journalKey, hcpResponse.getStatus(), hcpResponse.getVersionID(),
+            hcpResponse.getHCPHash() != null ? hcpResponse.getHCPHash() : hcpResponse.getComputedHash() );
       }
     } catch ( Exception e ) {
       // fatal error (comms based most likely)
       log.logError( BaseMessages.getString( PKG, "HCPPut.Error.ErrorUsingHCPService" ), e );
+    }
+
+    long endTime = System.currentTimeMillis();
+
+    return new PutResult( row, hcpResponse, endTime - startTime );
+  }
+
+  /**
+   * Result for a row that the journal says was uploaded by an earlier run
+   */
+  protected PutResult journaled( Object[] row, HCPTransferJournal.Completed done ) {
+    HCPCreateResponse hcpResponse = done.populate( new HCPCreateResponse() );
+    hcpResponse.setVersionID( done.getVersionId() );
+
+    return new PutResult( row, hcpResponse, 0 );
+  }
+
+  /**
+   * Send one source to HCP, unless skip-unchanged mode finds that the target already holds it
+   *
+   * @param sourceFilePath the file to upload, or null if uploading sourceBytes
+   * @param sourceBytes    the bytes to upload if sourceFilePath is null
+   */
+  protected HCPCreateResponse transfer( HCPPutMeta meta, HCPPutData data, String sourceFilePath, byte[] sourceBytes,
+      String requestUrl ) throws Exception {
+    HCPCreateResponse hcpResponse;
+
+    long sourceSize = -1;
+    long sourceModified = -1;
+    if ( meta.isSkipUnchanged() ) {
+      if ( sourceBytes != null ) {
+        sourceSize = sourceBytes.length;
+      } else {
+        FileContent content = KettleVFS.getFileObject( sourceFilePath, this ).getContent();
+        sourceSize = content.getSize();
+        sourceModified = content.getLastModifiedTime();
+      }
+
+      HCPCreateResponse unchanged =
+          checkUnchanged( data, requestUrl, sourceFilePath, sourceBytes, sourceSize, sourceModified );
+      if ( unchanged != null ) {
+        return unchanged;
+      }
+    }
+
+    MessageDigest digest = meta.isVerifyHash() ? HCPContentHash.createDigest( data.hashScheme ) : null;
+    File localFile = sourceBytes == null ? HCPConnectionOperationUtils.getLocalFile( sourceFilePath ) : null;
+
+    if ( localFile != null && data.multipartThreshold > 0 && localFile.length() > data.multipartThreshold ) {
+      hcpResponse = uploadMultipart( meta, data, localFile, requestUrl );
+    } else if ( meta.isUpdating() ) {
+      hcpResponse =
+          HCPConnectionOperationUtils
+              .performTargetFileUpdate( data.client, requestUrl, data.authorization, sourceFilePath, sourceBytes,
+                  data.bufferSize, data.namespaceInfo, data.compressionLevel, digest, log );
+    } else {
+      hcpResponse =
+          HCPConnectionOperationUtils
+              .createFromSource( data.client, requestUrl, data.authorization, sourceFilePath, sourceBytes,
+                  data.bufferSize, false, data.compressionLevel, digest, log );
+    }
+
+    if ( data.uploadIndex != null && hcpResponse.getStatus() == BaseHCPResponse.Status.CREATED ) {
+      String hash = hcpResponse.getHCPHash() != null ? hcpResponse.getHCPHash() : hcpResponse.getComputedHash();
+      data.uploadIndex.put( requestUrl,
+          new HCPUploadIndex.Entry( sourceSize, sourceModified, hash, hcpResponse.getVersionID() ) );
+    }
+
+    return hcpResponse;
+  }
+
+  /**
+   * Work out whether the target already holds the source's content. The upload index is consulted first; a source with
+   * the size and modification time recorded there is taken as unchanged without asking HCP. Otherwise HCP is asked for
+   * the target's size and hash (HEAD), and if the sizes agree the source is hashed with the same scheme and compared.
+   *
+   * @return a NOT_MODIFIED response if the upload can be skipped, otherwise null
+   */
+  protected HCPCreateResponse checkUnchanged( HCPPutData data, String requestUrl, String sourceFilePath,
+      byte[] sourceBytes, long sourceSize, long sourceModified ) throws Exception {
+
+    HCPUploadIndex.Entry entry = data.uploadIndex != null ? data.uploadIndex.get( requestUrl ) : null;
+    if ( entry != null ) {
+      if ( entry.matches( sourceSize, sourceModified ) ) {
+        return unchanged( entry.getVersionId() );
+      }
+      if ( sourceBytes != null && entry.getSize() == sourceSize && entry.getHash() != null ) {
+        // content is in memory, so hashing it is cheaper than a round trip
+        String hash =
+            HCPContentHash.hash( new ByteArrayInputStream( sourceBytes ), HCPContentHash.getScheme( entry.getHash() ) );
+        if ( Boolean.TRUE.equals( HCPContentHash.matches( entry.getHash(), hash ) ) ) {
+          return unchanged( entry.getVersionId() );
+        }
+      }
+    }
+
+    HCPReadResponse head =
+        HCPConnectionOperationUtils.performGet( data.client, requestUrl, data.authorization, null, log );
+    if ( head.getStatus() != BaseHCPResponse.Status.OK || head.getSize() == null || head.getSize() != sourceSize
+        || head.getHCPHash() == null ) {
+      return null;
+    }
+
+    String scheme = HCPContentHash.getScheme( head.getHCPHash() );
+    String hash;
+    InputStream inputStream =
+        sourceBytes != null ? new ByteArrayInputStream( sourceBytes ) :
+            new BufferedInputStream( KettleVFS.getInputStream( sourceFilePath, this ), Math.max( 8192, data.bufferSize ) );
+    try {
+      hash = HCPContentHash.hash( inputStream, scheme );
     } finally {
-      if ( fileInputStream != null ) {
-        try {
-          fileInputStream.close();
-        } catch ( IOException e ) {
-          // Ignore this error for logging brevity: doesn't reveal the originating error.
+      inputStream.close();
+    }
+    if ( !Boolean.TRUE.equals( HCPContentHash.matches( head.getHCPHash(), hash ) ) ) {
+      return null;
+    }
+
+    if ( data.uploadIndex != null ) {
+      data.uploadIndex
+          .put( requestUrl, new HCPUploadIndex.Entry( sourceSize, sourceModified, hash, head.getVersionId() ) );
+    }
+    return unchanged( head.getVersionId() );
+  }
+
+  protected static HCPCreateResponse unchanged( String versionId ) {
+    HCPCreateResponse response = new HCPCreateResponse();
+    response.setStatus( BaseHCPResponse.Status.NOT_MODIFIED );
+    response.setExplanation( "Unchanged - upload skipped" );
+    response.setVersionID( versionId );
+    return response;
+  }
+
+  /**
+   * Get the document content from a binary or string field. Strings are encoded using the field's encoding (UTF-8
+   * if none is set).
+   *
+   * @return the content, or null if the field is null for this row
+   */
+  protected byte[] getSourceContent( Object[] row, int index ) throws KettleException {
+    ValueMetaInterface valueMeta = getInputRowMeta().getValueMeta( index );
+    if ( row[index] == null ) {
+      return null;
+    }
+    if ( valueMeta.isBinary() ) {
+      return valueMeta.getBinary( row[index] );
+    }
+    String content = valueMeta.getString( row[index] );
+    if ( content == null ) {
+      return null;
+    }
+    try {
+      return content.getBytes( Const.NVL( valueMeta.getStringEncoding(), Const.XML_ENCODING ) );
+    } catch ( UnsupportedEncodingException e ) {
+      throw new KettleException( e );
+    }
+  }
+
+  /**
+   * The journal key of an upload: the target URL plus the identity of the source (the size and modification time of
+   * a file, the size and hash of in-memory content), so that a source that changed since the earlier run is sent
+   * again.
+   *
+   * @return the key, or null if the source file can't be looked at (the upload itself will report why)
+   */
+  protected String getJournalKey( String requestUrl, String sourceFilePath, byte[] sourceBytes ) {
+    try {
+      if ( sourceBytes != null ) {
+        return requestUrl + " < " + sourceBytes.length + " "
+            + HCPContentHash.hash( new ByteArrayInputStream( sourceBytes ), "MD5" );
+      }
+      FileContent content = KettleVFS.getFileObject( sourceFilePath, this ).getContent();
+      return requestUrl + " < " + sourceFilePath + " " + content.getSize() + " " + content.getLastModifiedTime();
+    } catch ( IOException | KettleFileException e ) {
+      return null;
+    }
+  }
+
+  protected HCPCreateResponse uploadMultipart( HCPPutMeta meta, HCPPutData data, File localFile, String requestUrl )
+      throws IOException {
+    if ( meta.isUpdating() && data.namespaceInfo != null
+        && Boolean.FALSE.equals( data.namespaceInfo.getVersioningEnabled() ) ) {
+      // the complete would only fail with a conflict once every part had been sent, so make room first
+      HCPReadResponse headResponse =
+          HCPConnectionOperationUtils.performGet( data.client, requestUrl, data.authorization, null, null, log );
+      if ( headResponse.getStatus() == BaseHCPResponse.Status.OK ) {
+        HCPDeleteResponse
+            deleteResponse =
+            HCPConnectionOperationUtils.performDelete( data.client, requestUrl, data.authorization, log );
+        if ( deleteResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+          return new HCPCreateResponse( deleteResponse.getStatus(), deleteResponse.getExplanation() );
         }
       }
     }
 
-    long endTime = System.currentTimeMillis();
+    HCPCreateResponse
+        hcpResponse =
+        HCPConnectionOperationUtils
+            .performMultipartCreate( data.client, requestUrl, data.authorization, localFile, data.partSize,
+                data.partExecutor, data.journal, log );
+
+    if ( meta.isUpdating() && hcpResponse.getStatus() == BaseHCPResponse.Status.CONFLICT ) {
+      // exists in a namespace that doesn't keep versions (whose settings we couldn't look up, or the object turned up
+      // since we looked)
+      HCPDeleteResponse
+          deleteResponse =
+          HCPConnectionOperationUtils.performDelete( data.client, requestUrl, data.authorization, log );
+      if ( deleteResponse.getStatus() != BaseHCPResponse.Status.OK ) {
+        return new HCPCreateResponse( deleteResponse.getStatus(), deleteResponse.getExplanation() );
+      }
+      hcpResponse =
+          HCPConnectionOperationUtils
+              .performMultipartCreate( data.client, requestUrl, data.authorization, localFile, data.partSize,
+                  data.partExecutor, data.journal, log );
+    }
+
+    return hcpResponse;
+  }
 
-    Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+  protected long parseOption( String value, long defaultValue, String warningKey ) {
+    value = environmentSubstitute( value );
+    if ( StringUtils.isEmpty( value ) ) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.logBasic( BaseMessages.getString( PKG, warningKey, value ) );
+      return defaultValue;
+    }
+  }
+
+  protected void emitResult( HCPPutData data, PutResult result ) throws KettleException {
+    Object[] outputRow = RowDataUtil.createResizedCopy( result.row, data.outputRowMeta.size() );
     int outputIndex = getInputRowMeta().size();
+    HCPCreateResponse hcpResponse = result.response;
+    if ( hcpResponse == null || !hcpResponse.getSuccess() ) {
+      // no response means the request threw, which was only logged
+      data.failedRows++;
+    }
     if ( hcpResponse != null ) {
 
       // TODO remove user fields for code and time taken
       // TODO add a success field (boolean) + rename code to status
 
-      outputRow[outputIndex] = endTime - startTime;
+      outputRow[outputIndex] = result.elapsed;
 
       hcpResponse.populateKettleRow( data.outputRowMeta, outputRow );
 
@@ -218,22 +600,76 @@ public class HCPPut extends BaseStep implements StepInterface {
           putError( data.outputRowMeta, outputRow, 1L, hcpResponse.getExplanation(), "",
               hcpResponse.getStatus().toString() );
 
-          return true;
+          return;
         }
       }
     }
 
     putRow( data.outputRowMeta, outputRow );
-
-    return true;
   }
 
   @Override public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
     // HCPPutMeta meta = (HCPPutMeta) smi;
     HCPPutData data = (HCPPutData) sdi;
 
-    data.client.destroy();
+    if ( data.window != null ) {
+      data.window.shutdown();
+    }
+    if ( data.uploadIndex != null ) {
+      try {
+        data.uploadIndex.save();
+      } catch ( Exception e ) {
+        log.logError( BaseMessages.getString( PKG, "HCPPut.Error.UnableToSaveIndex", data.uploadIndex.getFilename() ),
+            e );
+      }
+      data.uploadIndex = null;
+    }
+    if ( data.journal != null ) {
+      if ( data.allRowsDone && data.failedRows == 0 && getErrors() == 0 && !isStopped() ) {
+        // nothing left to resume
+        try {
+          data.journal.discard();
+          log.logDetailed(
+              BaseMessages.getString( PKG, "HCPPut.Message.JournalDiscarded", data.journal.getFilename() ) );
+        } catch ( Exception e ) {
+          log.logError(
+              BaseMessages.getString( PKG, "HCPPut.Error.UnableToDiscardJournal", data.journal.getFilename() ), e );
+        }
+      } else {
+        if ( data.failedRows > 0 ) {
+          log.logBasic( BaseMessages.getString( PKG, "HCPPut.Message.JournalKept", data.journal.getFilename(),
+              data.failedRows ) );
+        }
+        try {
+          data.journal.close();
+        } catch ( Exception e ) {
+          log.logError(
+              BaseMessages.getString( PKG, "HCPPut.Error.UnableToCloseJournal", data.journal.getFilename() ), e );
+        }
+      }
+      data.journal = null;
+    }
+    if ( data.partExecutor != null ) {
+      data.partExecutor.shutdownNow();
+    }
+    HCPClientRegistry.release( data.client );
+    data.client = null;
 
     super.dispose( smi, sdi );
   }
+
+  /**
+   * Outcome of a single upload, carried from the worker back to the step thread
+   */
+  protected static class PutResult {
+    protected final Object[] row;
+    protected final HCPCreateResponse response;
+    protected final long elapsed;
+
+    protected PutResult( Object[] row, HCPCreateResponse response, long elapsed ) {
+      this.row = row;
+      this.response = response;
+      this.elapsed = elapsed;
+    }
+  }
 }
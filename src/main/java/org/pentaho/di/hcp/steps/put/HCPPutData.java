@@ -24,18 +24,40 @@ package org.pentaho.di.hcp.steps.put;
 
 import com.sun.jersey.client.apache.ApacheHttpClient;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.hcp.shared.HCPNamespaceInfo;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.hcp.shared.HCPTransferJournal;
+import org.pentaho.di.hcp.shared.HCPUploadIndex;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import java.util.concurrent.ExecutorService;
+
 public class HCPPutData extends BaseStepData implements StepDataInterface {
   
   public ApacheHttpClient client;
   public int sourcePathIndex;
+  public int sourceContentIndex;
   public int targetPathIndex;
   public String targetPrependPath;
   public String authorization;
   public int bufferSize;
+  public int compressionLevel;
   public RowMetaInterface outputRowMeta;
+  public HCPNamespaceInfo namespaceInfo;
+  public String hashScheme;
+  public HCPUploadIndex uploadIndex;
+  public HCPTransferJournal journal;
+  public boolean allRowsDone;
+  /** Rows whose upload failed, whether or not they went to the error stream; the journal is kept if there are any */
+  public long failedRows;
+
+  public int inFlightRequests;
+  public HCPRequestWindow<HCPPut.PutResult> window;
+
+  public long multipartThreshold;
+  public long partSize;
+  public ExecutorService partExecutor;
 
   public HCPPutData() {
   }
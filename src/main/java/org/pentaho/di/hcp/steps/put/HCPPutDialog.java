@@ -64,9 +64,21 @@ public class HCPPutDialog extends BaseStepDialog implements StepDialogInterface
 
   private CCombo wConnection;
   private ComboVar wSourceFileField;
+  private ComboVar wSourceContentField;
   private ComboVar wTargetFileField;
   private TextVar wPrependPathField;
   private TextVar wBufferSizeField;
+  private TextVar wInFlightRequestsField;
+  private Button wPreserveOrder;
+  private TextVar wMultipartThresholdField;
+  private TextVar wPartSizeField;
+  private TextVar wPartConcurrencyField;
+  private Button wCompress;
+  private TextVar wCompressionLevelField;
+  private Button wVerifyHash;
+  private Button wSkipUnchanged;
+  private TextVar wIndexFileField;
+  private TextVar wJournalFileField;
   private Button wUpdate;
 
   private HCPPutMeta input;
@@ -230,6 +242,36 @@ public class HCPPutDialog extends BaseStepDialog implements StepDialogInterface
     } );
     lastControl = wSourceFileField;
 
+    // Source content field
+    //
+    Label wlSourceContentField = new Label( shell, SWT.RIGHT );
+    wlSourceContentField.setText( BaseMessages.getString( PKG, "HCPPutDialog.SourceContentField.Label" ) );
+    props.setLook( wlSourceContentField );
+    FormData fdlSourceContentField = new FormData();
+    fdlSourceContentField.left = new FormAttachment( 0, 0 );
+    fdlSourceContentField.right = new FormAttachment( middle, -margin );
+    fdlSourceContentField.top = new FormAttachment( lastControl, margin );
+    wlSourceContentField.setLayoutData( fdlSourceContentField );
+    wSourceContentField = new ComboVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wSourceContentField.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.SourceContentField.Tooltip" ) );
+    props.setLook( wSourceContentField );
+    wSourceContentField.addModifyListener( lsMod );
+    FormData fdSourceContentField = new FormData();
+    fdSourceContentField.left = new FormAttachment( middle, 0 );
+    fdSourceContentField.top = new FormAttachment( lastControl, margin );
+    fdSourceContentField.right = new FormAttachment( 100, 0 );
+    wSourceContentField.setLayoutData( fdSourceContentField );
+    wSourceContentField.addFocusListener( new FocusAdapter() {
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        BaseStepDialog.getFieldsFromPrevious( wSourceContentField, transMeta, stepMeta );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+    lastControl = wSourceContentField;
+
     // Target file field
     //
     Label wlTargetFileField = new Label( shell, SWT.RIGHT );
@@ -324,6 +366,223 @@ public class HCPPutDialog extends BaseStepDialog implements StepDialogInterface
     wBufferSizeField.setLayoutData( fd );
     lastControl = wBufferSizeField;
 
+    Label inFlightLab = new Label( shell, SWT.RIGHT );
+    inFlightLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.InFlightRequests.Label" ) );
+    inFlightLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.InFlightRequests.Tooltip" ) );
+    props.setLook( inFlightLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    inFlightLab.setLayoutData( fd );
+    wInFlightRequestsField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wInFlightRequestsField );
+    wInFlightRequestsField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wInFlightRequestsField.setLayoutData( fd );
+    lastControl = wInFlightRequestsField;
+
+    Label preserveOrderLab = new Label( shell, SWT.RIGHT );
+    preserveOrderLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.PreserveOrder.Label" ) );
+    preserveOrderLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.PreserveOrder.Tooltip" ) );
+    props.setLook( preserveOrderLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    preserveOrderLab.setLayoutData( fd );
+    wPreserveOrder = new Button( shell, SWT.CHECK );
+    props.setLook( wPreserveOrder );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPreserveOrder.setLayoutData( fd );
+    lastControl = wPreserveOrder;
+
+    Label multipartThresholdLab = new Label( shell, SWT.RIGHT );
+    multipartThresholdLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.MultipartThreshold.Label" ) );
+    multipartThresholdLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.MultipartThreshold.Tooltip" ) );
+    props.setLook( multipartThresholdLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    multipartThresholdLab.setLayoutData( fd );
+    wMultipartThresholdField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wMultipartThresholdField );
+    wMultipartThresholdField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wMultipartThresholdField.setLayoutData( fd );
+    lastControl = wMultipartThresholdField;
+
+    Label partSizeLab = new Label( shell, SWT.RIGHT );
+    partSizeLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.PartSize.Label" ) );
+    partSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.PartSize.Tooltip" ) );
+    props.setLook( partSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    partSizeLab.setLayoutData( fd );
+    wPartSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wPartSizeField );
+    wPartSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPartSizeField.setLayoutData( fd );
+    lastControl = wPartSizeField;
+
+    Label partConcurrencyLab = new Label( shell, SWT.RIGHT );
+    partConcurrencyLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.PartConcurrency.Label" ) );
+    partConcurrencyLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.PartConcurrency.Tooltip" ) );
+    props.setLook( partConcurrencyLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    partConcurrencyLab.setLayoutData( fd );
+    wPartConcurrencyField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wPartConcurrencyField );
+    wPartConcurrencyField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPartConcurrencyField.setLayoutData( fd );
+    lastControl = wPartConcurrencyField;
+
+    Label compressLab = new Label( shell, SWT.RIGHT );
+    compressLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.Compress.Label" ) );
+    compressLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.Compress.Tooltip" ) );
+    props.setLook( compressLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    compressLab.setLayoutData( fd );
+    wCompress = new Button( shell, SWT.CHECK );
+    props.setLook( wCompress );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wCompress.setLayoutData( fd );
+    wCompress.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        input.setChanged();
+        wCompressionLevelField.setEnabled( wCompress.getSelection() );
+      }
+    } );
+    lastControl = wCompress;
+
+    Label compressionLevelLab = new Label( shell, SWT.RIGHT );
+    compressionLevelLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.CompressionLevel.Label" ) );
+    compressionLevelLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.CompressionLevel.Tooltip" ) );
+    props.setLook( compressionLevelLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    compressionLevelLab.setLayoutData( fd );
+    wCompressionLevelField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wCompressionLevelField );
+    wCompressionLevelField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wCompressionLevelField.setLayoutData( fd );
+    lastControl = wCompressionLevelField;
+
+    Label verifyHashLab = new Label( shell, SWT.RIGHT );
+    verifyHashLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.VerifyHash.Label" ) );
+    verifyHashLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.VerifyHash.Tooltip" ) );
+    props.setLook( verifyHashLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    verifyHashLab.setLayoutData( fd );
+    wVerifyHash = new Button( shell, SWT.CHECK );
+    props.setLook( wVerifyHash );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wVerifyHash.setLayoutData( fd );
+    lastControl = wVerifyHash;
+
+    Label skipUnchangedLab = new Label( shell, SWT.RIGHT );
+    skipUnchangedLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.SkipUnchanged.Label" ) );
+    skipUnchangedLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.SkipUnchanged.Tooltip" ) );
+    props.setLook( skipUnchangedLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    skipUnchangedLab.setLayoutData( fd );
+    wSkipUnchanged = new Button( shell, SWT.CHECK );
+    props.setLook( wSkipUnchanged );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wSkipUnchanged.setLayoutData( fd );
+    wSkipUnchanged.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        input.setChanged();
+        wIndexFileField.setEnabled( wSkipUnchanged.getSelection() );
+      }
+    } );
+    lastControl = wSkipUnchanged;
+
+    Label indexFileLab = new Label( shell, SWT.RIGHT );
+    indexFileLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.IndexFile.Label" ) );
+    indexFileLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.IndexFile.Tooltip" ) );
+    props.setLook( indexFileLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    indexFileLab.setLayoutData( fd );
+    wIndexFileField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wIndexFileField );
+    wIndexFileField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wIndexFileField.setLayoutData( fd );
+    lastControl = wIndexFileField;
+
+    Label journalFileLab = new Label( shell, SWT.RIGHT );
+    journalFileLab.setText( BaseMessages.getString( PKG, "HCPPutDialog.JournalFile.Label" ) );
+    journalFileLab.setToolTipText( BaseMessages.getString( PKG, "HCPPutDialog.JournalFile.Tooltip" ) );
+    props.setLook( journalFileLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    journalFileLab.setLayoutData( fd );
+    wJournalFileField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wJournalFileField );
+    wJournalFileField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wJournalFileField.setLayoutData( fd );
+    lastControl = wJournalFileField;
+
     wOK = new Button( shell, SWT.PUSH );
     wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
     wCancel = new Button( shell, SWT.PUSH );
@@ -393,10 +652,24 @@ public class HCPPutDialog extends BaseStepDialog implements StepDialogInterface
   public void getData() {
     wConnection.setText( input.getConnection() == null ? "" : Const.NVL( input.getConnection().getName(), "" ) );
     wSourceFileField.setText( Const.NVL( input.getSourceFileField(), "" ) );
+    wSourceContentField.setText( Const.NVL( input.getSourceContentField(), "" ) );
     wTargetFileField.setText( Const.NVL( input.getTargetFileField(), "" ) );
     wUpdate.setSelection( input.isUpdating() );
     wPrependPathField.setText( Const.NVL( input.getPrependPath(), "" ) );
     wBufferSizeField.setText( Const.NVL( input.getBufferSize(), "" ) );
+    wInFlightRequestsField.setText( Const.NVL( input.getInFlightRequests(), "" ) );
+    wPreserveOrder.setSelection( input.isPreserveOrder() );
+    wMultipartThresholdField.setText( Const.NVL( input.getMultipartThreshold(), "" ) );
+    wPartSizeField.setText( Const.NVL( input.getPartSize(), "" ) );
+    wPartConcurrencyField.setText( Const.NVL( input.getPartConcurrency(), "" ) );
+    wCompress.setSelection( input.isCompress() );
+    wCompressionLevelField.setText( Const.NVL( input.getCompressionLevel(), "" ) );
+    wCompressionLevelField.setEnabled( input.isCompress() );
+    wVerifyHash.setSelection( input.isVerifyHash() );
+    wSkipUnchanged.setSelection( input.isSkipUnchanged() );
+    wIndexFileField.setText( Const.NVL( input.getIndexFile(), "" ) );
+    wIndexFileField.setEnabled( input.isSkipUnchanged() );
+    wJournalFileField.setText( Const.NVL( input.getJournalFile(), "" ) );
 
     wStepname.selectAll();
     wStepname.setFocus();
@@ -429,12 +702,24 @@ public class HCPPutDialog extends BaseStepDialog implements StepDialogInterface
       }
     }
     input.setSourceFileField( wSourceFileField.getText() );
+    input.setSourceContentField( wSourceContentField.getText() );
     input.setTargetFileField( wTargetFileField.getText() );
     input.setUpdating( wUpdate.getSelection() );
     // input.setResponseCodeField( wResponseCodeField.getText() );
     // input.setResponseTimeField( wResponseTimeField.getText() );
     input.setPrependPath( wPrependPathField.getText() );
     input.setBufferSize( wBufferSizeField.getText() );
+    input.setInFlightRequests( wInFlightRequestsField.getText() );
+    input.setPreserveOrder( wPreserveOrder.getSelection() );
+    input.setMultipartThreshold( wMultipartThresholdField.getText() );
+    input.setPartSize( wPartSizeField.getText() );
+    input.setPartConcurrency( wPartConcurrencyField.getText() );
+    input.setCompress( wCompress.getSelection() );
+    input.setCompressionLevel( wCompressionLevelField.getText() );
+    input.setVerifyHash( wVerifyHash.getSelection() );
+    input.setSkipUnchanged( wSkipUnchanged.getSelection() );
+    input.setIndexFile( wIndexFileField.getText() );
+    input.setJournalFile( wJournalFileField.getText() );
 
     dispose();
   }
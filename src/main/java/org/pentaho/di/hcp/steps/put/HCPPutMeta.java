@@ -23,6 +23,7 @@
 package org.pentaho.di.hcp.steps.put;
 
 import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
@@ -61,20 +62,40 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
 
   private static final String TAG_CONNECTION = "connection";
   private static final String TAG_SOURCE_FILE_FIELD = "source_field";
+  private static final String TAG_SOURCE_CONTENT_FIELD = "source_content_field";
   private static final String TAG_TARGET_FILE_FIELD = "target_field";
   private static final String TAG_UPDATING = "updating";
   private static final String TAG_RESPONSE_CODE_FIELD = "response_code_field";
   private static final String TAG_RESPONSE_TIME_FIELD = "response_time_field";
   private static final String TAG_PREPEND_PATH = "prepend_path";
   private static final String TAG_BUFFER_SIZE = "buffer_size";
+  private static final String TAG_IN_FLIGHT_REQUESTS = "in_flight_requests";
+  private static final String TAG_PRESERVE_ORDER = "preserve_order";
+  private static final String TAG_MULTIPART_THRESHOLD = "multipart_threshold";
+  private static final String TAG_PART_SIZE = "part_size";
+  private static final String TAG_PART_CONCURRENCY = "part_concurrency";
+  private static final String TAG_COMPRESS = "compress";
+  private static final String TAG_COMPRESSION_LEVEL = "compression_level";
+  private static final String TAG_VERIFY_HASH = "verify_hash";
+  private static final String TAG_SKIP_UNCHANGED = "skip_unchanged";
+  private static final String TAG_INDEX_FILE = "index_file";
+  private static final String TAG_JOURNAL_FILE = "journal_file";
 
   public static final int DEFAULT_BUFFER_SIZE = 1024;
+  public static final int DEFAULT_IN_FLIGHT_REQUESTS = 1;
+  public static final long DEFAULT_PART_SIZE = 16L * 1024L * 1024L;
+  public static final int DEFAULT_PART_CONCURRENCY = 4;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
 
   public static final String RESPONSE_TIME_FIELD_NAME = "Elapsed time ms";
 
   private HCPConnection m_connection;
 
   private String m_sourceFileField;
+
+  /** Field holding the document itself (binary or string). Takes precedence over the source file field */
+  private String m_sourceContentField;
+
   private String m_targetFileField;
 
   private boolean m_updating;
@@ -83,6 +104,39 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
 
   private String m_prependPath = "/";
 
+  /** Number of uploads this step copy may have on the wire at once */
+  private String m_inFlightRequests = "1";
+
+  /** When uploading concurrently, emit output rows in input order (rather than completion order) */
+  private boolean m_preserveOrder = true;
+
+  /** Local source files larger than this (bytes) are sent as a multipart upload. Empty means never */
+  private String m_multipartThreshold = "";
+
+  /** Size of each part of a multipart upload (bytes) */
+  private String m_partSize = "" + DEFAULT_PART_SIZE;
+
+  /** Number of parts of a single object to upload at once */
+  private String m_partConcurrency = "" + DEFAULT_PART_CONCURRENCY;
+
+  /** Gzip request bodies (HCP stores the decompressed data). Sources that don't compress are sent as is */
+  private boolean m_compress;
+
+  /** Gzip level, 1 (fastest) to 9 (smallest) */
+  private String m_compressionLevel = "" + DEFAULT_COMPRESSION_LEVEL;
+
+  /** Hash uploads as they are sent and compare with the hash HCP computed on ingest */
+  private boolean m_verifyHash;
+
+  /** Don't upload sources whose target already holds identical content */
+  private boolean m_skipUnchanged;
+
+  /** Persistent upload index used by skip-unchanged mode. Empty means always ask HCP */
+  private String m_indexFile = "";
+
+  /** Journal of completed transfers, so a restarted run can pick up where it stopped. Empty means no journal */
+  private String m_journalFile = "";
+
   public HCPPutMeta() {
     super();
   }
@@ -116,6 +170,9 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
     try {
       BaseHCPResponse.addMinSysFieldMetadata( inputRowMeta );
       HCPCreateResponse.addCreateFieldMetadata( inputRowMeta );
+      if ( m_verifyHash ) {
+        BaseHCPResponse.addHashVerificationFieldMetadata( inputRowMeta );
+      }
     } catch ( KettlePluginException e ) {
       throw new KettleStepException( e );
     }
@@ -126,10 +183,22 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
 
     xml.append( XMLHandler.addTagValue( TAG_CONNECTION, m_connection == null ? null : m_connection.getName() ) );
     xml.append( XMLHandler.addTagValue( TAG_SOURCE_FILE_FIELD, m_sourceFileField ) );
+    xml.append( XMLHandler.addTagValue( TAG_SOURCE_CONTENT_FIELD, m_sourceContentField ) );
     xml.append( XMLHandler.addTagValue( TAG_TARGET_FILE_FIELD, m_targetFileField ) );
     xml.append( XMLHandler.addTagValue( TAG_UPDATING, m_updating ) );
     xml.append( XMLHandler.addTagValue( TAG_PREPEND_PATH, m_prependPath ) );
     xml.append( XMLHandler.addTagValue( TAG_BUFFER_SIZE, m_bufferSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_IN_FLIGHT_REQUESTS, m_inFlightRequests ) );
+    xml.append( XMLHandler.addTagValue( TAG_PRESERVE_ORDER, m_preserveOrder ) );
+    xml.append( XMLHandler.addTagValue( TAG_MULTIPART_THRESHOLD, m_multipartThreshold ) );
+    xml.append( XMLHandler.addTagValue( TAG_PART_SIZE, m_partSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_PART_CONCURRENCY, m_partConcurrency ) );
+    xml.append( XMLHandler.addTagValue( TAG_COMPRESS, m_compress ) );
+    xml.append( XMLHandler.addTagValue( TAG_COMPRESSION_LEVEL, m_compressionLevel ) );
+    xml.append( XMLHandler.addTagValue( TAG_VERIFY_HASH, m_verifyHash ) );
+    xml.append( XMLHandler.addTagValue( TAG_SKIP_UNCHANGED, m_skipUnchanged ) );
+    xml.append( XMLHandler.addTagValue( TAG_INDEX_FILE, m_indexFile ) );
+    xml.append( XMLHandler.addTagValue( TAG_JOURNAL_FILE, m_journalFile ) );
 
     return xml.toString();
   }
@@ -151,6 +220,7 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
         }
       }
       m_sourceFileField = XMLHandler.getTagValue( stepnode, TAG_SOURCE_FILE_FIELD );
+      m_sourceContentField = XMLHandler.getTagValue( stepnode, TAG_SOURCE_CONTENT_FIELD );
       m_targetFileField = XMLHandler.getTagValue( stepnode, TAG_TARGET_FILE_FIELD );
       m_updating = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_UPDATING ) );
 
@@ -162,6 +232,32 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
       if ( StringUtils.isNotEmpty( bufferSize ) ) {
         m_bufferSize = bufferSize;
       }
+      String inFlight = XMLHandler.getTagValue( stepnode, TAG_IN_FLIGHT_REQUESTS );
+      if ( StringUtils.isNotEmpty( inFlight ) ) {
+        m_inFlightRequests = inFlight;
+      }
+      String preserveOrder = XMLHandler.getTagValue( stepnode, TAG_PRESERVE_ORDER );
+      if ( preserveOrder != null ) {
+        m_preserveOrder = preserveOrder.equalsIgnoreCase( "Y" );
+      }
+      m_multipartThreshold = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MULTIPART_THRESHOLD ), "" );
+      String partSize = XMLHandler.getTagValue( stepnode, TAG_PART_SIZE );
+      if ( StringUtils.isNotEmpty( partSize ) ) {
+        m_partSize = partSize;
+      }
+      String partConcurrency = XMLHandler.getTagValue( stepnode, TAG_PART_CONCURRENCY );
+      if ( StringUtils.isNotEmpty( partConcurrency ) ) {
+        m_partConcurrency = partConcurrency;
+      }
+      m_compress = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_COMPRESS ) );
+      String compressionLevel = XMLHandler.getTagValue( stepnode, TAG_COMPRESSION_LEVEL );
+      if ( StringUtils.isNotEmpty( compressionLevel ) ) {
+        m_compressionLevel = compressionLevel;
+      }
+      m_verifyHash = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_VERIFY_HASH ) );
+      m_skipUnchanged = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, TAG_SKIP_UNCHANGED ) );
+      m_indexFile = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_INDEX_FILE ), "" );
+      m_journalFile = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_JOURNAL_FILE ), "" );
 
     } catch ( Exception e ) {
       throw new KettleXMLException( BaseMessages.getString( PKG, "HCPPutMeta.Error.CouldNotLoadXML" ), e );
@@ -174,10 +270,22 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
     rep.saveStepAttribute( id_transformation, id_step, TAG_CONNECTION,
         m_connection == null ? null : m_connection.getName() );
     rep.saveStepAttribute( id_transformation, id_step, TAG_SOURCE_FILE_FIELD, m_sourceFileField );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_SOURCE_CONTENT_FIELD, m_sourceContentField );
     rep.saveStepAttribute( id_transformation, id_step, TAG_TARGET_FILE_FIELD, m_targetFileField );
     rep.saveStepAttribute( id_transformation, id_step, TAG_UPDATING, m_updating );
     rep.saveStepAttribute( id_transformation, id_step, TAG_PREPEND_PATH, m_prependPath );
     rep.saveStepAttribute( id_transformation, id_step, TAG_BUFFER_SIZE, m_bufferSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_IN_FLIGHT_REQUESTS, m_inFlightRequests );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PRESERVE_ORDER, m_preserveOrder );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MULTIPART_THRESHOLD, m_multipartThreshold );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PART_SIZE, m_partSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PART_CONCURRENCY, m_partConcurrency );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_COMPRESS, m_compress );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_COMPRESSION_LEVEL, m_compressionLevel );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_VERIFY_HASH, m_verifyHash );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_SKIP_UNCHANGED, m_skipUnchanged );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_INDEX_FILE, m_indexFile );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_JOURNAL_FILE, m_journalFile );
   }
 
   @Override public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
@@ -195,6 +303,7 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
       }
     }
     m_sourceFileField = rep.getStepAttributeString( id_step, TAG_SOURCE_FILE_FIELD );
+    m_sourceContentField = rep.getStepAttributeString( id_step, TAG_SOURCE_CONTENT_FIELD );
     m_targetFileField = rep.getStepAttributeString( id_step, TAG_TARGET_FILE_FIELD );
     m_updating = rep.getStepAttributeBoolean( id_step, TAG_UPDATING );
 
@@ -206,6 +315,29 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
     if ( StringUtils.isNotEmpty( bufferSize ) ) {
       m_bufferSize = bufferSize;
     }
+    String inFlight = rep.getStepAttributeString( id_step, TAG_IN_FLIGHT_REQUESTS );
+    if ( StringUtils.isNotEmpty( inFlight ) ) {
+      m_inFlightRequests = inFlight;
+    }
+    m_preserveOrder = rep.getStepAttributeBoolean( id_step, 0, TAG_PRESERVE_ORDER, true );
+    m_multipartThreshold = Const.NVL( rep.getStepAttributeString( id_step, TAG_MULTIPART_THRESHOLD ), "" );
+    String partSize = rep.getStepAttributeString( id_step, TAG_PART_SIZE );
+    if ( StringUtils.isNotEmpty( partSize ) ) {
+      m_partSize = partSize;
+    }
+    String partConcurrency = rep.getStepAttributeString( id_step, TAG_PART_CONCURRENCY );
+    if ( StringUtils.isNotEmpty( partConcurrency ) ) {
+      m_partConcurrency = partConcurrency;
+    }
+    m_compress = rep.getStepAttributeBoolean( id_step, TAG_COMPRESS );
+    String compressionLevel = rep.getStepAttributeString( id_step, TAG_COMPRESSION_LEVEL );
+    if ( StringUtils.isNotEmpty( compressionLevel ) ) {
+      m_compressionLevel = compressionLevel;
+    }
+    m_verifyHash = rep.getStepAttributeBoolean( id_step, TAG_VERIFY_HASH );
+    m_skipUnchanged = rep.getStepAttributeBoolean( id_step, TAG_SKIP_UNCHANGED );
+    m_indexFile = Const.NVL( rep.getStepAttributeString( id_step, TAG_INDEX_FILE ), "" );
+    m_journalFile = Const.NVL( rep.getStepAttributeString( id_step, TAG_JOURNAL_FILE ), "" );
   }
 
   public HCPConnection getConnection() {
@@ -224,6 +356,14 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
     this.m_sourceFileField = sourceFileField;
   }
 
+  public String getSourceContentField() {
+    return m_sourceContentField;
+  }
+
+  public void setSourceContentField( String sourceContentField ) {
+    m_sourceContentField = sourceContentField;
+  }
+
   public String getTargetFileField() {
     return m_targetFileField;
   }
@@ -248,6 +388,94 @@ public class HCPPutMeta extends BaseStepMeta implements StepMetaInterface {
     return m_bufferSize;
   }
 
+  public void setInFlightRequests( String inFlightRequests ) {
+    m_inFlightRequests = inFlightRequests;
+  }
+
+  public String getInFlightRequests() {
+    return m_inFlightRequests;
+  }
+
+  public void setPreserveOrder( boolean preserveOrder ) {
+    m_preserveOrder = preserveOrder;
+  }
+
+  public boolean isPreserveOrder() {
+    return m_preserveOrder;
+  }
+
+  public void setMultipartThreshold( String multipartThreshold ) {
+    m_multipartThreshold = multipartThreshold;
+  }
+
+  public String getMultipartThreshold() {
+    return m_multipartThreshold;
+  }
+
+  public void setPartSize( String partSize ) {
+    m_partSize = partSize;
+  }
+
+  public String getPartSize() {
+    return m_partSize;
+  }
+
+  public void setPartConcurrency( String partConcurrency ) {
+    m_partConcurrency = partConcurrency;
+  }
+
+  public String getPartConcurrency() {
+    return m_partConcurrency;
+  }
+
+  public void setCompress( boolean compress ) {
+    m_compress = compress;
+  }
+
+  public boolean isCompress() {
+    return m_compress;
+  }
+
+  public void setCompressionLevel( String compressionLevel ) {
+    m_compressionLevel = compressionLevel;
+  }
+
+  public String getCompressionLevel() {
+    return m_compressionLevel;
+  }
+
+  public void setVerifyHash( boolean verifyHash ) {
+    m_verifyHash = verifyHash;
+  }
+
+  public boolean isVerifyHash() {
+    return m_verifyHash;
+  }
+
+  public void setSkipUnchanged( boolean skipUnchanged ) {
+    m_skipUnchanged = skipUnchanged;
+  }
+
+  public boolean isSkipUnchanged() {
+    return m_skipUnchanged;
+  }
+
+  public void setIndexFile( String indexFile ) {
+    m_indexFile = indexFile;
+  }
+
+  public String getIndexFile() {
+    return m_indexFile;
+  }
+
+  public void setJournalFile( String journalFile ) {
+    m_journalFile = journalFile;
+  }
+
+  public String getJournalFile() {
+    return m_journalFile;
+  }
+
   public boolean isUpdating() {
     return m_updating;
   }
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.hcp.shared.BaseHCPResponse;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
+import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
+import org.pentaho.di.hcp.shared.HCPListResponse;
+import org.pentaho.di.hcp.shared.HCPQueryRequest;
+import org.pentaho.di.hcp.shared.HCPQueryResponse;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Finds the objects matching some criteria with the HCP metadata query API, rather than listing every directory and
+ * filtering afterwards. Results come back a page at a time, one row per object. The change time range is split into
+ * a slice per page in flight, each paged through with its own cursor, so rows come out in the order pages arrive.
+ */
+public class HCPMetadataQuery extends BaseStep implements StepInterface {
+  private static Class<?> PKG = HCPMetadataQuery.class; // for i18n purposes, needed by
+  // Translator2!!
+
+  public HCPMetadataQuery( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+
+    HCPMetadataQueryMeta meta = (HCPMetadataQueryMeta) smi;
+    HCPMetadataQueryData data = (HCPMetadataQueryData) sdi;
+
+    if ( meta.getConnection() == null ) {
+      log.logError( BaseMessages.getString( PKG, "HCPMetadataQuery.Error.HCPConnectionNotSpecified" ) );
+      // Stop right here.
+      return false;
+    }
+
+    data.authorization = meta.getConnection().getAuthorizationHeader();
+    data.queryUrl = meta.getConnection().getQueryUrl( this );
+
+    data.request = new HCPQueryRequest();
+    String namespace = environmentSubstitute( meta.getConnection().getNamespace() );
+    if ( StringUtils.isNotEmpty( namespace ) ) {
+      data.request.setNamespace( namespace + "." + environmentSubstitute( meta.getConnection().getTenant() ) );
+    }
+    data.request.setExpression( environmentSubstitute( meta.getQuery() ) );
+    data.request.setChangedFrom(
+        parseBound( meta.getChangedSince(), "HCPMetadataQuery.Warning.UnparsableChangedSince" ) );
+    Long changedBefore = parseBound( meta.getChangedBefore(), "HCPMetadataQuery.Warning.UnparsableChangedBefore" );
+    // query ranges include their upper bound
+    data.request.setChangedTo( changedBefore == null ? null : changedBefore - 1 );
+    data.request.setMinSize( parseBound( meta.getMinSize(), "HCPMetadataQuery.Warning.UnparsableMinSize" ) );
+    data.request.setMaxSize( parseBound( meta.getMaxSize(), "HCPMetadataQuery.Warning.UnparsableMaxSize" ) );
+    Long pageSize = parseBound( meta.getPageSize(), "HCPMetadataQuery.Warning.UnparsablePageSize" );
+    data.request.setPageSize( pageSize == null ? HCPQueryRequest.DEFAULT_PAGE_SIZE : pageSize.intValue() );
+
+    Long pagesInFlight = parseBound( meta.getPagesInFlight(), "HCPMetadataQuery.Warning.UnparsablePagesInFlight" );
+    int windowSize =
+        Math.max( 1, pagesInFlight == null ? HCPMetadataQueryMeta.DEFAULT_PAGES_IN_FLIGHT : pagesInFlight.intValue() );
+
+    if ( log.isDetailed() ) {
+      log.logDetailed( "Query : " + data.request.getQuery() );
+    }
+
+    data.client = HCPClientRegistry.acquire( meta.getConnection(), this, 0, windowSize );
+    data.window = new HCPRequestWindow<>( windowSize, false, getStepname() + "." + getCopy() + " query" );
+
+    return super.init( smi, sdi );
+  }
+
+  @Override public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+
+    HCPMetadataQueryMeta meta = (HCPMetadataQueryMeta) smi;
+    final HCPMetadataQueryData data = (HCPMetadataQueryData) sdi;
+
+    if ( first ) {
+      first = false;
+
+      data.outputRowMeta = new RowMeta();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      for ( HCPQueryRequest.Slice slice : data.request.split( data.window.getSize(), System.currentTimeMillis() ) ) {
+        submitPage( data, slice );
+      }
+    }
+
+    HCPQueryRequest.Slice slice = data.window.take();
+    if ( slice == null ) {
+      logBasic( BaseMessages.getString( PKG, "HCPMetadataQuery.Message.QueryDone", data.objectCount ) );
+      setOutputDone();
+      return false;
+    }
+
+    HCPQueryResponse page = slice.getLastPage();
+    if ( page.getStatus() != BaseHCPResponse.Status.OK ) {
+      throw new KettleException( BaseMessages.getString( PKG, "HCPMetadataQuery.Error.QueryFailed", data.queryUrl,
+          page.getExplanation() ) );
+    }
+    if ( HCPQueryResponse.ERROR.equals( page.getResultCode() ) ) {
+      throw new KettleException( BaseMessages.getString( PKG, "HCPMetadataQuery.Error.QueryError", data.queryUrl,
+          page.getMessage() ) );
+    }
+    if ( HCPQueryResponse.INCOMPLETE.equals( page.getResultCode() ) ) {
+      log.logBasic( BaseMessages.getString( PKG, "HCPMetadataQuery.Warning.QueryIncomplete", page.getMessage() ) );
+    }
+    if ( page.getEntries().size() >= data.request.getPageSize()
+        && !HCPQueryResponse.COMPLETE.equals( page.getResultCode() ) ) {
+      // carry on from this page's last object while its rows go out
+      submitPage( data, slice );
+    }
+
+    for ( HCPListResponse.ListEntry entry : page.getEntries() ) {
+      if ( isStopped() ) {
+        return false;
+      }
+      Object[] outputRow = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+      page.populateKettleRow( data.outputRowMeta, outputRow );
+      entry.populateKettleRow( data.outputRowMeta, outputRow );
+      incrementLinesInput();
+      putRow( data.outputRowMeta, outputRow );
+      data.objectCount++;
+    }
+
+    return true;
+  }
+
+  /**
+   * Request the slice's next page. The body is built here, from the page the slice last came back with, before a
+   * worker replaces it.
+   */
+  protected void submitPage( final HCPMetadataQueryData data, final HCPQueryRequest.Slice slice ) {
+    final String requestBody = data.request.getRequestBody( slice );
+    data.window.submit( new Callable<HCPQueryRequest.Slice>() {
+      @Override public HCPQueryRequest.Slice call() throws Exception {
+        slice.setLastPage(
+            HCPConnectionOperationUtils.performQuery( data.client, data.queryUrl, data.authorization, requestBody,
+                log ) );
+        return slice;
+      }
+    } );
+  }
+
+  /**
+   * @return the number in value, or null if it is empty (or can't be parsed)
+   */
+  protected Long parseBound( String value, String warningKey ) {
+    value = environmentSubstitute( value );
+    if ( StringUtils.isEmpty( value ) ) {
+      return null;
+    }
+    try {
+      return Long.parseLong( value.trim() );
+    } catch ( NumberFormatException e ) {
+      log.logBasic( BaseMessages.getString( PKG, warningKey, value ) );
+      return null;
+    }
+  }
+
+  @Override public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    HCPMetadataQueryData data = (HCPMetadataQueryData) sdi;
+
+    if ( data.window != null ) {
+      data.window.shutdown();
+      data.window = null;
+    }
+    HCPClientRegistry.release( data.client );
+    data.client = null;
+
+    super.dispose( smi, sdi );
+  }
+}
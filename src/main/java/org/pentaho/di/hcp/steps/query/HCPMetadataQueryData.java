@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.query;
+
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.hcp.shared.HCPQueryRequest;
+import org.pentaho.di.hcp.shared.HCPRequestWindow;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class HCPMetadataQueryData extends BaseStepData implements StepDataInterface {
+
+  public ApacheHttpClient client;
+  public String authorization;
+  public String queryUrl;
+
+  public RowMetaInterface outputRowMeta;
+
+  public HCPQueryRequest request;
+
+  /** Slices of the query with a page in flight; each comes back with the page it fetched */
+  public HCPRequestWindow<HCPQueryRequest.Slice> window;
+
+  public long objectCount;
+
+  public HCPMetadataQueryData() {
+  }
+}
@@ -0,0 +1,457 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusAdapter;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.hcp.shared.HCPConnection;
+import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+import java.util.Collections;
+import java.util.List;
+
+public class HCPMetadataQueryDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = HCPMetadataQueryMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private CCombo wConnection;
+  private TextVar wQueryField;
+  private TextVar wChangedSinceField;
+  private TextVar wChangedBeforeField;
+  private TextVar wMinSizeField;
+  private TextVar wMaxSizeField;
+  private TextVar wPageSizeField;
+  private TextVar wPagesInFlightField;
+
+  private HCPMetadataQueryMeta input;
+
+  private Button wNewConnection, wEditConnection, wDeleteConnection;
+
+  public HCPMetadataQueryDialog( Shell parent, Object in, TransMeta transMeta, String sname ) {
+    super( parent, (BaseStepMeta) in, transMeta, sname );
+    input = (HCPMetadataQueryMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MAX | SWT.MIN );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+    Control lastControl = wStepname;
+
+    // Connection
+    //  first add 3 buttons to the right, then fill the rest of the line with a combo drop-down
+    //
+    wDeleteConnection = new Button( shell, SWT.PUSH );
+    wDeleteConnection.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.DeleteConnection.Label" ) );
+    props.setLook( wDeleteConnection );
+    FormData fdDeleteConnection = new FormData();
+    fdDeleteConnection.right = new FormAttachment( 100, 0 );
+    fdDeleteConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wDeleteConnection.setLayoutData( fdDeleteConnection );
+    wDeleteConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        deleteConnection();
+      }
+    } );
+
+    wEditConnection = new Button( shell, SWT.PUSH );
+    wEditConnection.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.EditConnection.Label" ) );
+    props.setLook( wEditConnection );
+    FormData fdEditConnection = new FormData();
+    fdEditConnection.right = new FormAttachment( wDeleteConnection, -margin );
+    fdEditConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wEditConnection.setLayoutData( fdEditConnection );
+    wEditConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        editConnection();
+      }
+    } );
+
+    wNewConnection = new Button( shell, SWT.PUSH );
+    wNewConnection.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.NewConnection.Label" ) );
+    props.setLook( wNewConnection );
+    FormData fdNewConnection = new FormData();
+    fdNewConnection.right = new FormAttachment( wEditConnection, -margin );
+    fdNewConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wNewConnection.setLayoutData( fdNewConnection );
+    wNewConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        newConnection();
+      }
+    } );
+
+    Label wlConnection = new Label( shell, SWT.RIGHT );
+    wlConnection.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Connection.Label" ) );
+    props.setLook( wlConnection );
+    FormData fdlConnection = new FormData();
+    fdlConnection.left = new FormAttachment( 0, 0 );
+    fdlConnection.right = new FormAttachment( middle, -margin );
+    fdlConnection.top = new FormAttachment( lastControl, margin );
+    wlConnection.setLayoutData( fdlConnection );
+    wConnection = new CCombo( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wConnection.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Connection.Tooltip" ) );
+    props.setLook( wConnection );
+    wConnection.addModifyListener( lsMod );
+    FormData fdConnection = new FormData();
+    fdConnection.left = new FormAttachment( middle, 0 );
+    fdConnection.top = new FormAttachment( lastControl, margin );
+    fdConnection.right = new FormAttachment( wNewConnection, -margin );
+    wConnection.setLayoutData( fdConnection );
+    wConnection.addFocusListener( new FocusAdapter() {
+      public void focusGained( org.eclipse.swt.events.FocusEvent event ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        try {
+          List<String> names = HCPConnectionUtils.getConnectionFactory( metaStore ).getElementNames();
+          Collections.sort( names );
+          wConnection.setItems( names.toArray( new String[names.size()] ) );
+        } catch ( Exception exception ) {
+          new ErrorDialog( shell,
+              BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Error.ErrorGettingConnectionsList.Title" ),
+              BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Error.ErrorGettingConnectionsList.Message" ),
+              exception );
+        }
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+    lastControl = wNewConnection;
+
+    FormData fd;
+    Label queryLab = new Label( shell, SWT.RIGHT );
+    queryLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Query.Label" ) );
+    queryLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Query.Tooltip" ) );
+    props.setLook( queryLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    queryLab.setLayoutData( fd );
+    wQueryField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wQueryField );
+    wQueryField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wQueryField.setLayoutData( fd );
+    lastControl = wQueryField;
+
+    Label changedSinceLab = new Label( shell, SWT.RIGHT );
+    changedSinceLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.ChangedSince.Label" ) );
+    changedSinceLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.ChangedSince.Tooltip" ) );
+    props.setLook( changedSinceLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    changedSinceLab.setLayoutData( fd );
+    wChangedSinceField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wChangedSinceField );
+    wChangedSinceField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wChangedSinceField.setLayoutData( fd );
+    lastControl = wChangedSinceField;
+
+    Label changedBeforeLab = new Label( shell, SWT.RIGHT );
+    changedBeforeLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.ChangedBefore.Label" ) );
+    changedBeforeLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.ChangedBefore.Tooltip" ) );
+    props.setLook( changedBeforeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    changedBeforeLab.setLayoutData( fd );
+    wChangedBeforeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wChangedBeforeField );
+    wChangedBeforeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wChangedBeforeField.setLayoutData( fd );
+    lastControl = wChangedBeforeField;
+
+    Label minSizeLab = new Label( shell, SWT.RIGHT );
+    minSizeLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.MinSize.Label" ) );
+    minSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.MinSize.Tooltip" ) );
+    props.setLook( minSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    minSizeLab.setLayoutData( fd );
+    wMinSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wMinSizeField );
+    wMinSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wMinSizeField.setLayoutData( fd );
+    lastControl = wMinSizeField;
+
+    Label maxSizeLab = new Label( shell, SWT.RIGHT );
+    maxSizeLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.MaxSize.Label" ) );
+    maxSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.MaxSize.Tooltip" ) );
+    props.setLook( maxSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    maxSizeLab.setLayoutData( fd );
+    wMaxSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wMaxSizeField );
+    wMaxSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wMaxSizeField.setLayoutData( fd );
+    lastControl = wMaxSizeField;
+
+    Label pageSizeLab = new Label( shell, SWT.RIGHT );
+    pageSizeLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.PageSize.Label" ) );
+    pageSizeLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.PageSize.Tooltip" ) );
+    props.setLook( pageSizeLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    pageSizeLab.setLayoutData( fd );
+    wPageSizeField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wPageSizeField );
+    wPageSizeField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPageSizeField.setLayoutData( fd );
+    lastControl = wPageSizeField;
+
+    Label pagesInFlightLab = new Label( shell, SWT.RIGHT );
+    pagesInFlightLab.setText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.PagesInFlight.Label" ) );
+    pagesInFlightLab.setToolTipText( BaseMessages.getString( PKG, "HCPMetadataQueryDialog.PagesInFlight.Tooltip" ) );
+    props.setLook( pagesInFlightLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    pagesInFlightLab.setLayoutData( fd );
+    wPagesInFlightField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wPagesInFlightField );
+    wPagesInFlightField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wPagesInFlightField.setLayoutData( fd );
+    lastControl = wPagesInFlightField;
+
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, lastControl );
+
+    // Add listeners
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+
+    wOK.addListener( SWT.Selection, lsOK );
+    wCancel.addListener( SWT.Selection, lsCancel );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() ) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  protected void newConnection() {
+    HCPConnectionUtils.newConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ) );
+  }
+
+  protected void editConnection() {
+    String connectionName = wConnection.getText();
+    HCPConnectionUtils.editConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ), connectionName );
+  }
+
+  protected void deleteConnection() {
+    String connectionName = wConnection.getText();
+    HCPConnectionUtils.deleteConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ), connectionName );
+  }
+
+  public void getData() {
+    wConnection.setText( input.getConnection() == null ? "" : Const.NVL( input.getConnection().getName(), "" ) );
+    wQueryField.setText( Const.NVL( input.getQuery(), "" ) );
+    wChangedSinceField.setText( Const.NVL( input.getChangedSince(), "" ) );
+    wChangedBeforeField.setText( Const.NVL( input.getChangedBefore(), "" ) );
+    wMinSizeField.setText( Const.NVL( input.getMinSize(), "" ) );
+    wMaxSizeField.setText( Const.NVL( input.getMaxSize(), "" ) );
+    wPageSizeField.setText( Const.NVL( input.getPageSize(), "" ) );
+    wPagesInFlightField.setText( Const.NVL( input.getPagesInFlight(), "" ) );
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) ) {
+      return;
+    }
+
+    stepname = wStepname.getText(); // return value
+
+    input.setConnection( null );
+    String connectionName = wConnection.getText();
+    if ( StringUtils.isNotEmpty( connectionName ) ) {
+      try {
+        HCPConnection connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+        input.setConnection( connection );
+      } catch ( Exception exception ) {
+        new ErrorDialog( shell,
+            BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Error.ErrorLoadingConnectionWithName.Title" ),
+            BaseMessages.getString( PKG, "HCPMetadataQueryDialog.Error.ErrorLoadingConnectionWithName.Message",
+                connectionName ), exception );
+      }
+    }
+    input.setQuery( wQueryField.getText() );
+    input.setChangedSince( wChangedSinceField.getText() );
+    input.setChangedBefore( wChangedBeforeField.getText() );
+    input.setMinSize( wMinSizeField.getText() );
+    input.setMaxSize( wMaxSizeField.getText() );
+    input.setPageSize( wPageSizeField.getText() );
+    input.setPagesInFlight( wPagesInFlightField.getText() );
+
+    dispose();
+  }
+}
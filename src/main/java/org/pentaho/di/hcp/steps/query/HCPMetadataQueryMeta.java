@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.query;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettlePluginException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.hcp.shared.BaseHCPResponse;
+import org.pentaho.di.hcp.shared.HCPConnection;
+import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.hcp.shared.HCPListResponse;
+import org.pentaho.di.hcp.shared.HCPQueryRequest;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.pentaho.metastore.api.exceptions.MetaStoreException;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+@Step( id = "HCPMetadataQuery", name = "HCP Metadata Query", description = "Hitachi Content Platform : this step finds the objects in a namespace matching some criteria, using the metadata query API", categoryDescription = "HCP", image = "ui/images/FRC.svg" )
+public class HCPMetadataQueryMeta extends BaseStepMeta implements StepMetaInterface {
+
+  private static Class<?> PKG = HCPMetadataQueryMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final String TAG_CONNECTION = "connection";
+  private static final String TAG_QUERY = "query";
+  private static final String TAG_CHANGED_SINCE = "changed_since";
+  private static final String TAG_CHANGED_BEFORE = "changed_before";
+  private static final String TAG_MIN_SIZE = "min_size";
+  private static final String TAG_MAX_SIZE = "max_size";
+  private static final String TAG_PAGE_SIZE = "page_size";
+  private static final String TAG_PAGES_IN_FLIGHT = "pages_in_flight";
+
+  public static final int DEFAULT_PAGES_IN_FLIGHT = 4;
+
+  private HCPConnection connection;
+
+  /** Further criteria in the query language (e.g. on custom metadata). Empty means none */
+  private String m_query = "";
+
+  /** Only objects changed at or after this time (ms since the epoch). Empty means no lower bound */
+  private String m_changedSince = "";
+
+  /** Only objects changed before this time (ms since the epoch). Empty means no upper bound */
+  private String m_changedBefore = "";
+
+  /** Smallest object size in bytes. Empty means no lower bound */
+  private String m_minSize = "";
+
+  /** Largest object size in bytes. Empty means no upper bound */
+  private String m_maxSize = "";
+
+  /** Number of results requested at a time */
+  private String m_pageSize = "" + HCPQueryRequest.DEFAULT_PAGE_SIZE;
+
+  /** Number of pages requested at once */
+  private String m_pagesInFlight = "" + DEFAULT_PAGES_IN_FLIGHT;
+
+  public HCPMetadataQueryMeta() {
+    super();
+  }
+
+  @Override public void setDefault() {
+  }
+
+  @Override
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    return new HCPMetadataQuery( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override public StepDataInterface getStepData() {
+    return new HCPMetadataQueryData();
+  }
+
+  @Override public String getDialogClassName() {
+    return HCPMetadataQueryDialog.class.getName();
+  }
+
+  @Override
+  public void getFields( RowMetaInterface inputRowMeta, String name, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+
+    try {
+      BaseHCPResponse.addMinSysFieldMetadata( inputRowMeta );
+      HCPListResponse.ListEntry.addListEntryFieldMetadata( inputRowMeta );
+    } catch ( KettlePluginException e ) {
+      throw new KettleStepException( e );
+    }
+  }
+
+  @Override public String getXML() throws KettleException {
+    StringBuilder xml = new StringBuilder();
+
+    xml.append( XMLHandler.addTagValue( TAG_CONNECTION, connection == null ? null : connection.getName() ) );
+    xml.append( XMLHandler.addTagValue( TAG_QUERY, m_query ) );
+    xml.append( XMLHandler.addTagValue( TAG_CHANGED_SINCE, m_changedSince ) );
+    xml.append( XMLHandler.addTagValue( TAG_CHANGED_BEFORE, m_changedBefore ) );
+    xml.append( XMLHandler.addTagValue( TAG_MIN_SIZE, m_minSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_MAX_SIZE, m_maxSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_PAGE_SIZE, m_pageSize ) );
+    xml.append( XMLHandler.addTagValue( TAG_PAGES_IN_FLIGHT, m_pagesInFlight ) );
+
+    return xml.toString();
+  }
+
+  @Override public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore )
+      throws KettleXMLException {
+    try {
+
+      String connectionName = XMLHandler.getTagValue( stepnode, TAG_CONNECTION );
+      if ( StringUtils.isNotEmpty( connectionName ) ) {
+        try {
+          connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+        } catch ( MetaStoreException e ) {
+          // We just log the message but we don't abort the complete meta-data
+          // loading.
+          //
+          log.logError(
+              BaseMessages.getString( PKG, "HCPMetadataQueryMeta.Error.HCPConnectionNotFound", connectionName ) );
+          connection = null;
+        }
+      }
+      m_query = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_QUERY ), "" );
+      m_changedSince = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CHANGED_SINCE ), "" );
+      m_changedBefore = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_CHANGED_BEFORE ), "" );
+      m_minSize = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MIN_SIZE ), "" );
+      m_maxSize = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_MAX_SIZE ), "" );
+      m_pageSize =
+          Const.NVL( XMLHandler.getTagValue( stepnode, TAG_PAGE_SIZE ), "" + HCPQueryRequest.DEFAULT_PAGE_SIZE );
+      m_pagesInFlight =
+          Const.NVL( XMLHandler.getTagValue( stepnode, TAG_PAGES_IN_FLIGHT ), "" + DEFAULT_PAGES_IN_FLIGHT );
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "HCPMetadataQueryMeta.Error.CouldNotLoadXML" ), e );
+    }
+  }
+
+  @Override public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+      throws KettleException {
+
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CONNECTION,
+        connection == null ? null : connection.getName() );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_QUERY, m_query );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CHANGED_SINCE, m_changedSince );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CHANGED_BEFORE, m_changedBefore );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MIN_SIZE, m_minSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_MAX_SIZE, m_maxSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PAGE_SIZE, m_pageSize );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_PAGES_IN_FLIGHT, m_pagesInFlight );
+  }
+
+  @Override public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+      throws KettleException {
+
+    String connectionName = rep.getStepAttributeString( id_step, TAG_CONNECTION );
+    if ( StringUtils.isNotEmpty( connectionName ) ) {
+      try {
+        connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+      } catch ( MetaStoreException e ) {
+        // We just log the message but we don't abort the complete meta-data
+        // loading.
+        //
+        log.logError(
+            BaseMessages.getString( PKG, "HCPMetadataQueryMeta.Error.HCPConnectionNotFound", connectionName ) );
+        connection = null;
+      }
+    }
+    m_query = Const.NVL( rep.getStepAttributeString( id_step, TAG_QUERY ), "" );
+    m_changedSince = Const.NVL( rep.getStepAttributeString( id_step, TAG_CHANGED_SINCE ), "" );
+    m_changedBefore = Const.NVL( rep.getStepAttributeString( id_step, TAG_CHANGED_BEFORE ), "" );
+    m_minSize = Const.NVL( rep.getStepAttributeString( id_step, TAG_MIN_SIZE ), "" );
+    m_maxSize = Const.NVL( rep.getStepAttributeString( id_step, TAG_MAX_SIZE ), "" );
+    m_pageSize =
+        Const.NVL( rep.getStepAttributeString( id_step, TAG_PAGE_SIZE ), "" + HCPQueryRequest.DEFAULT_PAGE_SIZE );
+    m_pagesInFlight =
+        Const.NVL( rep.getStepAttributeString( id_step, TAG_PAGES_IN_FLIGHT ), "" + DEFAULT_PAGES_IN_FLIGHT );
+  }
+
+  public HCPConnection getConnection() {
+    return connection;
+  }
+
+  public void setConnection( HCPConnection connection ) {
+    this.connection = connection;
+  }
+
+  public void setQuery( String query ) {
+    m_query = query;
+  }
+
+  public String getQuery() {
+    return m_query;
+  }
+
+  public void setChangedSince( String changedSince ) {
+    m_changedSince = changedSince;
+  }
+
+  public String getChangedSince() {
+    return m_changedSince;
+  }
+
+  public void setChangedBefore( String changedBefore ) {
+    m_changedBefore = changedBefore;
+  }
+
+  public String getChangedBefore() {
+    return m_changedBefore;
+  }
+
+  public void setMinSize( String minSize ) {
+    m_minSize = minSize;
+  }
+
+  public String getMinSize() {
+    return m_minSize;
+  }
+
+  public void setMaxSize( String maxSize ) {
+    m_maxSize = maxSize;
+  }
+
+  public String getMaxSize() {
+    return m_maxSize;
+  }
+
+  public void setPageSize( String pageSize ) {
+    m_pageSize = pageSize;
+  }
+
+  public String getPageSize() {
+    return m_pageSize;
+  }
+
+  public void setPagesInFlight( String pagesInFlight ) {
+    m_pagesInFlight = pagesInFlight;
+  }
+
+  public String getPagesInFlight() {
+    return m_pagesInFlight;
+  }
+}
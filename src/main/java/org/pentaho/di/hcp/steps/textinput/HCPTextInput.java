@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.textinput;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.hcp.shared.HCPClientRegistry;
+import org.pentaho.di.hcp.shared.HCPConnectionOperationUtils;
+import org.pentaho.di.hcp.shared.HCPContentHandler;
+import org.pentaho.di.hcp.shared.HCPDelimitedReader;
+import org.pentaho.di.hcp.shared.HCPReadResponse;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Reads text documents from HCP as rows. Each input row names a document; the document is parsed while it downloads
+ * and every record is emitted (with the input row's fields) as soon as it has been read, so memory use does not
+ * depend on the size of the document.
+ */
+public class HCPTextInput extends BaseStep implements StepInterface {
+  private static Class<?> PKG = HCPTextInput.class; // for i18n purposes, needed by
+  // Translator2!!
+
+  public HCPTextInput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+
+    HCPTextInputMeta meta = (HCPTextInputMeta) smi;
+    HCPTextInputData data = (HCPTextInputData) sdi;
+
+    boolean error = false;
+    if ( meta.getConnection() == null ) {
+      log.logError( BaseMessages.getString( PKG, "HCPTextInput.Error.HCPConnectionNotSpecified" ) );
+      error = true;
+    }
+    if ( StringUtils.isEmpty( meta.getSourceFileField() ) ) {
+      log.logError( BaseMessages.getString( PKG, "HCPTextInput.Error.SourceFileFieldNotSpecified" ) );
+      error = true;
+    }
+    if ( error ) {
+      // Stop right here.
+      return false;
+    }
+
+    data.bufferSize = 1024;
+    data.authorization = meta.getConnection().getAuthorizationHeader();
+
+    data.encoding = Const.NVL( environmentSubstitute( meta.getEncoding() ), Const.XML_ENCODING );
+    // without field names there is nothing to split into
+    data.delimiter = meta.getFieldNames().length > 0 ? environmentSubstitute( meta.getDelimiter() ) : "";
+    data.enclosure = environmentSubstitute( meta.getEnclosure() );
+    data.headerLines = 0;
+    String headerLines = environmentSubstitute( meta.getHeaderLines() );
+    if ( StringUtils.isNotEmpty( headerLines ) ) {
+      try {
+        data.headerLines = Long.parseLong( headerLines.trim() );
+      } catch ( NumberFormatException e ) {
+        log.logBasic( BaseMessages.getString( PKG, "HCPTextInput.Warning.UnparsableHeaderLines", headerLines ) );
+      }
+    }
+
+    data.client = HCPClientRegistry.acquire( meta.getConnection(), this, data.bufferSize, 1 );
+
+    return super.init( smi, sdi );
+  }
+
+  @Override public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+
+    HCPTextInputMeta meta = (HCPTextInputMeta) smi;
+    final HCPTextInputData data = (HCPTextInputData) sdi;
+
+    final Object[] row = getRow();
+    if ( row == null ) {
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+
+      data.sourcePathIndex = getInputRowMeta().indexOfValue( environmentSubstitute( meta.getSourceFileField() ) );
+      if ( data.sourcePathIndex < 0 ) {
+        throw new KettleException( BaseMessages.getString( PKG, "HCPTextInput.Error.SourceFileFieldNotFound",
+            environmentSubstitute( meta.getSourceFileField() ) ) );
+      }
+
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+
+      data.firstFieldIndex = getInputRowMeta().size();
+      data.fieldCount = Math.max( 1, meta.getFieldNames().length );
+      data.rowNumberIndex = StringUtils.isNotEmpty( meta.getRowNumberField() ) ? data.firstFieldIndex + data.fieldCount
+          : -1;
+    }
+
+    String sourceFilePath = getInputRowMeta().getString( row, data.sourcePathIndex );
+    if ( sourceFilePath == null || sourceFilePath.length() == 0 ) {
+      return true;
+    }
+
+    String restUrl = meta.getConnection().getRestUrl( this );
+
+    // Remove last slash character of URL
+    //
+    if ( restUrl.length() > 0 && restUrl.charAt( restUrl.length() - 1 ) == '/' ) {
+      restUrl = restUrl.substring( 0, restUrl.length() - 1 );
+    }
+
+    // Add slash to start of source (HCP) path
+    //
+    if ( !sourceFilePath.substring( 0, 1 ).equals( "/" ) ) {
+      sourceFilePath = '/' + sourceFilePath;
+    }
+
+    String requestUrl = restUrl + sourceFilePath;
+    if ( log.isDebug() ) {
+      log.logDebug( "Request URL : " + requestUrl );
+    }
+
+    HCPReadResponse hcpResponse;
+    try {
+      hcpResponse =
+          HCPConnectionOperationUtils.performStreamingGet( data.client, requestUrl, data.authorization,
+              new HCPContentHandler() {
+                @Override public boolean content( HCPReadResponse response, InputStream inputStream )
+                    throws IOException, KettleException {
+                  return readRecords( data, row, inputStream );
+                }
+              }, log );
+    } catch ( IOException e ) {
+      // records read before the failure have already been passed on
+      throw new KettleException( BaseMessages.getString( PKG, "HCPTextInput.Error.ErrorReadingDocument", requestUrl ),
+          e );
+    }
+
+    if ( !hcpResponse.getSuccess() ) {
+      if ( getStepMeta().isDoingErrorHandling() ) {
+        putError( getInputRowMeta(), row, 1L, hcpResponse.getExplanation(), meta.getSourceFileField(),
+            hcpResponse.getStatus().toString() );
+      } else {
+        throw new KettleException( BaseMessages.getString( PKG, "HCPTextInput.Error.UnableToReadDocument", requestUrl,
+            hcpResponse.getExplanation() ) );
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Turn a document into rows as it arrives
+   *
+   * @return false if the step was stopped before the end of the document
+   */
+  protected boolean readRecords( HCPTextInputData data, Object[] row, InputStream inputStream )
+      throws IOException, KettleException {
+    HCPDelimitedReader reader =
+        new HCPDelimitedReader( new InputStreamReader( inputStream, data.encoding ), data.delimiter, data.enclosure );
+
+    long recordNr = 0;
+    String[] record;
+    while ( ( record = reader.readRecord() ) != null ) {
+      if ( isStopped() ) {
+        return false;
+      }
+      if ( ++recordNr <= data.headerLines ) {
+        continue;
+      }
+
+      Object[] outputRow = RowDataUtil.createResizedCopy( row, data.outputRowMeta.size() );
+      for ( int i = 0; i < data.fieldCount && i < record.length; i++ ) {
+        outputRow[data.firstFieldIndex + i] = record[i];
+      }
+      if ( data.rowNumberIndex >= 0 ) {
+        outputRow[data.rowNumberIndex] = recordNr - data.headerLines;
+      }
+      putRow( data.outputRowMeta, outputRow );
+    }
+
+    return true;
+  }
+
+  @Override public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    HCPTextInputData data = (HCPTextInputData) sdi;
+
+    HCPClientRegistry.release( data.client );
+    data.client = null;
+
+    super.dispose( smi, sdi );
+  }
+}
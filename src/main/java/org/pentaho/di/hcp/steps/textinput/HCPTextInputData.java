@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.textinput;
+
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+public class HCPTextInputData extends BaseStepData implements StepDataInterface {
+
+  public ApacheHttpClient client;
+  public int sourcePathIndex;
+  public String authorization;
+  public int bufferSize;
+
+  public RowMetaInterface outputRowMeta;
+
+  public String encoding;
+  public String delimiter;
+  public String enclosure;
+  public long headerLines;
+
+  /** Index of the first record field in the output row */
+  public int firstFieldIndex;
+  public int fieldCount;
+  public int rowNumberIndex;
+
+  public HCPTextInputData() {
+  }
+}
@@ -0,0 +1,491 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.textinput;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.events.FocusAdapter;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.hcp.shared.HCPConnection;
+import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.ui.core.dialog.ErrorDialog;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.ComboVar;
+import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+import java.util.Collections;
+import java.util.List;
+
+public class HCPTextInputDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = HCPTextInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private CCombo wConnection;
+  private ComboVar wSourceFileField;
+  private TextVar wEncodingField;
+  private TextVar wDelimiterField;
+  private TextVar wEnclosureField;
+  private TextVar wHeaderLinesField;
+  private TextVar wRowNumberField;
+  private TableView wFields;
+
+  private HCPTextInputMeta input;
+
+  private Button wNewConnection, wEditConnection, wDeleteConnection;
+
+  public HCPTextInputDialog( Shell parent, Object in, TransMeta transMeta, String sname ) {
+    super( parent, (BaseStepMeta) in, transMeta, sname );
+    input = (HCPTextInputMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MAX | SWT.MIN );
+    props.setLook( shell );
+    setShellImage( shell, input );
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        input.setChanged();
+      }
+    };
+    changed = input.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Shell.Title" ) );
+
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Stepname.Label" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+    Control lastControl = wStepname;
+
+    // Connection
+    //  first add 3 buttons to the right, then fill the rest of the line with a combo drop-down
+    //
+    wDeleteConnection = new Button( shell, SWT.PUSH );
+    wDeleteConnection.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.DeleteConnection.Label" ) );
+    props.setLook( wDeleteConnection );
+    FormData fdDeleteConnection = new FormData();
+    fdDeleteConnection.right = new FormAttachment( 100, 0 );
+    fdDeleteConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wDeleteConnection.setLayoutData( fdDeleteConnection );
+    wDeleteConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        deleteConnection();
+      }
+    } );
+
+    wEditConnection = new Button( shell, SWT.PUSH );
+    wEditConnection.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.EditConnection.Label" ) );
+    props.setLook( wEditConnection );
+    FormData fdEditConnection = new FormData();
+    fdEditConnection.right = new FormAttachment( wDeleteConnection, -margin );
+    fdEditConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wEditConnection.setLayoutData( fdEditConnection );
+    wEditConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        editConnection();
+      }
+    } );
+
+    wNewConnection = new Button( shell, SWT.PUSH );
+    wNewConnection.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.NewConnection.Label" ) );
+    props.setLook( wNewConnection );
+    FormData fdNewConnection = new FormData();
+    fdNewConnection.right = new FormAttachment( wEditConnection, -margin );
+    fdNewConnection.top = new FormAttachment( lastControl, margin / 2 );
+    wNewConnection.setLayoutData( fdNewConnection );
+    wNewConnection.addSelectionListener( new SelectionAdapter() {
+      @Override public void widgetSelected( SelectionEvent event ) {
+        newConnection();
+      }
+    } );
+
+    Label wlConnection = new Label( shell, SWT.RIGHT );
+    wlConnection.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Connection.Label" ) );
+    props.setLook( wlConnection );
+    FormData fdlConnection = new FormData();
+    fdlConnection.left = new FormAttachment( 0, 0 );
+    fdlConnection.right = new FormAttachment( middle, -margin );
+    fdlConnection.top = new FormAttachment( lastControl, margin );
+    wlConnection.setLayoutData( fdlConnection );
+    wConnection = new CCombo( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wConnection.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.Connection.Tooltip" ) );
+    props.setLook( wConnection );
+    wConnection.addModifyListener( lsMod );
+    FormData fdConnection = new FormData();
+    fdConnection.left = new FormAttachment( middle, 0 );
+    fdConnection.top = new FormAttachment( lastControl, margin );
+    fdConnection.right = new FormAttachment( wNewConnection, -margin );
+    wConnection.setLayoutData( fdConnection );
+    wConnection.addFocusListener( new FocusAdapter() {
+      public void focusGained( org.eclipse.swt.events.FocusEvent event ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        try {
+          List<String> names = HCPConnectionUtils.getConnectionFactory( metaStore ).getElementNames();
+          Collections.sort( names );
+          wConnection.setItems( names.toArray( new String[names.size()] ) );
+        } catch ( Exception exception ) {
+          new ErrorDialog( shell,
+              BaseMessages.getString( PKG, "HCPTextInputDialog.Error.ErrorGettingConnectionsList.Title" ),
+              BaseMessages.getString( PKG, "HCPTextInputDialog.Error.ErrorGettingConnectionsList.Message" ),
+              exception );
+        }
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+    lastControl = wNewConnection;
+
+    // Source file field
+    //
+    Label wlSourceFileField = new Label( shell, SWT.RIGHT );
+    wlSourceFileField.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.SourceFileField.Label" ) );
+    props.setLook( wlSourceFileField );
+    FormData fdlSourceFileField = new FormData();
+    fdlSourceFileField.left = new FormAttachment( 0, 0 );
+    fdlSourceFileField.right = new FormAttachment( middle, -margin );
+    fdlSourceFileField.top = new FormAttachment( lastControl, margin );
+    wlSourceFileField.setLayoutData( fdlSourceFileField );
+    wSourceFileField = new ComboVar( transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wSourceFileField.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.SourceFileField.Tooltip" ) );
+    props.setLook( wSourceFileField );
+    wSourceFileField.addModifyListener( lsMod );
+    FormData fdSourceFileField = new FormData();
+    fdSourceFileField.left = new FormAttachment( middle, 0 );
+    fdSourceFileField.top = new FormAttachment( lastControl, margin );
+    fdSourceFileField.right = new FormAttachment( 100, 0 );
+    wSourceFileField.setLayoutData( fdSourceFileField );
+    wSourceFileField.addFocusListener( new FocusAdapter() {
+      public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+        Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+        shell.setCursor( busy );
+        BaseStepDialog.getFieldsFromPrevious( wSourceFileField, transMeta, stepMeta );
+        shell.setCursor( null );
+        busy.dispose();
+      }
+    } );
+    lastControl = wSourceFileField;
+
+    FormData fd;
+    Label encodingLab = new Label( shell, SWT.RIGHT );
+    encodingLab.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Encoding.Label" ) );
+    encodingLab.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.Encoding.Tooltip" ) );
+    props.setLook( encodingLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    encodingLab.setLayoutData( fd );
+    wEncodingField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wEncodingField );
+    wEncodingField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wEncodingField.setLayoutData( fd );
+    lastControl = wEncodingField;
+
+    Label delimiterLab = new Label( shell, SWT.RIGHT );
+    delimiterLab.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Delimiter.Label" ) );
+    delimiterLab.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.Delimiter.Tooltip" ) );
+    props.setLook( delimiterLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    delimiterLab.setLayoutData( fd );
+    wDelimiterField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wDelimiterField );
+    wDelimiterField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wDelimiterField.setLayoutData( fd );
+    lastControl = wDelimiterField;
+
+    Label enclosureLab = new Label( shell, SWT.RIGHT );
+    enclosureLab.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Enclosure.Label" ) );
+    enclosureLab.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.Enclosure.Tooltip" ) );
+    props.setLook( enclosureLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    enclosureLab.setLayoutData( fd );
+    wEnclosureField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wEnclosureField );
+    wEnclosureField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wEnclosureField.setLayoutData( fd );
+    lastControl = wEnclosureField;
+
+    Label headerLinesLab = new Label( shell, SWT.RIGHT );
+    headerLinesLab.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.HeaderLines.Label" ) );
+    headerLinesLab.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.HeaderLines.Tooltip" ) );
+    props.setLook( headerLinesLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    headerLinesLab.setLayoutData( fd );
+    wHeaderLinesField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wHeaderLinesField );
+    wHeaderLinesField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wHeaderLinesField.setLayoutData( fd );
+    lastControl = wHeaderLinesField;
+
+    Label rowNumberLab = new Label( shell, SWT.RIGHT );
+    rowNumberLab.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.RowNumberField.Label" ) );
+    rowNumberLab.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.RowNumberField.Tooltip" ) );
+    props.setLook( rowNumberLab );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.right = new FormAttachment( middle, -margin );
+    fd.top = new FormAttachment( lastControl, margin );
+    rowNumberLab.setLayoutData( fd );
+    wRowNumberField = new TextVar( transMeta, shell, SWT.LEFT | SWT.BORDER );
+    props.setLook( wRowNumberField );
+    wRowNumberField.addModifyListener( lsMod );
+    fd = new FormData();
+    fd.left = new FormAttachment( middle, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    wRowNumberField.setLayoutData( fd );
+    lastControl = wRowNumberField;
+
+    // Fields
+    //
+    Label wlFields = new Label( shell, SWT.NONE );
+    wlFields.setText( BaseMessages.getString( PKG, "HCPTextInputDialog.Fields.Label" ) );
+    wlFields.setToolTipText( BaseMessages.getString( PKG, "HCPTextInputDialog.Fields.Tooltip" ) );
+    props.setLook( wlFields );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    wlFields.setLayoutData( fd );
+    lastControl = wlFields;
+
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, null );
+
+    ColumnInfo[] columns =
+        new ColumnInfo[] { new ColumnInfo( BaseMessages.getString( PKG, "HCPTextInputDialog.FieldName.Column" ),
+            ColumnInfo.COLUMN_TYPE_TEXT, false ) };
+    wFields =
+        new TableView( transMeta, shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI, columns,
+            input.getFieldNames().length, lsMod, props );
+    fd = new FormData();
+    fd.left = new FormAttachment( 0, 0 );
+    fd.top = new FormAttachment( lastControl, margin );
+    fd.right = new FormAttachment( 100, 0 );
+    fd.bottom = new FormAttachment( wOK, -2 * margin );
+    wFields.setLayoutData( fd );
+
+    // Add listeners
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+
+    wOK.addListener( SWT.Selection, lsOK );
+    wCancel.addListener( SWT.Selection, lsCancel );
+
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+
+    wStepname.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window...
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Set the shell size, based upon previous time...
+    setSize();
+
+    getData();
+    input.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() ) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  protected void newConnection() {
+    HCPConnectionUtils.newConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ) );
+  }
+
+  protected void editConnection() {
+    String connectionName = wConnection.getText();
+    HCPConnectionUtils.editConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ), connectionName );
+  }
+
+  protected void deleteConnection() {
+    String connectionName = wConnection.getText();
+    HCPConnectionUtils.deleteConnection( shell, HCPConnectionUtils.getConnectionFactory( metaStore ), connectionName );
+  }
+
+  public void getData() {
+    wConnection.setText( input.getConnection() == null ? "" : Const.NVL( input.getConnection().getName(), "" ) );
+    wSourceFileField.setText( Const.NVL( input.getSourceFileField(), "" ) );
+    wEncodingField.setText( Const.NVL( input.getEncoding(), "" ) );
+    wDelimiterField.setText( Const.NVL( input.getDelimiter(), "" ) );
+    wEnclosureField.setText( Const.NVL( input.getEnclosure(), "" ) );
+    wHeaderLinesField.setText( Const.NVL( input.getHeaderLines(), "" ) );
+    wRowNumberField.setText( Const.NVL( input.getRowNumberField(), "" ) );
+
+    String[] fieldNames = input.getFieldNames();
+    for ( int i = 0; i < fieldNames.length; i++ ) {
+      TableItem item = wFields.table.getItem( i );
+      item.setText( 1, Const.NVL( fieldNames[i], "" ) );
+    }
+    wFields.setRowNums();
+    wFields.optWidth( true );
+
+    wStepname.selectAll();
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    input.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    if ( Const.isEmpty( wStepname.getText() ) ) {
+      return;
+    }
+
+    stepname = wStepname.getText(); // return value
+
+    input.setConnection( null );
+    String connectionName = wConnection.getText();
+    if ( StringUtils.isNotEmpty( connectionName ) ) {
+      try {
+        HCPConnection connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+        input.setConnection( connection );
+      } catch ( Exception exception ) {
+        new ErrorDialog( shell,
+            BaseMessages.getString( PKG, "HCPTextInputDialog.Error.ErrorLoadingConnectionWithName.Title" ),
+            BaseMessages.getString( PKG, "HCPTextInputDialog.Error.ErrorLoadingConnectionWithName.Message",
+                connectionName ), exception );
+      }
+    }
+    input.setSourceFileField( wSourceFileField.getText() );
+    input.setEncoding( wEncodingField.getText() );
+    input.setDelimiter( wDelimiterField.getText() );
+    input.setEnclosure( wEnclosureField.getText() );
+    input.setHeaderLines( wHeaderLinesField.getText() );
+    input.setRowNumberField( wRowNumberField.getText() );
+
+    int nrFields = wFields.nrNonEmpty();
+    String[] fieldNames = new String[nrFields];
+    for ( int i = 0; i < nrFields; i++ ) {
+      fieldNames[i] = wFields.getNonEmpty( i ).getText( 1 );
+    }
+    input.setFieldNames( fieldNames );
+
+    dispose();
+  }
+}
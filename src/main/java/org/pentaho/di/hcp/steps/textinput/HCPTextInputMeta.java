@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Pentaho Data Integration
+ *
+ * <p/>
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * <p/>
+ * ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ ******************************************************************************/
+
+
+package org.pentaho.di.hcp.steps.textinput;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.hcp.shared.HCPConnection;
+import org.pentaho.di.hcp.shared.HCPConnectionUtils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.pentaho.metastore.api.exceptions.MetaStoreException;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+@Step( id = "HCPTextInput", name = "HCP Text Input", description = "Hitachi Content Platform : this step reads text documents from the store as rows, line by line or as delimited records", categoryDescription = "HCP", image = "ui/images/PFI.svg" )
+public class HCPTextInputMeta extends BaseStepMeta implements StepMetaInterface {
+
+  private static Class<?> PKG = HCPTextInputMeta.class; // for i18n purposes, needed by Translator2!!
+
+  private static final String TAG_CONNECTION = "connection";
+  private static final String TAG_SOURCE_FILE = "source_field";
+  private static final String TAG_ENCODING = "encoding";
+  private static final String TAG_DELIMITER = "delimiter";
+  private static final String TAG_ENCLOSURE = "enclosure";
+  private static final String TAG_HEADER_LINES = "header_lines";
+  private static final String TAG_ROW_NUMBER_FIELD = "row_number_field";
+  private static final String TAG_FIELDS = "fields";
+  private static final String TAG_FIELD = "field";
+  private static final String TAG_FIELD_NAME = "field_name";
+
+  /** Output field used when no fields are defined - each line goes into it whole */
+  public static final String DEFAULT_LINE_FIELD_NAME = "line";
+
+  private HCPConnection connection;
+
+  private String sourceFileField;
+
+  /** Character encoding of the documents. Empty means UTF-8 */
+  private String m_encoding = "";
+
+  /** Field delimiter. Empty means each line is a single field */
+  private String m_delimiter = ",";
+
+  /** Fields starting with this may contain delimiters and line breaks. Empty means none */
+  private String m_enclosure = "\"";
+
+  /** Number of records to skip at the start of each document */
+  private String m_headerLines = "0";
+
+  /** Output field for the number of each record within its document. Empty means none */
+  private String m_rowNumberField = "";
+
+  /** Names of the output fields, in record order */
+  private String[] m_fieldNames = new String[0];
+
+  public HCPTextInputMeta() {
+    super();
+  }
+
+  @Override public void setDefault() {
+  }
+
+  @Override
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+      Trans trans ) {
+    return new HCPTextInput( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  @Override public StepDataInterface getStepData() {
+    return new HCPTextInputData();
+  }
+
+  @Override public String getDialogClassName() {
+    return HCPTextInputDialog.class.getName();
+  }
+
+  @Override
+  public void getFields( RowMetaInterface inputRowMeta, String name, RowMetaInterface[] info, StepMeta nextStep,
+      VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+
+    String[] fieldNames = m_fieldNames.length > 0 ? m_fieldNames : new String[] { DEFAULT_LINE_FIELD_NAME };
+    for ( String fieldName : fieldNames ) {
+      ValueMetaInterface value = new ValueMetaString( space.environmentSubstitute( fieldName ) );
+      value.setOrigin( name );
+      inputRowMeta.addValueMeta( value );
+    }
+
+    if ( StringUtils.isNotEmpty( m_rowNumberField ) ) {
+      ValueMetaInterface rowNumber = new ValueMetaInteger( space.environmentSubstitute( m_rowNumberField ) );
+      rowNumber.setLength( 9 );
+      rowNumber.setOrigin( name );
+      inputRowMeta.addValueMeta( rowNumber );
+    }
+  }
+
+  @Override public String getXML() throws KettleException {
+    StringBuilder xml = new StringBuilder();
+
+    xml.append( XMLHandler.addTagValue( TAG_CONNECTION, connection == null ? null : connection.getName() ) );
+    xml.append( XMLHandler.addTagValue( TAG_SOURCE_FILE, sourceFileField ) );
+    xml.append( XMLHandler.addTagValue( TAG_ENCODING, m_encoding ) );
+    xml.append( XMLHandler.addTagValue( TAG_DELIMITER, m_delimiter ) );
+    xml.append( XMLHandler.addTagValue( TAG_ENCLOSURE, m_enclosure ) );
+    xml.append( XMLHandler.addTagValue( TAG_HEADER_LINES, m_headerLines ) );
+    xml.append( XMLHandler.addTagValue( TAG_ROW_NUMBER_FIELD, m_rowNumberField ) );
+    xml.append( XMLHandler.openTag( TAG_FIELDS ) );
+    for ( String fieldName : m_fieldNames ) {
+      xml.append( XMLHandler.openTag( TAG_FIELD ) );
+      xml.append( XMLHandler.addTagValue( TAG_FIELD_NAME, fieldName ) );
+      xml.append( XMLHandler.closeTag( TAG_FIELD ) );
+    }
+    xml.append( XMLHandler.closeTag( TAG_FIELDS ) );
+
+    return xml.toString();
+  }
+
+  @Override public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore )
+      throws KettleXMLException {
+    try {
+
+      String connectionName = XMLHandler.getTagValue( stepnode, TAG_CONNECTION );
+      if ( StringUtils.isNotEmpty( connectionName ) ) {
+        try {
+          connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+        } catch ( MetaStoreException e ) {
+          // We just log the message but we don't abort the complete meta-data
+          // loading.
+          //
+          log.logError(
+              BaseMessages.getString( PKG, "HCPTextInputMeta.Error.HCPConnectionNotFound", connectionName ) );
+          connection = null;
+        }
+      }
+      sourceFileField = XMLHandler.getTagValue( stepnode, TAG_SOURCE_FILE );
+      m_encoding = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_ENCODING ), "" );
+      m_delimiter = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_DELIMITER ), "" );
+      m_enclosure = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_ENCLOSURE ), "" );
+      m_headerLines = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_HEADER_LINES ), "0" );
+      m_rowNumberField = Const.NVL( XMLHandler.getTagValue( stepnode, TAG_ROW_NUMBER_FIELD ), "" );
+
+      Node fieldsNode = XMLHandler.getSubNode( stepnode, TAG_FIELDS );
+      int nrFields = XMLHandler.countNodes( fieldsNode, TAG_FIELD );
+      m_fieldNames = new String[nrFields];
+      for ( int i = 0; i < nrFields; i++ ) {
+        Node fieldNode = XMLHandler.getSubNodeByNr( fieldsNode, TAG_FIELD, i );
+        m_fieldNames[i] = XMLHandler.getTagValue( fieldNode, TAG_FIELD_NAME );
+      }
+    } catch ( Exception e ) {
+      throw new KettleXMLException( BaseMessages.getString( PKG, "HCPTextInputMeta.Error.CouldNotLoadXML" ), e );
+    }
+  }
+
+  @Override public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+      throws KettleException {
+
+    rep.saveStepAttribute( id_transformation, id_step, TAG_CONNECTION,
+        connection == null ? null : connection.getName() );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_SOURCE_FILE, sourceFileField );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_ENCODING, m_encoding );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_DELIMITER, m_delimiter );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_ENCLOSURE, m_enclosure );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_HEADER_LINES, m_headerLines );
+    rep.saveStepAttribute( id_transformation, id_step, TAG_ROW_NUMBER_FIELD, m_rowNumberField );
+    for ( int i = 0; i < m_fieldNames.length; i++ ) {
+      rep.saveStepAttribute( id_transformation, id_step, i, TAG_FIELD_NAME, m_fieldNames[i] );
+    }
+  }
+
+  @Override public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases )
+      throws KettleException {
+
+    String connectionName = rep.getStepAttributeString( id_step, TAG_CONNECTION );
+    if ( StringUtils.isNotEmpty( connectionName ) ) {
+      try {
+        connection = HCPConnectionUtils.getConnectionFactory( metaStore ).loadElement( connectionName );
+      } catch ( MetaStoreException e ) {
+        // We just log the message but we don't abort the complete meta-data
+        // loading.
+        //
+        log.logError( BaseMessages.getString( PKG, "HCPTextInputMeta.Error.HCPConnectionNotFound", connectionName ) );
+        connection = null;
+      }
+    }
+    sourceFileField = rep.getStepAttributeString( id_step, TAG_SOURCE_FILE );
+    m_encoding = Const.NVL( rep.getStepAttributeString( id_step, TAG_ENCODING ), "" );
+    m_delimiter = Const.NVL( rep.getStepAttributeString( id_step, TAG_DELIMITER ), "" );
+    m_enclosure = Const.NVL( rep.getStepAttributeString( id_step, TAG_ENCLOSURE ), "" );
+    m_headerLines = Const.NVL( rep.getStepAttributeString( id_step, TAG_HEADER_LINES ), "0" );
+    m_rowNumberField = Const.NVL( rep.getStepAttributeString( id_step, TAG_ROW_NUMBER_FIELD ), "" );
+
+    int nrFields = rep.countNrStepAttributes( id_step, TAG_FIELD_NAME );
+    m_fieldNames = new String[nrFields];
+    for ( int i = 0; i < nrFields; i++ ) {
+      m_fieldNames[i] = rep.getStepAttributeString( id_step, i, TAG_FIELD_NAME );
+    }
+  }
+
+  public HCPConnection getConnection() {
+    return connection;
+  }
+
+  public void setConnection( HCPConnection connection ) {
+    this.connection = connection;
+  }
+
+  public String getSourceFileField() {
+    return sourceFileField;
+  }
+
+  public void setSourceFileField( String sourceFileField ) {
+    this.sourceFileField = sourceFileField;
+  }
+
+  public void setEncoding( String encoding ) {
+    m_encoding = encoding;
+  }
+
+  public String getEncoding() {
+    return m_encoding;
+  }
+
+  public void setDelimiter( String delimiter ) {
+    m_delimiter = delimiter;
+  }
+
+  public String getDelimiter() {
+    return m_delimiter;
+  }
+
+  public void setEnclosure( String enclosure ) {
+    m_enclosure = enclosure;
+  }
+
+  public String getEnclosure() {
+    return m_enclosure;
+  }
+
+  public void setHeaderLines( String headerLines ) {
+    m_headerLines = headerLines;
+  }
+
+  public String getHeaderLines() {
+    return m_headerLines;
+  }
+
+  public void setRowNumberField( String rowNumberField ) {
+    m_rowNumberField = rowNumberField;
+  }
+
+  public String getRowNumberField() {
+    return m_rowNumberField;
+  }
+
+  public void setFieldNames( String[] fieldNames ) {
+    m_fieldNames = fieldNames;
+  }
+
+  public String[] getFieldNames() {
+    return m_fieldNames;
+  }
+
+  @Override public boolean supportsErrorHandling() {
+    return true;
+  }
+}
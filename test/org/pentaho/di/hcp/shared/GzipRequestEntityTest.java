@@ -0,0 +1,54 @@
+package org.pentaho.di.hcp.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class GzipRequestEntityTest extends TestCase {
+
+  @Test
+  public void testTextIsWorthCompressing() throws Exception {
+    StringBuilder csv = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      csv.append(i).append(",some value,").append(i * 7).append('\n');
+    }
+    byte[] sample = csv.toString().getBytes("UTF-8");
+    assertTrue(GzipRequestEntity.isWorthCompressing(sample, sample.length));
+  }
+
+  @Test
+  public void testRandomDataIsNotWorthCompressing() {
+    byte[] sample = new byte[GzipRequestEntity.SAMPLE_SIZE];
+    new Random(42).nextBytes(sample);
+    assertFalse(GzipRequestEntity.isWorthCompressing(sample, sample.length));
+    assertFalse(GzipRequestEntity.isWorthCompressing(sample, 0));
+  }
+
+  @Test
+  public void testWriteRequestRoundTrip() throws Exception {
+    byte[] content = new byte[100000];
+    Arrays.fill(content, (byte) 'x');
+    GzipRequestEntity entity = new GzipRequestEntity(new ByteArrayRequestEntity(content), 6, 1024);
+    assertEquals(-1, entity.getContentLength());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    entity.writeRequest(out);
+    assertTrue(out.size() < content.length / 10);
+
+    GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+    ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      decompressed.write(buffer, 0, read);
+    }
+    assertTrue(Arrays.equals(content, decompressed.toByteArray()));
+  }
+}
@@ -0,0 +1,129 @@
+package org.pentaho.di.hcp.shared;
+
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class HCPConcurrencyLimiterTest extends TestCase {
+
+  protected static final long MS = 1000000L;
+
+  /** Limiter with a hand-cranked clock */
+  protected static class TestLimiter extends HCPConcurrencyLimiter {
+    long m_now;
+
+    TestLimiter(int initialLimit, int maxLimit) {
+      super(initialLimit, maxLimit);
+    }
+
+    @Override protected long nanoTime() {
+      return m_now;
+    }
+
+    /** Fill the limit, then complete every request with the given status after latencyMs */
+    void round(int status, long latencyMs) throws Exception {
+      int limit = getLimit();
+      HCPConcurrencyLimiter.Permit[] permits = new HCPConcurrencyLimiter.Permit[limit];
+      for (int i = 0; i < limit; i++) {
+        permits[i] = acquire(true);
+      }
+      m_now += latencyMs * MS;
+      for (HCPConcurrencyLimiter.Permit permit : permits) {
+        permit.completed(status);
+      }
+    }
+  }
+
+  @Test
+  public void testSlowStartGrowsToMax() throws Exception {
+    TestLimiter limiter = new TestLimiter(2, 10);
+    limiter.round(200, 10);
+    assertEquals(4, limiter.getLimit());
+    limiter.round(200, 10);
+    assertEquals(8, limiter.getLimit());
+    limiter.round(200, 10);
+    assertEquals(10, limiter.getLimit());
+
+    limiter.raiseMaxLimit(12);
+    limiter.round(200, 10);
+    assertEquals(12, limiter.getLimit());
+  }
+
+  @Test
+  public void testUnavailableBacksOffOncePerRoundTrip() throws Exception {
+    TestLimiter limiter = new TestLimiter(10, 10);
+    limiter.round(200, 100);
+    limiter.round(503, 100);
+    // ten 503s from the same moment only cut once
+    assertEquals(7, limiter.getLimit());
+
+    limiter.round(503, 100);
+    assertEquals(4, limiter.getLimit());
+
+    // past slow start, growth is about one per round
+    limiter.round(200, 100);
+    assertEquals(5, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testNeverBelowOne() throws Exception {
+    TestLimiter limiter = new TestLimiter(1, 10);
+    limiter.round(503, 100);
+    limiter.round(503, 100);
+    assertEquals(1, limiter.getLimit());
+  }
+
+  @Test
+  public void testTimeoutBacksOff() throws Exception {
+    TestLimiter limiter = new TestLimiter(10, 10);
+    HCPConcurrencyLimiter.Permit permit = limiter.acquire(false);
+    permit.failed(new RuntimeException(new SocketTimeoutException("Read timed out")));
+    assertEquals(7, limiter.getLimit());
+
+    // other failures and repeated releases don't count
+    limiter.m_now += 1000 * MS;
+    permit = limiter.acquire(false);
+    permit.failed(new RuntimeException("Connection refused"));
+    permit.failed(new SocketTimeoutException());
+    assertEquals(7, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testLatencyInflationBacksOff() throws Exception {
+    TestLimiter limiter = new TestLimiter(8, 8);
+    for (int i = 0; i < 5; i++) {
+      limiter.round(200, 10);
+    }
+    assertEquals(8, limiter.getLimit());
+
+    for (int i = 0; i < 5 && limiter.getLimit() == 8; i++) {
+      limiter.round(200, 100);
+    }
+    assertTrue(limiter.getLimit() < 8);
+  }
+
+  @Test
+  public void testSlotHeldUntilBodyRead() throws Exception {
+    TestLimiter limiter = new TestLimiter(8, 8);
+    for (int i = 0; i < 5; i++) {
+      limiter.round(200, 10);
+    }
+    int limit = limiter.getLimit();
+
+    HCPConcurrencyLimiter.Permit permit = limiter.acquire(true);
+    limiter.m_now += 10 * MS;
+    permit.responded(200);
+    assertEquals(1, limiter.getInFlight());
+
+    // a long download is timed to its headers, so it isn't taken for overload
+    limiter.m_now += 10000 * MS;
+    permit.finished();
+    permit.finished();
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(limit, limiter.getLimit());
+  }
+}
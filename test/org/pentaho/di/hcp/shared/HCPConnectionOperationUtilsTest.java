@@ -0,0 +1,246 @@
+package org.pentaho.di.hcp.shared;
+
+import com.sun.jersey.client.apache.ApacheHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.variables.Variables;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs requests against a local HTTP server, through a client whose concurrency limiter starts at one slot
+ */
+public class HCPConnectionOperationUtilsTest extends TestCase {
+
+  protected HttpServer m_server;
+  protected String m_baseUrl;
+  protected ApacheHttpClient m_client;
+  protected HCPConcurrencyLimiter m_limiter;
+  protected ExecutorService m_executor;
+
+  @Override protected void setUp() throws Exception {
+    m_server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+    m_server.setExecutor( Executors.newCachedThreadPool() );
+    m_server.start();
+    m_baseUrl = "http://127.0.0.1:" + m_server.getAddress().getPort();
+
+    VariableSpace space = new Variables();
+    space.setVariable( HCPClientRegistry.VAR_INITIAL_CONCURRENCY, "1" );
+    HCPConnection connection = new HCPConnection();
+    connection.setServer( "127.0.0.1" );
+    connection.setPort( Integer.toString( m_server.getAddress().getPort() ) );
+    connection.setTenant( "tenant" );
+    connection.setNamespace( "ns" );
+    m_client = HCPClientRegistry.acquire( connection, space, 0, 1 );
+    m_limiter = HCPClientRegistry.getLimiter( m_client );
+    m_executor = Executors.newCachedThreadPool();
+  }
+
+  @Override protected void tearDown() throws Exception {
+    m_executor.shutdownNow();
+    HCPClientRegistry.release( m_client );
+    m_server.stop( 0 );
+  }
+
+  /**
+   * Answer requests for the path (and anything under it)
+   *
+   * @param headers header names and values, alternately
+   */
+  protected void serve( String path, final int code, final String body, final String... headers ) {
+    m_server.createContext( path, new HttpHandler() {
+      @Override public void handle( HttpExchange exchange ) throws IOException {
+        for ( int i = 0; i + 1 < headers.length; i += 2 ) {
+          exchange.getResponseHeaders().add( headers[i], headers[i + 1] );
+        }
+        byte[] bytes = body.getBytes( "UTF-8" );
+        exchange.sendResponseHeaders( code, bytes.length == 0 ? -1 : bytes.length );
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write( bytes );
+        outputStream.close();
+      }
+    } );
+  }
+
+  /**
+   * Take a slot from another thread, as a step sharing the connection would
+   *
+   * @return true if a slot came free within the time allowed
+   */
+  protected boolean slotAvailable( long millis ) throws Exception {
+    Future<HCPConcurrencyLimiter.Permit> future = m_executor.submit( new Callable<HCPConcurrencyLimiter.Permit>() {
+      @Override public HCPConcurrencyLimiter.Permit call() throws Exception {
+        return m_limiter.acquire( false );
+      }
+    } );
+    try {
+      future.get( millis, TimeUnit.MILLISECONDS ).failed( null );
+      return true;
+    } catch ( TimeoutException e ) {
+      future.cancel( true );
+      return false;
+    }
+  }
+
+  @Test public void testSlotHeldUntilMethodReleased() throws Exception {
+    serve( "/rest/held", 200, "content" );
+
+    GetMethod get = new GetMethod( m_baseUrl + "/rest/held" );
+    try {
+      HCPConnectionOperationUtils.executeMethod( m_client, get, true );
+      // the only slot goes with the unread body
+      assertFalse( slotAvailable( 300 ) );
+    } finally {
+      HCPConnectionOperationUtils.releaseMethod( get );
+    }
+    assertTrue( slotAvailable( 5000 ) );
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+
+  @Test public void testReleasedSlotLeavesBodyReadable() throws Exception {
+    serve( "/rest/released", 200, "content" );
+
+    GetMethod get = new GetMethod( m_baseUrl + "/rest/released" );
+    try {
+      HCPConnectionOperationUtils.executeMethod( m_client, get, true );
+      HCPConnectionOperationUtils.releaseSlot( get );
+      // whoever reads the body can wait on a step that needs a slot
+      assertTrue( slotAvailable( 5000 ) );
+      assertEquals( "content", get.getResponseBodyAsString() );
+    } finally {
+      HCPConnectionOperationUtils.releaseMethod( get );
+    }
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+
+  @Test public void testListHandlerCanWaitForASlot() throws Exception {
+    serve( "/rest/dir/", 200, HCPListResponseTest.LISTING );
+
+    final List<String> names = new ArrayList<>();
+    HCPListResponse listing =
+        HCPConnectionOperationUtils.performList( m_client, m_baseUrl + "/rest/dir/", "auth", null,
+            new HCPEntryHandler() {
+              @Override public boolean entry( HCPListResponse response, HCPListResponse.ListEntry entry )
+                  throws KettleException {
+                try {
+                  // putRow blocked on a step that needs a slot
+                  assertTrue( slotAvailable( 5000 ) );
+                } catch ( Exception e ) {
+                  throw new KettleException( e );
+                }
+                names.add( entry.getUtf8Name() );
+                return true;
+              }
+            }, null );
+
+    assertEquals( BaseHCPResponse.Status.OK, listing.getStatus() );
+    assertEquals( 2, names.size() );
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+
+  @Test public void testStreamingGetHandlerCanWaitForASlot() throws Exception {
+    serve( "/rest/object.csv", 200, "a,b\n1,2\n" );
+
+    final StringBuilder content = new StringBuilder();
+    HCPReadResponse response =
+        HCPConnectionOperationUtils.performStreamingGet( m_client, m_baseUrl + "/rest/object.csv", "auth",
+            new HCPContentHandler() {
+              @Override public boolean content( HCPReadResponse readResponse, InputStream inputStream )
+                  throws IOException, KettleException {
+                try {
+                  // putRow blocked on a step that needs a slot
+                  assertTrue( slotAvailable( 5000 ) );
+                } catch ( Exception e ) {
+                  throw new KettleException( e );
+                }
+                int c;
+                while ( ( c = inputStream.read() ) >= 0 ) {
+                  content.append( (char) c );
+                }
+                return true;
+              }
+            }, null );
+
+    assertEquals( BaseHCPResponse.Status.OK, response.getStatus() );
+    assertEquals( "a,b\n1,2\n", content.toString() );
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+
+  @Test public void testParsesContentRange() {
+    long[] range = HCPConnectionOperationUtils.parseContentRange( "bytes 0-99/1000" );
+    assertEquals( 0, range[0] );
+    assertEquals( 99, range[1] );
+    assertEquals( 1000, range[2] );
+
+    // size not known
+    range = HCPConnectionOperationUtils.parseContentRange( " bytes 100-199/* " );
+    assertEquals( 100, range[0] );
+    assertEquals( 199, range[1] );
+    assertEquals( -1, range[2] );
+
+    assertNull( HCPConnectionOperationUtils.parseContentRange( null ) );
+    assertNull( HCPConnectionOperationUtils.parseContentRange( "bytes */1000" ) );
+    assertNull( HCPConnectionOperationUtils.parseContentRange( "items 0-99/1000" ) );
+    assertNull( HCPConnectionOperationUtils.parseContentRange( "bytes 0-x/1000" ) );
+  }
+
+  @Test public void testRangeGetWritesAtOffset() throws Exception {
+    serve( "/rest/ranged", 206, "cdef", "Content-Range", "bytes 2-5/10" );
+
+    File file = File.createTempFile( "hcp-range", ".bin" );
+    RandomAccessFile target = new RandomAccessFile( file, "rw" );
+    try {
+      HCPReadResponse response =
+          HCPConnectionOperationUtils.performRangeGet( m_client, m_baseUrl + "/rest/ranged", "auth", null,
+              target.getChannel(), 2, 5 );
+      assertEquals( BaseHCPResponse.Status.PARTIAL_CONTENT, response.getStatus() );
+
+      byte[] written = new byte[4];
+      target.seek( 2 );
+      target.readFully( written );
+      assertEquals( "cdef", new String( written, "UTF-8" ) );
+    } finally {
+      target.close();
+      file.delete();
+    }
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+
+  @Test public void testRangeGetRejectsOtherRange() throws Exception {
+    // the server sent the start of the object instead
+    serve( "/rest/unranged", 206, "abcd", "Content-Range", "bytes 0-3/10" );
+
+    File file = File.createTempFile( "hcp-range", ".bin" );
+    RandomAccessFile target = new RandomAccessFile( file, "rw" );
+    try {
+      HCPReadResponse response =
+          HCPConnectionOperationUtils.performRangeGet( m_client, m_baseUrl + "/rest/unranged", "auth", null,
+              target.getChannel(), 2, 5 );
+      assertEquals( BaseHCPResponse.Status.OTHER_FAILURE, response.getStatus() );
+      assertEquals( 0, target.length() );
+    } finally {
+      target.close();
+      file.delete();
+    }
+    assertEquals( 0, m_limiter.getInFlight() );
+  }
+}
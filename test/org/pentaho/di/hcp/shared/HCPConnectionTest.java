@@ -35,4 +35,20 @@ public class HCPConnectionTest extends TestCase {
     assertEquals("http://pentaho.hcp-demo.hcpdemo.com:8000/rest", restUrl);    
   }
 
+  @Test
+  public void testGetProcUrl() {
+    VariableSpace space = new Variables();
+    space.setVariable("SERVER", "hcpdemo.com");
+    space.setVariable("TENANT", "pentaho");
+
+    HCPConnection connection = new HCPConnection();
+    connection.setServer("${SERVER}");
+    connection.setNamespace("hcp-demo");
+    connection.setTenant("${TENANT}");
+    connection.setUseSSL(true);
+
+    String procUrl = connection.getProcUrl(space);
+    assertEquals("https://pentaho.hcpdemo.com/proc", procUrl);
+  }
+
 }
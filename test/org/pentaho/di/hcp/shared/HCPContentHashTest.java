@@ -0,0 +1,41 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+public class HCPContentHashTest extends TestCase {
+
+  protected static MessageDigest digest( String content ) throws Exception {
+    MessageDigest digest = HCPContentHash.createDigest( "SHA-256" );
+    digest.update( content.getBytes( "UTF-8" ) );
+    return digest;
+  }
+
+  @Test public void testVerifiesAgainstArcHashAlone() throws Exception {
+    String expected = HCPContentHash.format( "SHA-256", digest( "hello" ).digest() );
+
+    HCPCreateResponse response = new HCPCreateResponse();
+    response.setStatus( BaseHCPResponse.Status.CREATED );
+    response.setArcHashHeader( expected );
+    // the output field keeps just the value
+    assertEquals( expected.substring( "SHA-256 ".length() ), response.getArcHash() );
+    assertNull( response.getHCPHash() );
+
+    HCPContentHash.verify( response, digest( "hello" ), response.getHCPHash(), response.getArcHashHeader() );
+    assertEquals( Boolean.TRUE, response.getHashVerified() );
+    assertEquals( BaseHCPResponse.Status.CREATED, response.getStatus() );
+
+    HCPContentHash.verify( response, digest( "hullo" ), response.getHCPHash(), response.getArcHashHeader() );
+    assertEquals( Boolean.FALSE, response.getHashVerified() );
+    assertEquals( BaseHCPResponse.Status.HASH_MISMATCH, response.getStatus() );
+  }
+
+  @Test public void testMissingArcHash() {
+    HCPCreateResponse response = new HCPCreateResponse();
+    response.setArcHashHeader( "" );
+    assertNull( response.getArcHash() );
+    assertNull( response.getArcHashHeader() );
+  }
+}
@@ -0,0 +1,108 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class HCPDelimitedReaderTest extends TestCase {
+
+  protected static HCPDelimitedReader reader( String text, String delimiter, String enclosure ) {
+    return new HCPDelimitedReader( new StringReader( text ), delimiter, enclosure );
+  }
+
+  @Test public void testSplitsOnDelimiter() throws Exception {
+    HCPDelimitedReader reader = reader( "a,b,c\n1,,3\r\n", ",", "\"" );
+
+    String[] record = reader.readRecord();
+    assertEquals( 3, record.length );
+    assertEquals( "a", record[0] );
+    assertEquals( "c", record[2] );
+
+    record = reader.readRecord();
+    assertEquals( 3, record.length );
+    assertEquals( "", record[1] );
+    assertEquals( "3", record[2] );
+
+    assertNull( reader.readRecord() );
+    assertEquals( 2, reader.getLineNumber() );
+  }
+
+  @Test public void testNoDelimiterGivesWholeLines() throws Exception {
+    HCPDelimitedReader reader = reader( "first, line\nsecond", "", "\"" );
+
+    assertEquals( "first, line", reader.readRecord()[0] );
+    assertEquals( "second", reader.readRecord()[0] );
+    assertNull( reader.readRecord() );
+  }
+
+  @Test public void testEnclosedFields() throws Exception {
+    HCPDelimitedReader reader = reader( "\"x,y\",\"say \"\"hi\"\"\",z\n", ",", "\"" );
+
+    String[] record = reader.readRecord();
+    assertEquals( 3, record.length );
+    assertEquals( "x,y", record[0] );
+    assertEquals( "say \"hi\"", record[1] );
+    assertEquals( "z", record[2] );
+  }
+
+  @Test public void testEnclosedLineBreak() throws Exception {
+    HCPDelimitedReader reader = reader( "1,\"two\nlines\",3\n4,5,6\n", ",", "\"" );
+
+    String[] record = reader.readRecord();
+    assertEquals( 3, record.length );
+    assertEquals( "two\nlines", record[1] );
+    assertEquals( 2, reader.getLineNumber() );
+
+    assertEquals( "4", reader.readRecord()[0] );
+    assertEquals( 3, reader.getLineNumber() );
+  }
+
+  @Test public void testEnclosureOnlyAtFieldStart() throws Exception {
+    HCPDelimitedReader reader = reader( "it\"s;ok\n", ";", "\"" );
+
+    String[] record = reader.readRecord();
+    assertEquals( "it\"s", record[0] );
+    assertEquals( "ok", record[1] );
+  }
+
+  @Test public void testMultiCharacterDelimiter() throws Exception {
+    HCPDelimitedReader reader = reader( "a||b||\n", "||", "" );
+
+    String[] record = reader.readRecord();
+    assertEquals( 3, record.length );
+    assertEquals( "b", record[1] );
+    assertEquals( "", record[2] );
+  }
+
+  @Test public void testUnterminatedEnclosure() throws Exception {
+    HCPDelimitedReader reader = reader( "a,\"open\nend", ",", "\"" );
+
+    String[] record = reader.readRecord();
+    assertEquals( "open\nend", record[1] );
+    assertNull( reader.readRecord() );
+  }
+
+  @Test public void testUnclosedEnclosureIsLimited() throws Exception {
+    HCPDelimitedReader reader = reader( "1,2\na,\"never closed\nb,c\nd,e\nf,g\n", ",", "\"" );
+    reader.setMaxRecordLength( 20 );
+
+    assertEquals( "2", reader.readRecord()[1] );
+    try {
+      reader.readRecord();
+      fail( "an enclosed field running past the maximum record length should fail" );
+    } catch ( IOException e ) {
+      assertTrue( e.getMessage(), e.getMessage().contains( "line 2" ) );
+    }
+  }
+
+  @Test public void testEnclosedLineBreaksWithinLimit() throws Exception {
+    HCPDelimitedReader reader = reader( "\"a\nb\nc\",d\n", ",", "\"" );
+    reader.setMaxRecordLength( 10 );
+
+    String[] record = reader.readRecord();
+    assertEquals( "a\nb\nc", record[0] );
+    assertEquals( "d", record[1] );
+  }
+}
@@ -0,0 +1,92 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HCPDirectoryWalkerTest extends TestCase {
+
+  protected ExecutorService m_executor;
+
+  /** Directory URL to its entries, as "name type" */
+  protected Map<String, String[]> m_tree = new HashMap<>();
+
+  @Override protected void setUp() throws Exception {
+    m_executor = Executors.newFixedThreadPool( 3 );
+    m_tree.put( "http://ns/rest/", new String[] { "a.txt object", "d1 directory", "bad directory" } );
+    m_tree.put( "http://ns/rest/d1/", new String[] { "b.txt object", "d2 directory" } );
+    m_tree.put( "http://ns/rest/d1/d2/", new String[] { "c.txt object" } );
+  }
+
+  @Override protected void tearDown() throws Exception {
+    m_executor.shutdownNow();
+  }
+
+  protected HCPDirectoryWalker createWalker( int maxDepth ) {
+    return new HCPDirectoryWalker( null, null, m_executor, maxDepth, 1, null ) {
+      @Override protected HCPListResponse list( String url, HCPEntryHandler handler ) throws Exception {
+        String[] entries = m_tree.get( url );
+        if ( entries == null ) {
+          return new HCPListResponse( BaseHCPResponse.Status.NOT_FOUND, "Not Found" );
+        }
+        HCPListResponse listing = new HCPListResponse();
+        listing.setStatus( BaseHCPResponse.Status.OK );
+        for ( String e : entries ) {
+          HCPListResponse.ListEntry entry = new HCPListResponse.ListEntry();
+          entry.m_urlName = e.split( " " )[0];
+          entry.m_type = e.split( " " )[1];
+          if ( !handler.entry( listing, entry ) ) {
+            break;
+          }
+        }
+        return listing;
+      }
+    };
+  }
+
+  protected List<String> walk( HCPDirectoryWalker walker, List<String> failures ) throws Exception {
+    List<String> objects = new ArrayList<>();
+    walker.start( "http://ns/rest/" );
+    HCPDirectoryWalker.Found found;
+    while ( ( found = walker.next() ) != null ) {
+      if ( found.getEntry() != null ) {
+        objects.add( found.getUrl() + found.getEntry().getUrlName() );
+      } else {
+        failures.add( found.getUrl() );
+      }
+    }
+    Collections.sort( objects );
+    return objects;
+  }
+
+  @Test public void testWalksWholeTree() throws Exception {
+    List<String> failures = new ArrayList<>();
+    HCPDirectoryWalker walker = createWalker( -1 );
+    List<String> objects = walk( walker, failures );
+
+    assertEquals( 3, objects.size() );
+    assertEquals( "http://ns/rest/a.txt", objects.get( 0 ) );
+    assertEquals( "http://ns/rest/d1/b.txt", objects.get( 1 ) );
+    assertEquals( "http://ns/rest/d1/d2/c.txt", objects.get( 2 ) );
+    assertEquals( 1, failures.size() );
+    assertEquals( "http://ns/rest/bad/", failures.get( 0 ) );
+    assertEquals( 3, walker.getObjectCount() );
+    assertEquals( 4, walker.getDirectoryCount() );
+  }
+
+  @Test public void testStopsAtMaxDepth() throws Exception {
+    List<String> objects = walk( createWalker( 1 ), new ArrayList<String>() );
+    assertEquals( 2, objects.size() );
+    assertEquals( "http://ns/rest/d1/b.txt", objects.get( 1 ) );
+
+    objects = walk( createWalker( 0 ), new ArrayList<String>() );
+    assertEquals( 1, objects.size() );
+  }
+}
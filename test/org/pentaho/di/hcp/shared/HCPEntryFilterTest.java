@@ -0,0 +1,68 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HCPEntryFilterTest extends TestCase {
+
+  protected static final String LISTING =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<directory path=\"/rest/docs\" utf8Path=\"/rest/docs\" parentDir=\"/rest\" utf8ParentDir=\"/rest\">\n"
+          + "  <entry urlName=\"a.txt\" utf8Name=\"a.txt\" type=\"object\" size=\"42\""
+          + " changeTimeMilliseconds=\"1000\"/>\n"
+          + "  <entry urlName=\"b.csv\" utf8Name=\"b.csv\" type=\"object\" size=\"4096\""
+          + " changeTimeMilliseconds=\"2000\"/>\n"
+          + "  <entry urlName=\"c.txt\" utf8Name=\"c.txt\" type=\"object\" size=\"100\""
+          + " changeTimeMilliseconds=\"3000\"/>\n"
+          + "  <entry urlName=\"sub\" utf8Name=\"sub\" type=\"directory\" changeTimeMilliseconds=\"500\"/>\n"
+          + "</directory>\n";
+
+  protected static List<String> names( HCPEntryFilter filter ) throws Exception {
+    HCPListResponse response = new HCPListResponse();
+    response.setEntryFilter( filter );
+    response.processListResult( new ByteArrayInputStream( LISTING.getBytes( "UTF-8" ) ) );
+    List<String> names = new ArrayList<>();
+    for ( HCPListResponse.ListEntry entry : response.getEntries() ) {
+      names.add( entry.getUtf8Name() );
+    }
+    return names;
+  }
+
+  @Test public void testGlob() {
+    assertEquals( ".*\\Q.txt\\E", HCPEntryFilter.globToRegex( "*.txt" ) );
+    assertEquals( "\\Qa\\E.\\Q(1)\\E", HCPEntryFilter.globToRegex( "a?(1)" ) );
+  }
+
+  @Test public void testFiltersWhileParsing() throws Exception {
+    HCPEntryFilter filter = new HCPEntryFilter();
+    assertTrue( filter.isEmpty() );
+    assertEquals( 4, names( filter ).size() );
+
+    filter.setNamePattern( "*.txt", false );
+    assertEquals( "[a.txt, c.txt]", names( filter ).toString() );
+
+    filter.setNamePattern( "[ab]\\..*", true );
+    assertEquals( "[a.txt, b.csv]", names( filter ).toString() );
+
+    filter.setNamePattern( null, false );
+    filter.setType( HCPDirectoryWalker.DIRECTORY_TYPE );
+    assertEquals( "[sub]", names( filter ).toString() );
+
+    filter.setType( null );
+    filter.setMinSize( 100L );
+    // directories have no size
+    assertEquals( "[b.csv, c.txt]", names( filter ).toString() );
+
+    filter.setMinSize( null );
+    filter.setChangedFrom( 1000L );
+    filter.setChangedTo( 3000L );
+    assertEquals( "[a.txt, b.csv]", names( filter ).toString() );
+
+    filter.setPassDirectories( true );
+    assertEquals( "[a.txt, b.csv, sub]", names( filter ).toString() );
+  }
+}
@@ -0,0 +1,91 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HCPListResponseTest extends TestCase {
+
+  protected static final String LISTING =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<directory path=\"/rest/docs\" utf8Path=\"/rest/docs\" parentDir=\"/rest\" utf8ParentDir=\"/rest\""
+          + " dirDeleted=\"false\" showDeleted=\"false\" namespaceName=\"ns\" utf8NamespaceName=\"ns\">\n"
+          + "  <entry urlName=\"a%20b.txt\" utf8Name=\"a b.txt\" type=\"object\" size=\"42\""
+          + " hashScheme=\"SHA-256\" hash=\"ABC\" retention=\"0\" hold=\"true\" shred=\"false\" dpl=\"2\""
+          + " index=\"true\" customMetadata=\"false\" version=\"123\" changeTimeMilliseconds=\"1000\""
+          + " owner=\"admin\"/>\n"
+          + "  <entry urlName=\"sub\" utf8Name=\"sub\" type=\"directory\"/>\n"
+          + "</directory>\n";
+
+  protected static HCPListResponse parse( HCPListResponse response ) throws Exception {
+    response.processListResult( new ByteArrayInputStream( LISTING.getBytes( "UTF-8" ) ) );
+    return response;
+  }
+
+  @Test public void testParsesEntries() throws Exception {
+    HCPListResponse response = parse( new HCPListResponse() );
+
+    assertEquals( 2, response.getEntries().size() );
+    HCPListResponse.ListEntry object = response.getEntries().get( 0 );
+    assertEquals( "a%20b.txt", object.getUrlName() );
+    assertEquals( "a b.txt", object.getUtf8Name() );
+    assertEquals( "object", object.getType() );
+    assertEquals( Long.valueOf( 42 ), object.m_size );
+    assertEquals( Boolean.TRUE, object.m_hold );
+    assertEquals( Long.valueOf( 1000 ), object.m_changeTime );
+    assertEquals( "directory", response.getEntries().get( 1 ).getType() );
+    // missing attributes read as they did from the DOM
+    assertEquals( "", response.getEntries().get( 1 ).m_hash );
+    assertNull( response.getEntries().get( 1 ).m_size );
+
+    assertEquals( "/rest/docs", response.m_path );
+    assertEquals( Boolean.FALSE, response.m_dirDeleted );
+    assertEquals( "ns", response.m_namespaceName );
+  }
+
+  @Test public void testHandsOverEntriesAsParsed() throws Exception {
+    final List<String> names = new ArrayList<>();
+    HCPListResponse response = new HCPListResponse();
+    response.setEntryHandler( new HCPEntryHandler() {
+      @Override public boolean entry( HCPListResponse listing, HCPListResponse.ListEntry entry ) {
+        // the directory comes first
+        assertEquals( "/rest/docs", listing.m_path );
+        names.add( entry.getUtf8Name() );
+        return true;
+      }
+    } );
+
+    assertTrue( response.processListResult( new ByteArrayInputStream( LISTING.getBytes( "UTF-8" ) ) ) );
+    assertEquals( 2, names.size() );
+    assertEquals( "sub", names.get( 1 ) );
+    assertEquals( 0, response.getEntries().size() );
+  }
+
+  @Test public void testHandlerStopsEarly() throws Exception {
+    final List<String> names = new ArrayList<>();
+    HCPListResponse response = new HCPListResponse();
+    response.setEntryHandler( new HCPEntryHandler() {
+      @Override public boolean entry( HCPListResponse listing, HCPListResponse.ListEntry entry ) {
+        names.add( entry.getUtf8Name() );
+        return false;
+      }
+    } );
+
+    assertFalse( response.processListResult( new ByteArrayInputStream( LISTING.getBytes( "UTF-8" ) ) ) );
+    assertEquals( 1, names.size() );
+  }
+
+  @Test public void testToReadResponse() throws Exception {
+    HCPReadResponse read = parse( new HCPListResponse() ).getEntries().get( 0 ).toReadResponse();
+
+    assertEquals( BaseHCPResponse.Status.OK, read.getStatus() );
+    assertTrue( read.getSuccess() );
+    assertEquals( Long.valueOf( 42 ), read.getSize() );
+    assertEquals( "123", read.getVersionId() );
+    assertEquals( "SHA-256 ABC", read.getHCPHash() );
+    assertEquals( Long.valueOf( 2 ), read.getDpl() );
+  }
+}
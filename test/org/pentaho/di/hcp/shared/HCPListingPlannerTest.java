@@ -0,0 +1,39 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class HCPListingPlannerTest extends TestCase {
+
+  @Test public void testParentAndName() {
+    assertEquals( "http://ns/rest/a", HCPListingPlanner.getParent( "http://ns/rest/a/b.txt" ) );
+    assertEquals( "b.txt", HCPListingPlanner.getName( "http://ns/rest/a/b.txt" ) );
+    assertEquals( "http://ns", HCPListingPlanner.getParent( "http://ns/rest" ) );
+    assertNull( HCPListingPlanner.getParent( "http://ns" ) );
+  }
+
+  @Test public void testGroupsDenseDirectories() {
+    HCPListingPlanner planner = new HCPListingPlanner( 2 );
+    List<String> urls =
+        Arrays.asList( "http://ns/rest/a/1", "http://ns/rest/b/1", "http://ns/rest/a/2", "http://ns/rest/a/3" );
+    Map<String, List<Integer>> plan = planner.plan( urls );
+
+    assertEquals( 1, plan.size() );
+    assertEquals( Arrays.asList( 0, 2, 3 ), plan.get( "http://ns/rest/a" ) );
+  }
+
+  @Test public void testWeighsKnownDirectorySize() {
+    HCPListingPlanner planner = new HCPListingPlanner( 2 );
+    assertTrue( planner.isWorthListing( "http://ns/rest/big", 3 ) );
+
+    planner.listed( "http://ns/rest/big", 1000 );
+    // 11 requests' worth of entries for 3 objects
+    assertFalse( planner.isWorthListing( "http://ns/rest/big", 3 ) );
+    assertTrue( planner.isWorthListing( "http://ns/rest/big", 11 ) );
+    assertFalse( planner.isWorthListing( "http://ns/rest/other", 1 ) );
+  }
+}
@@ -0,0 +1,116 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class HCPMetadataCacheTest extends TestCase {
+
+  protected static class TestCache extends HCPMetadataCache {
+    long m_now = 1000;
+
+    TestCache( int maxEntries ) {
+      super( maxEntries );
+    }
+
+    @Override protected long currentTimeMillis() {
+      return m_now;
+    }
+  }
+
+  protected static HCPReadResponse ok() {
+    return new HCPReadResponse( BaseHCPResponse.Status.OK, "OK" );
+  }
+
+  @Test public void testExpires() {
+    TestCache cache = new TestCache( 10 );
+    HCPReadResponse response = ok();
+    cache.put( "http://ns/a ", response, cache.getGeneration() );
+
+    cache.m_now += 500;
+    assertNotNull( cache.get( "http://ns/a", 500 ) );
+    assertNull( cache.get( "http://ns/a", 499 ) );
+    // dropped once expired
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test public void testOnlyKeepsSuccesses() {
+    TestCache cache = new TestCache( 10 );
+    cache.put( "http://ns/missing", new HCPReadResponse( BaseHCPResponse.Status.NOT_FOUND, "Not Found" ),
+        cache.getGeneration() );
+    assertNull( cache.get( "http://ns/missing", 1000 ) );
+  }
+
+  @Test public void testBoundedLeastRecentlyUsed() {
+    TestCache cache = new TestCache( 2 );
+    cache.put( "http://ns/a", ok(), cache.getGeneration() );
+    cache.put( "http://ns/b", ok(), cache.getGeneration() );
+    assertNotNull( cache.get( "http://ns/a", 1000 ) );
+    cache.put( "http://ns/c", ok(), cache.getGeneration() );
+
+    assertNotNull( cache.get( "http://ns/a", 1000 ) );
+    assertNull( cache.get( "http://ns/b", 1000 ) );
+    assertNotNull( cache.get( "http://ns/c", 1000 ) );
+  }
+
+  @Test public void testInvalidateIgnoresQuery() {
+    TestCache cache = new TestCache( 10 );
+    cache.put( "http://ns/a", ok(), cache.getGeneration() );
+    cache.put( "http://ns/b", ok(), cache.getGeneration() );
+
+    cache.invalidate( "http://ns/a?type=custom-metadata" );
+    assertNull( cache.get( "http://ns/a", 1000 ) );
+    assertNotNull( cache.get( "http://ns/b", 1000 ) );
+  }
+
+  @Test public void testShrinks() {
+    TestCache cache = new TestCache( 10 );
+    cache.put( "http://ns/a", ok(), cache.getGeneration() );
+    cache.put( "http://ns/b", ok(), cache.getGeneration() );
+    cache.setMaxEntries( 1 );
+
+    assertEquals( 1, cache.size() );
+    assertNotNull( cache.get( "http://ns/b", 1000 ) );
+  }
+
+  @Test public void testDropsResponseOlderThanInvalidation() {
+    TestCache cache = new TestCache( 10 );
+    long generation = cache.getGeneration();
+    // the object changes while the HEAD is in flight
+    cache.invalidate( "http://ns/a" );
+    cache.put( "http://ns/a", ok(), generation );
+    assertNull( cache.get( "http://ns/a", 1000 ) );
+
+    // other objects aren't affected
+    cache.put( "http://ns/b", ok(), generation );
+    assertNotNull( cache.get( "http://ns/b", 1000 ) );
+
+    cache.put( "http://ns/a", ok(), cache.getGeneration() );
+    assertNotNull( cache.get( "http://ns/a", 1000 ) );
+  }
+
+  @Test public void testDropsResponseOlderThanForgottenInvalidations() {
+    TestCache cache = new TestCache( 2 );
+    long generation = cache.getGeneration();
+    cache.invalidate( "http://ns/a" );
+    cache.invalidate( "http://ns/b" );
+    cache.invalidate( "http://ns/c" );
+
+    // a's invalidation has been forgotten, so there is no telling
+    cache.put( "http://ns/a", ok(), generation );
+    assertNull( cache.get( "http://ns/a", 1000 ) );
+  }
+
+  @Test public void testCopiesResponses() {
+    TestCache cache = new TestCache( 10 );
+    HCPReadResponse response = ok();
+    response.setVersionId( "1" );
+    cache.put( "http://ns/a", response, cache.getGeneration() );
+    response.setVersionId( "2" );
+
+    HCPReadResponse cached = cache.get( "http://ns/a", 1000 );
+    assertNotSame( response, cached );
+    assertEquals( "1", cached.getVersionId() );
+    cached.setVersionId( "3" );
+    assertEquals( "1", cache.get( "http://ns/a", 1000 ).getVersionId() );
+  }
+}
@@ -0,0 +1,109 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class HCPObjectCacheTest extends TestCase {
+
+  protected File m_directory;
+
+  @Override protected void setUp() throws Exception {
+    m_directory = File.createTempFile( "hcp-cache", "" );
+    m_directory.delete();
+  }
+
+  @Override protected void tearDown() throws Exception {
+    File[] files = m_directory.listFiles();
+    if ( files != null ) {
+      for ( File file : files ) {
+        file.delete();
+      }
+    }
+    m_directory.delete();
+  }
+
+  protected static File object( HCPObjectCache cache, int size ) throws IOException {
+    File file = cache.createTempFile();
+    FileOutputStream out = new FileOutputStream( file );
+    try {
+      out.write( new byte[size] );
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  @Test public void testPutAndGet() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    assertTrue( cache.put( "/a", object( cache, 10 ), "\"e1\"", null, "1", null ) );
+
+    HCPObjectCache.Entry entry = cache.get( "/a" );
+    assertNotNull( entry );
+    assertEquals( "\"e1\"", entry.getETag() );
+    assertEquals( "1", entry.getVersionId() );
+    assertEquals( 10, cache.getFile( entry ).length() );
+    assertEquals( 10, cache.getTotalBytes() );
+    assertNull( cache.get( "/b" ) );
+  }
+
+  @Test public void testEvictsLeastRecentlyUsed() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    cache.put( "/a", object( cache, 40 ), "a", null, null, null );
+    cache.put( "/b", object( cache, 40 ), "b", null, null, null );
+    assertNotNull( cache.get( "/a" ) );
+
+    cache.put( "/c", object( cache, 40 ), "c", null, null, null );
+    assertNotNull( cache.get( "/a" ) );
+    assertNull( cache.get( "/b" ) );
+    assertNotNull( cache.get( "/c" ) );
+    assertEquals( 80, cache.getTotalBytes() );
+  }
+
+  @Test public void testReplacesVersion() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    cache.put( "/a", object( cache, 10 ), "v1", null, "1", null );
+    File old = cache.getFile( cache.get( "/a" ) );
+    cache.put( "/a", object( cache, 20 ), "v2", null, "2", null );
+
+    assertFalse( old.exists() );
+    assertEquals( "2", cache.get( "/a" ).getVersionId() );
+    assertEquals( 20, cache.getTotalBytes() );
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test public void testSkipsOversizedAndUnvalidatable() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    File big = object( cache, 101 );
+    assertFalse( cache.put( "/big", big, "x", null, null, null ) );
+    assertFalse( big.exists() );
+    assertFalse( cache.put( "/none", object( cache, 1 ), null, null, null, null ) );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test public void testSurvivesReload() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    cache.put( "/a", object( cache, 10 ), "a", "Mon, 01 Jan 2018 00:00:00 GMT", "7", "SHA-256 00" );
+    File stray = cache.createTempFile();
+
+    HCPObjectCache reloaded = new HCPObjectCache( m_directory, 100 );
+    HCPObjectCache.Entry entry = reloaded.get( "/a" );
+    assertNotNull( entry );
+    assertEquals( "Mon, 01 Jan 2018 00:00:00 GMT", entry.getLastModified() );
+    assertEquals( "SHA-256 00", entry.getHash() );
+    assertEquals( 10, reloaded.getTotalBytes() );
+    assertFalse( stray.exists() );
+  }
+
+  @Test public void testDropsEntryWhoseFileHasGone() throws Exception {
+    HCPObjectCache cache = new HCPObjectCache( m_directory, 100 );
+    cache.put( "/a", object( cache, 10 ), "a", null, null, null );
+    cache.getFile( cache.get( "/a" ) ).delete();
+
+    assertNull( cache.get( "/a" ) );
+    assertEquals( 0, cache.getTotalBytes() );
+  }
+}
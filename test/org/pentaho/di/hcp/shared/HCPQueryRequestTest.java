@@ -0,0 +1,100 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+public class HCPQueryRequestTest extends TestCase {
+
+  @Test public void testCombinesCriteria() {
+    HCPQueryRequest request = new HCPQueryRequest();
+    assertEquals( "*", request.getQuery() );
+
+    request.setNamespace( "ns.tenant" );
+    request.setChangedFrom( 1000L );
+    request.setMaxSize( 4096L );
+    request.setExpression( " customMetadataContent:\"dept.Sales\" " );
+    assertEquals( "+namespace:\"ns.tenant\" +changeTimeMilliseconds:[1000 TO *] +size:[* TO 4096]"
+        + " +(customMetadataContent:\"dept.Sales\")", request.getQuery() );
+  }
+
+  @Test public void testRequestsPages() throws Exception {
+    HCPQueryRequest request = new HCPQueryRequest();
+    request.setPageSize( 50 );
+    request.setExpression( "a&b" );
+    HCPQueryRequest.Slice slice = request.split( 1, 5000L ).get( 0 );
+    String body = request.getRequestBody( slice );
+    assertTrue( body, body.contains( "<query>+(a&amp;b)</query>" ) );
+    assertTrue( body, body.contains( "<count>50</count>" ) );
+    assertTrue( body, body.contains( "<objectProperties>" + HCPQueryRequest.OBJECT_PROPERTIES ) );
+    assertFalse( body, body.contains( "<offset>" ) );
+    assertFalse( body, body.contains( "<lastResult>" ) );
+
+    slice.setLastPage( parse( RESULTS ) );
+    body = request.getRequestBody( slice );
+    // the next page carries on from the last object HCP returned, as HCP wrote it
+    assertTrue( body, body.contains( "<lastResult><urlName>https://ns.tenant.hcp/rest/b.txt</urlName>"
+        + "<changeTimeMilliseconds>1334326011081.00</changeTimeMilliseconds><version>86</version></lastResult>" ) );
+    assertFalse( body, body.contains( "<offset>" ) );
+    assertFalse( body, body.contains( "<sort>" ) );
+  }
+
+  @Test public void testSplitsChangeTime() {
+    HCPQueryRequest request = new HCPQueryRequest();
+    request.setNamespace( "ns.tenant" );
+    List<HCPQueryRequest.Slice> slices = request.split( 4, 9L );
+    assertEquals( 4, slices.size() );
+    // the outer slices stay open, so nothing changed before 0 or after now is missed
+    assertEquals( "+namespace:\"ns.tenant\" +changeTimeMilliseconds:[* TO 2]",
+        request.getQuery( slices.get( 0 ).getChangedFrom(), slices.get( 0 ).getChangedTo() ) );
+    assertEquals( Long.valueOf( 3 ), slices.get( 1 ).getChangedFrom() );
+    assertEquals( Long.valueOf( 5 ), slices.get( 1 ).getChangedTo() );
+    assertEquals( Long.valueOf( 6 ), slices.get( 2 ).getChangedFrom() );
+    assertEquals( Long.valueOf( 8 ), slices.get( 2 ).getChangedTo() );
+    assertEquals( Long.valueOf( 9 ), slices.get( 3 ).getChangedFrom() );
+    assertNull( slices.get( 3 ).getChangedTo() );
+
+    request.setChangedFrom( 100L );
+    request.setChangedTo( 102L );
+    slices = request.split( 8, 5000L );
+    assertEquals( 3, slices.size() );
+    assertEquals( Long.valueOf( 100 ), slices.get( 0 ).getChangedFrom() );
+    assertEquals( Long.valueOf( 102 ), slices.get( 2 ).getChangedTo() );
+
+    request.setChangedFrom( 100L );
+    request.setChangedTo( 100L );
+    assertEquals( 1, request.split( 8, 5000L ).size() );
+  }
+
+  @Test public void testParsesResults() throws Exception {
+    HCPQueryResponse response = parse( RESULTS );
+
+    assertEquals( 2, response.getEntries().size() );
+    assertEquals( "a.txt", response.getEntries().get( 0 ).getUtf8Name() );
+    assertEquals( Long.valueOf( 42 ), response.getEntries().get( 0 ).m_size );
+    assertEquals( Long.valueOf( 1000 ), response.getEntries().get( 0 ).m_changeTime );
+    assertEquals( Long.valueOf( 1334326011081L ), response.getEntries().get( 1 ).m_changeTime );
+    assertEquals( HCPQueryResponse.COMPLETE, response.getResultCode() );
+  }
+
+  protected static final String RESULTS =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<queryResult xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
+          + "  <query start=\"0\" end=\"1\"><expression>*</expression></query>\n"
+          + "  <resultSet>\n"
+          + "    <object urlName=\"https://ns.tenant.hcp/rest/a.txt\" utf8Name=\"a.txt\" type=\"object\""
+          + " size=\"42\" changeTimeMilliseconds=\"1000\" operation=\"CREATED\"/>\n"
+          + "    <object urlName=\"https://ns.tenant.hcp/rest/b.txt\" utf8Name=\"b.txt\" type=\"object\""
+          + " size=\"7\" changeTimeMilliseconds=\"1334326011081.00\" version=\"86\"/>\n"
+          + "  </resultSet>\n"
+          + "  <status results=\"2\" message=\"\" code=\"COMPLETE\"/>\n"
+          + "</queryResult>\n";
+
+  protected static HCPQueryResponse parse( String results ) throws Exception {
+    HCPQueryResponse response = new HCPQueryResponse();
+    response.processQueryResult( new ByteArrayInputStream( results.getBytes( "UTF-8" ) ) );
+    return response;
+  }
+}
@@ -0,0 +1,153 @@
+package org.pentaho.di.hcp.shared;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+public class HCPTransferJournalTest extends TestCase {
+
+  protected File m_file;
+
+  @Override protected void setUp() throws Exception {
+    m_file = File.createTempFile( "hcp-journal", ".txt" );
+    m_file.delete();
+  }
+
+  @Override protected void tearDown() throws Exception {
+    m_file.delete();
+  }
+
+  protected HCPTransferJournal open() throws Exception {
+    HCPTransferJournal journal = new HCPTransferJournal( m_file.getAbsolutePath() );
+    journal.open();
+    return journal;
+  }
+
+  protected void write( String content ) throws IOException {
+    FileOutputStream out = new FileOutputStream( m_file );
+    try {
+      out.write( content.getBytes( "UTF-8" ) );
+    } finally {
+      out.close();
+    }
+  }
+
+  @Test public void testCompletedSurvivesReopen() throws Exception {
+    HCPTransferJournal journal = open();
+    journal.completed( "/a", BaseHCPResponse.Status.OK, "86", "SHA-256;ABC" );
+    journal.completed( "/b", BaseHCPResponse.Status.OK, null, null );
+    journal.close();
+
+    journal = open();
+    try {
+      assertEquals( 2, journal.getCompletedCount() );
+      HCPTransferJournal.Completed done = journal.getCompleted( "/a" );
+      assertEquals( BaseHCPResponse.Status.OK, done.getStatus() );
+      assertEquals( "86", done.getVersionId() );
+      assertEquals( "SHA-256;ABC", done.getHash() );
+      assertNull( journal.getCompleted( "/b" ).getVersionId() );
+      assertNull( journal.getCompleted( "/c" ) );
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test public void testTruncatedLastLineIgnored() throws Exception {
+    // the crash came in the middle of the hash
+    write( "DONE\t/a\tOK\t1\tSHA-256;ABC\nDONE\t/b\tOK\t2\tSHA-256;D" );
+
+    HCPTransferJournal journal = open();
+    assertNotNull( journal.getCompleted( "/a" ) );
+    assertNull( journal.getCompleted( "/b" ) );
+    journal.completed( "/c", BaseHCPResponse.Status.OK, "3", "SHA-256;EF" );
+    journal.close();
+
+    // the record written after the restart isn't run into the damaged one
+    journal = open();
+    try {
+      assertEquals( 2, journal.getCompletedCount() );
+      assertNull( journal.getCompleted( "/b" ) );
+      assertEquals( "SHA-256;EF", journal.getCompleted( "/c" ).getHash() );
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test public void testTruncatedPartIgnored() throws Exception {
+    write( "MPU\t/big\tu1\t100\t1000\t42\nPART\t/big\tu1\t1\te1\nPART\t/big\tu1\t2" );
+
+    HCPTransferJournal journal = open();
+    journal.partCompleted( "/big", "u1", 3, "e3" );
+    journal.close();
+
+    journal = open();
+    try {
+      Map<Integer, String> parts = journal.getMultipart( "/big" ).getParts();
+      assertEquals( 2, parts.size() );
+      assertEquals( "e1", parts.get( 1 ) );
+      assertEquals( "e3", parts.get( 3 ) );
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test public void testPartsMatchCurrentUploadOnly() throws Exception {
+    HCPTransferJournal journal = open();
+    journal.multipartStarted( "/big", "u1", 100, 1000, 42 );
+    journal.partCompleted( "/big", "u1", 1, "e1" );
+    // left over from an earlier, abandoned upload
+    journal.partCompleted( "/big", "u0", 2, "e2" );
+    journal.multipartEnded( "/big", "u0" );
+    journal.close();
+
+    journal = open();
+    HCPTransferJournal.MultipartState state = journal.getMultipart( "/big" );
+    assertEquals( "u1", state.getUploadId() );
+    Map<Integer, String> parts = state.getParts();
+    assertEquals( 1, parts.size() );
+    assertEquals( "e1", parts.get( 1 ) );
+    assertTrue( state.matches( 100, 1000, 42 ) );
+    assertFalse( state.matches( 100, 1000, 43 ) );
+
+    // a new upload of the same object leaves the old one's records behind
+    journal.multipartStarted( "/big", "u2", 100, 1000, 43 );
+    journal.partCompleted( "/big", "u1", 3, "e3" );
+    journal.multipartEnded( "/big", "u1" );
+    journal.close();
+
+    journal = open();
+    state = journal.getMultipart( "/big" );
+    assertEquals( "u2", state.getUploadId() );
+    assertTrue( state.getParts().isEmpty() );
+    journal.multipartEnded( "/big", "u2" );
+    journal.close();
+
+    journal = open();
+    try {
+      assertNull( journal.getMultipart( "/big" ) );
+    } finally {
+      journal.close();
+    }
+  }
+
+  @Test public void testDiscardRemovesFile() throws Exception {
+    HCPTransferJournal journal = open();
+    journal.completed( "/a", BaseHCPResponse.Status.OK, "1", null );
+    assertTrue( m_file.exists() );
+
+    journal.discard();
+    assertFalse( m_file.exists() );
+    assertNull( journal.getCompleted( "/a" ) );
+
+    journal = open();
+    try {
+      assertEquals( 0, journal.getCompletedCount() );
+    } finally {
+      journal.close();
+    }
+  }
+}